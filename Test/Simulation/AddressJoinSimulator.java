@@ -0,0 +1,156 @@
+package Simulation;
+
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DV.DistanceVector;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long nodes need to get an address that is unique and stays, for networks that use
+ * {@value AddressHeader#BASE_ADDRESSES} addresses more and more densely. Nodes start with a random address,
+ * like {@code NetworkingDAO}, and either use it right away and rely on HELLO conflicts, or first probe for a
+ * free address. Reported per network size and mode:
+ * <ul>
+ *     <li>late join: one node boots in a network whose other nodes already have unique addresses. The time
+ *     from its boot until no node changes its address any more,</li>
+ *     <li>cold boot: all nodes boot within a few seconds. The time until no node changes its address any more,</li>
+ *     <li>for both, the address changes per run and the runs that still had a duplicate address at the end.</li>
+ * </ul>
+ */
+public class AddressJoinSimulator {
+
+    private static final int RUNS = 50;
+    private static final int BOOT_SPREAD = 5;
+    private static final int WARMUP = 120;
+    private static final int MAX_TIME = 600;
+    private static final double RADIUS = 0.5;
+    private static final double LOSS_RATE = 0.02;
+    private static final int SAMPLE = 100;
+
+    private record Result(double seconds, int changes, boolean unique) {
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        System.out.printf("%-6s %-7s %12s %10s %8s %12s %10s %8s%n", "nodes", "mode",
+                "late join (s)", "changes", "dup", "cold boot (s)", "changes", "dup");
+        for (int nodes : new int[]{4, 8, 12, 14, 15}) {
+            for (boolean join : new boolean[]{false, true}) {
+                List<Result> late = new ArrayList<>();
+                List<Result> cold = new ArrayList<>();
+                for (int run = 0; run < RUNS; run++) {
+                    Topology topology = Topology.randomGeometric(nodes, RADIUS, new Random(run));
+                    late.add(lateJoin(topology, join, run));
+                    cold.add(coldBoot(topology, join, run));
+                }
+                System.out.printf("%-6d %-7s %12s %10.2f %7.0f%% %12s %10.2f %7.0f%%%n", nodes,
+                        join ? "probe" : "hello", seconds(late), changes(late), duplicates(late),
+                        seconds(cold), changes(cold), duplicates(cold));
+            }
+        }
+        System.out.printf("%nRan in %.1f seconds%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * All nodes but the last get unique addresses and run for a while, then the last one boots with a random address.
+     */
+    private static Result lateJoin(Topology topology, boolean join, long seed) {
+        Random random = new Random(seed);
+        VirtualClock clock = new VirtualClock();
+        Medium medium = new Medium(clock, topology, random, LOSS_RATE);
+        List<Integer> free = new ArrayList<>();
+        for (int address = 0; address < AddressHeader.BASE_ADDRESSES; address++) if (address != 7) free.add(address);
+        Collections.shuffle(free, random);
+        List<SimNode> nodes = new ArrayList<>();
+        for (int i = 0; i < topology.size(); i++) {
+            int address = i < topology.size() - 1 ? free.get(i) : randomAddress(random);
+            SimNode node = SimNode.create(i, address, medium, clock, DistanceVector::new);
+            medium.attach(node);
+            nodes.add(node);
+        }
+        for (SimNode node : nodes.subList(0, nodes.size() - 1)) {
+            node.start(random.nextInt((int) TimeUnit.SECONDS.toMillis(BOOT_SPREAD) + 1));
+        }
+        clock.runUntil(TimeUnit.SECONDS.toMillis(WARMUP));
+        nodes.getLast().start(0, join);
+        return measure(clock, nodes, clock.now() + TimeUnit.SECONDS.toMillis(1));
+    }
+
+    /**
+     * All nodes boot with random addresses within a few seconds.
+     */
+    private static Result coldBoot(Topology topology, boolean join, long seed) {
+        Random random = new Random(seed);
+        VirtualClock clock = new VirtualClock();
+        Medium medium = new Medium(clock, topology, random, LOSS_RATE);
+        List<SimNode> nodes = new ArrayList<>();
+        for (int i = 0; i < topology.size(); i++) {
+            SimNode node = SimNode.create(i, randomAddress(random), medium, clock, DistanceVector::new);
+            medium.attach(node);
+            nodes.add(node);
+        }
+        for (SimNode node : nodes) {
+            node.start(random.nextInt((int) TimeUnit.SECONDS.toMillis(BOOT_SPREAD) + 1), join);
+        }
+        return measure(clock, nodes, clock.now());
+    }
+
+    /**
+     * Runs for {@link #MAX_TIME} seconds and finds the last moment a node changed its address or finished joining.
+     */
+    private static Result measure(VirtualClock clock, List<SimNode> nodes, long from) {
+        int[] addresses = new int[nodes.size()];
+        boolean[] joined = new boolean[nodes.size()];
+        long lastChange = from;
+        int changes = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            addresses[i] = nodes.get(i).getAddress();
+            joined[i] = nodes.get(i).isJoined();
+        }
+        long end = from + TimeUnit.SECONDS.toMillis(MAX_TIME);
+        while (clock.now() < end) {
+            clock.runUntil(clock.now() + SAMPLE);
+            for (int i = 0; i < nodes.size(); i++) {
+                SimNode node = nodes.get(i);
+                if (node.getAddress() != addresses[i] || node.isJoined() != joined[i]) {
+                    if (node.getAddress() != addresses[i]) changes++;
+                    addresses[i] = node.getAddress();
+                    joined[i] = node.isJoined();
+                    lastChange = clock.now();
+                }
+            }
+        }
+        Set<Integer> distinct = new HashSet<>();
+        boolean unique = true;
+        for (int i = 0; i < nodes.size(); i++) unique &= joined[i] && distinct.add(addresses[i]);
+        return new Result((lastChange - from) / 1000.0, changes, unique);
+    }
+
+    /**
+     * A random address like {@code NetworkingDAO} picks at boot.
+     */
+    private static int randomAddress(Random random) {
+        int address;
+        do {
+            address = random.nextInt(AddressHeader.BASE_ADDRESSES);
+        } while (address == 7);
+        return address;
+    }
+
+    /**
+     * Averages the runs that ended with unique addresses.
+     */
+    private static String seconds(List<Result> results) {
+        OptionalDouble average = results.stream().filter(Result::unique).mapToDouble(Result::seconds).average();
+        return average.isEmpty() ? "never" : "%.1f".formatted(average.getAsDouble());
+    }
+
+    private static double changes(List<Result> results) {
+        return results.stream().mapToInt(Result::changes).average().orElse(0);
+    }
+
+    private static double duplicates(List<Result> results) {
+        return 100.0 * results.stream().filter(result -> !result.unique()).count() / results.size();
+    }
+}
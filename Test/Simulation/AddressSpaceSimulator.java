@@ -0,0 +1,109 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Measures what the extended format with 8-bit addresses costs. A network of 15 nodes is run once with
+ * the base format and once with the extended one, to show the overhead per frame. Networks of 64 and 200
+ * nodes only work with the extended format and show how the routing cost grows with the network. Reported
+ * per network and format:
+ * <ul>
+ *     <li>the time until all routing tables are correct after the nodes boot,</li>
+ *     <li>the address header bytes per DV frame,</li>
+ *     <li>the DV frames every periodic update takes, the DV frames and bytes every node sends per minute
+ *     and the DA frames every node sends per minute once the network is stable,</li>
+ *     <li>the average time a frame waits for earlier frames of its sender and the share of frames dropped
+ *     because the queue was full. When they grow, the nodes have more to send than the medium can carry.</li>
+ * </ul>
+ * Destinations {@link DistanceVector#INFINITY} or more hops away are not reachable with distance vector and
+ * do not count for convergence.
+ */
+public class AddressSpaceSimulator {
+
+    private static final int BOOT_SPREAD = 5;
+    private static final int MAX_TIME = 900;
+    private static final int STEADY_TIME = 300;
+    private static final double LOSS_RATE = 0.02;
+
+    private record Result(int boot, double headerPerFrame, double framesPerUpdate, double dvFrames,
+                          double dvBytes, double daFrames, double queued, double dropped) {
+    }
+
+    private record Network(Topology topology, String format, IntPredicate extended, int runs) {
+    }
+
+    public static void main(String[] args) {
+        Topology small = Topology.randomGeometric(15, 0.4, new Random(1));
+        List<Network> networks = List.of(
+                new Network(small, "base", _ -> false, 5),
+                new Network(small, "extended", _ -> true, 5),
+                new Network(Topology.randomGeometric(64, 0.25, new Random(1)), "extended", _ -> true, 3),
+                new Network(Topology.randomGeometric(200, 0.15, new Random(1)), "extended", _ -> true, 1));
+
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-16s %-9s %9s %11s %12s %12s %13s %12s %10s %8s%n", "topology", "format", "boot (s)",
+                "hdr B/frame", "frames/upd", "DV f/n/min", "DV B/n/min", "DA f/n/min", "queue (s)", "dropped");
+        for (Network network : networks) {
+            List<Result> results = new ArrayList<>();
+            for (int run = 0; run < network.runs(); run++) {
+                Simulation simulation = new Simulation(network.topology(), DistanceVector::new, LOSS_RATE, run,
+                        network.extended());
+                results.add(run(simulation, network.topology().size()));
+                simulated += simulation.getClock().now() / 1000.0;
+            }
+            System.out.printf("%-16s %-9s %9s %11.2f %12.2f %12.2f %13.1f %12.1f %10.2f %7.1f%%%n",
+                    network.topology().name(), network.format(),
+                    average(results.stream().mapToInt(Result::boot).toArray()),
+                    results.stream().mapToDouble(Result::headerPerFrame).average().orElse(0),
+                    results.stream().mapToDouble(Result::framesPerUpdate).average().orElse(0),
+                    results.stream().mapToDouble(Result::dvFrames).average().orElse(0),
+                    results.stream().mapToDouble(Result::dvBytes).average().orElse(0),
+                    results.stream().mapToDouble(Result::daFrames).average().orElse(0),
+                    results.stream().mapToDouble(Result::queued).average().orElse(0),
+                    results.stream().mapToDouble(Result::dropped).average().orElse(0) * 100);
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Result run(Simulation simulation, int nodes) {
+        simulation.start(BOOT_SPREAD);
+        int boot = simulation.runUntilConverged(MAX_TIME);
+
+        Medium medium = simulation.getMedium();
+        long framesBefore = medium.getFrames(Medium.Kind.DV);
+        long bytesBefore = medium.getBytes(Medium.Kind.DV);
+        long headerBefore = medium.getHeaderBytes(Medium.Kind.DV);
+        long daBefore = medium.getFrames(Medium.Kind.DA);
+        long allBefore = medium.getFrames(Medium.Kind.DV) + daBefore;
+        long queuedBefore = medium.getQueued();
+        long droppedBefore = medium.getDropped();
+        simulation.run(STEADY_TIME);
+        long frames = medium.getFrames(Medium.Kind.DV) - framesBefore;
+        long all = medium.getFrames(Medium.Kind.DV) + medium.getFrames(Medium.Kind.DA) - allBefore;
+        double perNodeMinute = nodes * STEADY_TIME / 60.0;
+        double updates = nodes * (double) STEADY_TIME / DistanceVector.DV_UPDATE_INTERVAL;
+        return new Result(boot,
+                (medium.getHeaderBytes(Medium.Kind.DV) - headerBefore) / (double) frames,
+                frames / updates,
+                frames / perNodeMinute,
+                (medium.getBytes(Medium.Kind.DV) - bytesBefore) / perNodeMinute,
+                (medium.getFrames(Medium.Kind.DA) - daBefore) / perNodeMinute,
+                (medium.getQueued() - queuedBefore) / 1000.0 / all,
+                (medium.getDropped() - droppedBefore) / (double) (all + medium.getDropped() - droppedBefore));
+    }
+
+    /**
+     * Averages the runs that converged.
+     */
+    private static String average(int[] seconds) {
+        OptionalDouble average = Arrays.stream(seconds).filter(s -> s >= 0).average();
+        long failed = Arrays.stream(seconds).filter(s -> s < 0).count();
+        if (average.isEmpty()) return "never";
+        return "%.1f".formatted(average.getAsDouble()) + (failed > 0 ? "*" : "");
+    }
+}
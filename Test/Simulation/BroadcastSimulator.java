@@ -0,0 +1,137 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+import TransportLayer.BroadcastSender;
+import TransportLayer.Connection;
+import TransportLayer.Receiver;
+import TransportLayer.RttEstimator;
+import TransportLayer.Sender;
+import TransportLayer.TransportLayer;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a message to every neighbour sent with one {@link Sender} per neighbour, like the transport layer
+ * did before, against one {@link BroadcastSender}. The sender and its neighbours are in one room on a
+ * {@link Medium#setSharedChannel shared channel}, so every frame keeps all of them off the air. On a grid and
+ * a line some receivers are two or more hops away and do not hear the broadcast. Reported per topology, loss
+ * rate and sender:
+ * <ul>
+ *     <li>the seconds until every neighbour had the message,</li>
+ *     <li>the data frames on the air per message, acknowledgments and repairs included,</li>
+ *     <li>the seconds the channel was taken by them.</li>
+ * </ul>
+ * Runs where a neighbour did not get the message within {@link #MAX_TIME} seconds are left out of the
+ * averages and counted.
+ */
+public class BroadcastSimulator {
+
+    private static final int RUNS = 10;
+    private static final int BOOT_SPREAD = 5;
+    private static final int MAX_TIME = 1800;
+    private static final int LENGTH = 240;
+    private static final int[] NEIGHBOURS = {1, 2, 4, 8, 12};
+    private static final List<Topology> MULTI_HOP = List.of(Topology.grid(2, 3), Topology.line(4));
+    private static final double[] LOSS_RATES = {0, 0.05, 0.2};
+    private static final List<String> SENDERS = List.of("unicast", "broadcast");
+
+    private record Result(double seconds, double frames, double airtime) {
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        double simulated = 0;
+        List<Topology> topologies = new ArrayList<>();
+        for (int neighbours : NEIGHBOURS) topologies.add(Topology.clique(neighbours + 1));
+        topologies.addAll(MULTI_HOP);
+        System.out.printf("%-11s %-6s %-10s %10s %12s %12s %7s%n", "topology", "loss", "sender", "time (s)",
+                "frames/msg", "airtime (s)", "failed");
+        for (Topology topology : topologies) {
+            for (double loss : LOSS_RATES) {
+                for (String sender : SENDERS) {
+                    List<Result> results = new ArrayList<>();
+                    for (int run = 0; run < RUNS; run++) {
+                        Simulation simulation = new Simulation(topology, DistanceVector::new, loss, run);
+                        results.add(run(simulation, sender));
+                        simulated += simulation.getClock().now() / 1000.0;
+                    }
+                    List<Result> arrived = results.stream().filter(Objects::nonNull).toList();
+                    System.out.printf("%-11s %-6.2f %-10s %10.1f %12.1f %12.1f %7d%n", topology.name(), loss, sender,
+                            arrived.stream().mapToDouble(Result::seconds).average().orElse(0),
+                            arrived.stream().mapToDouble(Result::frames).average().orElse(0),
+                            arrived.stream().mapToDouble(Result::airtime).average().orElse(0),
+                            results.size() - arrived.size());
+                }
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Sends one message from the first node to all others once the routes are there.
+     *
+     * @return the result, or null if a neighbour did not get the message in time
+     */
+    private static Result run(Simulation simulation, String kind) {
+        VirtualClock clock = simulation.getClock();
+        simulation.getMedium().setSharedChannel(true);
+        simulation.start(BOOT_SPREAD);
+        if (simulation.runUntilConverged(MAX_TIME) < 0) return null;
+
+        List<SimNode> nodes = simulation.getNodes();
+        SimNode from = nodes.getFirst();
+        Connection.Scheduler scheduler = (task, delayMillis) -> {
+            boolean[] cancelled = {false};
+            clock.schedule(() -> {
+                if (!cancelled[0]) task.run();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return () -> cancelled[0] = true;
+        };
+        RttEstimator rtt = new RttEstimator(clock::now);
+
+        long sent = clock.now();
+        long[] arrived = {-1};
+        int[] waiting = {nodes.size() - 1};
+        Set<Integer> receivers = new TreeSet<>();
+        for (SimNode to : nodes.subList(1, nodes.size())) {
+            receivers.add(to.getAddress());
+            Connection[] receiver = {null};
+            to.setTransport((tcp, source) -> {
+                if (receiver[0] != null) {
+                    receiver[0].receivePacket(tcp);
+                } else if (!tcp.isAck()) {
+                    receiver[0] = new Receiver(source, tcp, to, scheduler, (_, _) -> {
+                        if (--waiting[0] == 0) arrived[0] = clock.now();
+                    }, TransportLayer.DEFAULT_ACK_DELAY);
+                    receiver[0].start();
+                }
+            });
+        }
+
+        long framesBefore = simulation.getMedium().getFrames(Medium.Kind.DATA);
+        long airtimeBefore = simulation.getMedium().getAirtime(Medium.Kind.DATA);
+        List<ByteBuffer> segments = TransportLayer.segment("x".repeat(LENGTH));
+        if (kind.equals("broadcast")) {
+            BroadcastSender sender = new BroadcastSender(receivers, from::isNeighbour, segments, from, scheduler, rtt);
+            from.setTransport(sender::receivePacket);
+            sender.start();
+        } else {
+            Map<Integer, Sender> senders = new HashMap<>();
+            for (int to : receivers) senders.put(to, new Sender(to, segments, from, scheduler, rtt));
+            from.setTransport((tcp, source) -> senders.get(source).receivePacket(tcp));
+            senders.values().forEach(Sender::start);
+        }
+
+        while (arrived[0] < 0 && clock.now() - sent < TimeUnit.SECONDS.toMillis(MAX_TIME)) {
+            simulation.run(1);
+        }
+        if (arrived[0] < 0) return null;
+        simulation.run(60); // Let the last acknowledgments and repairs go
+        return new Result((arrived[0] - sent) / 1000.0,
+                simulation.getMedium().getFrames(Medium.Kind.DATA) - framesBefore,
+                (simulation.getMedium().getAirtime(Medium.Kind.DATA) - airtimeBefore) / 1000.0);
+    }
+}
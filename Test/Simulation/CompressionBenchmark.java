@@ -0,0 +1,143 @@
+package Simulation;
+
+import TransportLayer.Compression;
+import TransportLayer.TransportLayer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * Counts the segments a chat message takes with and without {@link Compression}, and what compressing and
+ * decompressing a message costs. The messages are one to three lines drawn from a corpus of chat lines, none
+ * of them taken from the dictionary. Reported per way of sending:
+ * <ul>
+ *     <li>segments per message, and the share of messages that take fewer segments than raw,</li>
+ *     <li>microseconds per message to split it into segments, and to decode the joined segments again.</li>
+ * </ul>
+ * "deflate" compresses without the dictionary, to show what the dictionary adds.
+ */
+public class CompressionBenchmark {
+
+    private static final int MESSAGES = 20_000;
+    private static final int MAX_LINES = 3;
+    private static final long SEED = 49;
+
+    private static final List<String> LINES = List.of(
+            "hey", "hi!", "ok", "yes", "no worries", "sure thing", "on my way", "brb", "lol that's great",
+            "are you there?", "where are you right now?", "what time is the meeting tomorrow?",
+            "i'll be there in 10 minutes", "can you send me the route to node 4?", "thanks, got it",
+            "did you see my last message?", "sorry, i didn't get that, can you repeat?",
+            "the connection keeps dropping near the gate", "let's meet at the north entrance at noon",
+            "i think the battery on my node is almost empty", "we should test the network again tonight",
+            "how far are you from the base station?", "good morning everyone!", "see you later :)",
+            "is anyone else getting these messages twice?", "signal is really weak here, moving closer",
+            "just arrived, waiting by the car", "don't forget to bring the spare antenna",
+            "the weather looks bad, maybe we should go back", "haha no way", "can you hear me now?",
+            "i'm going to restart my node, give me a minute", "message received, thank you",
+            "who has the map?", "we're at the second checkpoint already", "ok sounds good, see you there",
+            "what's the plan for the weekend?", "let me know when you are ready", "all good on my side",
+            "could you forward this to the others please?", "nope, nothing yet", "almost there!",
+            "did the update work for you?", "i have no idea where they went", "that was fast, nice",
+            "running a bit late, sorry", "the bridge is closed, take the other road",
+            "anyone want coffee?", "got stuck in traffic, 20 more minutes", "good night, talk tomorrow");
+
+    /**
+     * Sends a message: splits it into segments.
+     */
+    private interface Way {
+        List<ByteBuffer> segment(String message);
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            StringJoiner message = new StringJoiner(" ");
+            int lines = 1 + random.nextInt(MAX_LINES);
+            for (int line = 0; line < lines; line++) {
+                message.add(LINES.get(random.nextInt(LINES.size())));
+            }
+            messages.add(message.toString());
+        }
+
+        System.out.printf("%-11s %12s %9s %16s %14s%n", "way", "segments/msg", "smaller", "segment (µs/msg)",
+                "decode (µs/msg)");
+        run("raw", messages, TransportLayer::segment);
+        run("deflate", messages, CompressionBenchmark::withoutDictionary);
+        run("dictionary", messages,
+                message -> TransportLayer.segment(message, TransportLayer.SEGMENT_CAPACITY, true));
+    }
+
+    /**
+     * Compresses a message that saves a segment by it like the transport layer does, without the dictionary.
+     */
+    private static List<ByteBuffer> withoutDictionary(String message) {
+        List<ByteBuffer> segments = TransportLayer.segment(message);
+        if (segments.size() == 1) {
+            return segments;
+        }
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] compressed = new byte[bytes.length + 64];
+        compressed[0] = Compression.FLAG;
+        int length = 1;
+        while (!deflater.finished()) {
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        deflater.end();
+        if (length > (segments.size() - 1) * TransportLayer.SEGMENT_CAPACITY) {
+            return segments;
+        }
+        List<ByteBuffer> parts = new ArrayList<>();
+        for (int start = 0; start < length; start += TransportLayer.SEGMENT_CAPACITY) {
+            parts.add(ByteBuffer.wrap(compressed, start, Math.min(TransportLayer.SEGMENT_CAPACITY, length - start)));
+        }
+        return parts;
+    }
+
+    private static byte[] join(List<ByteBuffer> segments) {
+        ByteBuffer joined = ByteBuffer.allocate(segments.stream().mapToInt(ByteBuffer::remaining).sum());
+        segments.forEach(segment -> joined.put(segment.duplicate()));
+        return joined.array();
+    }
+
+    /**
+     * Counts the segments of every message, then times splitting them, and decoding them if the receiver
+     * can, for a second each.
+     */
+    private static void run(String name, List<String> messages, Way way) {
+        long segments = 0;
+        long smaller = 0;
+        List<byte[]> joined = new ArrayList<>();
+        for (String message : messages) {
+            List<ByteBuffer> parts = way.segment(message);
+            segments += parts.size();
+            if (parts.size() < TransportLayer.segment(message).size()) smaller++;
+            joined.add(join(parts));
+        }
+
+        double segmentMicros = time(messages, way::segment);
+        String decodeMicros = name.equals("deflate") ? "-" // Compression has the dictionary
+                : String.format("%.2f", time(joined, Compression::decode));
+        System.out.printf("%-11s %12.2f %8.1f%% %16.2f %14s%n", name, (double) segments / messages.size(),
+                100.0 * smaller / messages.size(), segmentMicros, decodeMicros);
+    }
+
+    /**
+     * @return the microseconds per item, doing all items over and over for a second
+     */
+    private static <T> double time(List<T> items, Consumer<T> task) {
+        long start = System.nanoTime();
+        long done = 0;
+        while (System.nanoTime() - start < 1_000_000_000L) {
+            items.forEach(task);
+            done += items.size();
+        }
+        return (System.nanoTime() - start) / 1e3 / done;
+    }
+}
@@ -0,0 +1,76 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+
+/**
+ * Measures how long the Distance Vector engine needs to converge after a node fails, on line and ring
+ * topologies, with and without split horizon/poisoned reverse and hold-down.
+ * <p>
+ * The nodes run on a {@link Simulation}, like in {@link RoutingSimulator}. Nobody is told about the
+ * failure: its neighbours notice it like real nodes do, when its updates and HELLOs stop, so the time to
+ * detect it is part of the result.
+ * <p>
+ * Besides convergence, it counts the seconds with a routing loop and the seconds in which a live node
+ * has no route at all to a destination that is still reachable. Packets sent then would be dropped,
+ * failover to alternate next hops keeps this low.
+ */
+public class DVConvergenceBenchmark {
+
+    private static final int NODES = 10;
+    private static final int BOOT_SPREAD = 5;
+    private static final int WARMUP = 600;
+    private static final int MAX_TIME = 3600;
+    private static final int RUNS = 20;
+    private static final double LOSS_RATE = 0.02;
+
+    private record Result(int seconds, int loopSeconds, int noRouteSeconds) {
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%-20s %-8s %14s %14s %14s%n", "scenario", "mode", "converge (s)", "loops (s)",
+                "no route (s)");
+        for (Topology topology : new Topology[]{Topology.line(NODES), Topology.ring(NODES)}) {
+            for (int failed : new int[]{NODES - 1, NODES / 2}) {
+                for (boolean loopPrevention : new boolean[]{false, true}) {
+                    long total = 0;
+                    long loops = 0;
+                    long noRoute = 0;
+                    int unconverged = 0;
+                    for (int run = 0; run < RUNS; run++) {
+                        Result result = run(topology, failed, loopPrevention, run);
+                        if (result.seconds() < 0) unconverged++;
+                        else total += result.seconds();
+                        loops += result.loopSeconds();
+                        noRoute += result.noRouteSeconds();
+                    }
+                    String scenario = topology.name() + ", fail " + (failed == NODES - 1 ? "end" : "middle");
+                    String converge = RUNS == unconverged ? "never"
+                            : "%.1f".formatted((double) total / (RUNS - unconverged));
+                    System.out.printf("%-20s %-8s %14s %14.1f %14.1f%s%n", scenario,
+                            loopPrevention ? "SH+HD" : "plain", converge, (double) loops / RUNS,
+                            (double) noRoute / RUNS,
+                            unconverged > 0 ? "  (" + unconverged + " runs did not converge)" : "");
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one scenario.
+     *
+     * @return seconds from the failure until all tables are correct, -1 if that did not happen in time
+     */
+    private static Result run(Topology topology, int failedIndex, boolean loopPrevention, long seed) {
+        Simulation simulation = new Simulation(topology, address -> new DistanceVector(address, loopPrevention),
+                LOSS_RATE, seed);
+        simulation.start(BOOT_SPREAD);
+        simulation.run(WARMUP);
+
+        int loopsBefore = simulation.getLoopSeconds();
+        int noRouteBefore = simulation.getNoRouteSeconds();
+        simulation.fail(simulation.getNodes().get(failedIndex));
+        int seconds = simulation.runUntilConverged(MAX_TIME);
+        return new Result(seconds, simulation.getLoopSeconds() - loopsBefore,
+                simulation.getNoRouteSeconds() - noRouteBefore);
+    }
+}
@@ -0,0 +1,68 @@
+package Simulation;
+
+import NetworkLayer.DA.AddressingAgent;
+import NetworkLayer.LS.LinkState;
+
+import java.util.*;
+
+/**
+ * Measures what flooding the DA HELLOs costs as the network grows, with every HELLO relayed by every node
+ * and with {@link AddressingAgent#setRelaySuppression relay suppression}. Link state is used, since it
+ * sends a HELLO every {@code KEEP_ALIVE_INTERVAL} seconds and does not piggyback them. Reported per
+ * node count and relaying:
+ * <ul>
+ *     <li>the DA frames every node sends per minute once the network is stable,</li>
+ *     <li>the share of the other nodes every node knows from their HELLOs at the end.</li>
+ * </ul>
+ */
+public class HelloRelaySimulator {
+
+    private static final int RUNS = 5;
+    private static final int BOOT_SPREAD = 5;
+    private static final int WARM_UP = 300;
+    private static final int STEADY_TIME = 1800;
+    private static final double LOSS_RATE = 0.02;
+    private static final double RADIUS = 0.5;
+
+    private record Result(double daFrames, double known) {
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-18s %-11s %13s %10s%n", "topology", "relay", "DA f/n/min", "known");
+        for (int nodes : new int[]{4, 6, 9, 12, 15}) {
+            Topology topology = Topology.randomGeometric(nodes, RADIUS, new Random(nodes));
+            for (boolean suppression : new boolean[]{false, true}) {
+                List<Result> results = new ArrayList<>();
+                for (int run = 0; run < RUNS; run++) {
+                    Simulation simulation = new Simulation(topology, LinkState::new, LOSS_RATE, run);
+                    simulation.getNodes().forEach(node -> node.setRelaySuppression(suppression));
+                    results.add(run(simulation, nodes));
+                    simulated += simulation.getClock().now() / 1000.0;
+                }
+                System.out.printf("%-18s %-11s %13.2f %9.1f%%%n", topology.name(),
+                        suppression ? "suppressed" : "flooded",
+                        results.stream().mapToDouble(Result::daFrames).average().orElse(0),
+                        results.stream().mapToDouble(Result::known).average().orElse(0) * 100);
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Result run(Simulation simulation, int nodes) {
+        simulation.start(BOOT_SPREAD);
+        simulation.run(WARM_UP);
+
+        Medium medium = simulation.getMedium();
+        long daBefore = medium.getFrames(Medium.Kind.DA);
+        simulation.run(STEADY_TIME);
+        double perNodeMinute = nodes * STEADY_TIME / 60.0;
+
+        double known = simulation.getNodes().stream()
+                .mapToDouble(node -> node.getKnownNodes().getNodes().size() / (double) (nodes - 1))
+                .average().orElse(0);
+        return new Result((medium.getFrames(Medium.Kind.DA) - daBefore) / perNodeMinute, known);
+    }
+}
@@ -0,0 +1,93 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LinkQuality;
+
+import java.util.*;
+
+/**
+ * Compares distance vector with hop count as cost against the ETX of every link, see {@link LinkQuality}.
+ * In every network a share of the links is lossy, the others only lose the usual few frames. Once the link
+ * estimates had a full window, every second a data packet is sent between two random nodes along the
+ * routing tables. Reported per topology and cost:
+ * <ul>
+ *     <li>the share of the data packets that arrived,</li>
+ *     <li>the data frames sent per packet that arrived, the hops and the frames lost on the way included,</li>
+ *     <li>the goodput, packets that arrived per minute.</li>
+ * </ul>
+ * Lost data packets are not sent again, there is no transport layer in the simulation. Every packet that
+ * does not arrive would cost the transport layer a retransmission over the whole route.
+ */
+public class LinkQualitySimulator {
+
+    private static final int RUNS = 5;
+    private static final int BOOT_SPREAD = 5;
+    private static final int WARM_UP = LinkQuality.WINDOW * DistanceVector.DV_UPDATE_INTERVAL + 300;
+    private static final int TRAFFIC_TIME = 1800;
+    private static final double LOSS_RATE = 0.02;
+    private static final double LOSSY_SHARE = 0.3;
+    private static final double LOSSY_RATE = 0.4;
+
+    private record Result(double delivered, double framesPerPacket, double goodput) {
+    }
+
+    public static void main(String[] args) {
+        List<Topology> topologies = List.of(
+                Topology.grid(5, 3),
+                Topology.ring(15),
+                Topology.randomGeometric(15, 0.4, new Random(1)));
+
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-18s %-6s %12s %14s %16s%n", "topology", "cost", "delivered", "frames/packet",
+                "goodput (p/min)");
+        for (Topology topology : topologies) {
+            for (boolean etx : new boolean[]{false, true}) {
+                List<Result> results = new ArrayList<>();
+                for (int run = 0; run < RUNS; run++) {
+                    Simulation simulation = new Simulation(topology, DistanceVector::new, LOSS_RATE, run);
+                    results.add(run(simulation, topology, etx, new Random(run)));
+                    simulated += simulation.getClock().now() / 1000.0;
+                }
+                System.out.printf("%-18s %-6s %11.1f%% %14.2f %16.1f%n", topology.name(), etx ? "etx" : "hops",
+                        results.stream().mapToDouble(Result::delivered).average().orElse(0) * 100,
+                        results.stream().mapToDouble(Result::framesPerPacket).average().orElse(0),
+                        results.stream().mapToDouble(Result::goodput).average().orElse(0));
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Makes the same links lossy for both costs, traffic uses the same pairs of nodes as well.
+     */
+    private static Result run(Simulation simulation, Topology topology, boolean etx, Random random) {
+        for (int a = 0; a < topology.size(); a++)
+            for (int b : topology.neighbours(a))
+                if (a < b && random.nextDouble() < LOSSY_SHARE) simulation.getMedium().setLinkLoss(a, b, LOSSY_RATE);
+        List<SimNode> nodes = simulation.getNodes();
+        if (etx) nodes.forEach(SimNode::useLinkQuality);
+
+        simulation.start(BOOT_SPREAD);
+        simulation.run(WARM_UP);
+
+        Medium medium = simulation.getMedium();
+        long framesBefore = medium.getFrames(Medium.Kind.DATA);
+        int sent = 0;
+        for (int second = 0; second < TRAFFIC_TIME; second++) {
+            SimNode from = nodes.get(random.nextInt(nodes.size()));
+            SimNode to = nodes.get(random.nextInt(nodes.size()));
+            if (from != to) {
+                from.sendData(to.getAddress());
+                sent++;
+            }
+            simulation.run(1);
+        }
+        simulation.run(10); // Let the last packets arrive
+        int delivered = nodes.stream().mapToInt(SimNode::getDataReceived).sum();
+        long frames = medium.getFrames(Medium.Kind.DATA) - framesBefore;
+        return new Result(delivered / (double) sent, delivered == 0 ? 0 : frames / (double) delivered,
+                delivered / (TRAFFIC_TIME / 60.0));
+    }
+}
@@ -0,0 +1,230 @@
+package Simulation;
+
+import Model.Exceptions.PayloadException;
+import Model.Exceptions.RoutingException;
+import Model.Packet;
+import Model.PacketParser;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA_Header;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated broadcast radio. A frame is encoded with {@link PacketParser} like the link layer does, and
+ * every live neighbour in the {@link Topology} decodes its own copy once the frame has been on the air.
+ * <p>
+ * A node sends one frame at a time. Every frame waits a random backoff first, like one CSMA access,
+ * and then takes {@link #LONG_FRAME_AIRTIME} or {@link #SHORT_FRAME_AIRTIME} milliseconds.
+ * Frames can be lost at random, independently per receiver, with a {@link #setLinkLoss loss rate per link}
+ * where one is set. A node that has more than
+ * {@link #MAX_QUEUE} milliseconds of frames waiting drops new ones, like a full transmit queue.
+ * <p>
+ * With a {@link #setSharedChannel shared channel} a node also waits until its neighbours are done, so
+ * the frames of neighbours take turns on the air instead of being sent at the same time.
+ */
+public class Medium {
+
+    /**
+     * Milliseconds a 32-byte frame is on the air.
+     */
+    public static final long LONG_FRAME_AIRTIME = 200;
+
+    /**
+     * Milliseconds a 2-byte DA frame is on the air.
+     */
+    public static final long SHORT_FRAME_AIRTIME = 50;
+
+    /**
+     * Largest random wait in milliseconds before a frame is sent.
+     */
+    public static final int MAX_BACKOFF = 500;
+
+    /**
+     * Milliseconds of waiting frames after which a node drops new frames.
+     */
+    public static final long MAX_QUEUE = 30_000;
+
+    private static final int LONG_FRAME_SIZE = 32;
+
+    /**
+     * Kinds of frames that are counted.
+     */
+    public enum Kind { DATA, DV, LSA, DA, AODV }
+
+    private final VirtualClock clock;
+    private final Topology topology;
+    private final Random random;
+    private final double lossRate;
+    private final Map<Long, Double> linkLoss = new HashMap<>();
+    private final List<SimNode> nodes = new ArrayList<>();
+    private final Map<SimNode, Long> busyUntil = new HashMap<>();
+    private final long[] frames = new long[Kind.values().length];
+    private final long[] bytes = new long[Kind.values().length];
+    private final long[] headerBytes = new long[Kind.values().length];
+    private final long[] airtimes = new long[Kind.values().length];
+    private long queued;
+    private long dropped;
+    private boolean sharedChannel;
+
+    /**
+     * @param clock    the clock deliveries are scheduled on
+     * @param topology which nodes hear each other, by index
+     * @param random   source of backoff and loss
+     * @param lossRate chance that a receiver misses a frame
+     */
+    public Medium(VirtualClock clock, Topology topology, Random random, double lossRate) {
+        this.clock = clock;
+        this.topology = topology;
+        this.random = random;
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * Places a node on the medium. Nodes must be attached in the order of their index in the topology.
+     */
+    public void attach(SimNode node) {
+        nodes.add(node);
+    }
+
+    /**
+     * Sets the loss rate of the link between two nodes, in both directions, instead of the rate of the medium.
+     *
+     * @param a        index of one node
+     * @param b        index of the other node
+     * @param lossRate chance that the receiver misses a frame on this link
+     */
+    public void setLinkLoss(int a, int b, double lossRate) {
+        linkLoss.put(link(a, b), lossRate);
+    }
+
+    /**
+     * Lets neighbours take turns on the air, like carrier sense does. It is off by default, every node
+     * then only waits for its own frames.
+     *
+     * @param sharedChannel whether a node waits for the frames of its neighbours too
+     */
+    public void setSharedChannel(boolean sharedChannel) {
+        this.sharedChannel = sharedChannel;
+    }
+
+    private double lossRate(int a, int b) {
+        return linkLoss.getOrDefault(link(a, b), lossRate);
+    }
+
+    private static long link(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    /**
+     * Sends a frame from a node to all its live neighbours.
+     *
+     * @param from  the sending node
+     * @param frame an {@link AddressHeader} or {@link DA_Header}
+     */
+    public void transmit(SimNode from, Packet frame) {
+        byte[] encoded = encode(frame);
+        Kind kind = kind(frame);
+        long free = Math.max(clock.now(), busyUntil.getOrDefault(from, 0L));
+        if (free - clock.now() > MAX_QUEUE) {
+            dropped++;
+            return;
+        }
+        frames[kind.ordinal()]++;
+        bytes[kind.ordinal()] += encoded.length;
+        if (frame instanceof AddressHeader addressHeader) {
+            headerBytes[kind.ordinal()] += addressHeader.getHeaderLength();
+        }
+
+        long airtime = encoded.length == LONG_FRAME_SIZE ? LONG_FRAME_AIRTIME : SHORT_FRAME_AIRTIME;
+        airtimes[kind.ordinal()] += airtime;
+        queued += free - clock.now();
+        long start = free + random.nextInt(MAX_BACKOFF);
+        busyUntil.put(from, start + airtime);
+        if (sharedChannel) {
+            for (int neighbour : topology.neighbours(from.getIndex())) {
+                busyUntil.merge(nodes.get(neighbour), start + airtime, Math::max);
+            }
+        }
+        long delay = start + airtime - clock.now();
+        for (int neighbour : topology.neighbours(from.getIndex())) {
+            SimNode receiver = nodes.get(neighbour);
+            if (random.nextDouble() < lossRate(from.getIndex(), neighbour)) continue;
+            clock.schedule(() -> {
+                if (from.isAlive() && receiver.isAlive()) receiver.deliver(decode(encoded));
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the number of frames of a kind sent so far, relayed frames included
+     */
+    public long getFrames(Kind kind) {
+        return frames[kind.ordinal()];
+    }
+
+    /**
+     * @return the number of bytes of a kind sent so far
+     */
+    public long getBytes(Kind kind) {
+        return bytes[kind.ordinal()];
+    }
+
+    /**
+     * @return the number of address header bytes in the frames of a kind sent so far
+     */
+    public long getHeaderBytes(Kind kind) {
+        return headerBytes[kind.ordinal()];
+    }
+
+    /**
+     * @return the milliseconds the frames of a kind sent so far were on the air
+     */
+    public long getAirtime(Kind kind) {
+        return airtimes[kind.ordinal()];
+    }
+
+    /**
+     * @return the milliseconds all frames so far waited for earlier frames of their sender, backoff not included
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return the number of frames dropped because the queue of their sender was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private static Kind kind(Packet frame) {
+        if (!(frame instanceof AddressHeader addressHeader)) return Kind.DA;
+        return switch (addressHeader.getNext_Protocol()) {
+            case 0 -> Kind.DATA;
+            case 4 -> Kind.LSA;
+            case AddressHeader.ON_DEMAND_PROTOCOL -> Kind.AODV;
+            default -> Kind.DV;
+        };
+    }
+
+    private static byte[] encode(Packet frame) {
+        try {
+            ByteBuffer made = PacketParser.maker(frame);
+            byte[] encoded = new byte[frame instanceof DA_Header ? made.remaining() : LONG_FRAME_SIZE];
+            made.get(encoded, 0, made.remaining());
+            return encoded;
+        } catch (PayloadException | RoutingException e) {
+            throw new IllegalStateException("Frame could not be encoded: " + frame, e);
+        }
+    }
+
+    private static Packet decode(byte[] encoded) {
+        try {
+            return PacketParser.parser(ByteBuffer.wrap(encoded));
+        } catch (PayloadException e) {
+            throw new IllegalStateException("Frame could not be decoded", e);
+        }
+    }
+}
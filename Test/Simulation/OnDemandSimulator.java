@@ -0,0 +1,115 @@
+package Simulation;
+
+import NetworkLayer.AODV.OnDemand;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.RoutingEngine;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares the control traffic of distance vector, which advertises its routes every minute, against
+ * {@link OnDemand on-demand routing}, which only looks for a route when a message needs one. After a
+ * warm-up, messages are sent between two random nodes at a low and at a high rate. Reported per topology,
+ * engine and rate:
+ * <ul>
+ *     <li>the share of the messages that arrived,</li>
+ *     <li>the control bytes sent per message that arrived: routing frames and DA HELLOs,</li>
+ *     <li>the routing bytes alone per message that arrived, DA sends its HELLOs on their own when there are
+ *     no periodic updates to carry them,</li>
+ *     <li>the control bytes every node sends per minute.</li>
+ * </ul>
+ * A message that waits for its route is sent once the route is found, it is not sent again when it is lost.
+ */
+public class OnDemandSimulator {
+
+    private static final int RUNS = 5;
+    private static final int BOOT_SPREAD = 5;
+    private static final int WARM_UP = 600;
+    private static final int TRAFFIC_TIME = 1800;
+    private static final double LOSS_RATE = 0.02;
+
+    /**
+     * Messages per minute in the whole network.
+     */
+    private static final int[] RATES = {1, 60};
+
+    private record Result(double delivered, double bytesPerMessage, double routingPerMessage,
+                          double bytesPerNodeMinute) {
+    }
+
+    public static void main(String[] args) {
+        List<Topology> topologies = List.of(
+                Topology.line(10),
+                Topology.grid(5, 3),
+                Topology.randomGeometric(15, 0.4, new Random(1)));
+        Map<String, Function<IntSupplier, RoutingEngine>> engines = new LinkedHashMap<>();
+        engines.put("dv", DistanceVector::new);
+        engines.put("aodv", OnDemand::new);
+
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-18s %-7s %8s %10s %11s %14s %13s%n", "topology", "engine", "msg/min", "delivered",
+                "ctrl B/msg", "routing B/msg", "ctrl B/n/min");
+        for (Topology topology : topologies) {
+            for (int rate : RATES) {
+                for (Map.Entry<String, Function<IntSupplier, RoutingEngine>> engine : engines.entrySet()) {
+                    List<Result> results = new ArrayList<>();
+                    for (int run = 0; run < RUNS; run++) {
+                        Simulation simulation = new Simulation(topology, engine.getValue(), LOSS_RATE, run);
+                        results.add(run(simulation, rate, new Random(run)));
+                        simulated += simulation.getClock().now() / 1000.0;
+                    }
+                    System.out.printf("%-18s %-7s %8d %9.1f%% %11.1f %14.1f %13.1f%n", topology.name(),
+                            engine.getKey(), rate,
+                            results.stream().mapToDouble(Result::delivered).average().orElse(0) * 100,
+                            results.stream().mapToDouble(Result::bytesPerMessage).average().orElse(0),
+                            results.stream().mapToDouble(Result::routingPerMessage).average().orElse(0),
+                            results.stream().mapToDouble(Result::bytesPerNodeMinute).average().orElse(0));
+                }
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Sends the messages at random seconds, the same pairs of nodes for both engines.
+     */
+    private static Result run(Simulation simulation, int rate, Random random) {
+        List<SimNode> nodes = simulation.getNodes();
+        simulation.start(BOOT_SPREAD);
+        simulation.run(WARM_UP);
+
+        Medium medium = simulation.getMedium();
+        long controlBefore = controlBytes(medium);
+        long routingBefore = routingBytes(medium);
+        int sent = 0;
+        for (int second = 0; second < TRAFFIC_TIME; second++) {
+            if (random.nextDouble() < rate / 60.0) {
+                SimNode from = nodes.get(random.nextInt(nodes.size()));
+                SimNode to = nodes.get(random.nextInt(nodes.size()));
+                if (from != to) {
+                    from.sendData(to.getAddress());
+                    sent++;
+                }
+            }
+            simulation.run(1);
+        }
+        simulation.run(OnDemand.DISCOVERY_TIMEOUT + 10); // Let the last messages arrive
+        int delivered = nodes.stream().mapToInt(SimNode::getDataReceived).sum();
+        long control = controlBytes(medium) - controlBefore;
+        long routing = routingBytes(medium) - routingBefore;
+        return new Result(sent == 0 ? 0 : delivered / (double) sent, delivered == 0 ? 0 : control / (double) delivered,
+                delivered == 0 ? 0 : routing / (double) delivered, control / (nodes.size() * TRAFFIC_TIME / 60.0));
+    }
+
+    private static long routingBytes(Medium medium) {
+        return medium.getBytes(Medium.Kind.DV) + medium.getBytes(Medium.Kind.LSA) + medium.getBytes(Medium.Kind.AODV);
+    }
+
+    private static long controlBytes(Medium medium) {
+        return routingBytes(medium) + medium.getBytes(Medium.Kind.DA);
+    }
+}
@@ -0,0 +1,78 @@
+package Simulation;
+
+import TransportLayer.Outbox;
+import TransportLayer.TransportLayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Measures what journalling a message in the {@link Outbox} costs: appending it, and the checkpoint of every
+ * acknowledgment, which sets one bit in the mapped file. For comparison the checkpoint is also written with a
+ * system call per acknowledgment, and forced to the disk, as a journal that survives a crash of the machine
+ * would have to. Reported in nanoseconds per operation.
+ */
+public class OutboxBenchmark {
+
+    private static final int MESSAGES = 2_000;
+    private static final int SEGMENTS = 10;
+    private static final int FORCED = 200;
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("outbox", ".bin");
+        Path other = Files.createTempFile("checkpoints", ".bin");
+        List<ByteBuffer> segments = TransportLayer.segment("x".repeat(SEGMENTS * TransportLayer.SEGMENT_CAPACITY));
+        try (Outbox outbox = new Outbox(file, Outbox.DEFAULT_CAPACITY, () -> 1);
+             FileChannel channel = FileChannel.open(other, StandardOpenOption.WRITE)) {
+            System.out.printf("%-22s %12s%n", "operation", "ns/op");
+            for (int round = 0; round < 3; round++) { // The first rounds warm up
+                Outbox.Entry[] entries = new Outbox.Entry[MESSAGES];
+                long start = System.nanoTime();
+                for (int i = 0; i < MESSAGES; i++) {
+                    entries[i] = outbox.append(3, 1 + i * SEGMENTS, segments);
+                }
+                double append = (System.nanoTime() - start) / (double) MESSAGES;
+
+                start = System.nanoTime();
+                for (Outbox.Entry entry : entries) {
+                    for (int seq = entry.getFirstSeq(); seq < entry.getFirstSeq() + SEGMENTS; seq++) {
+                        entry.acknowledge(seq);
+                    }
+                }
+                double mapped = (System.nanoTime() - start) / (double) (MESSAGES * SEGMENTS);
+
+                ByteBuffer bit = ByteBuffer.allocateDirect(1);
+                start = System.nanoTime();
+                for (int i = 0; i < MESSAGES * SEGMENTS; i++) {
+                    channel.write(bit.clear(), i % 4096);
+                }
+                double written = (System.nanoTime() - start) / (double) (MESSAGES * SEGMENTS);
+
+                start = System.nanoTime();
+                for (int i = 0; i < FORCED; i++) {
+                    channel.write(bit.clear(), i);
+                    channel.force(false);
+                }
+                double forced = (System.nanoTime() - start) / (double) FORCED;
+
+                for (Outbox.Entry entry : entries) {
+                    entry.complete();
+                }
+                if (round == 2) {
+                    System.out.printf("%-22s %12.0f%n", "append (10 segments)", append);
+                    System.out.printf("%-22s %12.0f%n", "checkpoint, mapped", mapped);
+                    System.out.printf("%-22s %12.0f%n", "checkpoint, write", written);
+                    System.out.printf("%-22s %12.0f%n", "checkpoint, forced", forced);
+                }
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(other);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LS.LinkState;
+import NetworkLayer.RoutingEngine;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs the routing protocols of whole networks in simulated time and reports per topology and engine:
+ * <ul>
+ *     <li>the time until all routing tables are correct after the nodes boot,</li>
+ *     <li>the control frames every node sends per minute once the network is stable,</li>
+ *     <li>the time until all tables are correct again after a node fails, and the seconds with a
+ *     routing loop meanwhile.</li>
+ * </ul>
+ * A node failure is noticed through the keepalive in the DV updates of the node, or its DA HELLOs with link
+ * state, like on the real network.
+ */
+public class RoutingSimulator {
+
+    private static final int RUNS = 5;
+    private static final int BOOT_SPREAD = 5;
+    private static final int MAX_TIME = 3600;
+    private static final int STEADY_TIME = 3600;
+    private static final double LOSS_RATE = 0.02;
+
+    private record Result(int boot, int failure, int loopSeconds, double routingFrames, double daFrames) {
+    }
+
+    public static void main(String[] args) {
+        List<Topology> topologies = List.of(
+                Topology.line(15),
+                Topology.ring(15),
+                Topology.grid(5, 3),
+                Topology.randomGeometric(15, 0.4, new Random(1)));
+        Map<String, Function<IntSupplier, RoutingEngine>> engines = new LinkedHashMap<>();
+        engines.put("dv", DistanceVector::new);
+        engines.put("dv-plain", address -> new DistanceVector(address, false));
+        engines.put("ls", LinkState::new);
+
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-18s %-9s %10s %12s %10s %15s %13s%n", "topology", "engine", "boot (s)",
+                "failure (s)", "loops (s)", "routing f/n/min", "DA f/n/min");
+        for (Topology topology : topologies) {
+            for (Map.Entry<String, Function<IntSupplier, RoutingEngine>> engine : engines.entrySet()) {
+                List<Result> results = new ArrayList<>();
+                for (int run = 0; run < RUNS; run++) {
+                    Simulation simulation = new Simulation(topology, engine.getValue(), LOSS_RATE, run);
+                    results.add(run(simulation, topology.size()));
+                    simulated += simulation.getClock().now() / 1000.0;
+                }
+                System.out.printf("%-18s %-9s %10s %12s %10.1f %15.2f %13.2f%n", topology.name(), engine.getKey(),
+                        average(results.stream().mapToInt(Result::boot).toArray()),
+                        average(results.stream().mapToInt(Result::failure).toArray()),
+                        results.stream().mapToInt(Result::loopSeconds).average().orElse(0),
+                        results.stream().mapToDouble(Result::routingFrames).average().orElse(0),
+                        results.stream().mapToDouble(Result::daFrames).average().orElse(0));
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Result run(Simulation simulation, int nodes) {
+        simulation.start(BOOT_SPREAD);
+        int boot = simulation.runUntilConverged(MAX_TIME);
+
+        Medium medium = simulation.getMedium();
+        long routingBefore = routingFrames(medium);
+        long daBefore = medium.getFrames(Medium.Kind.DA);
+        simulation.run(STEADY_TIME);
+        double perNodeMinute = nodes * STEADY_TIME / 60.0;
+        double routing = (routingFrames(medium) - routingBefore) / perNodeMinute;
+        double da = (medium.getFrames(Medium.Kind.DA) - daBefore) / perNodeMinute;
+
+        int loopsBefore = simulation.getLoopSeconds();
+        simulation.fail(simulation.pickFailure());
+        int failure = simulation.runUntilConverged(MAX_TIME);
+        return new Result(boot, failure, simulation.getLoopSeconds() - loopsBefore, routing, da);
+    }
+
+    private static long routingFrames(Medium medium) {
+        return medium.getFrames(Medium.Kind.DV) + medium.getFrames(Medium.Kind.LSA);
+    }
+
+    /**
+     * Averages the runs that converged.
+     */
+    private static String average(int[] seconds) {
+        OptionalDouble average = Arrays.stream(seconds).filter(s -> s >= 0).average();
+        long failed = Arrays.stream(seconds).filter(s -> s < 0).count();
+        if (average.isEmpty()) return "never";
+        return "%.1f".formatted(average.getAsDouble()) + (failed > 0 ? "*" : "");
+    }
+}
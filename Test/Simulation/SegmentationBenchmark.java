@@ -0,0 +1,117 @@
+package Simulation;
+
+import TransportLayer.TransportLayer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Counts the frames a message takes with {@link TransportLayer#segment}, against the split on characters the
+ * transport layer had before. That split cut every {@value TransportLayer#SEGMENT_CAPACITY} characters with a
+ * regular expression, so a part of text outside ASCII needs more bytes than a frame has. The fitting split cuts
+ * every {@value #FITTING_CHARS} characters, which fit as long as no character takes more than 4 bytes. Neither
+ * counts surrogate pairs evenly, parts with emoji can still be too long.
+ * <p>
+ * The messages are words drawn from one script, or from all of them. Reported per script and split: frames
+ * per message, how full the frames are, parts that do not fit in a frame, and messages split per second.
+ */
+public class SegmentationBenchmark {
+
+    private static final int MESSAGES = 20_000;
+    private static final int MIN_WORDS = 3;
+    private static final int MAX_WORDS = 40;
+    private static final int FITTING_CHARS = TransportLayer.SEGMENT_CAPACITY / 4; // 4 bytes per char at most
+    private static final long SEED = 46;
+
+    private static final Map<String, List<String>> WORDS = new LinkedHashMap<>();
+
+    static {
+        WORDS.put("ascii", List.of("hello", "node", "route", "meet", "at", "the", "gate", "ok", "see", "you"));
+        WORDS.put("latin", List.of("café", "Zoë", "über", "façade", "niño", "smörgås", "où", "déjà", "vu", "año"));
+        WORDS.put("cyrillic", List.of("привет", "узел", "маршрут", "да", "нет", "встреча", "завтра", "в", "сеть"));
+        WORDS.put("cjk", List.of("你好", "节点", "路由", "明天", "见", "网络", "こんにちは", "ありがとう", "안녕"));
+        WORDS.put("emoji", List.of("👋", "👍🏽", "🎉", "📡", "🚀", "❤️", "😀", "🙏", "🌍"));
+    }
+
+    /**
+     * Splits a message into the UTF-8 bytes of its parts.
+     */
+    private interface Split {
+        List<ByteBuffer> apply(String message);
+    }
+
+    /**
+     * Splits on characters with the regular expression the transport layer used, compiled on every call.
+     */
+    private static List<ByteBuffer> regex(String message, int chars) {
+        List<ByteBuffer> parts = new ArrayList<>();
+        for (String part : message.split("(?<=\\G.{" + chars + "})")) {
+            parts.add(ByteBuffer.wrap(part.getBytes(StandardCharsets.UTF_8)));
+        }
+        return parts;
+    }
+
+    public static void main(String[] args) {
+        Map<String, List<String>> corpora = new LinkedHashMap<>();
+        List<String> all = new ArrayList<>();
+        WORDS.forEach((script, words) -> {
+            corpora.put(script, messages(words));
+            all.addAll(words);
+        });
+        corpora.put("mixed", messages(all));
+
+        System.out.printf("%-9s %-9s %13s %7s %10s %12s%n", "script", "split", "frames/msg", "fill",
+                "too long", "messages/s");
+        corpora.forEach((script, messages) -> {
+            run(script, "regex", messages, message -> regex(message, TransportLayer.SEGMENT_CAPACITY));
+            run(script, "fitting", messages, message -> regex(message, FITTING_CHARS));
+            run(script, "bytes", messages, TransportLayer::segment);
+        });
+    }
+
+    private static List<String> messages(List<String> words) {
+        Random random = new Random(SEED);
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            StringJoiner message = new StringJoiner(" ");
+            int count = MIN_WORDS + random.nextInt(MAX_WORDS - MIN_WORDS + 1);
+            for (int word = 0; word < count; word++) {
+                message.add(words.get(random.nextInt(words.size())));
+            }
+            messages.add(message.toString());
+        }
+        return messages;
+    }
+
+    /**
+     * Splits every message and counts the frames, a part that does not fit takes as many frames as its bytes
+     * fill. Then splits the messages over and over for a second.
+     */
+    private static void run(String script, String name, List<String> messages, Split split) {
+        long frames = 0;
+        long bytes = 0;
+        long tooLong = 0;
+        for (String message : messages) {
+            for (ByteBuffer part : split.apply(message)) {
+                int length = part.remaining();
+                bytes += length;
+                frames += Math.max(1, (length + TransportLayer.SEGMENT_CAPACITY - 1) / TransportLayer.SEGMENT_CAPACITY);
+                if (length > TransportLayer.SEGMENT_CAPACITY) tooLong++;
+            }
+        }
+
+        long start = System.nanoTime();
+        int rounds = 0;
+        while (System.nanoTime() - start < 1_000_000_000L) {
+            for (String message : messages) {
+                split.apply(message);
+            }
+            rounds++;
+        }
+        double perSecond = (double) rounds * messages.size() / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("%-9s %-9s %13.2f %6.0f%% %10d %12.0f%n", script, name,
+                (double) frames / messages.size(), 100.0 * bytes / (frames * TransportLayer.SEGMENT_CAPACITY),
+                tooLong, perSecond);
+    }
+}
@@ -0,0 +1,105 @@
+package Simulation;
+
+import NetworkLayer.DA.SeqTracker;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the DA duplicate check of {@link SeqTracker} with the map of sets plus one scheduled
+ * removal task per frame that DynamicAddressing used before. Reports the time and the heap allocated
+ * per received DA frame for two streams:
+ * <ul>
+ *     <li><b>duplicates</b>: random addresses and sequence numbers within the expiry time, so almost
+ *     every frame is a copy of one seen before, like the rebroadcast copies of a flooded HELLO.</li>
+ *     <li><b>fresh</b>: every frame is new, the seen numbers expire between blocks of frames.</li>
+ * </ul>
+ */
+public class SeqTrackingBenchmark {
+
+    private static final int FRAMES = 1 << 20;
+    private static final int ROUNDS = 5;
+    private static final int EXPIRY = 120;
+    private static final int PAIRS = 16 * 256;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        int[] duplicates = new int[FRAMES];
+        for (int i = 0; i < FRAMES; i++) duplicates[i] = random.nextInt(PAIRS);
+        int[] fresh = new int[FRAMES];
+        List<Integer> block = new ArrayList<>();
+        for (int i = 0; i < PAIRS; i++) block.add(i);
+        for (int start = 0; start < FRAMES; start += PAIRS) {
+            Collections.shuffle(block, random);
+            for (int i = 0; i < PAIRS; i++) fresh[start + i] = block.get(i);
+        }
+
+        System.out.printf("%-12s %-22s %10s %14s%n", "stream", "tracking", "ns/frame", "bytes/frame");
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean print = round == ROUNDS - 1; // Earlier rounds warm up the JIT
+            for (String stream : new String[]{"duplicates", "fresh"}) {
+                int[] frames = stream.equals("fresh") ? fresh : duplicates;
+                // Simulated seconds per frame: fresh blocks are one expiry time apart
+                int blockSeconds = stream.equals("fresh") ? EXPIRY : 0;
+                measure(stream, "map + scheduled task", print, () -> mapAndTasks(frames, blockSeconds > 0));
+                measure(stream, "bitset + timestamps", print, () -> {
+                    SeqTracker tracker = new SeqTracker(16, EXPIRY);
+                    int accepted = 0;
+                    for (int i = 0; i < FRAMES; i++) {
+                        if (tracker.mark(frames[i] >>> 8, frames[i] & 0xFF, i / PAIRS * blockSeconds)) accepted++;
+                    }
+                    return accepted;
+                });
+            }
+        }
+    }
+
+    /**
+     * The old tracking. Between blocks of fresh frames the sets are cleared, as if the removal tasks of
+     * the previous block had run. The tasks themselves stay queued, like they would for two minutes.
+     */
+    private static int mapAndTasks(int[] frames, boolean fresh) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        Map<Integer, Set<Integer>> seqMap = new HashMap<>();
+        int accepted = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            if (fresh && i % PAIRS == 0) seqMap.clear();
+            int address = frames[i] >>> 8;
+            int sequence = frames[i] & 0xFF;
+            synchronized (seqMap) {
+                Set<Integer> seen = seqMap.computeIfAbsent(address, _ -> new HashSet<>());
+                if (seen.contains(sequence)) continue;
+                seen.add(sequence);
+            }
+            accepted++;
+            executor.schedule(() -> {
+                synchronized (seqMap) {
+                    seqMap.get(address).remove(sequence);
+                }
+            }, 2, TimeUnit.MINUTES);
+        }
+        executor.shutdownNow();
+        return accepted;
+    }
+
+    private interface Run {
+        int run();
+    }
+
+    private static void measure(String stream, String name, boolean print, Run run) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int accepted = run.run();
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        if (print) {
+            System.out.printf("%-12s %-22s %10.1f %14.1f   (%d accepted)%n", stream, name,
+                    (double) nanos / FRAMES, (double) bytes / FRAMES, accepted);
+        }
+    }
+}
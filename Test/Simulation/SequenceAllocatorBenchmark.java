@@ -0,0 +1,147 @@
+package Simulation;
+
+import TransportLayer.SequenceAllocator;
+
+import java.util.*;
+
+/**
+ * Measures how fast connections open and close with the {@link SequenceAllocator}, against the set of
+ * sequence numbers per peer the transport layer had before. That set took the highest number plus one for
+ * every message and added and removed the numbers one by one.
+ * <p>
+ * All messages go to one peer, so the numbers come around the top of the field. Half of the connections
+ * send, the others receive and mark their numbers one by one. A connection closes once {@link #OPEN} newer
+ * ones were opened. Reported per number of open connections: connections opened and closed per second, and
+ * how many messages got numbers beyond the {@value SequenceAllocator#SEQUENCE_BITS}-bit field.
+ */
+public class SequenceAllocatorBenchmark {
+
+    private static final int PEER = 3;
+    private static final int SEGMENTS = 10;
+    private static final int[] OPEN = {1, 100, 1000};
+    private static final int CONNECTIONS = 2_000_000;
+    private static final long MAX_NANOS = 10_000_000_000L;
+
+    /**
+     * The numbers of one connection, from the first one on.
+     */
+    private record Range(int first, boolean receiving) {
+    }
+
+    /**
+     * Hands out and releases sequence numbers.
+     */
+    private interface Numbers {
+        int allocate(int peer, int count);
+
+        void markUsed(int peer, int seq);
+
+        void release(int peer, int first, int count);
+    }
+
+    /**
+     * The set of numbers per peer the transport layer had before.
+     */
+    private static class NumberSets implements Numbers {
+        private final Map<Integer, Set<Integer>> used = new HashMap<>();
+
+        private Set<Integer> of(int peer) {
+            return used.computeIfAbsent(peer, _ -> new HashSet<>(Set.of(0)));
+        }
+
+        @Override
+        public int allocate(int peer, int count) {
+            int first = Collections.max(of(peer)) + 1;
+            for (int seq = first; seq < first + count; seq++) {
+                of(peer).add(seq);
+            }
+            return first;
+        }
+
+        @Override
+        public void markUsed(int peer, int seq) {
+            of(peer).add(seq);
+        }
+
+        @Override
+        public void release(int peer, int first, int count) {
+            for (int seq = first; seq < first + count; seq++) {
+                of(peer).remove(seq);
+            }
+        }
+    }
+
+    /**
+     * The {@link SequenceAllocator}, numbers the peers use come from an allocator of their own.
+     */
+    private static class Ranges implements Numbers {
+        private final SequenceAllocator sequences = new SequenceAllocator();
+
+        @Override
+        public int allocate(int peer, int count) {
+            return sequences.allocate(peer, count);
+        }
+
+        @Override
+        public void markUsed(int peer, int seq) {
+            sequences.markUsed(peer, seq);
+        }
+
+        @Override
+        public void release(int peer, int first, int count) {
+            sequences.release(peer, first, count);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%-6s %-7s %12s %15s %12s%n", "open", "numbers", "connections", "connections/s",
+                "past field");
+        for (int open : OPEN) {
+            run(open, "set", new NumberSets(), new NumberSets());
+            run(open, "ranges", new Ranges(), new Ranges());
+        }
+    }
+
+    /**
+     * Opens and closes connections until {@link #CONNECTIONS} were opened or {@link #MAX_NANOS} passed.
+     *
+     * @param numbers the numbers of this node
+     * @param peers   the numbers of the peers, for the messages they send to this node
+     */
+    private static void run(int open, String name, Numbers numbers, Numbers peers) {
+        Deque<Range> connections = new ArrayDeque<>();
+        long pastField = 0;
+        int opened = 0;
+        long start = System.nanoTime();
+        while (opened < CONNECTIONS && System.nanoTime() - start < MAX_NANOS) {
+            boolean receiving = opened % 2 == 1;
+            int first;
+            if (receiving) {
+                first = peers.allocate(PEER, SEGMENTS);
+                for (int seq = first; seq < first + SEGMENTS; seq++) {
+                    numbers.markUsed(PEER, seq);
+                }
+            } else {
+                first = numbers.allocate(PEER, SEGMENTS);
+            }
+            if (first + SEGMENTS > SequenceAllocator.SPACE) {
+                pastField++;
+            }
+            connections.addLast(new Range(first, receiving));
+            if (connections.size() > open) {
+                Range closed = connections.removeFirst();
+                if (closed.receiving()) {
+                    for (int seq = closed.first(); seq < closed.first() + SEGMENTS; seq++) {
+                        numbers.release(PEER, seq, 1);
+                    }
+                    peers.release(PEER, closed.first(), SEGMENTS);
+                } else {
+                    numbers.release(PEER, closed.first(), SEGMENTS);
+                }
+            }
+            opened++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-6d %-7s %12d %15.0f %12d%n", open, name, opened, opened / seconds, pastField);
+    }
+}
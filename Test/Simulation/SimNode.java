@@ -0,0 +1,393 @@
+package Simulation;
+
+import Model.Exceptions.NetworkException;
+import Model.LayerModel;
+import Model.Packet;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA.AddressingAgent;
+import NetworkLayer.DA.DynamicAddressing;
+import NetworkLayer.DA_Header;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.DV_Header;
+import NetworkLayer.LinkQuality;
+import NetworkLayer.NetworkLayer;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import NetworkLayer.NodeRegistry;
+import NetworkLayer.RoutingAgent;
+import NetworkLayer.RoutingEngine;
+import TransportLayer.TCPHeader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * One simulated node. It runs the same per-node logic as the singletons of a real node: a
+ * {@link NodeRegistry} like {@code NetworkingDAO}, a {@link RoutingAgent} like {@code NetworkLayer} and an
+ * {@link AddressingAgent} like {@code DynamicAddressing}. The glue between them and the timers mirror
+ * the singletons, but run on a {@link VirtualClock}. Frames the node sends go to the {@link Medium}.
+ * <p>
+ * Data frames are forwarded along the routing table like {@code NetworkLayer} does, so simulations can
+ * measure how many packets arrive. Data frames for the broadcast address go to all neighbours at once. There is no transport layer, lost packets are not sent again, unless a
+ * simulation {@link #setTransport attaches} senders and receivers of its own.
+ */
+public class SimNode implements LayerModel {
+
+    /**
+     * Seconds between two decrements of the known nodes, like {@code NetworkingDAO}.
+     */
+    public static final int REGISTRY_INTERVAL = 3;
+
+    private final int index;
+    private final Medium medium;
+    private final VirtualClock clock;
+    private final NodeRegistry knownNodes = new NodeRegistry();
+    private final LinkQuality linkQuality;
+    private RoutingEngine routing;
+    private RoutingAgent routingAgent;
+    private AddressingAgent addressingAgent;
+    private int address;
+    private boolean alive = true;
+    private boolean booted;
+    private int dataReceived;
+    private BiConsumer<TCPHeader, Integer> transport;
+
+    private SimNode(int index, int address, Medium medium, VirtualClock clock) {
+        this.index = index;
+        this.address = address;
+        this.medium = medium;
+        this.clock = clock;
+        this.linkQuality = new LinkQuality(clock::now);
+    }
+
+    /**
+     * @param index   the index of the node in the topology
+     * @param address the initial address of the node
+     * @param medium  the medium the node sends on
+     * @param clock   the clock that drives all timers
+     * @param engine  creates the routing engine from the supplier of the local address
+     * @return the new node
+     */
+    public static SimNode create(int index, int address, Medium medium, VirtualClock clock,
+                                 Function<IntSupplier, RoutingEngine> engine) {
+        return create(index, address, medium, clock, engine, false);
+    }
+
+    /**
+     * Creates a node. The agents send through the node, so they are created once the node is constructed.
+     *
+     * @param index    the index of the node in the topology
+     * @param address  the initial address of the node
+     * @param medium   the medium the node sends on
+     * @param clock    the clock that drives all timers
+     * @param engine   creates the routing engine from the supplier of the local address
+     * @param extended whether the node speaks the extended format, like {@code -Dextended=true}
+     * @return the new node
+     */
+    public static SimNode create(int index, int address, Medium medium, VirtualClock clock,
+                                 Function<IntSupplier, RoutingEngine> engine, boolean extended) {
+        SimNode node = new SimNode(index, address, medium, clock);
+        node.init(engine, extended);
+        return node;
+    }
+
+    private void init(Function<IntSupplier, RoutingEngine> engine, boolean extended) {
+        IntSupplier localAddress = this::getAddress;
+        routing = engine.apply(localAddress);
+        addressingAgent = new AddressingAgent(localAddress, this, clock::now,
+                knownNodes::update, this::changeAddress, extended);
+        routingAgent = new RoutingAgent(routing, localAddress, this, extended,
+                addressingAgent::makeKeepalivePacket);
+        addressingAgent.setPiggybacked(routingAgent::carriesKeepalive);
+        addressingAgent.setDeployedHeard(routingAgent::hearsDeployedNode);
+        setRelaySuppression(true);
+    }
+
+    /**
+     * Turns the suppression of HELLO relays on or off, it is on like in {@code DynamicAddressing}.
+     *
+     * @param suppression Whether HELLOs are relayed with suppression instead of right away
+     */
+    public void setRelaySuppression(boolean suppression) {
+        addressingAgent.setRelaySuppression(suppression
+                        ? (task, delay) -> clock.schedule(() -> {
+                            if (alive) task.run();
+                        }, delay, TimeUnit.MILLISECONDS)
+                        : null,
+                destination -> {
+                    RouteEntry route = routing.getRoute(destination);
+                    return route == null ? -1 : route.cost;
+                });
+    }
+
+    /**
+     * Sends the periodic DV updates and HELLOs with Trickle timers, like {@code -Dtrickle=true}. Must be
+     * called before the node starts.
+     */
+    public void useTrickle() {
+        routingAgent.setTrickle(true);
+        addressingAgent.setTrickle(true);
+    }
+
+    /**
+     * Lets distance vector use the ETX of the links as cost, like {@code -Detx=true}.
+     */
+    public void useLinkQuality() {
+        if (routing instanceof DistanceVector distanceVector) distanceVector.setLinkCost(linkQuality::getCost);
+    }
+
+    /**
+     * Starts the timers of the node.
+     *
+     * @param offset milliseconds from now until the node boots
+     */
+    public void start(long offset) {
+        start(offset, false);
+    }
+
+    /**
+     * Starts the timers of the node.
+     *
+     * @param offset milliseconds from now until the node boots
+     * @param join   whether the node first {@link AddressingAgent#join joins}, like {@code DynamicAddressing},
+     *               instead of using its initial address right away
+     */
+    public void start(long offset, boolean join) {
+        linkQuality.setInterval(LinkQuality.Source.UPDATE, routingAgent.getUpdateInterval());
+        linkQuality.setInterval(LinkQuality.Source.HELLO, addressingAgent.getHelloInterval());
+        long boot = TimeUnit.SECONDS.toMillis(1) + offset;
+        clock.schedule(() -> booted = true, boot, TimeUnit.MILLISECONDS);
+        if (join) addressingAgent.join(this::isInUse);
+        if (join || addressingAgent.usesTrickle()) every(addressingAgent::tick, boot, 1);
+        if (!addressingAgent.usesTrickle()) {
+            every(addressingAgent::sendHello, boot, DynamicAddressing.KEEP_ALIVE_INTERVAL);
+        }
+        if (!routingAgent.usesTrickle()) every(routingAgent::sendUpdate, boot, DistanceVector.DV_UPDATE_INTERVAL);
+        every(() -> {
+            routingAgent.tick();
+            linkQuality.setInterval(LinkQuality.Source.HELLO, addressingAgent.getHelloInterval());
+        }, boot, 1);
+        every(() -> {
+            for (int node : knownNodes.decrement()) {
+                routingAgent.removeRoute(node);
+                linkQuality.remove(node);
+            }
+        }, boot, REGISTRY_INTERVAL);
+    }
+
+    private interface Task {
+        void run() throws NetworkException;
+    }
+
+    private void every(Task task, long initialDelay, int seconds) {
+        clock.scheduleAtFixedRate(() -> {
+            if (!alive) return;
+            try {
+                task.run();
+            } catch (NetworkException e) {
+                throw new IllegalStateException(e);
+            }
+        }, initialDelay, TimeUnit.SECONDS.toMillis(seconds), TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isInUse(int other) {
+        return other != address && (knownNodes.contains(other) || routing.getRoute(other) != null);
+    }
+
+    /**
+     * Hands the TCP headers that arrive for this node to a transport layer.
+     *
+     * @param transport receives every TCP header for this node and its source
+     */
+    public void setTransport(BiConsumer<TCPHeader, Integer> transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sends a frame on the medium. Routing frames are dropped while the node is joining, like
+     * {@code NetworkLayer} does. A TCP header from a transport layer is sent along the routing table.
+     *
+     * @param header the frame to send
+     */
+    @Override
+    public void ReceiveHeader(Packet header) throws NetworkException {
+        if (header instanceof TCPHeader tcp) {
+            if (!send(address, tcp, 10)) routingAgent.holdForRoute(tcp);
+            return;
+        }
+        if (header instanceof AddressHeader && !addressingAgent.isJoined()) return;
+        medium.transmit(this, header);
+    }
+
+    /**
+     * @return false while the node is looking for a free address
+     */
+    public boolean isJoined() {
+        return addressingAgent.isJoined();
+    }
+
+    /**
+     * Handles a frame received from the medium, the way {@code NetworkLayer} does. Data frames are only
+     * counted or forwarded, and all frames before the node booted are ignored.
+     *
+     * @param frame the decoded frame
+     */
+    public void deliver(Packet frame) {
+        if (!booted) return;
+        try {
+            switch (frame) {
+                case AddressHeader addressHeader -> {
+                    if (addressHeader.getNext_Protocol() == 0 && addressHeader.getDestination() != 7) {
+                        forward(addressHeader);
+                        return;
+                    }
+                    boolean broadcast = addressHeader.getDestination() == 7;
+                    if (broadcast ? !routingAgent.acceptBroadcast(addressHeader)
+                            : addressHeader.getNext_Protocol() != AddressHeader.ON_DEMAND_PROTOCOL) {
+                        return;
+                    }
+                    if (addressHeader.getNext_Protocol() == 0) {
+                        if (transport != null) {
+                            transport.accept((TCPHeader) addressHeader.getUpperHeader(), addressHeader.getSource());
+                        }
+                        routingAgent.relay(addressHeader);
+                        return;
+                    }
+                    if (addressHeader.getUpperHeader() instanceof DV_Header dv) {
+                        linkQuality.heard(addressHeader.getSource(), LinkQuality.Source.UPDATE);
+                        if (dv.getKeepalive() != null) addressingAgent.receiveKeepalive(dv.getKeepalive());
+                    }
+                    if (addressHeader.getNext_Protocol() != 0) {
+                        routingAgent.handleAdvertisement(addressHeader);
+                        for (Packet waiting : routingAgent.takeRouted()) send(address, (TCPHeader) waiting, 10);
+                    }
+                }
+                case DA_Header daHeader -> {
+                    if (daHeader.isConflict()) {
+                        routingAgent.removeRoute(daHeader.getAddress());
+                    } else if (!daHeader.isProbe()) {
+                        linkQuality.heard(daHeader.getAddress(), LinkQuality.Source.HELLO);
+                    }
+                    addressingAgent.receive(daHeader);
+                }
+                default -> throw new IllegalStateException("Unexpected frame: " + frame);
+            }
+        } catch (NetworkException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sends a small data packet to a destination along the routing table. With on-demand routing a packet
+     * without a route waits until the route is found, like in {@code NetworkLayer}.
+     *
+     * @param destination the address of the destination
+     * @return false if there is no route to the destination and none is looked for
+     */
+    public boolean sendData(int destination) {
+        try {
+            return send(address, ping(destination), 10) || routingAgent.holdForRoute(ping(destination));
+        } catch (NetworkException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static TCPHeader ping(int destination) {
+        return new TCPHeader(0, true, false, true, "ping", 4, destination);
+    }
+
+    /**
+     * Handles a data frame, the way {@code NetworkLayer} does: counts it when it is for this node and
+     * passes it on when this node is its next hop.
+     */
+    private void forward(AddressHeader frame) {
+        if (frame.getNext_Hop() != address) return;
+        TCPHeader data = (TCPHeader) frame.getUpperHeader();
+        if (frame.getDestination() == address) {
+            dataReceived++;
+            if (transport != null) transport.accept(data, frame.getSource());
+        } else if (frame.getTTL() > 0) {
+            send(frame.getSource(), data, frame.getTTL() - 1);
+        }
+    }
+
+    private boolean send(int source, TCPHeader data, int ttl) {
+        int destination = data.getDestination();
+        if (destination == 7) {
+            medium.transmit(this, new AddressHeader(0, NetworkLayer.BROADCAST_TTL, 4 + data.getPayloadLength(),
+                    source, destination, 0, routingAgent.nextBroadcastId(), data, !AddressHeader.isBaseAddress(source)));
+            return true;
+        }
+        int nextHop = routing.selectNextHop(destination);
+        if (nextHop == -1 || nextHop == source && source != address) return false;
+        boolean extended = !AddressHeader.isBaseAddress(source) || !AddressHeader.isBaseAddress(destination)
+                || !AddressHeader.isBaseAddress(nextHop);
+        medium.transmit(this, new AddressHeader(0, ttl, 4 + data.getPayloadLength(), source, destination, nextHop,
+                0, data, extended));
+        return true;
+    }
+
+    /**
+     * Takes a new address after a conflict, like {@code NetworkingDAO.setLocalAddress}.
+     */
+    private void changeAddress(int newAddress) {
+        routing.updateRoute(newAddress, new RouteEntry(newAddress, 0));
+        int oldAddress = address;
+        address = newAddress;
+        try {
+            routingAgent.removeRoute(oldAddress);
+        } catch (NetworkException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stops the node, it no longer sends or receives anything.
+     */
+    public void fail() {
+        alive = false;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Checks whether a node is a direct neighbour, like {@code NetworkLayer.isNeighbour}.
+     *
+     * @param node the address of the node
+     * @return true if the route to the node goes straight to it
+     */
+    public boolean isNeighbour(int node) {
+        RouteEntry route = routing.getRoute(node);
+        return route != null && route.nextHop == node && node != address;
+    }
+
+    public RoutingEngine getRoutingEngine() {
+        return routing;
+    }
+
+    public NodeRegistry getKnownNodes() {
+        return knownNodes;
+    }
+
+    public LinkQuality getLinkQuality() {
+        return linkQuality;
+    }
+
+    /**
+     * @return the number of data packets that arrived at this node as their destination
+     */
+    public int getDataReceived() {
+        return dataReceived;
+    }
+}
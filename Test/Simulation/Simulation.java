@@ -0,0 +1,213 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import NetworkLayer.RoutingEngine;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+
+/**
+ * A network of {@link SimNode}s on one {@link Medium}, with checks for convergence and routing loops.
+ * Time advances in steps of one second, every step counts as a loop second when following the next
+ * hops from some node to some destination visits a node twice, and as a no-route second when a live
+ * node has no route to a destination it can still reach.
+ */
+public class Simulation {
+
+    private final Topology topology;
+    private final VirtualClock clock = new VirtualClock();
+    private final Medium medium;
+    private final Random random;
+    private final List<SimNode> nodes = new ArrayList<>();
+    private final Set<Integer> down = new HashSet<>();
+    private final int maxCost;
+    private int loopSeconds;
+    private int noRouteSeconds;
+
+    /**
+     * Creates the nodes, with unique addresses in index order. Address 7 is skipped, it is the broadcast address.
+     *
+     * @param topology which nodes hear each other
+     * @param engine   creates the routing engine of every node
+     * @param lossRate chance that a receiver misses a frame
+     * @param seed     seed of all randomness in the simulation
+     */
+    public Simulation(Topology topology, Function<IntSupplier, RoutingEngine> engine, double lossRate, long seed) {
+        this(topology, engine, lossRate, seed, _ -> false);
+    }
+
+    /**
+     * Creates the nodes, with unique addresses in index order. Address 7 is skipped, it is the broadcast address.
+     * Networks of more than 15 nodes need the extended format on the nodes that get an address above 15.
+     *
+     * @param topology which nodes hear each other
+     * @param engine   creates the routing engine of every node
+     * @param lossRate chance that a receiver misses a frame
+     * @param seed     seed of all randomness in the simulation
+     * @param extended which nodes, by index, speak the extended format
+     */
+    public Simulation(Topology topology, Function<IntSupplier, RoutingEngine> engine, double lossRate, long seed,
+                      IntPredicate extended) {
+        this.topology = topology;
+        this.random = new Random(seed);
+        this.medium = new Medium(clock, topology, random, lossRate);
+        for (int i = 0; i < topology.size(); i++) {
+            SimNode node = SimNode.create(i, i < 7 ? i : i + 1, medium, clock, engine, extended.test(i));
+            medium.attach(node);
+            nodes.add(node);
+        }
+        // Distance vector can not reach destinations INFINITY or more hops away
+        this.maxCost = nodes.getFirst().getRoutingEngine() instanceof DistanceVector
+                ? DistanceVector.INFINITY - 1 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Boots all nodes at random moments within a spread.
+     *
+     * @param spread seconds over which the boots are spread
+     */
+    public void start(int spread) {
+        for (SimNode node : nodes) node.start(random.nextInt((int) TimeUnit.SECONDS.toMillis(spread) + 1));
+    }
+
+    /**
+     * Runs the simulation for a number of seconds.
+     */
+    public void run(int seconds) {
+        for (int i = 0; i < seconds; i++) step();
+    }
+
+    /**
+     * Runs until every live node has exactly the shortest routes of the live topology.
+     *
+     * @param maxSeconds how long to try
+     * @return the seconds it took, or -1 if the network did not converge in time
+     */
+    public int runUntilConverged(int maxSeconds) {
+        for (int seconds = 0; seconds <= maxSeconds; seconds++) {
+            if (converged()) return seconds;
+            step();
+        }
+        return -1;
+    }
+
+    private void step() {
+        clock.runUntil(clock.now() + TimeUnit.SECONDS.toMillis(1));
+        if (hasLoop()) loopSeconds++;
+        if (hasMissingRoute()) noRouteSeconds++;
+    }
+
+    /**
+     * Stops a node.
+     */
+    public void fail(SimNode node) {
+        node.fail();
+        down.add(node.getIndex());
+    }
+
+    /**
+     * Picks a node whose failure leaves the rest of the network connected, preferring the
+     * best connected one. On a line this is an end node.
+     */
+    public SimNode pickFailure() {
+        SimNode best = null;
+        for (SimNode node : nodes) {
+            if (!node.isAlive()) continue;
+            Set<Integer> without = new HashSet<>(down);
+            without.add(node.getIndex());
+            int start = node.getIndex() == 0 ? 1 : 0;
+            boolean connected = topology.hopCounts(start, without).size() == nodes.size() - without.size();
+            if (connected && (best == null || degree(node) > degree(best))) best = node;
+        }
+        return best;
+    }
+
+    private int degree(SimNode node) {
+        return topology.neighbours(node.getIndex()).size();
+    }
+
+    /**
+     * Checks whether every live node has exactly the shortest-path costs of the live topology.
+     */
+    public boolean converged() {
+        for (SimNode node : nodes) {
+            if (!node.isAlive()) continue;
+            Map<Integer, RouteEntry> table = node.getRoutingEngine().getRoutes();
+            int expected = 0;
+            for (Map.Entry<Integer, Integer> entry : topology.hopCounts(node.getIndex(), down).entrySet()) {
+                if (entry.getValue() > maxCost) continue;
+                expected++;
+                RouteEntry route = table.get(nodes.get(entry.getKey()).getAddress());
+                if (route == null || route.cost != entry.getValue()) return false;
+            }
+            if (table.size() != expected) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a live node has no route to a destination that is still reachable. Packets sent to
+     * it then are dropped.
+     */
+    public boolean hasMissingRoute() {
+        for (SimNode node : nodes) {
+            if (!node.isAlive()) continue;
+            for (Map.Entry<Integer, Integer> entry : topology.hopCounts(node.getIndex(), down).entrySet()) {
+                if (entry.getValue() > maxCost) continue;
+                if (node.getRoutingEngine().getRoute(nodes.get(entry.getKey()).getAddress()) == null) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether following next hops from any live node to any destination visits a node twice.
+     */
+    public boolean hasLoop() {
+        Map<Integer, SimNode> byAddress = new HashMap<>();
+        for (SimNode node : nodes) byAddress.put(node.getAddress(), node);
+        for (SimNode start : nodes) {
+            if (!start.isAlive()) continue;
+            for (Integer destination : start.getRoutingEngine().getDestinations()) {
+                Set<Integer> visited = new HashSet<>();
+                SimNode current = start;
+                while (current != null && current.getAddress() != destination) {
+                    if (!visited.add(current.getAddress())) return true;
+                    RouteEntry route = current.getRoutingEngine().getRoute(destination);
+                    current = route == null ? null : byAddress.get(route.nextHop);
+                }
+            }
+        }
+        return false;
+    }
+
+    public List<SimNode> getNodes() {
+        return nodes;
+    }
+
+    public Medium getMedium() {
+        return medium;
+    }
+
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return the number of one-second steps so far in which a routing loop existed
+     */
+    public int getLoopSeconds() {
+        return loopSeconds;
+    }
+
+    /**
+     * @return the number of one-second steps so far in which a live node missed a route
+     */
+    public int getNoRouteSeconds() {
+        return noRouteSeconds;
+    }
+}
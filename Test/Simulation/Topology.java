@@ -0,0 +1,125 @@
+package Simulation;
+
+import java.util.*;
+
+/**
+ * Which simulated nodes can hear each other. Nodes are numbered from 0, links are symmetric.
+ *
+ * @param name  a short description, used in reports
+ * @param links the neighbours of every node
+ */
+public record Topology(String name, List<Set<Integer>> links) {
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return links.size();
+    }
+
+    /**
+     * @return the neighbours of a node
+     */
+    public Set<Integer> neighbours(int node) {
+        return links.get(node);
+    }
+
+    /**
+     * Nodes in a row, every node hears the one before and after it.
+     */
+    public static Topology line(int nodes) {
+        List<Set<Integer>> links = empty(nodes);
+        for (int i = 0; i + 1 < nodes; i++) link(links, i, i + 1);
+        return new Topology("line " + nodes, links);
+    }
+
+    /**
+     * A line whose ends hear each other as well.
+     */
+    public static Topology ring(int nodes) {
+        List<Set<Integer>> links = line(nodes).links();
+        link(links, nodes - 1, 0);
+        return new Topology("ring " + nodes, links);
+    }
+
+    /**
+     * Nodes in one room, every node hears every other one.
+     */
+    public static Topology clique(int nodes) {
+        List<Set<Integer>> links = empty(nodes);
+        for (int a = 0; a < nodes; a++)
+            for (int b = a + 1; b < nodes; b++) link(links, a, b);
+        return new Topology("clique " + nodes, links);
+    }
+
+    /**
+     * Nodes on a grid, every node hears the nodes left, right, above and below it.
+     */
+    public static Topology grid(int width, int height) {
+        List<Set<Integer>> links = empty(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int node = y * width + x;
+                if (x + 1 < width) link(links, node, node + 1);
+                if (y + 1 < height) link(links, node, node + width);
+            }
+        }
+        return new Topology("grid " + width + "x" + height, links);
+    }
+
+    /**
+     * Nodes at random places in a unit square, two nodes hear each other when they are closer than the
+     * radius. Placements are drawn again until the network is connected.
+     */
+    public static Topology randomGeometric(int nodes, double radius, Random random) {
+        while (true) {
+            double[] x = new double[nodes];
+            double[] y = new double[nodes];
+            for (int i = 0; i < nodes; i++) {
+                x[i] = random.nextDouble();
+                y[i] = random.nextDouble();
+            }
+            List<Set<Integer>> links = empty(nodes);
+            for (int a = 0; a < nodes; a++)
+                for (int b = a + 1; b < nodes; b++)
+                    if (Math.hypot(x[a] - x[b], y[a] - y[b]) < radius) link(links, a, b);
+            Topology topology = new Topology("random " + nodes + " r=" + radius, links);
+            if (topology.hopCounts(0, Set.of()).size() == nodes) return topology;
+        }
+    }
+
+    /**
+     * Hop counts from one node to all nodes it can reach.
+     *
+     * @param source the node to start from
+     * @param down   nodes that are down and can not be passed
+     * @return the reachable nodes mapped to their distance in hops
+     */
+    public Map<Integer, Integer> hopCounts(int source, Set<Integer> down) {
+        Map<Integer, Integer> distance = new HashMap<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        distance.put(source, 0);
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int neighbour : links.get(node)) {
+                if (!down.contains(neighbour) && !distance.containsKey(neighbour)) {
+                    distance.put(neighbour, distance.get(node) + 1);
+                    queue.add(neighbour);
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static List<Set<Integer>> empty(int nodes) {
+        List<Set<Integer>> links = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) links.add(new TreeSet<>());
+        return links;
+    }
+
+    private static void link(List<Set<Integer>> links, int a, int b) {
+        links.get(a).add(b);
+        links.get(b).add(a);
+    }
+}
@@ -0,0 +1,233 @@
+package Simulation;
+
+import Model.Exceptions.NetworkException;
+import Model.LayerModel;
+import NetworkLayer.DV.DistanceVector;
+import TransportLayer.Connection;
+import TransportLayer.Receiver;
+import TransportLayer.RttEstimator;
+import TransportLayer.Sender;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sending every packet of a message at once, like the sender did before it had a window, against
+ * the {@link Sender} with its congestion window and the {@link Receiver} with its receive window. The
+ * windowed sender runs with the fixed retransmission timer it had first and with timers that follow the
+ * measured round-trip time, and with the latter also with delayed acknowledgments ({@code -DackDelay} in
+ * milliseconds). One message at a time goes one or two hops over a line of nodes, on a
+ * {@link Medium#setSharedChannel shared channel}, so packets and acknowledgments take turns on the air.
+ * Reported per number of hops, message length, loss rate and sender:
+ * <ul>
+ *     <li>the seconds until the whole message arrived,</li>
+ *     <li>the goodput, bytes of the message per second,</li>
+ *     <li>the data frames on the air per message, relays, acknowledgments and retransmissions included.</li>
+ * </ul>
+ * The burst goes to a receiver that keeps every packet,
+ * like the receiver did before, without its limit of 40 packets. Runs where the message did not arrive
+ * within {@link #MAX_TIME} seconds are left out of the averages and counted.
+ */
+public class TransportSimulator {
+
+    private static final int RUNS = 10;
+    private static final int BOOT_SPREAD = 5;
+    private static final int MAX_TIME = 1800;
+    private static final int[] HOPS = {1, 2};
+    private static final int[] LENGTHS = {240, 960, 2400};
+    private static final double[] LOSS_RATES = {0, 0.05, 0.2};
+    private static final long RETRANSMIT_TIME = TimeUnit.SECONDS.toMillis(25);
+    private static final long ACK_DELAY = Long.getLong("ackDelay", TransportLayer.DEFAULT_ACK_DELAY);
+    private static final List<String> SENDERS = List.of("burst", "fixed", "rtt", "delayed");
+
+    private record Result(double seconds, double goodput, double frames) {
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-5s %-8s %-6s %-7s %10s %15s %13s %7s%n", "hops", "length", "loss", "sender",
+                "time (s)", "goodput (B/s)", "frames/msg", "failed");
+        for (int hops : HOPS) {
+            for (int length : LENGTHS) {
+                for (double loss : LOSS_RATES) {
+                    for (String sender : SENDERS) {
+                        List<Result> results = new ArrayList<>();
+                        for (int run = 0; run < RUNS; run++) {
+                            Simulation simulation = new Simulation(Topology.line(hops + 1), DistanceVector::new,
+                                    loss, run);
+                            results.add(run(simulation, length, sender));
+                            simulated += simulation.getClock().now() / 1000.0;
+                        }
+                        List<Result> arrived = results.stream().filter(Objects::nonNull).toList();
+                        System.out.printf("%-5d %-8d %-6.2f %-7s %10.1f %15.1f %13.1f %7d%n", hops, length, loss,
+                                sender,
+                                arrived.stream().mapToDouble(Result::seconds).average().orElse(0),
+                                arrived.stream().mapToDouble(Result::goodput).average().orElse(0),
+                                arrived.stream().mapToDouble(Result::frames).average().orElse(0),
+                                results.size() - arrived.size());
+                    }
+                }
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Sends one message from the first to the last node once the routes are there.
+     *
+     * @return the result, or null if the message did not arrive in time
+     */
+    private static Result run(Simulation simulation, int length, String kind) {
+        VirtualClock clock = simulation.getClock();
+        simulation.getMedium().setSharedChannel(true);
+        simulation.start(BOOT_SPREAD);
+        if (simulation.runUntilConverged(MAX_TIME) < 0) return null;
+
+        List<SimNode> nodes = simulation.getNodes();
+        SimNode from = nodes.getFirst();
+        SimNode to = nodes.getLast();
+        Connection.Scheduler scheduler = (task, delayMillis) -> {
+            boolean[] cancelled = {false};
+            clock.schedule(() -> {
+                if (!cancelled[0]) task.run();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return () -> cancelled[0] = true;
+        };
+        boolean windowed = !kind.equals("burst");
+        RttEstimator rtt = !kind.equals("fixed") ? new RttEstimator(clock::now) : new RttEstimator(clock::now) {
+            @Override
+            public long getTimeout(int peer, int retransmissions) {
+                return RETRANSMIT_TIME;
+            }
+        };
+        long sent = clock.now();
+        long[] arrived = {-1};
+        Connection[] receiver = {null};
+        to.setTransport((tcp, source) -> {
+            if (receiver[0] != null) {
+                receiver[0].receivePacket(tcp); // One message per run, packets outside the window are dropped
+            } else if (windowed && !tcp.isAck()) {
+                receiver[0] = new Receiver(source, tcp, to, scheduler, (message, _) -> arrived[0] = clock.now(),
+                        kind.equals("delayed") ? ACK_DELAY : 0);
+                receiver[0].start();
+            } else if (!tcp.isAck()) {
+                receiver[0] = new BufferReceiver(source, to, () -> arrived[0] = clock.now());
+                receiver[0].receivePacket(tcp);
+            }
+        });
+        long framesBefore = simulation.getMedium().getFrames(Medium.Kind.DATA);
+        List<ByteBuffer> segments = TransportLayer.segment("x".repeat(length));
+        Connection sender = windowed
+                ? new Sender(to.getAddress(), segments, from, scheduler, rtt)
+                : new BurstSender(to.getAddress(), segments, from, scheduler);
+        from.setTransport((tcp, _) -> sender.receivePacket(tcp));
+        sender.start();
+
+        while (arrived[0] < 0 && clock.now() - sent < TimeUnit.SECONDS.toMillis(MAX_TIME)) {
+            simulation.run(1);
+        }
+        if (arrived[0] < 0) return null;
+        simulation.run(60); // Let the last acknowledgments and retransmissions go
+        double seconds = (arrived[0] - sent) / 1000.0;
+        return new Result(seconds, length / seconds,
+                simulation.getMedium().getFrames(Medium.Kind.DATA) - framesBefore);
+    }
+
+    /**
+     * Sends every packet right away, with the retransmission timers a little apart, like the sender did
+     * before it had a window.
+     */
+    private static class BurstSender implements Connection {
+        private final int destination;
+        private final int firstSeq;
+        private final int lastSeq;
+        private final Map<Integer, ByteBuffer> messages = new HashMap<>();
+        private final LayerModel lower;
+        private final Scheduler scheduler;
+
+        BurstSender(int destination, List<ByteBuffer> segments, LayerModel lower, Scheduler scheduler) {
+            this.destination = destination;
+            this.lower = lower;
+            this.scheduler = scheduler;
+            this.firstSeq = TransportLayer.getSingleton().getSequences().allocate(destination, segments.size());
+            this.lastSeq = firstSeq + segments.size() - 1;
+            for (int seq = firstSeq; seq <= lastSeq; seq++) {
+                messages.put(seq, segments.get(seq - firstSeq));
+            }
+            for (int seq = firstSeq; seq <= lastSeq; seq++) {
+                send(seq, RETRANSMIT_TIME + TimeUnit.SECONDS.toMillis(2L * (seq - firstSeq)));
+            }
+        }
+
+        private synchronized void send(int seq, long timer) {
+            ByteBuffer message = messages.get(seq);
+            if (message == null) return;
+            try {
+                lower.ReceiveHeader(new TCPHeader(seq, seq == firstSeq, seq == lastSeq, message, destination));
+            } catch (NetworkException e) {
+                throw new IllegalStateException(e);
+            }
+            scheduler.schedule(() -> send(seq, RETRANSMIT_TIME), timer);
+        }
+
+        @Override
+        public synchronized boolean receivePacket(TCPHeader packet) {
+            if (!packet.isAck() || packet.getSequence() < firstSeq || packet.getSequence() > lastSeq) return false;
+            if (packet.isFin()) messages.clear();
+            messages.remove(packet.getSequence());
+            return true;
+        }
+
+        @Override
+        public Integer getPeer() {
+            return destination;
+        }
+    }
+
+    /**
+     * Keeps every packet of the message and acknowledges each, like the receiver did before it had a window.
+     */
+    private static class BufferReceiver implements Connection {
+        private final int source;
+        private final LayerModel lower;
+        private final Runnable arrived;
+        private final Set<Integer> received = new HashSet<>();
+        private int firstSeq = -1;
+        private int lastSeq = -1;
+        private boolean complete;
+
+        BufferReceiver(int source, LayerModel lower, Runnable arrived) {
+            this.source = source;
+            this.lower = lower;
+            this.arrived = arrived;
+        }
+
+        @Override
+        public boolean receivePacket(TCPHeader packet) {
+            if (packet.isAck()) return true;
+            if (packet.isSYN()) firstSeq = packet.getSequence();
+            if (packet.isFin()) lastSeq = packet.getSequence();
+            received.add(packet.getSequence());
+            if (!complete && firstSeq != -1 && lastSeq != -1 && received.size() == lastSeq - firstSeq + 1) {
+                complete = true;
+                arrived.run();
+            }
+            try {
+                lower.ReceiveHeader(new TCPHeader(packet.getSequence(), false, true, complete, "", 0, source));
+            } catch (NetworkException e) {
+                throw new IllegalStateException(e);
+            }
+            return true;
+        }
+
+        @Override
+        public Integer getPeer() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package Simulation;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LS.LinkState;
+import NetworkLayer.RoutingEngine;
+import NetworkLayer.TrickleTimer;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares periodic control traffic at a fixed rate against {@link TrickleTimer Trickle timers}, for distance
+ * vector updates and for DA HELLOs. Reported per topology, engine and timer:
+ * <ul>
+ *     <li>the time until all routing tables are correct after the nodes boot,</li>
+ *     <li>the routing and DA frames every node sends per minute once the network is stable,</li>
+ *     <li>the time until all tables are correct again after a node fails.</li>
+ * </ul>
+ * Link state floods its advertisements, only its HELLOs use the timer.
+ */
+public class TrickleSimulator {
+
+    private static final int RUNS = 5;
+    private static final int BOOT_SPREAD = 5;
+    private static final int MAX_TIME = 3600;
+    private static final int STEADY_TIME = 3600;
+    private static final double LOSS_RATE = 0.02;
+
+    private record Result(int boot, int failure, double routingFrames, double daFrames) {
+    }
+
+    public static void main(String[] args) {
+        List<Topology> topologies = List.of(
+                Topology.line(15),
+                Topology.grid(5, 3),
+                Topology.randomGeometric(15, 0.4, new Random(1)));
+        Map<String, Function<IntSupplier, RoutingEngine>> engines = new LinkedHashMap<>();
+        engines.put("dv", DistanceVector::new);
+        engines.put("ls", LinkState::new);
+
+        long start = System.nanoTime();
+        double simulated = 0;
+        System.out.printf("%-18s %-7s %-8s %10s %12s %15s %13s%n", "topology", "engine", "timer", "boot (s)",
+                "failure (s)", "routing f/n/min", "DA f/n/min");
+        for (Topology topology : topologies) {
+            for (Map.Entry<String, Function<IntSupplier, RoutingEngine>> engine : engines.entrySet()) {
+                for (boolean trickle : new boolean[]{false, true}) {
+                    List<Result> results = new ArrayList<>();
+                    for (int run = 0; run < RUNS; run++) {
+                        Simulation simulation = new Simulation(topology, engine.getValue(), LOSS_RATE, run);
+                        if (trickle) simulation.getNodes().forEach(SimNode::useTrickle);
+                        results.add(run(simulation, topology.size()));
+                        simulated += simulation.getClock().now() / 1000.0;
+                    }
+                    System.out.printf("%-18s %-7s %-8s %10s %12s %15.2f %13.2f%n", topology.name(), engine.getKey(),
+                            trickle ? "trickle" : "fixed",
+                            average(results.stream().mapToInt(Result::boot).toArray()),
+                            average(results.stream().mapToInt(Result::failure).toArray()),
+                            results.stream().mapToDouble(Result::routingFrames).average().orElse(0),
+                            results.stream().mapToDouble(Result::daFrames).average().orElse(0));
+                }
+            }
+        }
+        System.out.printf("%nSimulated %.1f hours in %.1f seconds%n", simulated / 3600,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Result run(Simulation simulation, int nodes) {
+        simulation.start(BOOT_SPREAD);
+        int boot = simulation.runUntilConverged(MAX_TIME);
+
+        Medium medium = simulation.getMedium();
+        long routingBefore = medium.getFrames(Medium.Kind.DV) + medium.getFrames(Medium.Kind.LSA);
+        long daBefore = medium.getFrames(Medium.Kind.DA);
+        simulation.run(STEADY_TIME);
+        double perNodeMinute = nodes * STEADY_TIME / 60.0;
+        double routing = (medium.getFrames(Medium.Kind.DV) + medium.getFrames(Medium.Kind.LSA) - routingBefore)
+                / perNodeMinute;
+        double da = (medium.getFrames(Medium.Kind.DA) - daBefore) / perNodeMinute;
+
+        simulation.fail(simulation.pickFailure());
+        int failure = simulation.runUntilConverged(MAX_TIME);
+        return new Result(boot, failure, routing, da);
+    }
+
+    /**
+     * Averages the runs that converged.
+     */
+    private static String average(int[] seconds) {
+        OptionalDouble average = Arrays.stream(seconds).filter(s -> s >= 0).average();
+        long failed = Arrays.stream(seconds).filter(s -> s < 0).count();
+        if (average.isEmpty()) return "never";
+        return "%.1f".formatted(average.getAsDouble()) + (failed > 0 ? "*" : "");
+    }
+}
@@ -0,0 +1,71 @@
+package Simulation;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated time in milliseconds. Tasks run in time order, tasks due at the same time in the order
+ * they were scheduled. Nothing waits for real time, so hours of protocol time take seconds.
+ */
+public class VirtualClock {
+
+    private record Event(long time, long order, Runnable task) {
+    }
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>(
+            Comparator.comparingLong(Event::time).thenComparingLong(Event::order));
+    private long now;
+    private long order;
+
+    /**
+     * @return the current simulated time in milliseconds
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Runs a task once after a delay.
+     *
+     * @param task  the task to run
+     * @param delay the time from now until the task runs
+     * @param unit  the unit of the delay
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        queue.add(new Event(now + unit.toMillis(delay), order++, task));
+    }
+
+    /**
+     * Runs a task at a fixed rate, forever.
+     *
+     * @param task         the task to run
+     * @param initialDelay the time from now until the first run
+     * @param period       the time between runs
+     * @param unit         the unit of the delay and period
+     */
+    public void scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        long periodMillis = unit.toMillis(period);
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                schedule(this, periodMillis, TimeUnit.MILLISECONDS);
+            }
+        }, unit.toMillis(initialDelay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs all tasks that are due up to a time, and moves the clock to it.
+     *
+     * @param time the simulated time in milliseconds to run to
+     */
+    public void runUntil(long time) {
+        while (!queue.isEmpty() && queue.peek().time() <= time) {
+            Event event = queue.poll();
+            now = event.time();
+            event.task().run();
+        }
+        now = Math.max(now, time);
+    }
+}
@@ -0,0 +1,106 @@
+package UnitTesting;
+
+import Model.Packet;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA.AddressingAgent;
+import NetworkLayer.DA_Header;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AddressJoinTest {
+
+    List<DA_Header> sent;
+    List<Integer> seen;
+    int address;
+    AddressingAgent agent;
+
+    @BeforeEach
+    void setUp() {
+        sent = new ArrayList<>();
+        seen = new ArrayList<>();
+        address = 3;
+        agent = new AddressingAgent(() -> address, (Packet header) -> sent.add((DA_Header) header), () -> 0,
+                seen::add, newAddress -> address = newAddress);
+    }
+
+    private void tick(int times) throws Exception {
+        for (int i = 0; i < times; i++) agent.tick();
+    }
+
+    private List<DA_Header> probes() {
+        return sent.stream().filter(DA_Header::isProbe).toList();
+    }
+
+    @Test
+    void join_shouldProbeAndKeepFreeAddress() throws Exception {
+        agent.join(other -> false);
+        agent.sendHello();
+        tick(AddressingAgent.LISTEN_TIME + AddressingAgent.PROBE_COUNT - 1);
+        assertFalse(agent.isJoined());
+        assertTrue(sent.stream().noneMatch(header -> !header.isProbe())); // No HELLO while joining
+
+        tick(AddressingAgent.ANNOUNCE_WAIT);
+        assertTrue(agent.isJoined());
+        assertEquals(3, address);
+        assertEquals(AddressingAgent.PROBE_COUNT, probes().size());
+        assertTrue(probes().stream().allMatch(probe -> probe.getAddress() == 3));
+        assertFalse(sent.getLast().isProbe()); // Announced with a HELLO
+        assertEquals(3, sent.getLast().getAddress());
+    }
+
+    @Test
+    void join_shouldSkipAddressesInUse() throws Exception {
+        agent.join(other -> other != 12);
+        tick(AddressingAgent.LISTEN_TIME + AddressingAgent.PROBE_COUNT - 1 + AddressingAgent.ANNOUNCE_WAIT);
+        assertTrue(agent.isJoined());
+        assertEquals(12, address);
+    }
+
+    @Test
+    void conflictWhileProbing_shouldPickAnotherAddress() throws Exception {
+        agent.join(other -> false);
+        tick(AddressingAgent.LISTEN_TIME);
+        assertEquals(3, probes().getLast().getAddress());
+
+        agent.receive(new DA_Header(0, true, 77, 3)); // The owner of 3 answers
+        tick(AddressingAgent.PROBE_COUNT + AddressingAgent.ANNOUNCE_WAIT);
+        assertTrue(agent.isJoined());
+        assertNotEquals(3, address);
+        assertNotEquals(7, address);
+        assertEquals(List.of(3), seen); // The owner is known now
+    }
+
+    @Test
+    void deployedNeighbour_shouldKeepExtendedFramesBack() throws Exception {
+        address = 40;
+        agent = new AddressingAgent(() -> address, (Packet header) -> sent.add((DA_Header) header), () -> 0,
+                seen::add, newAddress -> address = newAddress, true);
+        agent.setDeployedHeard(() -> true);
+
+        agent.receive(new DA_Header(DA_Header.EXTENDED_PROTOCOL, false, 1, 0x13));
+        assertEquals(List.of(0x13), seen);
+        assertTrue(sent.isEmpty()); // A deployed node would read it as a HELLO of 3
+
+        agent.join(other -> false);
+        tick(AddressingAgent.LISTEN_TIME + AddressingAgent.PROBE_COUNT - 1 + AddressingAgent.ANNOUNCE_WAIT);
+        assertTrue(agent.isJoined());
+        assertTrue(address < AddressHeader.BASE_ADDRESSES);
+        assertTrue(sent.stream().noneMatch(DA_Header::isExtended));
+    }
+
+    @Test
+    void probeFromOtherNode_shouldBeAnsweredOrRelayed() throws Exception {
+        agent.receive(new DA_Header(DA_Header.PROBE_PROTOCOL, false, 10, 3));
+        assertTrue(sent.getLast().isConflict());
+        assertEquals(3, sent.getLast().getAddress());
+
+        agent.receive(new DA_Header(DA_Header.PROBE_PROTOCOL, false, 10, 5));
+        assertTrue(sent.getLast().isProbe()); // Flooded further
+        assertEquals(5, sent.getLast().getAddress());
+        assertTrue(seen.isEmpty()); // A probing node is no known node yet
+    }
+}
@@ -0,0 +1,198 @@
+package UnitTesting;
+
+import Model.Packet;
+import TransportLayer.BroadcastSender;
+import TransportLayer.Connection;
+import TransportLayer.RttEstimator;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadcastSenderTest {
+
+    static final int BROADCAST = 7;
+
+    List<TCPHeader> sent;
+    Set<Integer> distant; // Receivers that are no direct neighbours
+    List<Runnable> timers;
+    Connection.Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        sent = new ArrayList<>();
+        distant = Set.of();
+        timers = new ArrayList<>();
+        scheduler = (task, _) -> {
+            boolean[] cancelled = {false};
+            timers.add(() -> {
+                if (!cancelled[0]) task.run();
+            });
+            return () -> cancelled[0] = true;
+        };
+    }
+
+    private BroadcastSender sender(int packets, Integer... receivers) {
+        BroadcastSender sender = new BroadcastSender(Set.of(receivers), node -> !distant.contains(node),
+                TransportLayer.segment("part".repeat(packets), 4), (Packet header) -> sent.add((TCPHeader) header),
+                scheduler, new RttEstimator(() -> 0));
+        sender.start();
+        return sender;
+    }
+
+    /**
+     * An acknowledgment up to and including seq, with a selective bitmap after it.
+     */
+    private static TCPHeader ack(int seq, int selective) {
+        return new TCPHeader(seq, true, false, selective, 1);
+    }
+
+    private void expireTimers() {
+        List<Runnable> due = new ArrayList<>(timers);
+        timers.clear();
+        due.forEach(Runnable::run);
+    }
+
+    private List<Integer> destinations() {
+        return sent.stream().map(TCPHeader::getDestination).toList();
+    }
+
+    @Test
+    void newSender_shouldBroadcastEveryPacketOnceForAllNodes() {
+        sender(3, 3, 5, 6);
+
+        assertEquals(List.of(BROADCAST, BROADCAST, BROADCAST), destinations());
+        assertEquals(sent.getFirst().getSequence() + 2, sent.getLast().getSequence());
+        assertTrue(sent.getFirst().isSYN());
+        assertTrue(sent.getLast().isFin());
+    }
+
+    @Test
+    void newSender_shouldSendNothingBeforeStart() {
+        BroadcastSender sender = new BroadcastSender(Set.of(3, 5), _ -> true, TransportLayer.segment("part", 4),
+                (Packet header) -> sent.add((TCPHeader) header), scheduler, new RttEstimator(() -> 0));
+        assertTrue(sent.isEmpty());
+        assertTrue(timers.isEmpty());
+
+        sender.start();
+        assertEquals(List.of(BROADCAST), destinations());
+    }
+
+    @Test
+    void gapInAcknowledgment_shouldBeRepairedForThatNodeAlone() {
+        BroadcastSender sender = sender(4, 3, 5);
+        int first = sent.getFirst().getSequence();
+        sent.clear();
+
+        assertTrue(sender.receivePacket(ack(first, 0b10), 3)); // first + 1 is missing at 3
+        assertEquals(List.of(3), destinations());
+        assertEquals(first + 1, sent.getFirst().getSequence());
+
+        sender.receivePacket(ack(first, 0b10), 3); // The same gap again, before the repair arrived
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void repairTimer_shouldBroadcastPacketsSeveralNodesMiss() {
+        BroadcastSender sender = sender(3, 3, 5, 6);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(ack(first + 2, 0), 3);
+        sender.receivePacket(ack(first + 1, 0), 5);
+        sender.receivePacket(ack(first + 1, 0), 6);
+        sent.clear();
+
+        expireTimers();
+
+        assertEquals(List.of(BROADCAST), destinations()); // 5 and 6 miss first + 2
+        assertEquals(first + 2, sent.getFirst().getSequence());
+        assertFalse(sender.isDone());
+    }
+
+    @Test
+    void repairTimer_shouldSendPacketOneNodeMissesToThatNode() {
+        BroadcastSender sender = sender(2, 3, 5);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(ack(first + 1, 0), 3);
+        sender.receivePacket(ack(first, 0), 5);
+        sent.clear();
+
+        expireTimers();
+
+        assertEquals(List.of(5), destinations());
+        assertEquals(first + 1, sent.getFirst().getSequence());
+    }
+
+    @Test
+    void everyNodeAcknowledged_shouldBroadcastFinAndRelease() {
+        BroadcastSender sender = sender(2, 3, 5);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(ack(first + 1, 0), 3);
+        assertFalse(sender.isDone());
+        sent.clear();
+
+        sender.receivePacket(new TCPHeader(first + 1, true, true, 0, 1), 5); // Says it has the whole message
+
+        assertTrue(sender.isDone());
+        assertEquals(List.of(BROADCAST), destinations());
+        assertTrue(sent.getFirst().isAck() && sent.getFirst().isFin());
+        assertFalse(TransportLayer.getSingleton().getSequences().isUsed(3, first));
+        assertFalse(TransportLayer.getSingleton().getSequences().isUsed(5, first));
+    }
+
+    @Test
+    void acknowledgments_shouldOnlyCountFromNodesOfTheBroadcast() {
+        BroadcastSender sender = sender(2, 3, 5);
+        int first = sent.getFirst().getSequence();
+
+        assertFalse(sender.receivePacket(ack(first + 1, 0), 4));
+        assertFalse(sender.receivePacket(ack(first + 5, 0), 3));
+        assertFalse(sender.receivePacket(ack(first + 1, 0))); // Without the node it came from
+    }
+
+    @Test
+    void silentNode_shouldBeGivenUp() {
+        BroadcastSender sender = sender(2, 3, 5);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(ack(first + 1, 0), 3);
+
+        for (int round = 0; round <= BroadcastSender.MAX_ROUNDS; round++) {
+            expireTimers();
+        }
+
+        assertTrue(sender.isDone());
+        assertEquals(Set.of(5), sender.getGivenUp());
+    }
+
+    @Test
+    void distantNodes_shouldGetEveryPacketAlone() {
+        distant = Set.of(5, 6); // Two hops away, they do not hear the broadcast
+        BroadcastSender sender = sender(2, 3, 5, 6);
+        int first = sent.getFirst().getSequence();
+
+        assertEquals(List.of(BROADCAST, 5, 6, BROADCAST, 5, 6), destinations());
+        sender.receivePacket(ack(first + 1, 0), 3);
+        sender.receivePacket(ack(first, 0), 5);
+        sender.receivePacket(ack(first, 0), 6);
+        sent.clear();
+
+        expireTimers();
+
+        assertEquals(List.of(5, 6), destinations()); // Both miss first + 1, a broadcast would not reach them
+        sender.receivePacket(ack(first + 1, 0), 5);
+        sent.clear();
+        sender.receivePacket(ack(first + 1, 0), 6);
+        assertTrue(sender.isDone());
+        assertTrue(sender.getGivenUp().isEmpty());
+
+        // The FIN+ACK is broadcast for 3 and sent to the distant nodes alone
+        assertEquals(3, sent.size());
+        assertEquals(Set.of(BROADCAST, 5, 6), Set.copyOf(destinations()));
+        assertTrue(sent.stream().allMatch(header -> header.isAck() && header.isFin()));
+    }
+}
@@ -0,0 +1,56 @@
+package UnitTesting;
+
+import NetworkLayer.BroadcastWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadcastWindowTest {
+
+    BroadcastWindow window;
+
+    @BeforeEach
+    void setUp() {
+        window = new BroadcastWindow();
+    }
+
+    @Test
+    void accept_shouldDropDuplicates() {
+        assertTrue(window.accept(3, 10));
+        assertFalse(window.accept(3, 10));
+        assertTrue(window.accept(4, 10)); // Other source, own window
+    }
+
+    @Test
+    void accept_shouldAcceptLateFramesInsideWindowOnce() {
+        assertTrue(window.accept(3, 10));
+        assertTrue(window.accept(3, 12));
+        assertTrue(window.accept(3, 11));
+        assertFalse(window.accept(3, 11));
+    }
+
+    @Test
+    void accept_shouldHandleWraparound() {
+        assertTrue(window.accept(3, 254));
+        assertTrue(window.accept(3, 1));
+        assertTrue(window.accept(3, 255));
+        assertFalse(window.accept(3, 254));
+        assertFalse(window.accept(3, 1));
+        assertTrue(window.accept(3, 0));
+    }
+
+    @Test
+    void accept_shouldDropFramesOlderThanWindow() {
+        assertTrue(window.accept(3, 100));
+        assertTrue(window.accept(3, 100 + BroadcastWindow.WINDOW_SIZE));
+        assertFalse(window.accept(3, 100));
+    }
+
+    @Test
+    void tick_shouldForgetSilentSources() {
+        assertTrue(window.accept(3, 10));
+        for (int i = 0; i < BroadcastWindow.WINDOW_TIMEOUT; i++) window.tick();
+        assertTrue(window.accept(3, 10));
+    }
+}
@@ -0,0 +1,107 @@
+package UnitTesting;
+
+import Model.Exceptions.PayloadException;
+import Model.Packet;
+import Model.PacketParser;
+import TransportLayer.Compression;
+import TransportLayer.Receiver;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    static final String CHAT = "hey, are you coming to the meeting tomorrow morning? let me know, thanks!";
+
+    private static byte[] join(List<ByteBuffer> segments) {
+        ByteBuffer joined = ByteBuffer.allocate(segments.stream().mapToInt(ByteBuffer::remaining).sum());
+        segments.forEach(segment -> joined.put(segment.duplicate()));
+        return joined.array();
+    }
+
+    @Test
+    void chatMessage_shouldTakeFewerSegmentsAndDecodeToTheSameText() {
+        List<ByteBuffer> raw = TransportLayer.segment(CHAT);
+        List<ByteBuffer> compressed = TransportLayer.segment(CHAT, TransportLayer.SEGMENT_CAPACITY, true);
+
+        assertTrue(compressed.size() < raw.size(), compressed.size() + " segments, raw " + raw.size());
+        assertEquals(Compression.FLAG, compressed.getFirst().get(0));
+        assertEquals(CHAT, Compression.decode(join(compressed)));
+    }
+
+    @Test
+    void messageWithoutGain_shouldBeSentRaw() {
+        assertEquals(TransportLayer.segment("ok"), TransportLayer.segment("ok", TransportLayer.SEGMENT_CAPACITY, true));
+
+        byte[] noise = new byte[60];
+        new Random(49).nextBytes(noise);
+        String random = Base64.getEncoder().encodeToString(noise); // Does not compress
+        assertEquals(TransportLayer.segment(random),
+                TransportLayer.segment(random, TransportLayer.SEGMENT_CAPACITY, true));
+        assertEquals(TransportLayer.segment(CHAT), TransportLayer.segment(CHAT, TransportLayer.SEGMENT_CAPACITY, false));
+    }
+
+    @Test
+    void inflatingPastTheMaximum_shouldBeRejected() {
+        byte[] bomb = Compression.compress(new byte[Compression.MAX_LENGTH + 1]); // A few hundred bytes
+
+        assertTrue(bomb.length < 10 * TransportLayer.SEGMENT_CAPACITY);
+        assertThrows(IllegalArgumentException.class, () -> Compression.decode(bomb));
+        assertEquals(Compression.MAX_LENGTH,
+                Compression.decode(Compression.compress(new byte[Compression.MAX_LENGTH])).length());
+
+        String tooLong = "a".repeat(Compression.MAX_LENGTH + 1);
+        assertEquals(TransportLayer.segment(tooLong),
+                TransportLayer.segment(tooLong, TransportLayer.SEGMENT_CAPACITY, true));
+    }
+
+    @Test
+    void rawMessage_shouldNeverLookCompressed() {
+        byte[] mixed = "Zoë 你好 👋🏽".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(Compression.isCompressed(mixed));
+        assertFalse(Compression.isCompressed(new byte[0]));
+        assertEquals("Zoë 你好 👋🏽", Compression.decode(mixed));
+    }
+
+    @Test
+    void brokenCompressedMessage_shouldBeRejected() {
+        byte[] compressed = Compression.compress(CHAT.getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> Compression.decode(Arrays.copyOf(compressed, compressed.length / 2)));
+    }
+
+    @Test
+    void compressedSegments_shouldArriveWholeThroughParser() throws PayloadException {
+        String message = CHAT.repeat(3);
+        List<ByteBuffer> segments = TransportLayer.segment(message, TransportLayer.SEGMENT_CAPACITY, true);
+        List<String> delivered = new ArrayList<>();
+        Receiver receiver = null;
+        for (int i = 0; i < segments.size(); i++) {
+            TCPHeader sent = new TCPHeader(10 + i, i == 0, i == segments.size() - 1, segments.get(i), 1);
+            ByteBuffer bytes = PacketParser.makeTCPHeader(sent);
+            bytes.rewind();
+            TCPHeader parsed = PacketParser.parseTCPHeader(PacketParser.bytes_to_bits(bytes), 1);
+            if (receiver == null) {
+                receiver = new Receiver(3, parsed, (Packet _) -> {}, (_, _) -> () -> {},
+                        (text, _) -> delivered.add(text), 0);
+                receiver.start();
+            } else {
+                receiver.receivePacket(parsed);
+            }
+        }
+
+        assertEquals(List.of(message), delivered);
+    }
+}
@@ -0,0 +1,193 @@
+package UnitTesting;
+
+import Model.Exceptions.PayloadException;
+import Model.Exceptions.RoutingException;
+import Model.Packet;
+import Model.PacketParser;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA.AddressingAgent;
+import NetworkLayer.DA_Header;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.DV_Header;
+import NetworkLayer.RoutingAgent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControlFrameTest {
+
+    private static ByteBuffer frame(AddressHeader header) throws PayloadException, RoutingException {
+        ByteBuffer made = PacketParser.maker(header);
+        ByteBuffer frame = ByteBuffer.allocate(AddressHeader.FRAME_LENGTH);
+        frame.put(made);
+        frame.flip();
+        return frame;
+    }
+
+    @Test
+    void baseControlFrame_shouldRoundTrip() throws Exception {
+        DV_Header sent = new DV_Header(new int[]{1, 2, 5}, new int[]{0, 1, 2}, new int[]{1, 2, 2});
+        sent.setKeepalive(new DA_Header(0, false, 0, 1));
+        AddressHeader frame = new AddressHeader(AddressHeader.CONTROL_PROTOCOL, 1, sent.getPayloadLength(),
+                1, 7, 0, 3, sent);
+
+        AddressHeader received = PacketParser.parser_long(frame(frame));
+
+        assertEquals(AddressHeader.CONTROL_PROTOCOL, received.getNext_Protocol());
+        DV_Header dv = (DV_Header) received.getUpperHeader();
+        assertEquals(1, dv.getKeepalive().getAddress());
+        assertFalse(dv.getKeepalive().isConflict());
+        assertEquals(sent.getDistanceVector(), dv.getDistanceVector());
+        assertEquals(sent.getNextHops(), dv.getNextHops());
+    }
+
+    @Test
+    void extendedControlFrame_shouldCarryKeepaliveInFirstSegment() throws Exception {
+        Map<Integer, Integer> costs = new HashMap<>();
+        Map<Integer, Integer> nextHops = new HashMap<>();
+        for (int destination = 20; destination < 120; destination += 2) {
+            costs.put(destination, 3);
+            nextHops.put(destination, destination + 1);
+        }
+        DV_Header dv = new DV_Header(costs.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                costs.values().stream().mapToInt(Integer::intValue).toArray(),
+                costs.keySet().stream().mapToInt(nextHops::get).toArray());
+
+        List<DV_Header> segments = RoutingAgent.compactSegments(dv, new DA_Header(DA_Header.EXTENDED_PROTOCOL,
+                false, 0, 200));
+        assertTrue(segments.size() > 1);
+        assertTrue(segments.stream().skip(1).allMatch(segment -> segment.getKeepalive() == null));
+
+        DV_Header first = segments.getFirst();
+        assertTrue(first.getCompactPayloadLength() <= RoutingAgent.MAX_EXTENDED_PAYLOAD);
+        AddressHeader received = PacketParser.parser_long(frame(new AddressHeader(AddressHeader.CONTROL_PROTOCOL,
+                1, first.getCompactPayloadLength(), 200, 7, 0, 5, first, true)));
+        DV_Header receivedDv = (DV_Header) received.getUpperHeader();
+        assertEquals(200, receivedDv.getKeepalive().getAddress());
+        assertTrue(receivedDv.getKeepalive().isExtended());
+        assertEquals(first.getDistanceVector(), receivedDv.getDistanceVector());
+        assertEquals(first.getLast(), receivedDv.getLast());
+    }
+
+    @Test
+    void keepaliveWithOurAddress_shouldBeAnsweredWithConflict() throws Exception {
+        List<DA_Header> sent = new ArrayList<>();
+        List<Integer> seen = new ArrayList<>();
+        AddressingAgent agent = new AddressingAgent(() -> 3, (Packet header) -> sent.add((DA_Header) header),
+                () -> 0, seen::add, _ -> {});
+        agent.setPiggybacked(true);
+
+        agent.receiveKeepalive(new DA_Header(0, false, 0, 5));
+        assertTrue(sent.isEmpty()); // Not flooded further
+
+        agent.receiveKeepalive(new DA_Header(0, false, 0, 3));
+        assertEquals(1, sent.size());
+        assertTrue(sent.getFirst().isConflict());
+        assertEquals(3, sent.getFirst().getAddress());
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    void piggybackedAgent_shouldRarelyFloodHellos() throws Exception {
+        List<DA_Header> sent = new ArrayList<>();
+        long[] now = {0};
+        AddressingAgent agent = new AddressingAgent(() -> 3, (Packet header) -> sent.add((DA_Header) header),
+                () -> now[0], _ -> {}, _ -> {});
+        agent.setPiggybacked(true);
+
+        for (int second = 0; second < AddressingAgent.PIGGYBACKED_HELLO_INTERVAL * 2; second += 30) {
+            now[0] = second * 1000L;
+            agent.sendHello();
+        }
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void deployedNeighbour_shouldOnlyGetPlainFrames() throws Exception {
+        RoutingAgent agent = new RoutingAgent(new DistanceVector(() -> 1), () -> 1, _ -> {}, false,
+                () -> new DA_Header(0, false, 0, 1));
+        assertEquals(2, agent.makeUpdatePackets().getFirst().getNext_Protocol()); // No neighbour known yet
+
+        DV_Header upgraded = new DV_Header(new int[]{2}, new int[]{0});
+        agent.handleAdvertisement(new AddressHeader(2, RoutingAgent.PLAIN_TTL, upgraded.getPayloadLength(), 2, 7,
+                0, 1, upgraded));
+        assertEquals(AddressHeader.CONTROL_PROTOCOL, agent.makeUpdatePackets().getFirst().getNext_Protocol());
+
+        DV_Header deployed = new DV_Header(new int[]{3}, new int[]{0});
+        agent.handleAdvertisement(new AddressHeader(2, 1, deployed.getPayloadLength(), 3, 7, 0, 1, deployed));
+        List<AddressHeader> frames = agent.makeUpdatePackets();
+        assertEquals(1, frames.size());
+        AddressHeader plain = frames.getFirst();
+        assertEquals(2, plain.getNext_Protocol());
+        assertEquals(RoutingAgent.PLAIN_TTL, plain.getTTL());
+        DV_Header sent = (DV_Header) plain.getUpperHeader();
+        assertFalse(sent.hasNextHops());
+        assertNull(sent.getKeepalive());
+        assertEquals(Map.of(1, 0, 2, 1, 3, 1), sent.getDistanceVector());
+    }
+
+    @Test
+    void deployedNeighbour_shouldBringHellosBack() throws Exception {
+        RoutingAgent routing = new RoutingAgent(new DistanceVector(() -> 1), () -> 1, _ -> {}, false,
+                () -> new DA_Header(0, false, 0, 1));
+        List<DA_Header> sent = new ArrayList<>();
+        long[] now = {0};
+        AddressingAgent agent = new AddressingAgent(() -> 1, (Packet header) -> sent.add((DA_Header) header),
+                () -> now[0], _ -> {}, _ -> {});
+        agent.setPiggybacked(routing::carriesKeepalive);
+
+        DV_Header upgraded = new DV_Header(new int[]{2}, new int[]{0});
+        routing.handleAdvertisement(new AddressHeader(2, RoutingAgent.PLAIN_TTL, upgraded.getPayloadLength(), 2,
+                7, 0, 1, upgraded));
+        assertTrue(routing.carriesKeepalive());
+        agent.sendHello();
+        now[0] = 30_000;
+        agent.sendHello();
+        assertEquals(1, sent.size()); // Piggybacked
+
+        DV_Header deployed = new DV_Header(new int[]{3}, new int[]{0});
+        routing.handleAdvertisement(new AddressHeader(2, 1, deployed.getPayloadLength(), 3, 7, 0, 1, deployed));
+        assertFalse(routing.carriesKeepalive());
+        now[0] = 60_000;
+        agent.sendHello();
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void plainEngine_shouldNotCarryKeepalive() throws Exception {
+        RoutingAgent agent = new RoutingAgent(new DistanceVector(() -> 1, false), () -> 1, _ -> {}, false,
+                () -> new DA_Header(0, false, 0, 1));
+        DV_Header upgraded = new DV_Header(new int[]{2}, new int[]{0});
+        agent.handleAdvertisement(new AddressHeader(2, RoutingAgent.PLAIN_TTL, upgraded.getPayloadLength(), 2, 7,
+                0, 1, upgraded));
+
+        assertFalse(agent.carriesKeepalive()); // A control frame needs next hops
+        AddressHeader frame = agent.makeUpdatePackets().getFirst();
+        assertEquals(2, frame.getNext_Protocol());
+        assertNull(((DV_Header) frame.getUpperHeader()).getKeepalive());
+    }
+
+    @Test
+    void silentNeighbour_shouldFailOverItsRoutes() {
+        DistanceVector dv = new DistanceVector(() -> 1);
+        dv.handleUpdate(2, Map.of(2, 0, 5, 1), Map.of(2, 2, 5, 5));
+        dv.handleUpdate(3, Map.of(3, 0, 5, 2), Map.of(3, 3, 5, 4));
+        assertEquals(2, dv.getRoute(5).nextHop);
+
+        for (int second = 0; second < DistanceVector.NEIGHBOUR_TIMEOUT - 1; second++) {
+            dv.tick();
+            if (second % DistanceVector.DV_UPDATE_INTERVAL == 0) {
+                dv.handleUpdate(3, Map.of(3, 0, 5, 2), Map.of(3, 3, 5, 4)); // Only 3 keeps talking
+            }
+        }
+        assertEquals(2, dv.getRoute(5).nextHop); // Routes do not age on their own
+
+        assertTrue(dv.tick());
+        assertNull(dv.getRoute(2));
+        assertEquals(3, dv.getRoute(5).nextHop);
+        assertTrue(dv.getRoute(5).isFailover());
+    }
+}
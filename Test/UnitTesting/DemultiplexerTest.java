@@ -0,0 +1,144 @@
+package UnitTesting;
+
+import TransportLayer.Connection;
+import TransportLayer.Demultiplexer;
+import TransportLayer.Demultiplexer.Direction;
+import TransportLayer.Receiver;
+import TransportLayer.TCPHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemultiplexerTest {
+
+    Demultiplexer demux;
+
+    @BeforeEach
+    void setUp() {
+        demux = new Demultiplexer();
+    }
+
+    private static Connection connection(Integer... peers) {
+        return new Connection() {
+            @Override
+            public boolean receivePacket(TCPHeader packet) {
+                return true;
+            }
+
+            @Override
+            public Integer getPeer() {
+                return peers[0];
+            }
+
+            @Override
+            public Set<Integer> getPeers() {
+                return Set.of(peers);
+            }
+        };
+    }
+
+    private static TCPHeader data(int seq) {
+        return new TCPHeader(seq, false, false, false, "x", 1, 0);
+    }
+
+    private static TCPHeader ack(int seq) {
+        return new TCPHeader(seq, true, false, 0, 0);
+    }
+
+    @Test
+    void find_shouldRouteAcknowledgmentsToTheSenderOfTheirRange() {
+        Connection first = connection(3);
+        Connection second = connection(3);
+        demux.open(first, Direction.OUTBOUND, 1, 10);
+        demux.open(second, Direction.OUTBOUND, 11, 15);
+
+        assertEquals(List.of(first), demux.find(3, ack(10)));
+        assertEquals(List.of(second), demux.find(3, ack(11)));
+        assertEquals(List.of(), demux.find(3, ack(16)));
+        assertEquals(List.of(), demux.find(5, ack(10))); // Other peer
+        assertEquals(List.of(), demux.find(3, data(10))); // Other direction, no receiver around
+    }
+
+    @Test
+    void find_shouldRouteToEveryPeerOfABroadcast() {
+        Connection broadcast = connection(3, 5);
+        demux.open(broadcast, Direction.OUTBOUND, 4, 6);
+
+        assertEquals(List.of(broadcast), demux.find(3, ack(5)));
+        assertEquals(List.of(broadcast), demux.find(5, ack(5)));
+        assertEquals(List.of(), demux.find(6, ack(5)));
+    }
+
+    @Test
+    void find_shouldOfferUnseenPacketsToTheNearestReceiversFirst() {
+        Connection near = connection(3);
+        Connection far = connection(3);
+        demux.open(far, Direction.INBOUND, 15, 15);
+        demux.open(near, Direction.INBOUND, 20, 20);
+
+        assertEquals(List.of(near, far), demux.find(3, data(18)));
+        assertEquals(List.of(near), demux.find(3, data(20 + Receiver.RECEIVE_WINDOW - 1)));
+        assertEquals(List.of(), demux.find(3, data(20 + Receiver.RECEIVE_WINDOW)));
+
+        demux.claim(far, 3, Direction.INBOUND, 18); // It accepted the packet
+        assertEquals(List.of(far), demux.find(3, data(18)));
+    }
+
+    @Test
+    void close_shouldReleaseEveryClaim() {
+        Connection receiver = connection(3);
+        demux.open(receiver, Direction.INBOUND, 7, 7);
+        demux.claim(receiver, 3, Direction.INBOUND, 8);
+
+        assertTrue(demux.close(receiver));
+        assertFalse(demux.close(receiver));
+        demux.claim(receiver, 3, Direction.INBOUND, 9); // Late, after the connection ended
+
+        assertEquals(List.of(), demux.find(3, data(8)));
+        assertEquals(List.of(), demux.find(3, data(9)));
+        assertEquals(0, demux.size());
+    }
+
+    @Test
+    void claim_shouldTakeTheNumberFromTheOwnerBefore() {
+        Connection old = connection(3);
+        Connection fresh = connection(3);
+        demux.open(old, Direction.INBOUND, 5, 5);
+        demux.open(fresh, Direction.INBOUND, 5, 5); // The number came around for a new message
+
+        demux.close(old);
+
+        assertEquals(List.of(fresh), demux.find(3, data(5)));
+    }
+
+    @Test
+    void concurrentOpenAndClose_shouldLeaveNothingBehind() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int peer = thread;
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    Connection connection = connection(peer);
+                    demux.open(connection, Direction.OUTBOUND, i, i + 3);
+                    assertEquals(List.of(connection), demux.find(peer, ack(i + 3)));
+                    assertTrue(demux.close(connection));
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+
+        assertEquals(0, demux.size());
+    }
+}
@@ -0,0 +1,74 @@
+package UnitTesting;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceVectorTest {
+
+    DistanceVector distanceVector;
+
+    @BeforeEach
+    void setUp() {
+        distanceVector = new DistanceVector(() -> 1);
+        // Neighbours 2 and 3 both reach 5, through 2 it is cheaper
+        distanceVector.handleUpdate(2, Map.of(2, 0, 5, 1), Map.of(2, 2, 5, 5));
+        distanceVector.handleUpdate(3, Map.of(3, 0, 5, 2), Map.of(3, 3, 5, 4));
+    }
+
+    @Test
+    void getNextHops_shouldKeepAlternates() {
+        assertEquals(List.of(2, 3), distanceVector.getNextHops(5));
+        assertEquals(2, distanceVector.getRoute(5).nextHop);
+    }
+
+    @Test
+    void removeRoute_shouldFailOverToAlternate() {
+        distanceVector.removeRoute(2);
+
+        RouteEntry route = distanceVector.getRoute(5);
+        assertNotNull(route);
+        assertEquals(3, route.nextHop);
+        assertTrue(route.isFailover());
+        assertFalse(distanceVector.isHeldDown(5));
+        assertEquals(1, distanceVector.getMetrics().getFailovers());
+
+        assertEquals(3, distanceVector.selectNextHop(5));
+        assertEquals(1, distanceVector.getMetrics().getPacketsSaved());
+    }
+
+    @Test
+    void handleUpdate_shouldFailOverWhenPrimaryPoisons() {
+        assertTrue(distanceVector.handleUpdate(2, Map.of(2, 0, 5, DistanceVector.INFINITY), Map.of(2, 2, 5, 2)));
+        assertEquals(3, distanceVector.getRoute(5).nextHop);
+    }
+
+    @Test
+    void failover_shouldNotUseAlternateThatIsFurtherAway() {
+        // 4 is further from 5 than this node was, it may route through us
+        distanceVector.handleUpdate(4, Map.of(4, 0, 5, 5), Map.of(4, 4, 5, 3));
+        distanceVector.removeRoute(2);
+        distanceVector.removeRoute(3);
+
+        assertNull(distanceVector.getRoute(5));
+        assertTrue(distanceVector.isHeldDown(5));
+    }
+
+    @Test
+    void selectNextHop_shouldSpreadOverEqualCostNextHops() {
+        distanceVector.handleUpdate(4, Map.of(4, 0, 5, 1), Map.of(4, 4, 5, 5));
+        distanceVector.setLoadBalancing(true);
+
+        int first = distanceVector.selectNextHop(5);
+        int second = distanceVector.selectNextHop(5);
+        assertNotEquals(first, second);
+        assertTrue(List.of(2, 4).containsAll(List.of(first, second)));
+        assertEquals(-1, distanceVector.selectNextHop(9));
+    }
+}
@@ -0,0 +1,154 @@
+package UnitTesting;
+
+import Model.Exceptions.PayloadException;
+import Model.Exceptions.RoutingException;
+import Model.PacketParser;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA_Header;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.DV_Header;
+import NetworkLayer.LS.LinkState;
+import NetworkLayer.LSA_Header;
+import NetworkLayer.RoutingAgent;
+import Simulation.Simulation;
+import Simulation.Topology;
+import TransportLayer.TCPHeader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtendedFormatTest {
+
+    private static ByteBuffer frame(AddressHeader header) throws PayloadException, RoutingException {
+        ByteBuffer made = PacketParser.maker(header);
+        ByteBuffer frame = ByteBuffer.allocate(AddressHeader.FRAME_LENGTH);
+        frame.put(made);
+        frame.flip();
+        return frame;
+    }
+
+    @Test
+    void extendedTcpFrame_shouldRoundTrip() throws Exception {
+        TCPHeader tcp = new TCPHeader(5, true, false, false, "hello there", 11, 130);
+        AddressHeader sent = new AddressHeader(0, 9, 15, 200, 130, 64, 0, tcp, true);
+
+        AddressHeader received = PacketParser.parser_long(frame(sent));
+
+        assertTrue(received.isExtended());
+        assertEquals(0, received.getNext_Protocol());
+        assertEquals(9, received.getTTL());
+        assertEquals(200, received.getSource());
+        assertEquals(130, received.getDestination());
+        assertEquals(64, received.getNext_Hop());
+        TCPHeader receivedTcp = (TCPHeader) received.getUpperHeader();
+        assertEquals("hello there", receivedTcp.getMessage());
+        assertEquals(5, receivedTcp.getSequence());
+    }
+
+    @Test
+    void extendedDaFrame_shouldRoundTrip() throws Exception {
+        DA_Header received = PacketParser.parser_short(
+                PacketParser.maker_short(new DA_Header(DA_Header.EXTENDED_PROTOCOL, true, 9, 201)));
+
+        assertTrue(received.isExtended());
+        assertTrue(received.isConflict());
+        assertEquals(9, received.getSequence());
+        assertEquals(201, received.getAddress());
+    }
+
+    @Test
+    void compactDv_shouldRoundTripWithEscapes() throws Exception {
+        int[] destinations = {20, 21, 22, 60, 61, 180};
+        int[] costs = {0, 1, 2, 3, 8, 4};
+        int[] nextHops = {20, 21, 21, 61, 61, 21};
+        DV_Header sent = new DV_Header(destinations, costs, nextHops, 16, 199);
+        AddressHeader frame = new AddressHeader(3, 1, sent.getCompactPayloadLength(), 20, 7, 0, 42, sent, true);
+
+        AddressHeader received = PacketParser.parser_long(frame(frame));
+
+        assertTrue(received.isExtended());
+        assertEquals(42, received.getID());
+        DV_Header dv = (DV_Header) received.getUpperHeader();
+        assertEquals(16, dv.getFirst());
+        assertEquals(199, dv.getLast());
+        assertEquals(sent.getDistanceVector(), dv.getDistanceVector());
+        assertEquals(sent.getNextHops(), dv.getNextHops());
+    }
+
+    @Test
+    void lsa_shouldRoundTripInBothFormats() throws Exception {
+        LSA_Header base = new LSA_Header(17, Set.of(0, 3, 15));
+        AddressHeader baseFrame = PacketParser.parser_long(frame(new AddressHeader(4, LinkState.FLOOD_TTL,
+                base.getPayloadLength(), 2, 7, 0, 42, base)));
+        LSA_Header received = (LSA_Header) baseFrame.getUpperHeader();
+        assertEquals(17, received.getSequence());
+        assertEquals(Set.of(0, 3, 15), received.getNeighbours());
+
+        LSA_Header extended = new LSA_Header(200, Set.of(3, 16, 130, 255));
+        assertFalse(extended.fitsBase(2));
+        AddressHeader extendedFrame = PacketParser.parser_long(frame(new AddressHeader(4, LinkState.FLOOD_TTL,
+                extended.getExtendedPayloadLength(), 140, 7, 0, 43, extended, true)));
+        received = (LSA_Header) extendedFrame.getUpperHeader();
+        assertEquals(140, extendedFrame.getSource());
+        assertEquals(200, received.getSequence());
+        assertEquals(Set.of(3, 16, 130, 255), received.getNeighbours());
+    }
+
+    @Test
+    void compactSegments_shouldCoverAllAddressesAndFitAFrame() {
+        int size = 200;
+        int[] destinations = new int[size];
+        int[] costs = new int[size];
+        int[] nextHops = new int[size];
+        for (int i = 0; i < size; i++) {
+            destinations[i] = i < 7 ? i : i + 1;
+            costs[i] = i % DistanceVector.INFINITY;
+            nextHops[i] = 10 + i % 6;
+        }
+        DV_Header table = new DV_Header(destinations, costs, nextHops);
+
+        List<DV_Header> segments = RoutingAgent.compactSegments(table);
+
+        int next = 0;
+        Map<Integer, Integer> merged = new HashMap<>();
+        for (DV_Header segment : segments) {
+            assertEquals(next, segment.getFirst());
+            assertTrue(segment.getCompactPayloadLength() <= RoutingAgent.MAX_EXTENDED_PAYLOAD);
+            for (int destination : segment.getDistanceVector().keySet()) {
+                assertTrue(destination >= segment.getFirst() && destination <= segment.getLast());
+            }
+            merged.putAll(segment.getDistanceVector());
+            next = segment.getLast() + 1;
+        }
+        assertEquals(AddressHeader.EXTENDED_ADDRESSES, next);
+        assertEquals(table.getDistanceVector(), merged);
+    }
+
+    @Test
+    void mixedNetwork_shouldConvergeWithBaseNodes() {
+        // Every other node only speaks the base format
+        Simulation simulation = new Simulation(Topology.grid(5, 3), DistanceVector::new, 0, 1, index -> index % 2 == 0);
+        simulation.start(5);
+        assertTrue(simulation.runUntilConverged(600) >= 0);
+        assertEquals(0, simulation.getLoopSeconds());
+    }
+
+    @Test
+    void extendedNetwork_shouldConvergeBeyondSixteenNodes() {
+        Simulation simulation = new Simulation(Topology.grid(8, 5), DistanceVector::new, 0, 1, _ -> true);
+        simulation.start(5);
+        assertTrue(simulation.runUntilConverged(900) >= 0);
+        assertEquals(0, simulation.getLoopSeconds());
+    }
+
+    @Test
+    void extendedLinkStateNetwork_shouldConvergeBeyondSixteenNodes() {
+        Simulation simulation = new Simulation(Topology.grid(8, 5), LinkState::new, 0, 1, _ -> true);
+        simulation.start(5);
+        assertTrue(simulation.runUntilConverged(900) >= 0); // Databases differ while the first floods spread
+        assertFalse(simulation.hasLoop());
+    }
+}
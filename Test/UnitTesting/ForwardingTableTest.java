@@ -0,0 +1,66 @@
+package UnitTesting;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.ForwardingTable;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForwardingTableTest {
+
+    DistanceVector dv;
+    ForwardingTable forwarding;
+
+    @BeforeEach
+    void setUp() {
+        dv = new DistanceVector(() -> 1);
+        forwarding = new ForwardingTable(dv, false);
+    }
+
+    @Test
+    void unknownDestination_shouldHaveNoRoute() {
+        assertEquals(ForwardingTable.NO_ROUTE, forwarding.nextHop(4));
+        assertEquals(ForwardingTable.NO_ROUTE, forwarding.nextHop(-1));
+        assertEquals(ForwardingTable.NO_ROUTE, forwarding.nextHop(1000));
+    }
+
+    @Test
+    void lookup_shouldFollowRoutingTableAfterInvalidate() {
+        dv.handleUpdate(2, Map.of(2, 0, 4, 1), Map.of());
+        forwarding.invalidate();
+        assertEquals(2, forwarding.nextHop(4));
+
+        dv.updateRoute(4, new RouteEntry(3, 1));
+        assertEquals(2, forwarding.nextHop(4)); // Not invalidated yet, still the copy
+        forwarding.invalidate();
+        assertEquals(3, forwarding.nextHop(4));
+
+        dv.removeRoute(4);
+        forwarding.invalidate();
+        assertEquals(ForwardingTable.NO_ROUTE, forwarding.nextHop(4));
+    }
+
+    @Test
+    void drops_shouldBeCountedByReason() {
+        forwarding.recordDrop(ForwardingTable.Drop.NO_ROUTE);
+        forwarding.recordDrop(ForwardingTable.Drop.NO_ROUTE);
+        forwarding.recordDrop(ForwardingTable.Drop.TTL_EXPIRED);
+        assertEquals(2, forwarding.getDrops(ForwardingTable.Drop.NO_ROUTE));
+        assertEquals(1, forwarding.getDrops(ForwardingTable.Drop.TTL_EXPIRED));
+    }
+
+    @Test
+    void spreading_shouldAskEngineEveryPacket() {
+        dv.setLoadBalancing(true);
+        ForwardingTable spread = new ForwardingTable(dv, true);
+        dv.handleUpdate(2, Map.of(2, 0, 4, 1), Map.of());
+        dv.handleUpdate(3, Map.of(3, 0, 4, 1), Map.of());
+        int first = spread.nextHop(4);
+        int second = spread.nextHop(4);
+        assertNotEquals(first, second);
+    }
+}
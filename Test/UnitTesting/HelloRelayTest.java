@@ -0,0 +1,76 @@
+package UnitTesting;
+
+import Model.Packet;
+import NetworkLayer.DA.AddressingAgent;
+import NetworkLayer.DA_Header;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HelloRelayTest {
+
+    List<DA_Header> sent;
+    List<Runnable> scheduled;
+    AddressingAgent agent;
+
+    @BeforeEach
+    void setUp() {
+        sent = new ArrayList<>();
+        scheduled = new ArrayList<>();
+        agent = new AddressingAgent(() -> 3, (Packet header) -> sent.add((DA_Header) header), () -> 0,
+                _ -> {}, _ -> {});
+        agent.setRelaySuppression((task, delay) -> {
+            assertTrue(delay >= 0 && delay < AddressingAgent.MAX_RELAY_DELAY);
+            scheduled.add(task);
+        }, address -> address == 6 ? AddressingAgent.RELAY_SCOPE : 1);
+    }
+
+    private void runScheduled() {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    void hello_shouldBeRelayedAfterDelay() throws Exception {
+        agent.receive(new DA_Header(0, false, 10, 5));
+        assertTrue(sent.isEmpty());
+        runScheduled();
+        assertEquals(1, sent.size());
+        assertEquals(5, sent.getFirst().getAddress());
+    }
+
+    @Test
+    void overheardCopies_shouldSuppressRelay() throws Exception {
+        for (int copy = 0; copy < AddressingAgent.COPY_THRESHOLD; copy++) {
+            agent.receive(new DA_Header(0, false, 10, 5));
+        }
+        runScheduled();
+        assertTrue(sent.isEmpty());
+
+        // Fewer copies of another HELLO still get it relayed
+        agent.receive(new DA_Header(0, false, 11, 5));
+        agent.receive(new DA_Header(0, false, 11, 5));
+        runScheduled();
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void helloOutOfScope_shouldNotBeRelayed() throws Exception {
+        agent.receive(new DA_Header(0, false, 10, 6));
+        assertTrue(scheduled.isEmpty());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void conflict_shouldBeRelayedRightAway() throws Exception {
+        agent.receive(new DA_Header(0, true, 10, 5));
+        assertTrue(scheduled.isEmpty());
+        assertEquals(1, sent.size());
+        assertTrue(sent.getFirst().isConflict());
+    }
+}
@@ -0,0 +1,115 @@
+package UnitTesting;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LinkQuality;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkQualityTest {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(DistanceVector.DV_UPDATE_INTERVAL);
+
+    long[] now;
+    LinkQuality quality;
+
+    @BeforeEach
+    void setUp() {
+        now = new long[]{0};
+        quality = new LinkQuality(() -> now[0]);
+    }
+
+    /**
+     * Lets a neighbour send an update every interval for a full window, of which only some arrive.
+     */
+    private void receive(int neighbour, int everyNth) {
+        for (int update = 0; update < LinkQuality.WINDOW * 2; update++) {
+            now[0] = update * INTERVAL + 300; // A little jitter after the interval
+            if (update % everyNth == 0) quality.heard(neighbour);
+        }
+    }
+
+    @Test
+    void unknownAndCleanLinks_shouldCostOneHop() {
+        assertEquals(1, quality.getCost(4));
+        receive(3, 1);
+        assertEquals(1.0, quality.getDeliveryRatio(3));
+        assertEquals(1, quality.getCost(3));
+    }
+
+    @Test
+    void lossyLink_shouldCostItsEtx() {
+        receive(3, 2); // Half of the updates arrive, ETX 1 / (0.5 * 0.5)
+        assertEquals(0.5, quality.getDeliveryRatio(3), 0.1);
+        assertEquals(4, quality.getCost(3));
+    }
+
+    @Test
+    void framesOfOneUpdate_shouldCountOnce() {
+        for (int update = 0; update < LinkQuality.WINDOW * 2; update += 2) {
+            now[0] = update * INTERVAL;
+            quality.heard(3);
+            now[0] += TimeUnit.SECONDS.toMillis(1);
+            quality.heard(3); // Second segment of the same update
+        }
+        assertEquals(0.5, quality.getDeliveryRatio(3), 0.1);
+    }
+
+    @Test
+    void silentLink_shouldBecomeUnusable() {
+        receive(3, 1);
+        now[0] += LinkQuality.WINDOW * INTERVAL;
+        assertEquals(0.0, quality.getDeliveryRatio(3));
+        assertEquals(DistanceVector.INFINITY, quality.getCost(3));
+    }
+
+    @Test
+    void longerInterval_shouldNotReadAsLoss() {
+        quality.setInterval(LinkQuality.Source.UPDATE, 2 * DistanceVector.DV_UPDATE_INTERVAL); // Trickle
+        receive(3, 2); // Every second interval of the fixed rate, every interval of the timer
+        assertEquals(1.0, quality.getDeliveryRatio(3));
+        assertEquals(1, quality.getCost(3));
+    }
+
+    @Test
+    void hellos_shouldCountForNeighboursOnly() {
+        quality.setInterval(LinkQuality.Source.HELLO, DistanceVector.DV_UPDATE_INTERVAL / 2);
+        for (int hello = 0; hello < LinkQuality.WINDOW * 4; hello++) {
+            now[0] = hello * INTERVAL / 2 + 300;
+            if (hello % 2 == 0) quality.heard(3); // Every update arrives
+            if (hello % 2 == 1) quality.heard(3, LinkQuality.Source.HELLO); // Half of the HELLOs arrive
+            quality.heard(5, LinkQuality.Source.HELLO); // Flooded HELLO of a node that sends no updates
+        }
+        assertEquals((10 + 5) / 20.0, quality.getDeliveryRatio(3), 0.05);
+        assertEquals(1.0, quality.getDeliveryRatio(5));
+    }
+
+    @Test
+    void neighbourBack_shouldStartOver() {
+        receive(3, 1);
+        now[0] += 2 * LinkQuality.WINDOW * INTERVAL;
+        quality.heard(3);
+        assertEquals(1.0, quality.getDeliveryRatio(3));
+
+        quality.remove(3);
+        assertEquals(1.0, quality.getDeliveryRatio(3));
+    }
+
+    @Test
+    void distanceVector_shouldPreferCleanRouteOverLossyLink() {
+        receive(2, 2); // Lossy link to 2, ETX 4
+        receive(3, 1);
+        DistanceVector dv = new DistanceVector(() -> 1);
+        dv.setLinkCost(quality::getCost);
+
+        dv.handleUpdate(2, Map.of(2, 0), Map.of(2, 2));
+        dv.handleUpdate(3, Map.of(3, 0, 2, 1), Map.of(3, 3, 2, 2));
+        assertEquals(3, dv.getRoute(2).nextHop);
+        assertEquals(2, dv.getRoute(2).cost);
+        assertEquals(1, dv.getRoute(3).cost);
+    }
+}
@@ -0,0 +1,110 @@
+package UnitTesting;
+
+import NetworkLayer.AddressHeader;
+import NetworkLayer.LS.LinkState;
+import NetworkLayer.LSA_Header;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkStateTest {
+
+    LinkState linkState;
+
+    @BeforeEach
+    void setUp() {
+        linkState = new LinkState(() -> 1);
+    }
+
+    private static AddressHeader lsa(int origin, int ttl, int id, Set<Integer> neighbours) {
+        return lsa(origin, ttl, id, id, neighbours);
+    }
+
+    private static AddressHeader lsa(int origin, int ttl, int id, int sequence, Set<Integer> neighbours) {
+        return new AddressHeader(4, ttl, 3, origin, 7, 0, id, new LSA_Header(sequence, neighbours));
+    }
+
+    @Test
+    void handleAdvertisement_shouldRouteOverTwoWayLinksOnly() {
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 1, Set.of(1, 3))));
+        assertTrue(linkState.handleAdvertisement(lsa(3, LinkState.FLOOD_TTL - 1, 1, Set.of(2, 4))));
+
+        RouteEntry viaNeighbour = linkState.getRoute(3);
+        assertNotNull(viaNeighbour);
+        assertEquals(2, viaNeighbour.nextHop);
+        assertEquals(2, viaNeighbour.cost);
+        assertNull(linkState.getRoute(4)); // 4 never advertised the link back
+    }
+
+    @Test
+    void handleAdvertisement_shouldDropDuplicatesAndAcceptWrappedSequence() {
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 255, Set.of(1))));
+        assertFalse(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL - 1, 255, Set.of(1))));
+        assertFalse(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 200, Set.of(1))));
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 1, Set.of(1))));
+    }
+
+    @Test
+    void handleAdvertisement_shouldOrderBySequenceNumberNotBroadcastId() {
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 200, 5, Set.of(1))));
+        // Other floods of node 2 moved its broadcast ID on by more than half the range
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 90, 6, Set.of())));
+        assertNull(linkState.getRoute(2)); // No longer lists the link back
+        assertFalse(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 91, 5, Set.of(1))));
+        assertNull(linkState.getRoute(2));
+    }
+
+    @Test
+    void handleAdvertisement_shouldAcceptRestartedCountOnceOldAdvertisementIsStale() {
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 10, 100, Set.of())));
+        assertFalse(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 1, 0, Set.of(1))));
+
+        for (int second = 0; second < LinkState.RESTART_TIMEOUT; second++) {
+            linkState.tick();
+        }
+        assertTrue(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 2, 1, Set.of(1))));
+        assertNotNull(linkState.getRoute(2));
+        assertFalse(linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 3, 0, Set.of())));
+    }
+
+    @Test
+    void handleAdvertisement_shouldRouteToExtendedAddresses() {
+        linkState.handleAdvertisement(lsa(200, LinkState.FLOOD_TTL, 1, Set.of(1, 201)));
+        linkState.handleAdvertisement(lsa(201, LinkState.FLOOD_TTL - 1, 1, Set.of(200)));
+
+        assertEquals(200, linkState.getRoute(201).nextHop);
+        assertEquals(2, linkState.getRoute(201).cost);
+        assertEquals(Set.of(200), ((LSA_Header) linkState.makeAdvertisement()).getNeighbours());
+    }
+
+    @Test
+    void makeAdvertisement_shouldAdvanceSequenceNumber() {
+        for (int sequence = 0; sequence <= 0xFF; sequence++) {
+            assertEquals(sequence, ((LSA_Header) linkState.makeAdvertisement()).getSequence());
+        }
+        assertEquals(0, ((LSA_Header) linkState.makeAdvertisement()).getSequence());
+    }
+
+    @Test
+    void makeAdvertisement_shouldListNeighboursHeardDirectly() {
+        linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 1, Set.of()));
+        linkState.handleAdvertisement(lsa(5, LinkState.FLOOD_TTL - 1, 1, Set.of()));
+
+        assertEquals(Set.of(2), ((LSA_Header) linkState.makeAdvertisement()).getNeighbours());
+        assertTrue(linkState.tick()); // Neighbours changed, so it should advertise
+        assertFalse(linkState.tick());
+    }
+
+    @Test
+    void removeRoute_shouldForgetNeighbour() {
+        linkState.handleAdvertisement(lsa(2, LinkState.FLOOD_TTL, 1, Set.of(1)));
+        assertNotNull(linkState.getRoute(2));
+
+        linkState.removeRoute(2);
+        assertNull(linkState.getRoute(2));
+    }
+}
@@ -1,6 +1,7 @@
 package UnitTesting;
 
 import Model.Exceptions.RoutingException;
+import NetworkLayer.DV.DistanceVector;
 import NetworkLayer.NetworkLayer;
 import NetworkLayer.NetworkingDAO;
 import NetworkLayer.NetworkLayer.RouteEntry;
@@ -12,18 +13,27 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class NetworkLayerTest {
 
+    // Local address the tests do not use as destination or neighbour, the initial one is random
+    static final int LOCAL_ADDRESS = 10;
+
     NetworkLayer networkLayer;
 
     @BeforeEach
     void setUp() {
         networkLayer = NetworkLayer.getSingleton();
-        networkLayer.getAllRoutes().clear(); // Clear routing table before each test
+        NetworkingDAO.getInstance().setLocalAddress(LOCAL_ADDRESS);
+        clearRoutes(); // Clear routing table before each test
         NetworkingDAO.getInstance().updateNode(1); // or 2, depending on neighbor used in test
     }
 
     @AfterEach
     void tearDown() {
-        networkLayer.getAllRoutes().clear(); // Clean up after each test
+        clearRoutes(); // Clean up after each test
+    }
+
+    private void clearRoutes() {
+        // removeRoute keeps the self-route and puts the destination in hold-down, start from a fresh engine
+        ((DistanceVector) networkLayer.getRoutingEngine()).clear();
     }
 
     @Test
@@ -64,15 +74,39 @@ class NetworkLayerTest {
         assertNull(networkLayer.getRoute(3));
     }
 
+    @Test
+    void removeRoute_shouldHoldDownDestination() throws RoutingException {
+        networkLayer.updateRoute(4, 1, 2);
+        networkLayer.removeRoute(4);
+        networkLayer.handleDVUpdate(1, Map.of(4, 1)); // ignored during hold-down
+
+        assertNull(networkLayer.getRoute(4));
+        assertTrue(((DistanceVector) networkLayer.getRoutingEngine()).isHeldDown(4));
+    }
+
+    @Test
+    void updateRoute_shouldEndHoldDown() throws RoutingException {
+        networkLayer.updateRoute(4, 1, 2);
+        networkLayer.removeRoute(4);
+        networkLayer.updateRoute(4, 1, 3);
+
+        assertFalse(((DistanceVector) networkLayer.getRoutingEngine()).isHeldDown(4));
+        assertEquals(3, networkLayer.getRoute(4).cost);
+    }
+
     @Test
     void getAllRoutes_shouldReturnAllRoutes() {
         networkLayer.updateRoute(1, 2, 1);
         networkLayer.updateRoute(3, 2, 2);
 
         Map<Integer, RouteEntry> routes = networkLayer.getAllRoutes();
-        assertEquals(2, routes.size());
+        assertEquals(3, routes.size()); // the two routes and the self-route
+        assertTrue(routes.containsKey(LOCAL_ADDRESS));
         assertTrue(routes.containsKey(1));
         assertTrue(routes.containsKey(3));
+
+        routes.clear(); // the copy is detached from the routing table
+        assertNotNull(networkLayer.getRoute(1));
     }
 
     @Test
@@ -0,0 +1,67 @@
+package UnitTesting;
+
+import NetworkLayer.NodeRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeRegistryTest {
+
+    NodeRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new NodeRegistry();
+    }
+
+    @Test
+    void update_shouldTellNewNodes() {
+        assertTrue(registry.update(3));
+        assertFalse(registry.update(3)); // Only refreshed
+        assertTrue(registry.contains(3));
+        assertEquals(Set.of(3), registry.getNodes());
+    }
+
+    @Test
+    void getNodes_shouldBeAnImmutableSnapshot() {
+        registry.update(3);
+        Set<Integer> snapshot = registry.getNodes();
+        assertSame(snapshot, registry.getNodes()); // Not rebuilt without a change
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(4));
+
+        registry.update(4);
+        assertEquals(Set.of(3), snapshot); // Old snapshot stays as it was
+        assertEquals(Set.of(3, 4), registry.getNodes());
+    }
+
+    @Test
+    void decrement_shouldForgetNodesWhoseTtlRanOut() {
+        registry.update(3);
+        for (int i = 0; i < NodeRegistry.DEFAULT_TTL - 1; i++) {
+            assertTrue(registry.decrement().isEmpty());
+        }
+        registry.update(4);
+        assertEquals(List.of(3), registry.decrement());
+        assertEquals(Set.of(4), registry.getNodes());
+        assertFalse(registry.contains(3));
+    }
+
+    @Test
+    void decrement_shouldAllowUpdatesWhileIterating() throws InterruptedException {
+        for (int node = 0; node < 200; node++) registry.update(node);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) registry.update(i % 256);
+        });
+        writer.start();
+        for (int i = 0; i < NodeRegistry.DEFAULT_TTL / 2; i++) {
+            assertDoesNotThrow(registry::decrement);
+            for (int node : registry.getNodes()) assertTrue(node >= 0 && node < 256);
+        }
+        writer.join();
+        assertEquals(256, registry.getNodes().size());
+    }
+}
@@ -0,0 +1,152 @@
+package UnitTesting;
+
+import Model.Packet;
+import Model.PacketParser;
+import NetworkLayer.AODV.OnDemand;
+import NetworkLayer.AODV_Header;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OnDemandTest {
+
+    OnDemand onDemand;
+
+    @BeforeEach
+    void setUp() {
+        onDemand = new OnDemand(() -> 1);
+    }
+
+    private static AddressHeader message(int sender, AODV_Header message) {
+        return new AddressHeader(AddressHeader.ON_DEMAND_PROTOCOL, 1, message.getPayloadLength(), sender,
+                message.getDestination(), message.getDestination() == 7 ? 0 : message.getDestination(),
+                0, message);
+    }
+
+    private static AODV_Header only(List<Packet> messages) {
+        assertEquals(1, messages.size());
+        return (AODV_Header) messages.getFirst();
+    }
+
+    @Test
+    void requestRoute_shouldFloodOnceUntilRetry() {
+        assertTrue(onDemand.requestRoute(5));
+        assertFalse(onDemand.requestRoute(5)); // Already looking
+        AODV_Header request = only(onDemand.takeMessages());
+        assertFalse(request.isReply());
+        assertEquals(1, request.getOriginator());
+        assertEquals(5, request.getTarget());
+        assertEquals(7, request.getDestination());
+
+        for (int second = 0; second < OnDemand.REQUEST_WAIT; second++) onDemand.tick();
+        assertNotEquals(request.getRequestId(), only(onDemand.takeMessages()).getRequestId());
+    }
+
+    @Test
+    void request_shouldBePassedOnOnceAndLeaveReverseRoute() {
+        AODV_Header request = new AODV_Header(false, 1, 4, 6, 9, 7);
+        assertTrue(onDemand.handleAdvertisement(message(2, request)));
+        AODV_Header passedOn = only(onDemand.takeMessages());
+        assertEquals(2, passedOn.getHops());
+        assertEquals(4, passedOn.getOriginator());
+
+        RouteEntry back = onDemand.getRoute(4);
+        assertEquals(2, back.nextHop);
+        assertEquals(2, back.cost);
+
+        onDemand.handleAdvertisement(message(3, request)); // Same request from another neighbour
+        assertTrue(onDemand.takeMessages().isEmpty());
+    }
+
+    @Test
+    void requestForUs_shouldBeAnsweredTowardsNeighbour() {
+        onDemand.handleAdvertisement(message(2, new AODV_Header(false, 2, 4, 1, 9, 7)));
+
+        AODV_Header reply = only(onDemand.takeMessages());
+        assertTrue(reply.isReply());
+        assertEquals(2, reply.getDestination());
+        assertEquals(0, reply.getHops());
+        assertEquals(9, reply.getRequestId());
+    }
+
+    @Test
+    void requestWithKnownTarget_shouldBeAnsweredInsteadOfPassedOn() {
+        onDemand.updateRoute(6, new RouteEntry(3, 2));
+        onDemand.handleAdvertisement(message(2, new AODV_Header(false, 0, 4, 6, 9, 7)));
+
+        AODV_Header reply = only(onDemand.takeMessages());
+        assertTrue(reply.isReply());
+        assertEquals(2, reply.getDestination());
+        assertEquals(2, reply.getHops());
+    }
+
+    @Test
+    void reply_shouldInstallRouteAndGoTowardsOriginator() {
+        onDemand.handleAdvertisement(message(2, new AODV_Header(false, 0, 4, 6, 9, 7)));
+        onDemand.takeMessages();
+
+        assertTrue(onDemand.handleAdvertisement(message(3, new AODV_Header(true, 1, 4, 6, 9, 1))));
+        AODV_Header forwarded = only(onDemand.takeMessages());
+        assertEquals(2, forwarded.getDestination());
+        assertEquals(2, forwarded.getHops());
+        assertEquals(3, onDemand.selectNextHop(6));
+        assertEquals(2, onDemand.getRoute(6).cost);
+    }
+
+    @Test
+    void overheardReply_shouldOnlyTeachNeighbour() {
+        onDemand.handleAdvertisement(message(3, new AODV_Header(true, 1, 4, 6, 9, 2)));
+
+        assertTrue(onDemand.takeMessages().isEmpty());
+        assertNull(onDemand.getRoute(6));
+        assertNotNull(onDemand.getRoute(3));
+    }
+
+    @Test
+    void unusedRoute_shouldExpire() {
+        onDemand.updateRoute(6, new RouteEntry(3, 2));
+        for (int second = 1; second < OnDemand.ACTIVE_ROUTE_TIMEOUT; second++) onDemand.tick();
+        assertEquals(3, onDemand.selectNextHop(6)); // Using it keeps it
+        for (int second = 1; second < OnDemand.ACTIVE_ROUTE_TIMEOUT; second++) onDemand.tick();
+        assertNotNull(onDemand.getRoute(6));
+
+        onDemand.tick();
+        assertNull(onDemand.getRoute(6));
+        assertNotNull(onDemand.getRoute(1));
+    }
+
+    @Test
+    void removeRoute_shouldDropRoutesThroughNeighbour() {
+        onDemand.updateRoute(3, new RouteEntry(3, 1));
+        onDemand.updateRoute(6, new RouteEntry(3, 2));
+        onDemand.updateRoute(5, new RouteEntry(2, 2));
+
+        onDemand.removeRoute(3);
+        assertNull(onDemand.getRoute(6));
+        assertNotNull(onDemand.getRoute(5));
+    }
+
+    @Test
+    void routeMessage_shouldRoundTrip() throws Exception {
+        AODV_Header sent = new AODV_Header(true, 5, 3, 6, 200, 2);
+        ByteBuffer frame = ByteBuffer.allocate(AddressHeader.FRAME_LENGTH);
+        frame.put(PacketParser.maker(message(1, sent)));
+        frame.flip();
+
+        AddressHeader received = PacketParser.parser_long(frame);
+        assertEquals(AddressHeader.ON_DEMAND_PROTOCOL, received.getNext_Protocol());
+        AODV_Header message = (AODV_Header) received.getUpperHeader();
+        assertTrue(message.isReply());
+        assertEquals(5, message.getHops());
+        assertEquals(3, message.getOriginator());
+        assertEquals(6, message.getTarget());
+        assertEquals(200, message.getRequestId());
+        assertEquals(2, message.getDestination());
+    }
+}
@@ -0,0 +1,194 @@
+package UnitTesting;
+
+import Model.Packet;
+import TransportLayer.Connection;
+import TransportLayer.Outbox;
+import TransportLayer.RttEstimator;
+import TransportLayer.Sender;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+
+    static final int ADDRESS = 9;
+
+    @TempDir
+    Path directory;
+
+    Path file;
+    List<TCPHeader> sent;
+    Connection.Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("outbox.bin");
+        sent = new ArrayList<>();
+        scheduler = (_, _) -> () -> {};
+    }
+
+    private static List<ByteBuffer> segments(int count) {
+        return TransportLayer.segment("part".repeat(count), 4);
+    }
+
+    private static TCPHeader ack(int seq) {
+        return new TCPHeader(seq, false, true, false, "", 0, 3);
+    }
+
+    private Sender sender(Outbox outbox, int packets) {
+        return sender(outbox, segments(packets));
+    }
+
+    private Sender sender(Outbox outbox, List<ByteBuffer> segments) {
+        Sender sender = new Sender(3, segments, (Packet header) -> sent.add((TCPHeader) header), scheduler,
+                new RttEstimator(() -> 0), outbox);
+        sender.start();
+        return sender;
+    }
+
+    @Test
+    void openMessage_shouldBePendingAfterReopening() throws IOException {
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            Outbox.Entry entry = outbox.append(3, 40, segments(3));
+            entry.acknowledge(41);
+        }
+
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            assertEquals(1, outbox.getPending().size());
+            Outbox.Entry entry = outbox.getPending().getFirst();
+            assertEquals(ADDRESS, entry.getSource());
+            assertEquals(3, entry.getDestination());
+            assertEquals(40, entry.getFirstSeq());
+            assertEquals(segments(3), entry.getSegments());
+            assertFalse(entry.isAcknowledged(40));
+            assertTrue(entry.isAcknowledged(41));
+            assertEquals(2, entry.getUnacknowledged());
+        }
+    }
+
+    @Test
+    void completeMessage_shouldNotBeResumed() throws IOException {
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            outbox.append(3, 40, segments(2)).complete();
+            outbox.append(5, 7, segments(1));
+            assertEquals(1, outbox.getOpen());
+        }
+
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            assertEquals(List.of(5), outbox.getPending().stream().map(Outbox.Entry::getDestination).toList());
+        }
+    }
+
+    @Test
+    void recordCutOffByRestart_shouldBeIgnored() throws IOException {
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            outbox.append(3, 40, segments(2));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0}), 8 + 4); // State of the first record, as before it counted
+        }
+
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            assertTrue(outbox.getPending().isEmpty());
+        }
+    }
+
+    @Test
+    void append_shouldStartOverWhenNothingIsOpenAndRefuseWhenFull() throws IOException {
+        try (Outbox outbox = new Outbox(file, 72, () -> ADDRESS)) { // Room for two records of two 4-byte segments
+            Outbox.Entry first = outbox.append(3, 1, segments(2));
+            Outbox.Entry second = outbox.append(3, 3, segments(2));
+            assertNotNull(second);
+            assertNull(outbox.append(3, 5, segments(2)));
+
+            first.complete();
+            assertNull(outbox.append(3, 5, segments(2))); // The second one is still open
+            second.complete();
+            assertNotNull(outbox.append(3, 5, segments(2)));
+        }
+    }
+
+    @Test
+    void interruptedSender_shouldResumeWithTheUnacknowledgedPackets() throws IOException {
+        int first;
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            Sender sender = sender(outbox, 4);
+            first = sent.getFirst().getSequence();
+            sender.receivePacket(ack(first));
+            sender.receivePacket(ack(first + 2));
+            sender.close();
+        }
+        sent.clear();
+
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            Outbox.Entry entry = outbox.getPending().getFirst();
+            Sender sender = new Sender(entry, (Packet header) -> sent.add((TCPHeader) header), scheduler,
+                    new RttEstimator(() -> 0));
+            sender.start();
+
+            assertEquals(List.of(first + 1, first + 3), sent.stream().map(TCPHeader::getSequence).toList());
+            sender.receivePacket(ack(first + 1));
+            sender.receivePacket(ack(first + 3));
+
+            assertTrue(sender.isDone());
+            assertTrue(entry.isComplete());
+            assertEquals(0, outbox.getOpen());
+        }
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            assertTrue(outbox.getPending().isEmpty());
+        }
+    }
+
+    @Test
+    void fileOpenInAnotherOutbox_shouldBeRefused() throws IOException {
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            outbox.append(3, 40, segments(1));
+            assertThrows(IOException.class, () -> new Outbox(file, 4096, () -> ADDRESS + 1));
+        }
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) { // Closing released the lock
+            assertEquals(1, outbox.getOpen());
+        }
+    }
+
+    @Test
+    void messageFromAnotherAddress_shouldBeSentAgainWithNewSequenceNumbers() throws IOException {
+        int first;
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS)) {
+            Sender sender = sender(outbox, 3);
+            first = sent.getFirst().getSequence();
+            sender.receivePacket(ack(first));
+            sender.close();
+        }
+        sent.clear();
+
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS + 1)) {
+            Outbox.Entry entry = outbox.getPending().getFirst();
+            assertEquals(ADDRESS, entry.getSource());
+            Sender sender = sender(outbox, entry.getSegments()); // As the TransportLayer does for another address
+            entry.complete();
+
+            assertNotEquals(first, sender.getFirstSeq());
+            assertEquals(sender.getFirstSeq(), sent.getFirst().getSequence());
+            assertEquals(segments(3).subList(0, sent.size()), sent.stream().map(TCPHeader::getPayload).toList());
+            assertEquals(1, outbox.getOpen());
+        }
+        try (Outbox outbox = new Outbox(file, 4096, () -> ADDRESS + 1)) {
+            Outbox.Entry entry = outbox.getPending().getFirst();
+            assertEquals(1, outbox.getPending().size());
+            assertEquals(ADDRESS + 1, entry.getSource());
+            assertEquals(segments(3), entry.getSegments());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package UnitTesting;
+
+import Model.Packet;
+import TransportLayer.Receiver;
+import TransportLayer.SequenceAllocator;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiverTest {
+
+    static final int SOURCE = 41;
+    static final int BACK_TO_BACK_SOURCE = 42; // Apart from SOURCE, whose numbers other tests leave used
+
+    private static TCPHeader data(int seq, boolean syn, boolean fin) {
+        return new TCPHeader(seq, syn, false, fin, "x", 1, 0);
+    }
+
+    @Test
+    void newReceiver_shouldHandleItsFirstPacketOnStart() {
+        List<Packet> acks = new ArrayList<>();
+        Receiver receiver = new Receiver(SOURCE, data(10, true, true), acks::add, (_, _) -> () -> {},
+                (_, _) -> {}, 0);
+        assertTrue(acks.isEmpty());
+
+        receiver.start();
+        assertEquals(1, acks.size());
+    }
+
+    @Test
+    void backToBackMessages_shouldEachReleaseOnlyTheirOwnNumbers() {
+        SequenceAllocator sequences = TransportLayer.getSingleton().getSequences();
+        List<String> delivered = new ArrayList<>();
+        Receiver first = new Receiver(BACK_TO_BACK_SOURCE, data(10, true, false), (Packet _) -> {},
+                (_, _) -> () -> {}, (message, _) -> delivered.add(message), 0);
+        Receiver second = new Receiver(BACK_TO_BACK_SOURCE, data(12, true, false), (Packet _) -> {},
+                (_, _) -> () -> {}, (message, _) -> delivered.add(message), 0);
+        first.start();
+        first.receivePacket(data(13, false, false)); // Of the second message, kept until the FIN of the first
+        second.start();
+        second.receivePacket(data(13, false, false));
+        first.receivePacket(data(11, false, true));
+        assertEquals(List.of("xx"), delivered);
+
+        first.receivePacket(new TCPHeader(11, false, true, true, "", 0, 0));
+
+        assertFalse(sequences.isUsed(BACK_TO_BACK_SOURCE, 10));
+        assertFalse(sequences.isUsed(BACK_TO_BACK_SOURCE, 11));
+        assertTrue(sequences.isUsed(BACK_TO_BACK_SOURCE, 12), "the second message still uses 12");
+        assertTrue(sequences.isUsed(BACK_TO_BACK_SOURCE, 13), "the second message still uses 13");
+
+        second.receivePacket(data(14, false, true));
+        assertEquals(List.of("xx", "xxx"), delivered);
+        second.receivePacket(new TCPHeader(14, false, true, true, "", 0, 0));
+
+        for (int seq = 10; seq <= 14; seq++) {
+            assertFalse(sequences.isUsed(BACK_TO_BACK_SOURCE, seq), "still used: " + seq);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package UnitTesting;
+
+import TransportLayer.RttEstimator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RttEstimatorTest {
+
+    RttEstimator rtt;
+
+    @BeforeEach
+    void setUp() {
+        rtt = new RttEstimator(() -> 0);
+    }
+
+    @Test
+    void unknownPeer_shouldUseInitialTimeout() {
+        assertNull(rtt.getEstimate(3));
+        assertEquals(TimeUnit.SECONDS.toMillis(RttEstimator.INITIAL_TIMEOUT), rtt.getTimeout(3, 0));
+    }
+
+    @Test
+    void firstSample_shouldSetSmoothedTimeAndHalfAsVariation() {
+        rtt.sample(3, 2000);
+
+        RttEstimator.Estimate estimate = rtt.getEstimate(3);
+        assertEquals(2000, estimate.smoothed());
+        assertEquals(1000, estimate.variation());
+        assertEquals(2000 + RttEstimator.VARIATION_FACTOR * 1000, estimate.timeout());
+    }
+
+    @Test
+    void laterSamples_shouldMoveEstimateByTheirGains() {
+        rtt.sample(3, 2000);
+        rtt.sample(3, 4000);
+
+        RttEstimator.Estimate estimate = rtt.getEstimate(3);
+        assertEquals(2000 + RttEstimator.GAIN * 2000, estimate.smoothed(), 0.001);
+        assertEquals(1000 + RttEstimator.VARIATION_GAIN * (2000 - 1000), estimate.variation(), 0.001);
+    }
+
+    @Test
+    void steadySamples_shouldShrinkTimeoutToMinimum() {
+        for (int i = 0; i < 100; i++) {
+            rtt.sample(3, 300);
+        }
+
+        assertEquals(TimeUnit.SECONDS.toMillis(RttEstimator.MIN_TIMEOUT), rtt.getTimeout(3, 0));
+    }
+
+    @Test
+    void retransmissions_shouldDoubleTimeoutUpToMaximum() {
+        for (int i = 0; i < 100; i++) {
+            rtt.sample(3, 2500);
+        }
+        long timeout = rtt.getTimeout(3, 0);
+
+        assertEquals(2 * timeout, rtt.getTimeout(3, 1));
+        assertEquals(4 * timeout, rtt.getTimeout(3, 2));
+        assertEquals(TimeUnit.SECONDS.toMillis(RttEstimator.MAX_TIMEOUT), rtt.getTimeout(3, 10));
+        assertEquals(TimeUnit.SECONDS.toMillis(RttEstimator.MAX_TIMEOUT), rtt.getTimeout(3, 100));
+    }
+
+    @Test
+    void peers_shouldHaveTheirOwnEstimates() {
+        rtt.sample(3, 2000);
+        rtt.sample(5, 8000);
+
+        assertEquals(2000, rtt.getEstimate(3).smoothed());
+        assertEquals(8000, rtt.getEstimate(5).smoothed());
+        assertTrue(rtt.toString().contains("3: srtt 2.0 s"));
+    }
+}
@@ -0,0 +1,88 @@
+package UnitTesting;
+
+import Model.Exceptions.PayloadException;
+import Model.Packet;
+import Model.PacketParser;
+import TransportLayer.Receiver;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentationTest {
+
+    static final String MIXED = "Hi Zoë, привет, 你好 👋🏽! ";
+
+    private static List<Integer> sizes(List<ByteBuffer> segments) {
+        return segments.stream().map(ByteBuffer::remaining).toList();
+    }
+
+    private static String decode(ByteBuffer segment) {
+        return StandardCharsets.UTF_8.decode(segment.duplicate()).toString();
+    }
+
+    @Test
+    void segment_shouldFillEveryFrameToCapacity() {
+        assertEquals(24, TransportLayer.SEGMENT_CAPACITY);
+        assertEquals(List.of(24, 24, 2), sizes(TransportLayer.segment("x".repeat(50))));
+        assertEquals(List.of(24), sizes(TransportLayer.segment("x".repeat(24))));
+    }
+
+    @Test
+    void segment_shouldNeverSplitCodePoint() {
+        assertEquals(List.of(23, 2), sizes(TransportLayer.segment("x" + "д".repeat(12))));
+        assertEquals(List.of(22, 4), sizes(TransportLayer.segment("xx" + "😀".repeat(6))));
+        assertEquals(List.of(21, 3), sizes(TransportLayer.segment("你".repeat(8), 22)));
+
+        StringBuilder joined = new StringBuilder();
+        for (ByteBuffer segment : TransportLayer.segment(MIXED.repeat(5), 22)) {
+            assertFalse(decode(segment).contains("�"), "split code point in " + decode(segment));
+            joined.append(decode(segment));
+        }
+        assertEquals(MIXED.repeat(5), joined.toString());
+    }
+
+    @Test
+    void segment_shouldSliceEncodedMessageWithoutCopying() {
+        List<ByteBuffer> segments = TransportLayer.segment("x".repeat(50));
+
+        assertSame(segments.get(0).array(), segments.get(2).array());
+        assertEquals(24, segments.get(1).arrayOffset());
+        assertEquals(0, segments.get(1).position());
+    }
+
+    @Test
+    void segment_shouldKeepEmptyMessageAndRejectTinyCapacity() {
+        assertEquals(List.of(0), sizes(TransportLayer.segment("")));
+        assertThrows(IllegalArgumentException.class, () -> TransportLayer.segment("x", 3));
+    }
+
+    @Test
+    void segments_shouldCountBytesAndArriveWholeThroughParser() throws PayloadException {
+        List<ByteBuffer> segments = TransportLayer.segment(MIXED.repeat(3));
+        List<String> delivered = new ArrayList<>();
+        Receiver receiver = null;
+        for (int i = 0; i < segments.size(); i++) {
+            TCPHeader sent = new TCPHeader(10 + i, i == 0, i == segments.size() - 1, segments.get(i), 1);
+            assertEquals(segments.get(i).remaining(), sent.getPayloadLength());
+            ByteBuffer bytes = PacketParser.makeTCPHeader(sent);
+            bytes.rewind();
+            TCPHeader parsed = PacketParser.parseTCPHeader(PacketParser.bytes_to_bits(bytes), 1);
+            if (receiver == null) {
+                receiver = new Receiver(3, parsed, (Packet _) -> {}, (_, _) -> () -> {},
+                        (message, _) -> delivered.add(message), 0);
+                receiver.start();
+            } else {
+                receiver.receivePacket(parsed);
+            }
+        }
+
+        assertEquals(List.of(MIXED.repeat(3)), delivered);
+    }
+}
@@ -0,0 +1,238 @@
+package UnitTesting;
+
+import Model.Exceptions.PayloadException;
+import Model.Packet;
+import Model.PacketParser;
+import TransportLayer.Connection;
+import TransportLayer.Receiver;
+import TransportLayer.RttEstimator;
+import TransportLayer.Sender;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SenderTest {
+
+    List<TCPHeader> sent;
+    List<Runnable> timers;
+    Connection.Scheduler scheduler;
+    long[] now;
+    RttEstimator rtt;
+
+    @BeforeEach
+    void setUp() {
+        sent = new ArrayList<>();
+        timers = new ArrayList<>();
+        now = new long[]{0};
+        rtt = new RttEstimator(() -> now[0]);
+        scheduler = (task, _) -> {
+            boolean[] cancelled = {false};
+            timers.add(() -> {
+                if (!cancelled[0]) task.run();
+            });
+            return () -> cancelled[0] = true;
+        };
+    }
+
+    private Sender sender(int packets) {
+        Sender sender = new Sender(3, TransportLayer.segment("part".repeat(packets), 4),
+                (Packet header) -> sent.add((TCPHeader) header), scheduler, rtt);
+        sender.start();
+        return sender;
+    }
+
+    private static TCPHeader ack(int seq) {
+        return new TCPHeader(seq, false, true, false, "", 0, 3);
+    }
+
+    private void expireTimers() {
+        List<Runnable> due = new ArrayList<>(timers);
+        timers.clear();
+        due.forEach(Runnable::run);
+    }
+
+    @Test
+    void sender_shouldStartWithInitialWindow() {
+        Sender sender = sender(10);
+        assertEquals(Sender.INITIAL_WINDOW, sent.size());
+        assertEquals(Sender.INITIAL_WINDOW, sender.getWindow());
+        assertTrue(sent.getFirst().isSYN());
+        assertEquals(sent.getFirst().getSequence() + 1, sent.get(1).getSequence());
+    }
+
+    @Test
+    void ack_shouldOpenWindowAndSendNextPackets() {
+        Sender sender = sender(10);
+        int first = sent.getFirst().getSequence();
+        sent.clear();
+
+        assertTrue(sender.receivePacket(ack(first)));
+        assertEquals(Sender.INITIAL_WINDOW + 1, sender.getWindow());
+        // One packet left the window and it grew by one, so two new packets go out
+        assertEquals(List.of(first + 2, first + 3), sent.stream().map(TCPHeader::getSequence).toList());
+    }
+
+    @Test
+    void window_shouldNeverPassMaxWindowFromFirstMissingPacket() {
+        Sender sender = sender(40);
+        int first = sent.getFirst().getSequence();
+        Set<Integer> acked = new HashSet<>();
+        for (int i = 0; i < sent.size(); i++) { // Everything that was sent arrives, except the first packet
+            int seq = sent.get(i).getSequence();
+            if (seq != first && acked.add(seq)) sender.receivePacket(ack(seq));
+        }
+
+        int highest = sent.stream().mapToInt(TCPHeader::getSequence).max().orElseThrow();
+        assertTrue(highest < first + Sender.MAX_WINDOW);
+    }
+
+    @Test
+    void timeout_shouldDropWindowToOneAndResendUnacknowledgedPackets() {
+        Sender sender = sender(10);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(ack(first + 1));
+        sent.clear();
+
+        expireTimers();
+        assertEquals(1, sender.getWindow());
+        assertTrue(sent.stream().allMatch(header -> header.getSequence() != first + 1));
+        assertTrue(sent.stream().anyMatch(header -> header.getSequence() == first));
+    }
+
+    @Test
+    void laterAcks_shouldResendLostPacketAndHalveWindow() {
+        Sender sender = sender(20);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(ack(first));
+        for (int seq = first + 2; seq < first + 2 + Sender.LATER_ACKS; seq++) {
+            sent.clear();
+            sender.receivePacket(ack(seq));
+        }
+
+        assertTrue(sent.stream().anyMatch(header -> header.getSequence() == first + 1));
+        assertTrue(sender.getWindow() > 1);
+    }
+
+    @Test
+    void receiver_shouldDeliverOutOfOrderPacketsOnceInOrder() {
+        List<String> delivered = new ArrayList<>();
+        List<Packet> acks = new ArrayList<>();
+        Receiver receiver = new Receiver(3, new TCPHeader(12, false, false, true, "c", 1, 1), acks::add,
+                scheduler, (message, _) -> delivered.add(message), 0);
+        receiver.start();
+        assertTrue(receiver.receivePacket(new TCPHeader(11, false, false, false, "b", 1, 1)));
+        assertTrue(delivered.isEmpty());
+
+        assertTrue(receiver.receivePacket(new TCPHeader(10, true, false, false, "a", 1, 1)));
+        assertEquals(List.of("abc"), delivered);
+        assertEquals(3, acks.size());
+        assertTrue(((TCPHeader) acks.getLast()).isFin()); // Tells the sender everything arrived
+
+        receiver.receivePacket(new TCPHeader(11, false, false, false, "b", 1, 1)); // Sent again
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    void receiver_shouldRejectPacketsPastTheWindow() {
+        Receiver receiver = new Receiver(3, new TCPHeader(10, true, false, false, "a", 1, 1), (Packet _) -> {},
+                scheduler, (_, _) -> {}, 0);
+        receiver.start();
+
+        assertTrue(receiver.receivePacket(new TCPHeader(10 + Receiver.RECEIVE_WINDOW, false, false, false, "x", 1, 1)));
+        assertFalse(receiver.receivePacket(new TCPHeader(11 + Receiver.RECEIVE_WINDOW, false, false, false, "x", 1, 1)));
+    }
+
+    @Test
+    void acks_shouldBeTimedExceptForResentPackets() {
+        Sender sender = sender(10);
+        int first = sent.getFirst().getSequence();
+        now[0] = 3000;
+        sender.receivePacket(ack(first));
+        assertEquals(3000, rtt.getEstimate(3).smoothed());
+
+        expireTimers(); // The second packet is sent again
+        now[0] = 60_000;
+        sender.receivePacket(ack(first + 1));
+        assertEquals(3000, rtt.getEstimate(3).smoothed());
+    }
+
+    @Test
+    void cumulativeAck_shouldClearEveryPacketUpToItInOnePass() {
+        Sender sender = sender(10);
+        int first = sent.getFirst().getSequence();
+        sent.clear();
+
+        sender.receivePacket(new TCPHeader(first + 1, true, false, 0, 3));
+        assertEquals(Sender.INITIAL_WINDOW + 2, sender.getWindow());
+        assertEquals(List.of(first + 2, first + 3, first + 4, first + 5),
+                sent.stream().map(TCPHeader::getSequence).toList());
+    }
+
+    @Test
+    void selectiveAck_shouldClearOnlyPacketsInBitmap() {
+        Sender sender = sender(10);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(new TCPHeader(first + 1, true, false, 0, 3)); // first + 2 .. first + 5 go out
+        sent.clear();
+
+        sender.receivePacket(new TCPHeader(first + 1, true, false, 0b1010, 3)); // first + 3 and first + 5
+        expireTimers();
+        assertEquals(List.of(first + 2, first + 4), sent.stream().map(TCPHeader::getSequence).sorted().distinct()
+                .filter(seq -> seq < first + 6).toList());
+    }
+
+    @Test
+    void selectiveAck_shouldCountEveryLaterPacketTowardsLoss() {
+        Sender sender = sender(10);
+        int first = sent.getFirst().getSequence();
+        sender.receivePacket(new TCPHeader(first + 1, true, false, 0, 3)); // first + 2 .. first + 5 go out
+        sent.clear();
+
+        sender.receivePacket(new TCPHeader(first + 1, true, false, 0b1110, 3)); // All but first + 2
+        assertTrue(sent.stream().anyMatch(header -> header.getSequence() == first + 2));
+    }
+
+    @Test
+    void receiver_shouldCoalesceAcksUntilDelayExpires() {
+        List<Packet> acks = new ArrayList<>();
+        Receiver receiver = new Receiver(3, new TCPHeader(10, true, false, false, "a", 1, 1), acks::add,
+                scheduler, (_, _) -> {}, 1000);
+        receiver.start();
+        receiver.receivePacket(new TCPHeader(11, false, false, false, "b", 1, 1));
+        receiver.receivePacket(new TCPHeader(13, false, false, true, "d", 1, 1));
+        assertTrue(acks.isEmpty());
+
+        expireTimers();
+        assertEquals(1, acks.size());
+        TCPHeader ack = (TCPHeader) acks.getFirst();
+        assertTrue(ack.isSYN()); // Cumulative
+        assertEquals(11, ack.getSequence());
+        assertEquals(0b10, ack.getSelective());
+
+        receiver.receivePacket(new TCPHeader(12, false, false, false, "c", 1, 1));
+        assertEquals(2, acks.size()); // The whole message arrived, acknowledged right away
+        assertTrue(((TCPHeader) acks.getLast()).isFin());
+        assertEquals(13, ((TCPHeader) acks.getLast()).getSequence());
+    }
+
+    @Test
+    void selectiveAck_shouldKeepBitmapThroughParser() throws PayloadException {
+        ByteBuffer bytes = PacketParser.makeTCPHeader(new TCPHeader(300, true, false, 0b10000101, 3));
+        bytes.rewind();
+
+        TCPHeader parsed = PacketParser.parseTCPHeader(PacketParser.bytes_to_bits(bytes), 3);
+        assertTrue(parsed.isAck());
+        assertTrue(parsed.isSYN());
+        assertEquals(300, parsed.getSequence());
+        assertEquals(0b10000101, parsed.getSelective());
+    }
+}
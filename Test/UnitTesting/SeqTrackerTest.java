@@ -0,0 +1,48 @@
+package UnitTesting;
+
+import NetworkLayer.DA.SeqTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeqTrackerTest {
+
+    SeqTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new SeqTracker(16, 120);
+    }
+
+    @Test
+    void mark_shouldDropDuplicatesPerAddress() {
+        assertTrue(tracker.mark(3, 200, 0));
+        assertFalse(tracker.mark(3, 200, 10));
+        assertTrue(tracker.mark(4, 200, 10)); // Other address, own set
+        assertTrue(tracker.mark(3, 63, 10)); // Neighbouring bits in other words
+        assertTrue(tracker.mark(3, 64, 10));
+        assertFalse(tracker.mark(3, 64, 11));
+    }
+
+    @Test
+    void mark_shouldForgetAfterExpiry() {
+        assertTrue(tracker.mark(3, 5, 100));
+        assertFalse(tracker.mark(3, 5, 219));
+        assertTrue(tracker.mark(3, 5, 220));
+        assertFalse(tracker.mark(3, 5, 221)); // Seen again from 220 on
+    }
+
+    @Test
+    void forget_shouldAcceptSequenceAgain() {
+        assertTrue(tracker.mark(3, 255, 0));
+        tracker.forget(3, 255);
+        assertTrue(tracker.mark(3, 255, 1));
+    }
+
+    @Test
+    void mark_shouldRejectAddressesOutOfRange() {
+        assertFalse(tracker.mark(16, 1, 0));
+        assertFalse(tracker.mark(-1, 1, 0));
+    }
+}
@@ -0,0 +1,119 @@
+package UnitTesting;
+
+import TransportLayer.SequenceAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceAllocatorTest {
+
+    static final int TOP = SequenceAllocator.SPACE - 1;
+
+    SequenceAllocator sequences;
+
+    @BeforeEach
+    void setUp() {
+        sequences = new SequenceAllocator();
+    }
+
+    @Test
+    void allocate_shouldHandOutContiguousRangesOneAfterAnother() {
+        assertEquals(1, sequences.allocate(3, 10));
+        assertEquals(11, sequences.allocate(3, 5));
+        assertEquals(1, sequences.allocate(5, 4)); // Other peer, other numbers
+        assertEquals(1, sequences.getRanges(3)); // Touching ranges are merged
+        assertTrue(sequences.isUsed(3, 15));
+        assertFalse(sequences.isUsed(3, 16));
+    }
+
+    @Test
+    void release_shouldSplitRangesAndNotReuseNumbersRightAway() {
+        sequences.allocate(3, 10);
+        sequences.allocate(3, 10);
+        sequences.release(3, 5, 3);
+
+        assertEquals(2, sequences.getRanges(3));
+        assertFalse(sequences.isUsed(3, 6));
+        assertTrue(sequences.isUsed(3, 8));
+        assertEquals(21, sequences.allocate(3, 2));
+    }
+
+    @Test
+    void markUsed_shouldMoveNextRangePastNumbersOfPeer() {
+        sequences.markUsed(3, 100);
+
+        assertEquals(101, sequences.allocate(3, 3));
+        sequences.markUsed(3, 50); // Older number, the next range stays ahead
+        assertEquals(104, sequences.allocate(3, 1));
+        assertTrue(sequences.isUsed(3, 50));
+    }
+
+    @Test
+    void allocate_shouldWrapAroundAtTopWithoutStraddlingIt() {
+        sequences.markUsed(3, SequenceAllocator.SPACE / 2); // Less than half the space ahead at a time
+        sequences.markUsed(3, TOP - 5);
+        sequences.release(3, 0, SequenceAllocator.SPACE);
+
+        assertEquals(TOP - 4, sequences.allocate(3, 5)); // Ends exactly at the top
+        assertEquals(1, sequences.allocate(3, 5));
+        sequences.markUsed(3, TOP - 2);
+        assertEquals(6, sequences.allocate(3, 3));
+    }
+
+    @Test
+    void allocate_shouldSkipRangesStillInUseAfterWrapping() {
+        sequences.allocate(3, 100); // 1 .. 100, still on its way
+        sequences.markUsed(3, SequenceAllocator.SPACE / 2 + 50);
+        sequences.markUsed(3, TOP - 1);
+
+        assertEquals(101, sequences.allocate(3, 10)); // 10 do not fit below the top, 1 .. 100 are in use
+    }
+
+    @Test
+    void allocate_shouldFailWhenNoRangeIsFree() {
+        sequences.allocate(3, SequenceAllocator.SPACE / 2);
+        sequences.allocate(3, SequenceAllocator.SPACE / 2 - 2);
+
+        assertThrows(IllegalStateException.class, () -> sequences.allocate(3, 2));
+    }
+
+    @Test
+    void allocate_shouldFindRangeFreeForEveryPeer() {
+        sequences.allocate(3, 10); // 1 .. 10
+        sequences.markUsed(5, 20);
+        sequences.allocate(6, 30); // 1 .. 30
+
+        int first = sequences.allocate(List.of(3, 5, 6), 4);
+
+        assertEquals(31, first); // After the peer furthest ahead
+        for (int peer : List.of(3, 5, 6)) {
+            assertTrue(sequences.isUsed(peer, 34));
+        }
+        assertEquals(35, sequences.allocate(5, 1));
+    }
+
+    @Test
+    void allocate_shouldSkipRangesAnyPeerStillUses() {
+        sequences.allocate(3, 10); // 1 .. 10
+        sequences.release(3, 1, 5);
+        sequences.allocate(5, 4); // 1 .. 4
+        sequences.markUsed(5, SequenceAllocator.SPACE / 2); // Both wrap to the bottom next
+        sequences.markUsed(5, TOP);
+        sequences.markUsed(3, SequenceAllocator.SPACE / 2);
+        sequences.markUsed(3, TOP);
+
+        assertEquals(11, sequences.allocate(List.of(3, 5), 2)); // 1 .. 4 are free for 3 only, 6 .. 10 for 5 only
+    }
+
+    @Test
+    void serialArithmetic_shouldCountAroundTop() {
+        assertEquals(3, SequenceAllocator.distance(TOP - 1, 1));
+        assertEquals(-3, SequenceAllocator.distance(1, TOP - 1));
+        assertTrue(SequenceAllocator.isAfter(1, TOP));
+        assertFalse(SequenceAllocator.isAfter(TOP, 1));
+        assertFalse(SequenceAllocator.isAfter(7, 7));
+    }
+}
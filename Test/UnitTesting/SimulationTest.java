@@ -0,0 +1,42 @@
+package UnitTesting;
+
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LS.LinkState;
+import Simulation.SimNode;
+import Simulation.Simulation;
+import Simulation.Topology;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationTest {
+
+    @Test
+    void distanceVector_shouldConvergeAndRecoverFromFailure() {
+        Simulation simulation = new Simulation(Topology.ring(6), DistanceVector::new, 0, 1);
+        simulation.start(5);
+        assertTrue(simulation.runUntilConverged(600) >= 0);
+
+        SimNode failed = simulation.pickFailure();
+        simulation.fail(failed);
+        assertFalse(simulation.converged()); // Routes to the failed node are still there
+        assertTrue(simulation.runUntilConverged(600) >= 0);
+        SimNode survivor = simulation.getNodes().get((failed.getIndex() + 3) % 6);
+        assertNull(survivor.getRoutingEngine().getRoute(failed.getAddress()));
+        assertEquals(0, simulation.getLoopSeconds());
+    }
+
+    @Test
+    void linkState_shouldConvergeOnGrid() {
+        Simulation simulation = new Simulation(Topology.grid(3, 3), LinkState::new, 0, 1);
+        simulation.start(5);
+        assertTrue(simulation.runUntilConverged(600) >= 0);
+    }
+
+    @Test
+    void pickFailure_shouldKeepLineConnected() {
+        Simulation simulation = new Simulation(Topology.line(5), DistanceVector::new, 0, 1);
+        int index = simulation.pickFailure().getIndex();
+        assertTrue(index == 0 || index == 4);
+    }
+}
@@ -0,0 +1,81 @@
+package UnitTesting;
+
+import Model.Packet;
+import TransportLayer.Receiver;
+import TransportLayer.Sender;
+import TransportLayer.TCPHeader;
+import TransportLayer.TransportLayer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransportSoakTest {
+
+    static final int MESSAGES = 100_000;
+    static final int WARM_UP = 10_000;
+    static final int SENDER = 5;
+    static final int RECEIVER = 3;
+    static final long MAX_HEAP_GROWTH = 8 * 1024 * 1024;
+
+    int delivered;
+
+    /**
+     * Sends one message from a sender to a receiver whose packets go straight to each other, on the timers
+     * of the transport layer.
+     */
+    private void sendMessage(List<ByteBuffer> segments) {
+        Deque<TCPHeader> toReceiver = new ArrayDeque<>();
+        Deque<TCPHeader> toSender = new ArrayDeque<>();
+        Sender sender = new Sender(RECEIVER, segments, (Packet packet) -> toReceiver.add((TCPHeader) packet),
+                TransportLayer.getSingleton().getScheduler(), TransportLayer.getSingleton().getRttEstimator());
+        sender.start();
+        Receiver receiver = null;
+        while (!toReceiver.isEmpty() || !toSender.isEmpty()) {
+            TCPHeader packet = toReceiver.poll();
+            if (packet != null && receiver == null) {
+                receiver = new Receiver(SENDER, packet, (Packet ack) -> toSender.add((TCPHeader) ack),
+                        TransportLayer.getSingleton().getScheduler(), (_, _) -> delivered++, 0);
+                receiver.start();
+            } else if (packet != null) {
+                receiver.receivePacket(packet);
+            }
+            packet = toSender.poll();
+            if (packet != null) {
+                sender.receivePacket(packet);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    void manyMessages_shouldLeaveThreadsTimersAndHeapFlat() {
+        List<ByteBuffer> segments = TransportLayer.segment("x".repeat(100));
+        for (int i = 0; i < WARM_UP; i++) {
+            sendMessage(segments);
+        }
+        int threads = Thread.activeCount();
+        long heap = usedHeap();
+
+        for (int i = WARM_UP; i < MESSAGES; i++) {
+            sendMessage(segments);
+        }
+
+        assertEquals(MESSAGES, delivered);
+        assertEquals(0, TransportLayer.getSingleton().getPendingTimers());
+        assertTrue(Thread.activeCount() <= threads, "threads: " + threads + " -> " + Thread.activeCount());
+        long growth = usedHeap() - heap;
+        assertTrue(growth < MAX_HEAP_GROWTH, "heap grew by " + growth + " bytes");
+    }
+}
@@ -0,0 +1,79 @@
+package UnitTesting;
+
+import NetworkLayer.TrickleTimer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrickleTimerTest {
+
+    private static final int MAX_INTERVAL = 64;
+
+    /**
+     * Ticks the timer for the given seconds and counts how often it fires.
+     */
+    private static int fires(TrickleTimer timer, int seconds) {
+        int fires = 0;
+        for (int second = 0; second < seconds; second++) {
+            if (timer.tick()) {
+                fires++;
+                timer.transmitted();
+            }
+        }
+        return fires;
+    }
+
+    @Test
+    void interval_shouldDoubleUpToMaximum() {
+        TrickleTimer timer = new TrickleTimer(MAX_INTERVAL, TrickleTimer.REDUNDANCY, Integer.MAX_VALUE, new Random(1));
+        assertEquals(TrickleTimer.MIN_INTERVAL, timer.getInterval());
+        // Intervals of 1, 2, 4, ..., 32 seconds, one transmission each
+        assertEquals(6, fires(timer, 63));
+        assertEquals(MAX_INTERVAL, timer.getInterval());
+        fires(timer, MAX_INTERVAL * 4);
+        assertEquals(MAX_INTERVAL, timer.getInterval());
+    }
+
+    @Test
+    void reset_shouldStartOverAtMinimum() {
+        TrickleTimer timer = new TrickleTimer(MAX_INTERVAL, TrickleTimer.REDUNDANCY, Integer.MAX_VALUE, new Random(1));
+        fires(timer, MAX_INTERVAL * 2);
+        timer.reset();
+        assertEquals(TrickleTimer.MIN_INTERVAL, timer.getInterval());
+        assertTrue(timer.tick());
+    }
+
+    @Test
+    void consistentNeighbours_shouldSuppressTransmission() {
+        TrickleTimer timer = new TrickleTimer(MAX_INTERVAL, TrickleTimer.REDUNDANCY, Integer.MAX_VALUE, new Random(1));
+        for (int second = 0; second < MAX_INTERVAL * 4; second++) {
+            for (int copy = 0; copy < TrickleTimer.REDUNDANCY; copy++) timer.heardConsistent();
+            assertFalse(timer.tick());
+        }
+    }
+
+    @Test
+    void longSilence_shouldFireAnyway() {
+        TrickleTimer timer = new TrickleTimer(MAX_INTERVAL, TrickleTimer.REDUNDANCY, MAX_INTERVAL, new Random(1));
+        int fires = 0;
+        for (int second = 0; second < MAX_INTERVAL * 4; second++) {
+            for (int copy = 0; copy < TrickleTimer.REDUNDANCY; copy++) timer.heardConsistent();
+            if (timer.tick()) {
+                fires++;
+                timer.transmitted();
+            }
+        }
+        // Suppressed every interval, but never silent for longer than maxSilence
+        assertEquals(4, fires);
+    }
+
+    @Test
+    void withoutRedundancy_shouldNeverSuppress() {
+        TrickleTimer timer = new TrickleTimer(MAX_INTERVAL, Integer.MAX_VALUE, Integer.MAX_VALUE, new Random(1));
+        fires(timer, 63);
+        for (int copy = 0; copy < 100; copy++) timer.heardConsistent();
+        assertEquals(4, fires(timer, MAX_INTERVAL * 4));
+    }
+}
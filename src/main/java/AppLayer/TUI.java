@@ -31,6 +31,7 @@ public class TUI implements Runnable {
         System.out.println("WHISPER: Send message to specific node");
         System.out.println("BROAD: Send message to all nodes in range");
         System.out.println("TOP: To see a short description of the network topology");
+        System.out.println("STATS: Shows the routing counters and round-trip times");
         System.out.println("HELP: Print the help menu again");
         System.out.println("QUIT: Quit the program");
     }
@@ -60,6 +61,7 @@ public class TUI implements Runnable {
         LinkLayer.getSingleton();
         DynamicAddressing.getSingleton();
         NetworkLayer.getSingleton();
+        TransportLayer.getSingleton().openOutbox();
 
         System.out.println("Welcome to the chat app interface");
         boolean running = true;
@@ -94,7 +96,7 @@ public class TUI implements Runnable {
 
                                 }else destination = Integer.parseInt(input.split(" ")[1]);
 
-                                if (!NetworkingDAO.getInstance().getReachableNodes().contains(destination)) {
+                                if (!NetworkingDAO.getInstance().isReachable(destination)) {
                                     System.out.println("Node not in range, choose another one please");
                                     destination = -1;
                                     continue;
@@ -121,6 +123,11 @@ public class TUI implements Runnable {
                 case "TOP":
                     printTopology();
                     break;
+                case "STATS":
+                    System.out.println(NetworkLayer.getSingleton().getRoutingEngine().getMetrics());
+                    System.out.println(NetworkLayer.getSingleton().getForwardingTable());
+                    System.out.println(TransportLayer.getSingleton().getRttEstimator());
+                    break;
                 case "HELP":
                     printMenu();
                     break;
@@ -2,14 +2,20 @@ package Model;
 
 import Model.Exceptions.PayloadException;
 import Model.Exceptions.RoutingException;
+import NetworkLayer.AODV_Header;
 import NetworkLayer.AddressHeader;
 import NetworkLayer.DA_Header;
 import NetworkLayer.DV_Header;
+import NetworkLayer.LSA_Header;
 import TransportLayer.TCPHeader;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /*
 https://stackoverflow.com/questions/10178980/how-to-convert-a-binary-string-to-a-base-10-integer-in-java
@@ -82,6 +88,9 @@ public class PacketParser {
         //Then process the 24 byte one with the native UTF8 byte thingy and pass it to the parseTCPHeader
         //parseTCPHeader(tcp_payload, destionation, Message as string)
         String entire_packet = bytes_to_bits(data_long);
+        if (bit_to_int(entire_packet.substring(0, 4)) == AddressHeader.EXTENDED_PROTOCOL) {
+            return parser_extended(entire_packet);
+        }
         String address = entire_packet.substring(0, 32); //
         if (address.startsWith("0000")) {
             String tcp_and_payload = entire_packet.substring(32);
@@ -90,12 +99,54 @@ public class PacketParser {
             return parseADHeader(address, tcpHeader);
         } else {
             int payload_length = bit_to_int(address.substring(8, 16));
-            String dv = entire_packet.substring(32, 32 + payload_length * 8);
-            DV_Header dvHeader = parseDVHeader(dv);
-            return parseADHeader(address, dvHeader);
+            String payload = entire_packet.substring(32, 32 + payload_length * 8);
+            Packet upperHeader = switch (bit_to_int(address.substring(0, 4))) {
+                case 3 -> parseDVNHHeader(payload);
+                case AddressHeader.CONTROL_PROTOCOL -> withKeepalive(payload, parseDVNHHeader(payload.substring(16)));
+                case 4 -> parseLSAHeader(payload);
+                case AddressHeader.ON_DEMAND_PROTOCOL -> parseAODVHeader(payload, bit_to_int(address.substring(20, 24)));
+                default -> parseDVHeader(payload);
+            };
+            return parseADHeader(address, upperHeader);
         }
     }
 
+    /**
+     * Parses a frame with an extended address header (next protocol {@value AddressHeader#EXTENDED_PROTOCOL}).
+     * The 48-bit header is followed by a TCP header, a compact DV header, an LSA or a route message, the upper header of
+     * any other next protocol is left empty so the network layer can ignore it.
+     *
+     * @param entire_packet The bits of the whole frame
+     * @return An extended {@link AddressHeader} with the parsed upper header
+     */
+    private static AddressHeader parser_extended(String entire_packet) throws PayloadException {
+        String address = entire_packet.substring(0, 48);
+        int payload_length = bit_to_int(address.substring(16, 24));
+        Packet upperHeader = switch (bit_to_int(address.substring(8, 12))) {
+            case 0 -> parseTCPHeader(entire_packet.substring(48), bit_to_int(address.substring(32, 40)));
+            case 3 -> parseCompactDVHeader(entire_packet.substring(48, 48 + payload_length * 8));
+            case AddressHeader.CONTROL_PROTOCOL -> withKeepalive(entire_packet.substring(48),
+                    parseCompactDVHeader(entire_packet.substring(64, 48 + payload_length * 8)));
+            case 4 -> parseExtendedLSAHeader(entire_packet.substring(48, 48 + payload_length * 8));
+            case AddressHeader.ON_DEMAND_PROTOCOL -> parseAODVHeader(entire_packet.substring(48),
+                    bit_to_int(address.substring(32, 40)));
+            default -> null;
+        };
+        return parseExtendedADHeader(address, upperHeader);
+    }
+
+    /**
+     * Parses the keepalive in the first 16 bits of a control frame payload and adds it to its DV header.
+     *
+     * @param payload The bits of the payload, starting with the keepalive
+     * @param dv      The DV header parsed from the rest of the payload
+     * @return The DV header with the keepalive
+     */
+    private static DV_Header withKeepalive(String payload, DV_Header dv) {
+        dv.setKeepalive(parseDAHeader(payload.substring(0, 16)));
+        return dv;
+    }
+
     /**
      * Parses a 16-bit (2 bytes) packet into a DA_Header object.
      * This method is used for short packets like acknowledgments.
@@ -123,7 +174,7 @@ public class PacketParser {
         if (address_header.getNext_Protocol() == 0) {
             TCPHeader tcp = (TCPHeader) address_header.getUpperHeader();
             int letterCount = tcp.getPayloadLength();
-            int totalSize = 8 + letterCount;
+            int totalSize = address_header.getHeaderLength() + 4 + letterCount;
             ByteBuffer packet = ByteBuffer.allocate(totalSize);
             ByteBuffer adHeader = makeADHeader(address_header); // returns ByteBuffer
             ByteBuffer tcpHeader = makeTCPHeader(tcp);   // returns ByteBuffer
@@ -137,12 +188,20 @@ public class PacketParser {
             packet.flip();
             return packet;
         } else {
-            DV_Header dv = (DV_Header) address_header.getUpperHeader();
-            int dvCount = dv.getDistanceVector().size();
-            int totalSize = 4 + dvCount;
-            ByteBuffer packet = ByteBuffer.allocate(totalSize);
             ByteBuffer adHeader = makeADHeader(address_header); // returns ByteBuffer
-            ByteBuffer dvHeader = makeDVHeader(dv);   // returns ByteBuffer
+            ByteBuffer dvHeader = switch (address_header.getNext_Protocol()) {
+                case 3 -> address_header.isExtended()
+                        ? makeCompactDVHeader((DV_Header) address_header.getUpperHeader())
+                        : makeDVNHHeader((DV_Header) address_header.getUpperHeader());
+                case AddressHeader.CONTROL_PROTOCOL -> makeControlHeader(address_header);
+                case 4 -> address_header.isExtended()
+                        ? makeExtendedLSAHeader((LSA_Header) address_header.getUpperHeader())
+                        : makeLSAHeader((LSA_Header) address_header.getUpperHeader());
+                case AddressHeader.ON_DEMAND_PROTOCOL -> makeAODVHeader((AODV_Header) address_header.getUpperHeader());
+                default -> makeDVHeader((DV_Header) address_header.getUpperHeader());
+            };
+            int totalSize = address_header.getHeaderLength() + dvHeader.remaining();
+            ByteBuffer packet = ByteBuffer.allocate(totalSize);
 
             adHeader.rewind(); // Make sure position is at 0
             dvHeader.rewind();
@@ -174,14 +233,17 @@ public class PacketParser {
      * This method encodes the sequence number (12 bits), acknowledgment number (12 bits),
      * ACK flag (1 bit), FIN flag (1 bit), and payload length (6 bits) into a 32-bit structure.
      * Note: The actual payload data associated with the TCP header is *not* included in the output ByteBuffer.
+     * An acknowledgment with one byte of payload carries its selective bitmap in that byte.
      *
      * @param tcp The {@link TCPHeader} object to serialize.
      * @return A ByteBuffer containing the 32-bit (4 bytes) binary representation of the TCP header fields.
      * The buffer is flipped and ready for reading.
      */
     public static ByteBuffer makeTCPHeader(TCPHeader tcp) throws PayloadException {
-        byte[] message_in_bytes = tcp.getMessage().getBytes(StandardCharsets.UTF_8);
-        int totalSize = 4 + message_in_bytes.length; // 4 bytes for the 32-bit header
+        ByteBuffer message_in_bytes = tcp.isAck() && tcp.getPayloadLength() == 1
+                ? ByteBuffer.wrap(new byte[]{(byte) tcp.getSelective()})
+                : tcp.getPayload();
+        int totalSize = 4 + message_in_bytes.remaining(); // 4 bytes for the 32-bit header
         ByteBuffer buffer = ByteBuffer.allocate(totalSize);
         String bit_buffer = int_to_bit(tcp.getSequence(), 23) + int_to_bit(tcp.isSYN() ? 1 : 0,
                 1) + (tcp.isAck() ? 1 :
@@ -222,8 +284,14 @@ public class PacketParser {
         // Use the payload length from the header to find out how many  bits to parse.
         // Get the bit string that holds the actual message
         String messageBits = bits.substring(32, 32 + (payLength * 8));
+        if (isA && payLength == 1) {
+            return new TCPHeader(seq, isS, isF, bit_to_int(messageBits), destination);
+        }
         // Convert bits to bytes
         ByteBuffer byteBuffer = bits_to_bytes(messageBits);
+        if (!isA) {
+            return new TCPHeader(seq, isS, isF, byteBuffer, destination); // Decoded once the message is complete
+        }
         // Decode the bytes to a UTF-8 string
         String msg = new String(byteBuffer.array(), StandardCharsets.UTF_8);
 
@@ -234,13 +302,17 @@ public class PacketParser {
     /**
      * Serializes a {@link DA_Header} (Data Acknowledgment or similar custom header) object into a ByteBuffer.
      * Encodes the protocol (3 bits), conflict flag (1 bit), sequence number (8 bits), and address (4 bits)
-     * into a 16-bit (2 bytes) structure.
+     * into a 16-bit (2 bytes) structure. An extended header has a 4-bit sequence number and an 8-bit address.
      *
      * @param da The {@link DA_Header} object to serialize.
      * @return A ByteBuffer containing the 16-bit binary representation of the DA header.
      * The buffer is flipped and ready for reading.
      */
     public static ByteBuffer makeDAHeader(DA_Header da) throws PayloadException {
+        if (da.isExtended()) {
+            return bits_to_bytes(int_to_bit(da.getProtocol(), 3) + (da.isConflict() ? '1' : '0')
+                    + int_to_bit(da.getSequence() & 0xF, 4) + int_to_bit(da.getAddress(), 8));
+        }
         String bit_buffer = int_to_bit(da.getProtocol(), 3) + (da.isConflict() ? '1' :
                 '0') + int_to_bit(da.getSequence(), 8) + int_to_bit(da.getAddress(), 4);
         return bits_to_bytes(bit_buffer);
@@ -248,7 +320,8 @@ public class PacketParser {
 
     /**
      * Parses a {@link DA_Header} from its 16-bit binary string representation.
-     * Extracts protocol, conflict flag, sequence number, and address fields.
+     * Extracts protocol, conflict flag, sequence number, and address fields, in the extended layout
+     * when {@link DA_Header#isExtended(int)} holds for the protocol.
      *
      * @param bits The 16-bit binary string representing the DA header.
      * @return A new {@link DA_Header} object populated with the parsed fields.
@@ -260,6 +333,9 @@ public class PacketParser {
 
         Integer protocol = bit_to_int(bits.substring(0, 3));
         boolean isConf = bits.charAt(3) == '1';
+        if (DA_Header.isExtended(protocol)) {
+            return new DA_Header(protocol, isConf, bit_to_int(bits.substring(4, 8)), bit_to_int(bits.substring(8, 16)));
+        }
         Integer seq = bit_to_int(bits.substring(4, 12));
         Integer address = bit_to_int(bits.substring(12, 16));
 
@@ -328,6 +404,247 @@ public class PacketParser {
     }
 
 
+    /**
+     * Serializes a {@link DV_Header} that carries next hops (next protocol 3) into a ByteBuffer.
+     * Each entry is encoded as a 12-bit structure (4 bits destination, 4 bits cost, 4 bits next hop).
+     * If the number of entries is odd, the last byte is padded with 4 zero bits.
+     *
+     * @param dv The {@link DV_Header} containing the distance vector and next hops to serialize.
+     * @return A ByteBuffer containing the concatenated binary representations of all entries.
+     * The buffer is flipped and ready for reading.
+     */
+    public static ByteBuffer makeDVNHHeader(DV_Header dv) throws RoutingException, PayloadException {
+        if (dv.getDistanceVector().isEmpty()) {
+            throw new RoutingException(LAYER.LINK, dv, "Distance Vector Table Does Not Exist");
+        }
+        StringBuilder bit_buffer = new StringBuilder();
+        for (var entry : dv.getDistanceVector().entrySet()) {
+            int dest = entry.getKey();
+            int cost = entry.getValue();
+            int nextHop = dv.getNextHops().getOrDefault(dest, dest);
+            if (dest > 15 || cost > 15 || nextHop > 15) {
+                throw new RoutingException(LAYER.LINK, dv, "Destination, Cost or Next Hop in DV Table is Too High");
+            }
+            bit_buffer.append(int_to_bit(dest, 4)).append(int_to_bit(cost, 4)).append(int_to_bit(nextHop, 4));
+        }
+        while (bit_buffer.length() % 8 != 0) {
+            bit_buffer.append('0');
+        }
+        return bits_to_bytes(bit_buffer.toString());
+    }
+
+    /**
+     * Parses a {@link DV_Header} that carries next hops (next protocol 3) from its binary string representation.
+     * Assumes the input consists of 12-bit entries (4 bits destination, 4 bits cost, 4 bits next hop),
+     * optionally followed by 4 bits of padding.
+     *
+     * @param bits The binary string representing the serialized entries.
+     * @return A new {@link DV_Header} object populated with the parsed destinations, costs and next hops.
+     */
+    public static DV_Header parseDVNHHeader(String bits) {
+        int entries = bits.length() / 12;
+        int[] destinations = new int[entries];
+        int[] costs = new int[entries];
+        int[] nextHops = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            destinations[i] = bit_to_int(bits.substring(i * 12, i * 12 + 4));
+            costs[i] = bit_to_int(bits.substring(i * 12 + 4, i * 12 + 8));
+            nextHops[i] = bit_to_int(bits.substring(i * 12 + 8, i * 12 + 12));
+        }
+        return new DV_Header(destinations, costs, nextHops);
+    }
+
+
+    /**
+     * Serializes the payload of a control frame (next protocol {@value AddressHeader#CONTROL_PROTOCOL}): the
+     * 16-bit DA keepalive of the sender, then its distance vector with next hops. The distance vector is in
+     * the compact encoding when the address header is extended.
+     *
+     * @param address_header The control frame, its upper header is a {@link DV_Header} with a keepalive
+     * @return A ByteBuffer with the payload, flipped and ready for reading
+     */
+    public static ByteBuffer makeControlHeader(AddressHeader address_header) throws RoutingException, PayloadException {
+        DV_Header dv = (DV_Header) address_header.getUpperHeader();
+        if (dv.getKeepalive() == null) {
+            throw new RoutingException(LAYER.LINK, dv, "Control Frame Without Keepalive");
+        }
+        ByteBuffer keepalive = makeDAHeader(dv.getKeepalive());
+        ByteBuffer table = address_header.isExtended() ? makeCompactDVHeader(dv) : makeDVNHHeader(dv);
+        ByteBuffer payload = ByteBuffer.allocate(keepalive.remaining() + table.remaining());
+        payload.put(keepalive);
+        payload.put(table);
+        payload.flip();
+        return payload;
+    }
+
+    /**
+     * Serializes a {@link DV_Header} with next hops into the compact encoding of extended frames.
+     * The covered range comes first (8 bits lowest, 8 bits highest destination). Then every next hop
+     * the sender uses follows as a group: the next hop (8 bits), the number of entries (8 bits) and per entry
+     * the distance to the previous destination of the group (4 bits) and the cost (4 bits). The first distance
+     * of a group counts from the lowest destination of the range. A distance that does not fit is written as
+     * {@value DV_Header#COMPACT_ESCAPE} followed by the destination itself (8 bits).
+     *
+     * @param dv The {@link DV_Header} to serialize.
+     * @return A ByteBuffer containing the compact encoding. The buffer is flipped and ready for reading.
+     */
+    public static ByteBuffer makeCompactDVHeader(DV_Header dv) throws RoutingException, PayloadException {
+        if (dv.getDistanceVector().isEmpty()) {
+            throw new RoutingException(LAYER.LINK, dv, "Distance Vector Table Does Not Exist");
+        }
+        StringBuilder bit_buffer = new StringBuilder();
+        bit_buffer.append(int_to_bit(dv.getFirst(), 8)).append(int_to_bit(dv.getLast(), 8));
+        for (var group : dv.getGroups().entrySet()) {
+            int nextHop = group.getKey();
+            if (nextHop > 255 || group.getValue().size() > 255) {
+                throw new RoutingException(LAYER.LINK, dv, "Next Hop or Group in DV Table is Too High");
+            }
+            bit_buffer.append(int_to_bit(nextHop, 8)).append(int_to_bit(group.getValue().size(), 8));
+            int previous = dv.getFirst();
+            for (int dest : group.getValue()) {
+                int cost = dv.getDistanceVector().get(dest);
+                if (dest > 255 || cost > 15 || dest < previous) {
+                    throw new RoutingException(LAYER.LINK, dv, "Destination or Cost in DV Table is Out of Range");
+                }
+                if (dest - previous < DV_Header.COMPACT_ESCAPE) {
+                    bit_buffer.append(int_to_bit(dest - previous, 4));
+                } else {
+                    bit_buffer.append(int_to_bit(DV_Header.COMPACT_ESCAPE, 4));
+                }
+                bit_buffer.append(int_to_bit(cost, 4));
+                if (dest - previous >= DV_Header.COMPACT_ESCAPE) {
+                    bit_buffer.append(int_to_bit(dest, 8));
+                }
+                previous = dest;
+            }
+        }
+        return bits_to_bytes(bit_buffer.toString());
+    }
+
+    /**
+     * Parses a {@link DV_Header} from the compact encoding of extended frames, see
+     * {@link #makeCompactDVHeader(DV_Header)}.
+     *
+     * @param bits The binary string representing the compact encoding.
+     * @return A new {@link DV_Header} with the parsed range, destinations, costs and next hops.
+     */
+    public static DV_Header parseCompactDVHeader(String bits) {
+        int first = bit_to_int(bits.substring(0, 8));
+        int last = bit_to_int(bits.substring(8, 16));
+        List<int[]> entries = new ArrayList<>();
+        int i = 16;
+        while (i + 16 <= bits.length()) {
+            int nextHop = bit_to_int(bits.substring(i, i + 8));
+            int count = bit_to_int(bits.substring(i + 8, i + 16));
+            i += 16;
+            int previous = first;
+            for (int entry = 0; entry < count; entry++) {
+                int delta = bit_to_int(bits.substring(i, i + 4));
+                int cost = bit_to_int(bits.substring(i + 4, i + 8));
+                i += 8;
+                int dest = previous + delta;
+                if (delta == DV_Header.COMPACT_ESCAPE) {
+                    dest = bit_to_int(bits.substring(i, i + 8));
+                    i += 8;
+                }
+                entries.add(new int[]{dest, cost, nextHop});
+                previous = dest;
+            }
+        }
+        int[] destinations = new int[entries.size()];
+        int[] costs = new int[entries.size()];
+        int[] nextHops = new int[entries.size()];
+        for (int entry = 0; entry < entries.size(); entry++) {
+            destinations[entry] = entries.get(entry)[0];
+            costs[entry] = entries.get(entry)[1];
+            nextHops[entry] = entries.get(entry)[2];
+        }
+        return new DV_Header(destinations, costs, nextHops, first, last);
+    }
+
+
+    /**
+     * Serializes an {@link LSA_Header} (next protocol 4) into a ByteBuffer containing its 8-bit sequence number
+     * and 16-bit neighbour mask.
+     *
+     * @param lsa The {@link LSA_Header} to serialize.
+     * @return A ByteBuffer containing the 24-bit LSA. The buffer is flipped and ready for reading.
+     */
+    public static ByteBuffer makeLSAHeader(LSA_Header lsa) throws PayloadException {
+        return bits_to_bytes(int_to_bit(lsa.getSequence(), 8) + int_to_bit(lsa.getNeighbourMask(), 16));
+    }
+
+    /**
+     * Parses an {@link LSA_Header} from its 24-bit binary string representation.
+     *
+     * @param bits The 24-bit binary string representing the sequence number and the neighbour mask.
+     * @return A new {@link LSA_Header} object with the parsed fields.
+     */
+    public static LSA_Header parseLSAHeader(String bits) {
+        return new LSA_Header(bit_to_int(bits.substring(0, 8)), bit_to_int(bits.substring(8, 24)));
+    }
+
+    /**
+     * Serializes an {@link LSA_Header} into the encoding of extended frames: the 8-bit sequence number followed
+     * by every neighbour as an 8-bit address.
+     *
+     * @param lsa The {@link LSA_Header} to serialize.
+     * @return A ByteBuffer containing the LSA. The buffer is flipped and ready for reading.
+     * @throws PayloadException If the LSA lists more neighbours than fit a frame
+     */
+    public static ByteBuffer makeExtendedLSAHeader(LSA_Header lsa) throws PayloadException {
+        if (lsa.getNeighbours().size() > LSA_Header.MAX_EXTENDED_NEIGHBOURS) {
+            throw new PayloadException(LAYER.LINK, lsa, "Too Many Neighbours in LSA");
+        }
+        StringBuilder bits = new StringBuilder(int_to_bit(lsa.getSequence(), 8));
+        for (int neighbour : lsa.getNeighbours()) {
+            bits.append(int_to_bit(neighbour, 8));
+        }
+        return bits_to_bytes(bits.toString());
+    }
+
+    /**
+     * Parses an {@link LSA_Header} from the encoding of extended frames, see {@link #makeExtendedLSAHeader}.
+     *
+     * @param bits The bits of the LSA, as many as its payload length.
+     * @return A new {@link LSA_Header} object with the parsed fields.
+     */
+    public static LSA_Header parseExtendedLSAHeader(String bits) {
+        Set<Integer> neighbours = new HashSet<>();
+        for (int i = 8; i + 8 <= bits.length(); i += 8) {
+            neighbours.add(bit_to_int(bits.substring(i, i + 8)));
+        }
+        return new LSA_Header(bit_to_int(bits.substring(0, 8)), neighbours);
+    }
+
+    /**
+     * Serializes an {@link AODV_Header} (next protocol {@value AddressHeader#ON_DEMAND_PROTOCOL}) into a
+     * ByteBuffer: reply flag (1 bit), 3 reserved bits, hop count (4 bits), originator, target and request ID
+     * (8 bits each).
+     *
+     * @param message The {@link AODV_Header} to serialize.
+     * @return A ByteBuffer containing the 4-byte route message. The buffer is flipped and ready for reading.
+     */
+    public static ByteBuffer makeAODVHeader(AODV_Header message) throws PayloadException {
+        return bits_to_bytes((message.isReply() ? "1" : "0") + "000" + int_to_bit(message.getHops(), 4)
+                + int_to_bit(message.getOriginator(), 8) + int_to_bit(message.getTarget(), 8)
+                + int_to_bit(message.getRequestId(), 8));
+    }
+
+    /**
+     * Parses an {@link AODV_Header} from its 32-bit binary string representation.
+     *
+     * @param bits     The bits of the route message.
+     * @param receiver The destination of the address header, the node the message is for.
+     * @return A new {@link AODV_Header} object with the parsed fields.
+     */
+    public static AODV_Header parseAODVHeader(String bits, int receiver) {
+        return new AODV_Header(bits.charAt(0) == '1', bit_to_int(bits.substring(4, 8)),
+                bit_to_int(bits.substring(8, 16)), bit_to_int(bits.substring(16, 24)),
+                bit_to_int(bits.substring(24, 32)), receiver);
+    }
+
+
     /**
      * Parses an {@link AddressHeader} from its 32-bit binary string representation and associates
      * it with a pre-parsed upper-layer header.
@@ -361,14 +678,42 @@ public class PacketParser {
         }
     }
 
+    /**
+     * Parses an extended {@link AddressHeader} from its 48-bit binary string representation, see
+     * {@link #makeADHeader(AddressHeader)} for the layout.
+     *
+     * @param bits        The 48-bit binary string representing the extended Address Header.
+     * @param upperHeader The {@link Packet} that represents the layer immediately following this address header.
+     * @return A new extended {@link AddressHeader} object populated with parsed fields.
+     */
+    public static AddressHeader parseExtendedADHeader(String bits, Packet upperHeader) {
+        int ttl = bit_to_int(bits.substring(4, 8));
+        int next_protocol = bit_to_int(bits.substring(8, 12));
+        int payload_length = bit_to_int(bits.substring(16, 24));
+        int source = bit_to_int(bits.substring(24, 32));
+        int destination = bit_to_int(bits.substring(32, 40));
+        int next_hop_or_id = bit_to_int(bits.substring(40, 48));
+
+        if (destination == 7) {
+            return new AddressHeader(next_protocol, ttl, payload_length, source, destination, 0,
+                    next_hop_or_id, upperHeader, true);
+        } else {
+            return new AddressHeader(next_protocol, ttl, payload_length, source, destination,
+                    next_hop_or_id, 0, upperHeader, true);
+        }
+    }
+
     /**
      * Serializes an {@link AddressHeader} object into a ByteBuffer containing its 32-bit binary representation.
      * Encodes fields: next protocol, TTL, payload length, source, destination. The final 8 bits
      * are encoded with either the Next Hop value or the ID value from the header, depending on
      * whether the destination address is 7.
+     * An extended header is 48 bits: next protocol {@value AddressHeader#EXTENDED_PROTOCOL} (4 bits), TTL (4 bits),
+     * the real next protocol (4 bits), 4 reserved bits, payload length (8 bits), source, destination and
+     * Next Hop or ID (8 bits each).
      *
      * @param add The {@link AddressHeader} object to serialize.
-     * @return A ByteBuffer containing the 32-bit binary representation of the Address Header.
+     * @return A ByteBuffer containing the 32-bit (48-bit when extended) binary representation of the Address Header.
      * The buffer is flipped and ready for reading.
      */
     public static ByteBuffer makeADHeader(AddressHeader add) throws PayloadException {
@@ -378,6 +723,12 @@ public class PacketParser {
         } else {
             i = add.getNext_Hop();
         }
+        if (add.isExtended()) {
+            return bits_to_bytes(int_to_bit(AddressHeader.EXTENDED_PROTOCOL, 4) + int_to_bit(add.getTTL(), 4)
+                    + int_to_bit(add.getNext_Protocol(), 4) + int_to_bit(0, 4)
+                    + int_to_bit(add.getPayload_Length(), 8) + int_to_bit(add.getSource(), 8)
+                    + int_to_bit(add.getDestination(), 8) + int_to_bit(i, 8));
+        }
         String bit_buffer = int_to_bit(add.getNext_Protocol(), 4) + int_to_bit(add.getTTL(),
                 4) + int_to_bit(
                 add.getPayload_Length(), 8) + int_to_bit(add.getSource(), 4) + int_to_bit(
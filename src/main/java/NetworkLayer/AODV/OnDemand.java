@@ -0,0 +1,378 @@
+package NetworkLayer.AODV;
+
+import Model.Packet;
+import NetworkLayer.AODV_Header;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.BroadcastWindow;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import NetworkLayer.RoutingEngine;
+import NetworkLayer.RoutingMetrics;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * <h1>On-demand routing engine</h1>
+ * Reactive routing in the style of AODV. Nodes advertise nothing, a route is only looked for when a packet
+ * has none: the node floods a {@link AODV_Header route request}, and every node that hears the request for
+ * the first time keeps the neighbour it came from as route back to the originator and passes it on. The
+ * target answers with a route reply, which goes back hop by hop along those routes and leaves a route to
+ * the target at every node on the way. A node that already has a route to the target answers in its place
+ * and does not pass the request on. Control traffic is then paid per conversation instead of per minute.
+ * <p>
+ * Requests are recognised by originator and request ID with a {@link BroadcastWindow}, so every node
+ * handles and passes on a request only once. There are no sequence numbers: only the target replies, and a
+ * route expires when it carried no packet for {@link #ACTIVE_ROUTE_TIMEOUT} seconds. Routes through a
+ * neighbour that is gone are removed together with it.
+ * <p>
+ * A request without a reply is sent again every {@link #REQUEST_WAIT} seconds, at most
+ * {@link #REQUEST_RETRIES} times.
+ */
+public class OnDemand implements RoutingEngine {
+
+    /**
+     * Seconds a route is kept without carrying a packet. Broken routes are not reported, so a route lives as
+     * long as a silent neighbour does in distance vector.
+     */
+    public static final int ACTIVE_ROUTE_TIMEOUT = DistanceVector.NEIGHBOUR_TIMEOUT;
+
+    /**
+     * Seconds to wait for a reply before a request is sent again.
+     */
+    public static final int REQUEST_WAIT = 2;
+
+    /**
+     * Times a request is sent again before the search gives up.
+     */
+    public static final int REQUEST_RETRIES = 2;
+
+    /**
+     * Seconds a search lasts at most. A packet that waits longer for its route will not get one.
+     */
+    public static final int DISCOVERY_TIMEOUT = REQUEST_WAIT * (REQUEST_RETRIES + 1);
+
+    private static final int NODES = AddressHeader.EXTENDED_ADDRESSES;
+
+    private final IntSupplier localAddress;
+    private final Map<Integer, RouteEntry> table = new HashMap<>();
+
+    /**
+     * Seconds left per destination until its route expires.
+     */
+    private final int[] lifetime = new int[NODES];
+
+    /**
+     * Seconds left per destination until its request is sent again, 0 when no search is running.
+     */
+    private final int[] requestWait = new int[NODES];
+    private final int[] retriesLeft = new int[NODES];
+
+    /**
+     * Request IDs seen per originator.
+     */
+    private final BroadcastWindow seenRequests = new BroadcastWindow();
+    private int lastRequestId;
+
+    private final List<Packet> outgoing = new ArrayList<>();
+    private final Lock lock = new ReentrantLock();
+    private final RoutingMetrics metrics = new RoutingMetrics();
+
+    /**
+     * Constructs a new engine.
+     *
+     * @param localAddress Supplies the current address of the node that owns this table
+     */
+    public OnDemand(IntSupplier localAddress) {
+        this.localAddress = localAddress;
+        int addr = localAddress.getAsInt();
+        table.put(addr, new RouteEntry(addr, 0));
+    }
+
+    /**
+     * Handles a route message (next protocol {@value AddressHeader#ON_DEMAND_PROTOCOL}). The neighbour that
+     * sent it becomes a route of one hop. A new request leaves the route back to its originator and is
+     * answered, by the target or a node with a route to it, or passed on. A reply for this node leaves the route to its target and goes on towards the
+     * originator.
+     *
+     * @param header The address header that carries the route message
+     * @return true if the routing table changed
+     */
+    @Override
+    public boolean handleAdvertisement(AddressHeader header) {
+        if (!(header.getUpperHeader() instanceof AODV_Header message)) {
+            return false;
+        }
+        int local = localAddress.getAsInt();
+        int neighbour = header.getSource();
+        if (neighbour == local || !inRange(neighbour) || !inRange(message.getOriginator())
+                || !inRange(message.getTarget())) {
+            return false;
+        }
+        int hops = message.getHops() + 1;
+        lock.lock();
+        try {
+            boolean changed = learn(neighbour, neighbour, 1);
+            if (message.isReply()) {
+                if (message.getDestination() != local) {
+                    return changed; // Overheard, it is for another neighbour
+                }
+                changed |= learn(message.getTarget(), neighbour, hops);
+                if (message.getOriginator() == local) {
+                    requestWait[message.getTarget()] = 0; // Found
+                } else {
+                    RouteEntry back = table.get(message.getOriginator());
+                    if (back != null) {
+                        outgoing.add(new AODV_Header(true, hops, message.getOriginator(), message.getTarget(),
+                                message.getRequestId(), back.nextHop));
+                    }
+                }
+                return changed;
+            }
+            if (message.getOriginator() == local
+                    || !seenRequests.accept(message.getOriginator(), message.getRequestId())) {
+                return changed;
+            }
+            changed |= learn(message.getOriginator(), neighbour, hops);
+            RouteEntry known = table.get(message.getTarget());
+            if (message.getTarget() == local) {
+                outgoing.add(new AODV_Header(true, 0, message.getOriginator(), local, message.getRequestId(),
+                        neighbour));
+            } else if (known != null && known.nextHop != neighbour) {
+                outgoing.add(new AODV_Header(true, known.cost, message.getOriginator(), message.getTarget(),
+                        message.getRequestId(), neighbour));
+            } else if (hops < AODV_Header.MAX_HOPS) {
+                outgoing.add(new AODV_Header(false, hops, message.getOriginator(), message.getTarget(),
+                        message.getRequestId(), 7));
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Installs or refreshes a route. Route messages are new, so their route replaces the one there was.
+     * Caller must hold the lock.
+     *
+     * @return true if the route is new or changed
+     */
+    private boolean learn(int destination, int nextHop, int cost) {
+        if (destination == localAddress.getAsInt()) {
+            return false;
+        }
+        lifetime[destination] = ACTIVE_ROUTE_TIMEOUT;
+        RouteEntry current = table.get(destination);
+        if (current != null && current.nextHop == nextHop && current.cost == cost) {
+            return false;
+        }
+        table.put(destination, new RouteEntry(nextHop, cost));
+        return true;
+    }
+
+    /**
+     * There is nothing to advertise, routes are only looked for on demand.
+     *
+     * @return null
+     */
+    @Override
+    public Packet makeAdvertisement() {
+        return null;
+    }
+
+    /**
+     * Route messages go from hop to hop, every node sends them again itself.
+     *
+     * @return false
+     */
+    @Override
+    public boolean floodsAdvertisements() {
+        return false;
+    }
+
+    /**
+     * @return true
+     */
+    @Override
+    public boolean isReactive() {
+        return true;
+    }
+
+    /**
+     * Floods a request for a route to the destination, unless there is a route or a search already.
+     *
+     * @param destination The destination a packet is waiting for
+     * @return true if a request was sent
+     */
+    @Override
+    public boolean requestRoute(int destination) {
+        if (!inRange(destination)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (table.containsKey(destination) || requestWait[destination] > 0) {
+                return false;
+            }
+            retriesLeft[destination] = REQUEST_RETRIES;
+            sendRequest(destination);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a request with a new ID. Caller must hold the lock.
+     */
+    private void sendRequest(int destination) {
+        int local = localAddress.getAsInt();
+        lastRequestId = (lastRequestId + 1) & 0xFF;
+        seenRequests.accept(local, lastRequestId);
+        outgoing.add(new AODV_Header(false, 0, local, destination, lastRequestId, 7));
+        requestWait[destination] = REQUEST_WAIT;
+    }
+
+    @Override
+    public List<Packet> takeMessages() {
+        lock.lock();
+        try {
+            List<Packet> messages = new ArrayList<>(outgoing);
+            outgoing.clear();
+            return messages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ages the routes by one second and sends requests again that got no reply.
+     *
+     * @return false, there is no advertisement to send
+     */
+    @Override
+    public boolean tick() {
+        lock.lock();
+        try {
+            seenRequests.tick();
+            int local = localAddress.getAsInt();
+            table.entrySet().removeIf(entry -> entry.getKey() != local && --lifetime[entry.getKey()] <= 0);
+            for (int destination = 0; destination < NODES; destination++) {
+                if (requestWait[destination] > 0 && --requestWait[destination] == 0
+                        && !table.containsKey(destination) && retriesLeft[destination]-- > 0) {
+                    sendRequest(destination);
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the route to a destination, and every route that goes through it, since that neighbour is
+     * gone. The route to the local node is never removed.
+     *
+     * @param destination The destination address to remove
+     */
+    @Override
+    public void removeRoute(int destination) {
+        if (destination == localAddress.getAsInt()) {
+            return;
+        }
+        lock.lock();
+        try {
+            table.remove(destination);
+            table.values().removeIf(route -> route.nextHop == destination);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates or creates a route entry, it expires like a route that was found.
+     *
+     * @param destination The destination address
+     * @param routeEntry  The RouteEntry containing next hop and cost information
+     */
+    @Override
+    public void updateRoute(int destination, RouteEntry routeEntry) {
+        lock.lock();
+        try {
+            table.put(destination, routeEntry);
+            if (inRange(destination)) lifetime[destination] = ACTIVE_ROUTE_TIMEOUT;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public RouteEntry getRoute(int destination) {
+        lock.lock();
+        try {
+            return table.get(destination);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the next hop for a packet. A route that is used stays, together with the route to its next hop.
+     *
+     * @param destination The destination address of the packet
+     * @return the next hop, or -1 if there is no route
+     */
+    @Override
+    public int selectNextHop(int destination) {
+        lock.lock();
+        try {
+            RouteEntry route = table.get(destination);
+            if (route == null) {
+                return -1;
+            }
+            if (inRange(destination)) lifetime[destination] = ACTIVE_ROUTE_TIMEOUT;
+            if (inRange(route.nextHop) && table.containsKey(route.nextHop)) {
+                lifetime[route.nextHop] = ACTIVE_ROUTE_TIMEOUT;
+            }
+            return route.nextHop;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Integer> getDestinations() {
+        lock.lock();
+        try {
+            return new HashSet<>(table.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, RouteEntry> getRoutes() {
+        lock.lock();
+        try {
+            return new HashMap<>(table);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * On-demand routing does not fail over, so the counters stay zero.
+     *
+     * @return the counters of this engine
+     */
+    @Override
+    public RoutingMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static boolean inRange(int address) {
+        return address >= 0 && address < NODES;
+    }
+}
@@ -0,0 +1,112 @@
+package NetworkLayer;
+
+import Model.Packet;
+
+/**
+ * Represents a route message of on-demand routing (next protocol {@value AddressHeader#ON_DEMAND_PROTOCOL}):
+ * a route request, flooded to find a route, or a route reply, sent back along the reverse route.
+ * <p>
+ * Every hop sends the message again with its own address as source of the address header, so the receiver
+ * learns the neighbour it came from. The message itself keeps the originator of the request, the target
+ * it looks for, the request ID of the originator and the hops it travelled so far. It is 4 bytes:
+ * reply flag (1 bit), 3 reserved bits, hop count (4 bits), originator, target and request ID (8 bits each).
+ */
+public class AODV_Header implements Packet {
+
+    /**
+     * Highest hop count the header can hold.
+     */
+    public static final int MAX_HOPS = 15;
+
+    private final boolean reply;
+    private final int hops;
+    private final int originator;
+    private final int target;
+    private final int requestId;
+    private final int receiver;
+
+    /**
+     * Constructs a new route message.
+     *
+     * @param reply      Whether this is a route reply, a route request otherwise
+     * @param hops       The hops travelled so far (range 0-15)
+     * @param originator The node that asked for the route
+     * @param target     The node a route is looked for
+     * @param requestId  The ID the originator gave the request (range 0-255)
+     * @param receiver   The neighbour the message is for, the broadcast address (7) for a request
+     */
+    public AODV_Header(boolean reply, int hops, int originator, int target, int requestId, int receiver) {
+        this.reply = reply;
+        this.hops = Math.min(hops, MAX_HOPS);
+        this.originator = originator;
+        this.target = target;
+        this.requestId = requestId & 0xFF;
+        this.receiver = receiver;
+    }
+
+    /**
+     * @return true for a route reply, false for a route request
+     */
+    public boolean isReply() {
+        return reply;
+    }
+
+    /**
+     * @return the hops this message travelled before the sender
+     */
+    public int getHops() {
+        return hops;
+    }
+
+    /**
+     * @return the node that asked for the route
+     */
+    public int getOriginator() {
+        return originator;
+    }
+
+    /**
+     * @return the node a route is looked for
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the ID the originator gave the request
+     */
+    public int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the length of this header on the wire in bytes.
+     *
+     * @return 4
+     */
+    public int getPayloadLength() {
+        return 4;
+    }
+
+    /**
+     * Gets the upper layer header associated with this header.
+     * For AODV_Header, there is no upper header.
+     *
+     * @return null as AODV_Header doesn't have an upper header
+     */
+    @Override
+    public Packet getUpperHeader() {
+        return null;
+    }
+
+    /**
+     * Gets the node this message is sent to: the broadcast address (7) for a request, the next hop
+     * towards the originator for a reply.
+     *
+     * @return The address of the receiver
+     */
+    @Override
+    public int getDestination() {
+        return receiver;
+    }
+}
@@ -2,7 +2,60 @@ package NetworkLayer;
 
 import Model.Packet;
 
+/**
+ * Represents the address header in front of every long frame.
+ * <p>
+ * The base header is 4 bytes and has 4-bit addresses, so a network has at most 16 addresses. The extended
+ * header is 6 bytes and has 8-bit addresses. It is marked by the next protocol value
+ * {@value #EXTENDED_PROTOCOL}, the real next protocol follows in the second byte. Address 7 is the
+ * broadcast address in both formats.
+ * <p>
+ * Deployed nodes only know next protocols 0 and 2, any other one stops their receiver. While such a node
+ * is heard, the {@link RoutingAgent} sends its distance vector as next protocol 2 only.
+ */
 public class AddressHeader implements Packet {
+
+    /**
+     * Next protocol value that marks an extended header.
+     */
+    public static final int EXTENDED_PROTOCOL = 5;
+
+    /**
+     * Next protocol value of a control frame: the DA keepalive of the sender followed by its distance
+     * vector with next hops, in the compact encoding when the header is extended.
+     */
+    public static final int CONTROL_PROTOCOL = 6;
+
+    /**
+     * Next protocol value of a route request or reply of on-demand routing, see {@link AODV_Header}.
+     */
+    public static final int ON_DEMAND_PROTOCOL = 7;
+
+    /**
+     * Number of addresses the base header can hold.
+     */
+    public static final int BASE_ADDRESSES = 16;
+
+    /**
+     * Number of addresses the extended header can hold.
+     */
+    public static final int EXTENDED_ADDRESSES = 256;
+
+    /**
+     * Length of a long frame in bytes, header included.
+     */
+    public static final int FRAME_LENGTH = 32;
+
+    /**
+     * Length of the base header in bytes.
+     */
+    public static final int BASE_HEADER_LENGTH = 4;
+
+    /**
+     * Length of the extended header in bytes.
+     */
+    public static final int EXTENDED_HEADER_LENGTH = 6;
+
     /**
      * Explains what the next header is. See header ID's in design doc
      */
@@ -35,6 +88,10 @@ public class AddressHeader implements Packet {
      * Holds the payload.
      */
     private final Packet upperHeader;
+    /**
+     * Whether this header is sent in the extended format.
+     */
+    private final boolean extended;
 
     /**
      * Constructs a new Address_Header.
@@ -50,6 +107,24 @@ public class AddressHeader implements Packet {
      */
     public AddressHeader(int next_Protocol, int TTL, int payload_Length,
                          int source, int destination, int next_Hop, int id, Packet upperHeader) {
+        this(next_Protocol, TTL, payload_Length, source, destination, next_Hop, id, upperHeader, false);
+    }
+
+    /**
+     * Constructs a new Address_Header in the base or extended format.
+     *
+     * @param next_Protocol  The header ID of the upper header.
+     * @param TTL            The time to live for a packet.
+     * @param payload_Length Length of the payload in bytes.
+     * @param source         The node where this packet came from.
+     * @param destination    The node where this packet needs to go to.
+     * @param next_Hop       The node where this packet should go to next. (Can be null if broadcast)
+     * @param id             The ID of the header for broadcasts.
+     * @param upperHeader    The packet from the layer above (payload). Can be null if there's no payload initially.
+     * @param extended       Whether the header is sent in the extended format with 8-bit addresses.
+     */
+    public AddressHeader(int next_Protocol, int TTL, int payload_Length, int source, int destination,
+                         int next_Hop, int id, Packet upperHeader, boolean extended) {
         this.Next_Protocol = next_Protocol; // Consider validating initial values here too, or ensure setters are called.
         this.TTL = TTL;
         this.Payload_Length = payload_Length;
@@ -58,6 +133,17 @@ public class AddressHeader implements Packet {
         this.Next_Hop = next_Hop;
         this.ID = id;
         this.upperHeader = upperHeader;
+        this.extended = extended;
+    }
+
+    /**
+     * Checks if an address fits the 4-bit address fields of the base header.
+     *
+     * @param address The address to check
+     * @return true if the address is in range 0-15
+     */
+    public static boolean isBaseAddress(int address) {
+        return address >= 0 && address < BASE_ADDRESSES;
     }
 
     //Getters and setters
@@ -116,6 +202,24 @@ public class AddressHeader implements Packet {
         return ID;
     }
 
+    /**
+     * Checks if this header is sent in the extended format.
+     *
+     * @return true for the 6-byte header with 8-bit addresses, false for the 4-byte base header
+     */
+    public boolean isExtended() {
+        return extended;
+    }
+
+    /**
+     * Gets the length of this header on the wire.
+     *
+     * @return The header length in bytes
+     */
+    public int getHeaderLength() {
+        return extended ? EXTENDED_HEADER_LENGTH : BASE_HEADER_LENGTH;
+    }
+
     // --- HeaderType/Packet Interface Implementations ---
 
 
@@ -0,0 +1,92 @@
+package NetworkLayer;
+
+/**
+ * <h1>Broadcast duplicate suppression</h1>
+ * Remembers which broadcast IDs were seen from every source, so a flooded frame is handled and relayed
+ * only once. Per source it keeps the highest ID seen and a 64-bit mask of the IDs just below it,
+ * bit {@code n} is set when ID {@code highest - n} was seen. IDs are 8 bits and compared with serial
+ * number arithmetic, so the window keeps working when the IDs wrap from 255 to 0.
+ * <p>
+ * A source that is not heard from for {@link #WINDOW_TIMEOUT} seconds is forgotten, so a node that
+ * restarts its IDs is accepted again.
+ */
+public class BroadcastWindow {
+
+    /**
+     * Number of IDs below the highest one that are remembered.
+     */
+    public static final int WINDOW_SIZE = 64;
+
+    /**
+     * Seconds after which the window of a silent source is reset.
+     */
+    public static final int WINDOW_TIMEOUT = 120;
+
+    private static final int SOURCES = AddressHeader.EXTENDED_ADDRESSES;
+
+    private final int[] highest = new int[SOURCES];
+    private final long[] seen = new long[SOURCES];
+    private final int[] age = new int[SOURCES];
+
+    /**
+     * Checks a broadcast frame and marks it as seen.
+     *
+     * @param source The address of the node that originated the frame (range 0-255)
+     * @param id     The broadcast ID of the frame (range 0-255)
+     * @return true if the frame was not seen before, false if it is a duplicate or too old to tell
+     */
+    public synchronized boolean accept(int source, int id) {
+        if (source < 0 || source >= SOURCES) {
+            return false;
+        }
+        id &= 0xFF;
+        if (age[source] == 0) {
+            highest[source] = id;
+            seen[source] = 1;
+            age[source] = WINDOW_TIMEOUT;
+            return true;
+        }
+
+        int distance = (id - highest[source]) & 0xFF;
+        if (distance == 0) {
+            return false;
+        }
+        if (distance < 128) { // Newer than everything so far, slide the window
+            seen[source] = distance >= WINDOW_SIZE ? 1 : (seen[source] << distance) | 1;
+            highest[source] = id;
+            age[source] = WINDOW_TIMEOUT;
+            return true;
+        }
+
+        int behind = 256 - distance;
+        if (behind >= WINDOW_SIZE) {
+            return false;
+        }
+        long bit = 1L << behind;
+        if ((seen[source] & bit) != 0) {
+            return false;
+        }
+        seen[source] |= bit;
+        return true;
+    }
+
+    /**
+     * Ages all windows by one second.
+     */
+    public synchronized void tick() {
+        for (int source = 0; source < SOURCES; source++) {
+            if (age[source] > 0) age[source]--;
+        }
+    }
+
+    /**
+     * Forgets everything seen from a source.
+     *
+     * @param source The address of the source to forget
+     */
+    public synchronized void reset(int source) {
+        if (source >= 0 && source < SOURCES) {
+            age[source] = 0;
+        }
+    }
+}
@@ -0,0 +1,680 @@
+package NetworkLayer.DA;
+
+import Model.Exceptions.NetworkException;
+import Model.LayerModel;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA_Header;
+import NetworkLayer.TrickleTimer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * <h1>Dynamic Addressing agent</h1>
+ * The Dynamic Addressing logic of one node: it builds HELLO and CONFLICT packets, drops DA frames it
+ * has seen before, floods HELLOs further and picks a new address when another node claims ours.
+ * <p>
+ * The agent has no thread of its own. Its owner sends a {@link #makeHelloPacket() HELLO} every
+ * {@link DynamicAddressing#KEEP_ALIVE_INTERVAL} seconds. Seen sequence numbers are kept in a
+ * {@link SeqTracker} and age out by the time of the given clock, the {@link DynamicAddressing} singleton
+ * uses the system clock and simulations a virtual one.
+ * <p>
+ * An agent in extended mode also handles {@link DA_Header#isExtended() extended} DA frames. A node with
+ * an address above 15 sends its own frames that way, with a 4-bit sequence number that counts up instead
+ * of a random one, so it does not repeat within the expiry time. When it has to pick a new address it
+ * picks from all {@value AddressHeader#EXTENDED_ADDRESSES}. An agent in base mode ignores extended frames.
+ * Deployed nodes do not: they never check the protocol of a DA frame and read an extended one in the base
+ * layout, so a HELLO of 0x13 looks like one of 3 to them and a CONFLICT for it makes their node 3 pick a
+ * new address. While the owner {@link #setDeployedHeard hears such a node}, the agent neither sends nor
+ * relays extended frames, and picks new addresses among the first {@value AddressHeader#BASE_ADDRESSES}
+ * only.
+ * <p>
+ * After {@link #join(IntPredicate)} the agent does not use its address right away. It listens for
+ * {@link #LISTEN_TIME} seconds, picks an address that no known node, route or other joining node uses,
+ * and sends {@link #PROBE_COUNT} PROBEs for it, {@link #PROBE_INTERVAL} seconds apart. Any frame for the
+ * address until {@link #ANNOUNCE_WAIT} seconds after the last one, a CONFLICT from its owner or a PROBE
+ * of another joining node, makes it pick the next free address. When all PROBEs went unanswered it takes
+ * the address and announces it with a HELLO. The owner calls {@link #tick()} every second to drive this.
+ * A conflict later on starts the PROBEs again instead of taking a random address.
+ * <p>
+ * When the routing updates of the node carry a {@link #makeKeepalivePacket() keepalive}, the agent is
+ * {@link #setPiggybacked(boolean) piggybacked}: the neighbours learn that the node is alive from its
+ * routing updates, and the routing engine ages nodes and routes by them. The flooded HELLO is then only
+ * sent every {@link #PIGGYBACKED_HELLO_INTERVAL} seconds, to find duplicate addresses between nodes that
+ * are no neighbours, and HELLOs no longer refresh known nodes. Whether the updates carry the keepalive
+ * changes with the neighbours of the node, so the owner can {@link #setPiggybacked(BooleanSupplier) let the
+ * agent follow it}.
+ * <p>
+ * With {@link #setRelaySuppression relay suppression} on, a HELLO of another node is not flooded further
+ * right away. The agent waits a random time of up to {@link #MAX_RELAY_DELAY} milliseconds and counts the
+ * copies of the HELLO it overhears meanwhile. When it heard {@link #COPY_THRESHOLD} copies, its neighbours
+ * most likely heard one too and it does not relay. HELLOs of nodes that are {@link #RELAY_SCOPE} or more
+ * hops away by the routing table are not relayed at all. Two nodes with the same address then still hear
+ * each other within twice the scope, which is as far as distance vector reaches. CONFLICTs and PROBEs are
+ * always relayed right away, a join waits for them.
+ * <p>
+ * With a {@link #setTrickle(boolean) Trickle timer} the owner no longer sends HELLOs at a fixed rate,
+ * {@link #tick()} sends them. A conflict or a new address taken reset the timer, so the network learns
+ * about them within seconds. The interval grows up to twice {@link DynamicAddressing#KEEP_ALIVE_INTERVAL},
+ * or twice {@link #PIGGYBACKED_HELLO_INTERVAL} when piggybacked. HELLOs are never suppressed: the HELLO of
+ * another node does not keep this node alive at the other nodes, they age it by its own HELLOs.
+ */
+public class AddressingAgent {
+
+    /**
+     * Minutes after which a seen sequence number is forgotten, so it can be used again.
+     */
+    public static final int SEQ_NO_EXPIRY_TIME = 2;
+
+    /**
+     * Seconds a joining node listens before it picks an address.
+     */
+    public static final int LISTEN_TIME = 2;
+
+    /**
+     * PROBEs sent for an address before it is taken.
+     */
+    public static final int PROBE_COUNT = 3;
+
+    /**
+     * Seconds between two PROBEs.
+     */
+    public static final int PROBE_INTERVAL = 1;
+
+    /**
+     * Seconds after the last PROBE until the address is taken, long enough for a CONFLICT to come back
+     * over a few hops.
+     */
+    public static final int ANNOUNCE_WAIT = 4;
+
+    /**
+     * Seconds between flooded HELLOs when the agent is piggybacked.
+     */
+    public static final int PIGGYBACKED_HELLO_INTERVAL = 300;
+
+    /**
+     * Copies of a HELLO that, once overheard, stop this node from relaying it.
+     */
+    public static final int COPY_THRESHOLD = 3;
+
+    /**
+     * Largest random wait in milliseconds before a HELLO is relayed.
+     */
+    public static final int MAX_RELAY_DELAY = 2000;
+
+    /**
+     * Route cost to the sender of a HELLO from which on it is not relayed.
+     */
+    public static final int RELAY_SCOPE = 4;
+
+    /**
+     * Runs a task later, on a real or a virtual clock.
+     */
+    @FunctionalInterface
+    public interface Scheduler {
+        /**
+         * @param task        the task to run
+         * @param delayMillis milliseconds from now until it runs
+         */
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    private final Random random = new Random();
+    private final SeqTracker seqTracker = new SeqTracker(AddressHeader.EXTENDED_ADDRESSES,
+            (int) TimeUnit.MINUTES.toSeconds(SEQ_NO_EXPIRY_TIME));
+    private final IntSupplier localAddress;
+    private final LayerModel lower;
+    private final LongSupplier clock;
+    private final IntConsumer onNodeSeen;
+    private final IntConsumer onNewAddress;
+    private final boolean extended;
+    private int extendedSeq;
+    private volatile BooleanSupplier piggybacked = () -> false;
+    private volatile BooleanSupplier deployedHeard = () -> false;
+    private boolean helloSent;
+    private long lastHello;
+
+    // Relay suppression, scheduler is null when HELLOs are relayed right away
+    private volatile Scheduler scheduler;
+    private volatile IntUnaryOperator distance;
+    private final Map<Integer, Integer> copiesHeard = new HashMap<>();
+
+    // Sends the HELLOs when set, with the longest interval it was made for
+    private volatile TrickleTimer trickle;
+    private volatile int trickleInterval;
+
+    // Join state, inUse is null when the agent never joined
+    private IntPredicate inUse;
+    private final Set<Integer> claimed = new HashSet<>();
+    private boolean joined = true;
+    private int candidate = -1;
+    private int probesSent;
+    private int joinTimer;
+
+    /**
+     * Constructs a new agent in base mode.
+     *
+     * @param localAddress Supplies the current address of the node
+     * @param lower        The layer DA frames are sent to
+     * @param clock        Supplies the current time in milliseconds, used to age out sequence numbers
+     * @param onNodeSeen   Called with the address of every node a new HELLO is heard from
+     * @param onNewAddress Called with the new address when ours conflicted with another node
+     */
+    public AddressingAgent(IntSupplier localAddress, LayerModel lower, LongSupplier clock,
+                           IntConsumer onNodeSeen, IntConsumer onNewAddress) {
+        this(localAddress, lower, clock, onNodeSeen, onNewAddress, false);
+    }
+
+    /**
+     * Constructs a new agent.
+     *
+     * @param localAddress Supplies the current address of the node
+     * @param lower        The layer DA frames are sent to
+     * @param clock        Supplies the current time in milliseconds, used to age out sequence numbers
+     * @param onNodeSeen   Called with the address of every node a new HELLO is heard from
+     * @param onNewAddress Called with the new address when ours conflicted with another node
+     * @param extended     Whether the agent handles extended DA frames and addresses above 15
+     */
+    public AddressingAgent(IntSupplier localAddress, LayerModel lower, LongSupplier clock,
+                           IntConsumer onNodeSeen, IntConsumer onNewAddress, boolean extended) {
+        this.extended = extended;
+        this.localAddress = localAddress;
+        this.lower = lower;
+        this.clock = clock;
+        this.onNodeSeen = onNodeSeen;
+        this.onNewAddress = onNewAddress;
+    }
+
+    /**
+     * Method used to remove seqs from the list of seen sequence numbers. Allows for reusing them.
+     *
+     * @param addr the address the sequence number was seen from
+     * @param seq  to be removed
+     */
+    public void removeSeq(int addr, int seq) {
+        seqTracker.forget(addr, seq);
+    }
+
+    /**
+     * Marks a sequence number of an address as seen.
+     *
+     * @return false if it was seen already
+     */
+    private boolean markSeq(int addr, int seq) {
+        return seqTracker.mark(addr, seq, (int) (clock.getAsLong() / 1000));
+    }
+
+    /**
+     * @param address the address the frame is sent for
+     * @return a new random seq whose timeout is already handled
+     */
+    private int getSeq(int address) {
+        int randomNum = ThreadLocalRandom.current().nextInt(0, 0b11111111 + 1);
+        markSeq(address, randomNum);
+        return randomNum;
+    }
+
+    /**
+     * @param address the address the frame is sent for
+     * @return the next 4-bit seq for an extended frame, its timeout is already handled
+     */
+    private synchronized int getExtendedSeq(int address) {
+        extendedSeq = (extendedSeq + 1) & 0xF;
+        seqTracker.forget(address, extendedSeq);
+        markSeq(address, extendedSeq);
+        return extendedSeq;
+    }
+
+    /**
+     * Builds a HELLO packet
+     * sequence is random, address=our local address.
+     * The packet is extended when our address does not fit the base header.
+     *
+     * @return a DA_Header object representing the packet
+     */
+    public DA_Header makeHelloPacket() {
+        return makePacket(false);
+    }
+
+    /**
+     * Builds a keepalive for a routing update. A keepalive only goes to the neighbours and is not flooded,
+     * so it needs no sequence number.
+     *
+     * @return a DA_Header object representing the keepalive, or null while the node is joining
+     */
+    public DA_Header makeKeepalivePacket() {
+        if (!isJoined()) return null;
+        int address = localAddress.getAsInt();
+        return new DA_Header(AddressHeader.isBaseAddress(address) ? 0 : DA_Header.EXTENDED_PROTOCOL,
+                false, 0, address);
+    }
+
+    /**
+     * Turns piggybacked mode on or off, see the class description.
+     *
+     * @param piggybacked Whether the routing updates of the node carry its keepalive
+     */
+    public void setPiggybacked(boolean piggybacked) {
+        setPiggybacked(() -> piggybacked);
+    }
+
+    /**
+     * Makes piggybacked mode follow the routing updates, see the class description.
+     *
+     * @param piggybacked Tells whether the routing updates of the node carry its keepalive right now
+     */
+    public void setPiggybacked(BooleanSupplier piggybacked) {
+        this.piggybacked = piggybacked;
+    }
+
+    private boolean isPiggybacked() {
+        return piggybacked.getAsBoolean();
+    }
+
+    /**
+     * Holds extended frames back while a deployed node may hear them, see the class description.
+     *
+     * @param deployedHeard Tells whether a neighbour that only knows the base layout is heard right now
+     */
+    public void setDeployedHeard(BooleanSupplier deployedHeard) {
+        this.deployedHeard = deployedHeard;
+    }
+
+    /**
+     * @return whether addresses above 15 can be used right now
+     */
+    private boolean usesExtendedAddresses() {
+        return extended && !deployedHeard.getAsBoolean();
+    }
+
+    /**
+     * Sends a DA frame, unless it is extended and a deployed node may hear it.
+     */
+    private void send(DA_Header packet) throws NetworkException {
+        if (packet.isExtended() && deployedHeard.getAsBoolean()) return;
+        lower.ReceiveHeader(packet);
+    }
+
+    /**
+     * Turns relay suppression on or off, see the class description.
+     *
+     * @param scheduler Runs the delayed relays, null to relay every HELLO right away
+     * @param distance  Gives the route cost to an address, or -1 if there is no route
+     */
+    public void setRelaySuppression(Scheduler scheduler, IntUnaryOperator distance) {
+        this.distance = distance;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Turns the Trickle timer for HELLOs on or off, see the class description. The longest interval depends
+     * on whether the agent is piggybacked, {@link #tick()} starts a new timer when that changes. With the
+     * timer on, the owner should no longer call {@link #sendHello()} at a fixed rate, only {@link #tick()}.
+     *
+     * @param on Whether the timer is used
+     */
+    public void setTrickle(boolean on) {
+        int maxInterval = 2 * (isPiggybacked() ? PIGGYBACKED_HELLO_INTERVAL : DynamicAddressing.KEEP_ALIVE_INTERVAL);
+        trickleInterval = maxInterval;
+        trickle = on ? new TrickleTimer(maxInterval, Integer.MAX_VALUE, maxInterval, random) : null;
+    }
+
+    /**
+     * Gets the interval in which a joined node with the same settings sends at least one HELLO. Without a
+     * Trickle timer the owner sends every {@link DynamicAddressing#KEEP_ALIVE_INTERVAL} seconds, when
+     * piggybacked one of these calls after {@link #PIGGYBACKED_HELLO_INTERVAL} seconds sends it.
+     *
+     * @return the interval in seconds
+     */
+    public int getHelloInterval() {
+        boolean piggybacked = isPiggybacked();
+        int interval = piggybacked ? PIGGYBACKED_HELLO_INTERVAL : DynamicAddressing.KEEP_ALIVE_INTERVAL;
+        if (trickle != null) return 2 * interval;
+        return piggybacked ? interval + DynamicAddressing.KEEP_ALIVE_INTERVAL : interval;
+    }
+
+    /**
+     * @return true if HELLOs are sent by a Trickle timer instead of by the owner
+     */
+    public boolean usesTrickle() {
+        return trickle != null;
+    }
+
+    private void resetTrickle() {
+        TrickleTimer timer = trickle;
+        if (timer != null) timer.reset();
+    }
+
+    /**
+     * Builds a CONFLICT packet (conflict=true).
+     *
+     * @return a DA_Header object representing the conflict packet
+     */
+    private DA_Header makeConflictPacket() {
+        return makePacket(true);
+    }
+
+    private DA_Header makePacket(boolean conflict) {
+        int address = localAddress.getAsInt();
+        if (AddressHeader.isBaseAddress(address)) {
+            return new DA_Header(0, conflict, getSeq(address), address);
+        }
+        return new DA_Header(DA_Header.EXTENDED_PROTOCOL, conflict, getExtendedSeq(address), address);
+    }
+
+    /**
+     * Builds a PROBE packet for an address this node wants to take.
+     *
+     * @param address the address that is probed
+     * @return a DA_Header object representing the probe packet
+     */
+    private DA_Header makeProbePacket(int address) {
+        if (AddressHeader.isBaseAddress(address)) {
+            return new DA_Header(DA_Header.PROBE_PROTOCOL, false, getSeq(address), address);
+        }
+        return new DA_Header(DA_Header.EXTENDED_PROBE_PROTOCOL, false, getExtendedSeq(address), address);
+    }
+
+    /**
+     * Sends a HELLO packet for this node. Nothing is sent while the node is joining, and when piggybacked
+     * only if the last HELLO is {@link #PIGGYBACKED_HELLO_INTERVAL} seconds ago.
+     *
+     * @throws NetworkException If the packet could not be sent
+     */
+    public void sendHello() throws NetworkException {
+        if (!isJoined()) return;
+        boolean piggybacked = isPiggybacked();
+        synchronized (this) {
+            long now = clock.getAsLong();
+            if (piggybacked && helloSent
+                    && now - lastHello < TimeUnit.SECONDS.toMillis(PIGGYBACKED_HELLO_INTERVAL)) return;
+            helloSent = true;
+            lastHello = now;
+        }
+        TrickleTimer timer = trickle;
+        if (timer != null) timer.transmitted();
+        send(makeHelloPacket());
+    }
+
+    /**
+     * Starts looking for a free address, see the class description. Until it is found {@link #isJoined()}
+     * is false and the current address should not be used.
+     *
+     * @param inUse tells whether an address is used by a known node or route, other than this node
+     */
+    public synchronized void join(IntPredicate inUse) {
+        this.inUse = inUse;
+        claimed.clear();
+        joined = false;
+        candidate = -1;
+        probesSent = 0;
+        joinTimer = LISTEN_TIME;
+    }
+
+    /**
+     * @return false while the node is looking for a free address
+     */
+    public synchronized boolean isJoined() {
+        return joined;
+    }
+
+    /**
+     * Advances the join by one second: picks an address after listening, sends the next PROBE or takes
+     * the address. Once joined it only sends the HELLOs of the Trickle timer, if there is one.
+     *
+     * @throws NetworkException If a packet could not be sent
+     */
+    public void tick() throws NetworkException {
+        TrickleTimer timer = trickle;
+        if (timer != null && getHelloInterval() != trickleInterval) {
+            setTrickle(true); // Piggybacked mode changed
+            timer = trickle;
+        }
+        if (timer != null && isJoined() && timer.tick()) {
+            synchronized (this) {
+                helloSent = true;
+                lastHello = clock.getAsLong();
+            }
+            timer.transmitted();
+            send(makeHelloPacket());
+        }
+        DA_Header packet;
+        synchronized (this) {
+            if (joined || --joinTimer > 0) return;
+            if (candidate < 0) candidate = pickAddress();
+            if (probesSent < PROBE_COUNT) {
+                probesSent++;
+                joinTimer = probesSent < PROBE_COUNT ? PROBE_INTERVAL : ANNOUNCE_WAIT;
+                packet = makeProbePacket(candidate);
+            } else {
+                joined = true;
+                if (candidate != localAddress.getAsInt()) onNewAddress.accept(candidate);
+                packet = makeHelloPacket();
+                helloSent = true;
+                lastHello = clock.getAsLong();
+            }
+        }
+        if (!packet.isProbe()) resetTrickle(); // A new address, the HELLOs after it follow quickly
+        send(packet);
+    }
+
+    /**
+     * Picks a free address: the current one when nothing else uses it, a random free one otherwise.
+     * Known nodes and routes can be stale, when they leave nothing free only the addresses heard of
+     * during this join count. When even those are all taken it picks any, the PROBEs will fail until
+     * one frees up.
+     */
+    private int pickAddress() {
+        int current = localAddress.getAsInt();
+        if (isUsable(current, addressCount()) && !claimed.contains(current) && !inUse.test(current)) return current;
+        List<Integer> free = freeAddresses(inUse);
+        if (free.isEmpty()) free = freeAddresses(address -> false);
+        if (free.isEmpty()) free = freeAddresses(null);
+        return free.get(random.nextInt(free.size()));
+    }
+
+    /**
+     * @param taken the addresses that are taken besides the claimed ones, null to ignore the claims too
+     */
+    private List<Integer> freeAddresses(IntPredicate taken) {
+        List<Integer> free = new ArrayList<>();
+        int count = addressCount();
+        for (int address = 0; address < count; address++) {
+            if (isUsable(address, count) && (taken == null || !claimed.contains(address) && !taken.test(address))) {
+                free.add(address);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * @return whether the node can have the address, 7 is the broadcast address
+     */
+    private static boolean isUsable(int address, int count) {
+        return address != 7 && address < count;
+    }
+
+    /**
+     * @return the number of addresses a new address is picked from
+     */
+    private int addressCount() {
+        return usesExtendedAddresses() ? AddressHeader.EXTENDED_ADDRESSES : AddressHeader.BASE_ADDRESSES;
+    }
+
+    /**
+     * Called when we receive a DA_Header from the network.
+     * Distinguishes HELLO vs. CONFLICT and updates state accordingly.
+     *
+     * @param packet The inbound DA_Header
+     * @throws NetworkException If a reply or rebroadcast could not be sent
+     */
+    public void receive(DA_Header packet) throws NetworkException {
+        if (packet.isExtended() && !extended) {
+            return; // Not a format this node speaks
+        }
+        if (!markSeq(packet.getAddress(), packet.getSequence())) {
+            synchronized (copiesHeard) {
+                copiesHeard.computeIfPresent(key(packet), (_, copies) -> copies + 1);
+            }
+            return;
+        }
+        if (handleWhileJoining(packet)) {
+            return;
+        }
+
+        if (packet.getAddress() == localAddress.getAsInt()) {
+            resetTrickle();
+            if (packet.isConflict()) {
+                handleConflict(packet.getAddress());
+            } else {
+                send(makeConflictPacket());
+            }
+        } else if (packet.isProbe()) {
+            send(packet);
+        } else {
+            handleHello(packet);
+        }
+    }
+
+    /**
+     * Called with the keepalive of a routing update from a neighbour. It is not passed on. A neighbour
+     * that has our address is answered with a CONFLICT, like a HELLO would be.
+     *
+     * @param keepalive The keepalive of the update
+     * @throws NetworkException If the conflict could not be sent
+     */
+    public void receiveKeepalive(DA_Header keepalive) throws NetworkException {
+        if (keepalive.isExtended() && !extended) {
+            return;
+        }
+        synchronized (this) {
+            if (!joined) {
+                claim(keepalive.getAddress());
+                return;
+            }
+        }
+        if (keepalive.getAddress() == localAddress.getAsInt()) {
+            send(makeConflictPacket());
+        }
+    }
+
+    /**
+     * While joining the node owns no address, so it answers nothing. Every address it hears of is
+     * claimed, when that is the address being probed the next tick picks another one.
+     *
+     * @return false when the node is joined and the packet still has to be handled
+     */
+    private boolean handleWhileJoining(DA_Header packet) throws NetworkException {
+        synchronized (this) {
+            if (joined) return false;
+            claim(packet.getAddress());
+        }
+        send(packet);
+        if (!packet.isProbe() && !isPiggybacked()) onNodeSeen.accept(packet.getAddress());
+        return true;
+    }
+
+    /**
+     * Remembers an address heard of while joining, the next tick picks another one when it is the one
+     * being probed. Caller must hold the lock.
+     */
+    private void claim(int address) {
+        claimed.add(address);
+        if (address == candidate) {
+            candidate = -1;
+            probesSent = 0;
+            joinTimer = 1;
+        }
+    }
+
+    /**
+     * Conflict logic
+     * if the conflict is for us => renew address,
+     * otherwise ignore.Renews our local address if we detect conflict for ourselves.
+     * After a {@link #join(IntPredicate) join} the new address is probed first.
+     */
+    private void handleConflict(int senderAddr) {
+        synchronized (this) {
+            if (inUse != null) {
+                claimed.clear();
+                claimed.add(senderAddr);
+                joined = false;
+                candidate = -1;
+                probesSent = 0;
+                joinTimer = 1;
+                return;
+            }
+        }
+        int newAddr;
+        if (usesExtendedAddresses()) {
+            do {
+                newAddr = random.nextInt(AddressHeader.EXTENDED_ADDRESSES);
+            } while (newAddr == senderAddr || newAddr == 7);
+        } else {
+            do {
+                newAddr = random.nextInt(16);
+            } while (newAddr == senderAddr);
+        }
+
+        onNewAddress.accept(newAddr);
+    }
+
+    /**
+     * HELLO logic: flood it further and add or refresh TTL for the sender, unless piggybacked.
+     */
+    private void handleHello(DA_Header hello) throws NetworkException {
+        if (!isPiggybacked()) onNodeSeen.accept(hello.getAddress());
+        Scheduler relayScheduler = scheduler;
+        if (relayScheduler == null || hello.isConflict()) {
+            send(hello);
+            return;
+        }
+        int cost = distance.applyAsInt(hello.getAddress());
+        if (cost >= RELAY_SCOPE) {
+            return; // Out of scope
+        }
+        int key = key(hello);
+        synchronized (copiesHeard) {
+            copiesHeard.put(key, 1);
+        }
+        relayScheduler.schedule(() -> relayUnlessSuppressed(key, hello), random.nextInt(MAX_RELAY_DELAY));
+    }
+
+    /**
+     * Relays a HELLO after its delay, unless enough copies of it were overheard meanwhile.
+     */
+    private void relayUnlessSuppressed(int key, DA_Header hello) {
+        Integer copies;
+        synchronized (copiesHeard) {
+            copies = copiesHeard.remove(key);
+        }
+        if (copies == null || copies >= COPY_THRESHOLD) {
+            return;
+        }
+        try {
+            send(hello);
+        } catch (NetworkException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the key of a DA frame in the copy counts, its address and sequence number
+     */
+    private static int key(DA_Header packet) {
+        return packet.getAddress() << 8 | packet.getSequence() & 0xFF;
+    }
+}
@@ -5,37 +5,77 @@ import Model.Exceptions.NetworkException;
 import Model.LayerModel;
 import Model.Packet;
 import NetworkLayer.DA_Header;
+import NetworkLayer.LinkQuality;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import NetworkLayer.NetworkLayer;
 import NetworkLayer.NetworkingDAO;
 
-import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ThreadLocalRandom;
 
 /** Implementation Class For Dynamic Adressing */
 public enum DynamicAddressing implements LayerModel {
 
     INSTANCE;
 
-    private final Random random = new Random();
-    private final Map<Integer, Set<Integer>> seqMap = new HashMap<>(); // Mapping between node -> last seq no seen
-    private final Integer KEEP_ALIVE_INTERVAL = 30;
+    /**
+     * Interval in seconds between HELLO packets of this node.
+     */
+    public static final int KEEP_ALIVE_INTERVAL = 30;
+
     private final ScheduledExecutorService executor;
-    private final int SEQ_NO_EXPIRY_TIME = 2;
+    private final AddressingAgent agent;
 
 
     /**
      * Private constructor for singleton.
-     * Initializes local address from the NetworkingDAO and
-     * starts with TTL=60 for ourselves.
+     * Creates the DA agent of this node, lets it {@link AddressingAgent#join join} the network and starts
+     * sending a HELLO every {@link #KEEP_ALIVE_INTERVAL} seconds once joined. The agent handles extended
+     * DA frames when the {@value NetworkLayer#EXTENDED_PROPERTY} system property is {@code true}, and is
+     * {@link AddressingAgent#setPiggybacked piggybacked} while the routing updates carry the keepalive. The
+     * HELLO interval the link estimate expects follows it. Extended frames are held back while a deployed
+     * node is a neighbour.
+     * HELLOs of other nodes are relayed with {@link AddressingAgent#setRelaySuppression suppression}. With
+     * the {@value NetworkLayer#TRICKLE_PROPERTY} system property the agent sends its HELLOs with a Trickle
+     * timer instead.
      */
     DynamicAddressing() {
         executor = Executors.newScheduledThreadPool(2);
+        agent = new AddressingAgent(this::getLocalAddress,
+                header -> LinkLayer.getSingleton().ReceiveHeader(header),
+                () -> System.nanoTime() / 1_000_000,
+                node -> NetworkingDAO.getInstance().updateNode(node),
+                newAddr -> NetworkingDAO.getInstance().setLocalAddress(newAddr),
+                Boolean.getBoolean(NetworkLayer.EXTENDED_PROPERTY));
+        agent.setPiggybacked(NetworkLayer.getSingleton()::carriesKeepalive);
+        agent.setDeployedHeard(NetworkLayer.getSingleton()::hearsDeployedNode);
+        agent.setTrickle(Boolean.getBoolean(NetworkLayer.TRICKLE_PROPERTY));
+        NetworkingDAO.getInstance().setLinkInterval(LinkQuality.Source.HELLO, agent.getHelloInterval());
+        agent.setRelaySuppression((task, delay) -> executor.schedule(task, delay, TimeUnit.MILLISECONDS),
+                address -> {
+                    RouteEntry route = NetworkLayer.getSingleton().getRoutingEngine().getRoute(address);
+                    return route == null ? -1 : route.cost;
+                });
+        agent.join(this::isInUse);
+        executor.scheduleAtFixedRate(
+                () -> {
+                    try {
+                        agent.tick();
+                        NetworkingDAO.getInstance().setLinkInterval(LinkQuality.Source.HELLO, agent.getHelloInterval());
+                    } catch (NetworkException e) {
+                        throw new RuntimeException(e);
+                    }
+                },
+                1,
+                1,
+                TimeUnit.SECONDS
+        );
+        if (agent.usesTrickle()) return; // The ticks send the HELLOs
         executor.scheduleAtFixedRate(
                 () -> {
                     try {
-                        LinkLayer.getSingleton().ReceiveHeader(makeHelloPacket());
+                        agent.sendHello();
                     } catch (NetworkException e) {
                         throw new RuntimeException(e);
                     }
@@ -50,6 +90,23 @@ public enum DynamicAddressing implements LayerModel {
         return NetworkingDAO.getInstance().getLocalAddress();
     }
 
+    /**
+     * An address is in use when another node with it is known or routed to.
+     */
+    private boolean isInUse(int address) {
+        return address != getLocalAddress()
+                && (NetworkingDAO.getInstance().getKnownNodes().contains(address)
+                || NetworkLayer.getSingleton().getRoute(address) != null);
+    }
+
+    /**
+     * @return false while this node is still looking for a free address, it should not send routing
+     * updates with its address then
+     */
+    public boolean isJoined() {
+        return agent.isJoined();
+    }
+
     /**
      * Gets the singleton instance.
      */
@@ -62,8 +119,8 @@ public enum DynamicAddressing implements LayerModel {
      *
      * @param seq to be removed
      */
-    public synchronized void removeSeq(int seq) {
-        seqMap.get(getLocalAddress()).remove(seq);
+    public void removeSeq(int seq) {
+        agent.removeSeq(getLocalAddress(), seq);
     }
 
     /**
@@ -71,41 +128,37 @@ public enum DynamicAddressing implements LayerModel {
      *
      * @param seq to be removed
      */
-    public synchronized void removeSeq(int addr, int seq) {
-        seqMap.get(addr).remove(seq);
+    public void removeSeq(int addr, int seq) {
+        agent.removeSeq(addr, seq);
     }
 
     /**
-     * @return a new random seq whose timeout is already handled
+     * Builds a HELLO packet
+     * sequence is random, address=our local address.
+     *
+     * @return a DA_Header object representing the packet
      */
-    private int getSeq() {
-        int randomNum = ThreadLocalRandom.current().nextInt(0, 0b11111111 + 1);
-        if (!seqMap.containsKey(getLocalAddress())) {
-            seqMap.put(getLocalAddress(), new HashSet<>());
-        }
-        seqMap.get(getLocalAddress()).add(randomNum);
-        executor.schedule(() -> removeSeq(randomNum), SEQ_NO_EXPIRY_TIME, TimeUnit.MINUTES);
-
-        return randomNum;
+    public DA_Header makeHelloPacket() {
+        return agent.makeHelloPacket();
     }
 
     /**
-     * Builds a HELLO packet
-     * sequence auto-increments, address=our local address.
+     * Builds the keepalive that routing updates carry.
      *
-     * @return a DA_Header object representing the packet
+     * @return a DA_Header object representing the keepalive, or null while this node is joining
      */
-    public DA_Header makeHelloPacket() {
-        return new DA_Header(0, false, getSeq(), getLocalAddress());
+    public DA_Header makeKeepalivePacket() {
+        return agent.makeKeepalivePacket();
     }
 
     /**
-     * Builds a CONFLICT packet (conflict=true).
+     * Called with the keepalive of a routing update from a neighbour.
      *
-     * @return a DA_Header object representing the conflict packet
+     * @param keepalive The keepalive of the update
+     * @throws NetworkException If a conflict could not be sent
      */
-    private DA_Header makeConflictPacket() {
-        return new DA_Header(0, true, getSeq(), getLocalAddress());
+    public void receiveKeepalive(DA_Header keepalive) throws NetworkException {
+        agent.receiveKeepalive(keepalive);
     }
 
     /**
@@ -113,67 +166,11 @@ public enum DynamicAddressing implements LayerModel {
      * Distinguishes HELLO vs. CONFLICT and updates state accordingly.
      *
      * @param header The inbound DA_Header
+     * @throws NetworkException If a reply or rebroadcast could not be sent
      */
     @Override
-    public void ReceiveHeader(Packet header) {
-        DA_Header packet = (DA_Header) header;
-
-        if (!seqMap.containsKey(packet.getAddress())) {
-            seqMap.put(packet.getAddress(), new HashSet<>());
-        }
-        if (seqMap.get(packet.getAddress()).contains(packet.getSequence())) {
-            return;
-        }
-        seqMap.get(packet.getAddress()).add(packet.getSequence());
-        executor.schedule(() -> removeSeq(packet.getAddress(), packet.getSequence()), SEQ_NO_EXPIRY_TIME, TimeUnit.MINUTES);
-
-
-        if (packet.getAddress() == NetworkingDAO.getInstance().getLocalAddress()) {
-            if (packet.isConflict()) {
-                handleConflict(packet.getAddress());
-            } else {
-                try {
-                    LinkLayer.getSingleton().ReceiveHeader(makeConflictPacket());
-                } catch (NetworkException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        } else {
-            handleHello(packet);
-        }
-
-    }
-
-    /**
-     * Conflict logic
-     * if the conflict is for us => renew address,
-     * otherwise ignore.Renews our local address if we detect conflict for ourselves.
-     * Clears old neighbor info, re-adds ourselves with TTL=60.
-     */
-    private void handleConflict(int senderAddr) {
-        int newAddr;
-        do {
-            newAddr = random.nextInt(16);
-        } while (newAddr == senderAddr);
-
-        NetworkingDAO.getInstance().setLocalAddress(newAddr);
-
-    }
-
-
-    /**
-     * HELLO logic: add or refresh TTL for the sender.
-     */
-    private void handleHello(DA_Header hello) {
-        //Should we rebroadcast
-        try {
-            LinkLayer.getSingleton().ReceiveHeader(hello);
-        } catch (NetworkException e) {
-            throw new RuntimeException(e);
-        }
-        NetworkingDAO.getInstance().updateNode(hello.getAddress());
-
-
+    public void ReceiveHeader(Packet header) throws NetworkException {
+        agent.receive((DA_Header) header);
     }
 
-}
\ No newline at end of file
+}
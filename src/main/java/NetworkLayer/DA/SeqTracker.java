@@ -0,0 +1,70 @@
+package NetworkLayer.DA;
+
+/**
+ * Remembers which DA sequence numbers were seen from every address, so a flooded DA frame is handled
+ * only once. Per address it keeps a 256-bit set with one bit per sequence number, and per sequence
+ * number the second it was seen. A bit older than the expiry time counts as not seen, so numbers are
+ * forgotten without any cleanup task. Checking and marking is O(1). The sets of an address are
+ * allocated the first time it is heard from, so a large address space costs only the addresses in use.
+ */
+public class SeqTracker {
+
+    private static final int SEQUENCES = 256;
+    private static final int WORDS = SEQUENCES / Long.SIZE;
+
+    private final int addresses;
+    private final int expirySeconds;
+    private final long[][] seen;
+    private final int[][] seenAt;
+
+    /**
+     * @param addresses     the number of addresses to track, addresses run from 0 to this value minus one
+     * @param expirySeconds seconds after which a seen sequence number is forgotten
+     */
+    public SeqTracker(int addresses, int expirySeconds) {
+        this.addresses = addresses;
+        this.expirySeconds = expirySeconds;
+        this.seen = new long[addresses][];
+        this.seenAt = new int[addresses][];
+    }
+
+    /**
+     * Checks a sequence number and marks it as seen.
+     *
+     * @param address  the address the sequence number belongs to
+     * @param sequence the sequence number (range 0-255)
+     * @param now      the current time in seconds
+     * @return true if it was not seen within the expiry time, false if it is a duplicate
+     */
+    public synchronized boolean mark(int address, int sequence, int now) {
+        if (address < 0 || address >= addresses) {
+            return false;
+        }
+        if (seen[address] == null) {
+            seen[address] = new long[WORDS];
+            seenAt[address] = new int[SEQUENCES];
+        }
+        sequence &= 0xFF;
+        int word = sequence >>> 6;
+        long bit = 1L << sequence; // Shifts only use the low 6 bits
+        if ((seen[address][word] & bit) != 0 && now - seenAt[address][sequence] < expirySeconds) {
+            return false;
+        }
+        seen[address][word] |= bit;
+        seenAt[address][sequence] = now;
+        return true;
+    }
+
+    /**
+     * Forgets a sequence number, so it is accepted again.
+     *
+     * @param address  the address the sequence number belongs to
+     * @param sequence the sequence number (range 0-255)
+     */
+    public synchronized void forget(int address, int sequence) {
+        if (address >= 0 && address < addresses && seen[address] != null) {
+            sequence &= 0xFF;
+            seen[address][sequence >>> 6] &= ~(1L << sequence);
+        }
+    }
+}
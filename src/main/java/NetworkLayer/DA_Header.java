@@ -9,9 +9,34 @@ import Model.Packet;
  * This header is used for address allocation, conflict resolution, and network configuration.
  * The DA header is sent as a short packet (16 bits) containing protocol information,
  * conflict flag, sequence number, and address information.
+ * <p>
+ * With protocol {@value #EXTENDED_PROTOCOL} the header is extended: the sequence number is 4 bits and
+ * the address 8 bits. Nodes with an address above 15 send their DA frames this way. Deployed nodes do not
+ * check the protocol and read any DA frame in the base layout, so extended frames are only sent where no
+ * deployed node hears them.
+ * <p>
+ * Protocols {@value #PROBE_PROTOCOL} and {@value #EXTENDED_PROBE_PROTOCOL} are PROBEs: a joining node
+ * asks whether an address is free before it takes it. A node that owns the address answers with a
+ * CONFLICT, like it does for a HELLO.
  */
 public class DA_Header implements Packet {
 
+    /**
+     * Protocol value of an extended DA header, with a 4-bit sequence number and an 8-bit address. Deployed
+     * nodes read it as a base header.
+     */
+    public static final int EXTENDED_PROTOCOL = 1;
+
+    /**
+     * Protocol value of a PROBE for an address, in the base layout.
+     */
+    public static final int PROBE_PROTOCOL = 2;
+
+    /**
+     * Protocol value of a PROBE for an address, in the extended layout.
+     */
+    public static final int EXTENDED_PROBE_PROTOCOL = 3;
+
     private int protocol;
     private boolean conflict;
     private int sequence;
@@ -23,8 +48,8 @@ public class DA_Header implements Packet {
      *
      * @param protocol The protocol identifier (3 bits, range 0-7)
      * @param conflict Flag indicating if there is an address conflict (true) or not (false)
-     * @param sequence The sequence number for packet ordering (8 bits, range 0-255)
-     * @param address The network address (4 bits, range 0-15)
+     * @param sequence The sequence number for packet ordering (8 bits, range 0-255, 4 bits when extended)
+     * @param address The network address (4 bits, range 0-15, 8 bits when extended)
      */
     public DA_Header(int protocol, boolean conflict, int sequence, int address) {
         this.protocol = protocol;
@@ -95,10 +120,38 @@ public class DA_Header implements Packet {
         this.sequence = sequence;
     }
 
+    /**
+     * Checks if this header uses the extended layout.
+     *
+     * @return true if the protocol is {@value #EXTENDED_PROTOCOL} or {@value #EXTENDED_PROBE_PROTOCOL}
+     */
+    public boolean isExtended() {
+        return isExtended(protocol);
+    }
+
+    /**
+     * Checks if a protocol value uses the extended layout.
+     *
+     * @param protocol The protocol identifier
+     * @return true if it is {@value #EXTENDED_PROTOCOL} or {@value #EXTENDED_PROBE_PROTOCOL}
+     */
+    public static boolean isExtended(int protocol) {
+        return protocol == EXTENDED_PROTOCOL || protocol == EXTENDED_PROBE_PROTOCOL;
+    }
+
+    /**
+     * Checks if this header is a PROBE for its address.
+     *
+     * @return true if the protocol is {@value #PROBE_PROTOCOL} or {@value #EXTENDED_PROBE_PROTOCOL}
+     */
+    public boolean isProbe() {
+        return protocol == PROBE_PROTOCOL || protocol == EXTENDED_PROBE_PROTOCOL;
+    }
+
     /**
      * Gets the network address.
      *
-     * @return The network address (range 0-15)
+     * @return The network address (range 0-15, 0-255 when extended)
      */
     public int getAddress() {
         return address;
@@ -107,11 +160,11 @@ public class DA_Header implements Packet {
     /**
      * Sets the network address.
      *
-     * @param address The address to set (must be in range 0-15)
+     * @param address The address to set (must be in range 0-15, 0-255 when extended)
      * @throws PayloadException If the address value is outside the valid range
      */
     public void setAddress(int address) throws PayloadException {
-        if (address < 0 || address > 15) { // Using literal number 15
+        if (address < 0 || address > (isExtended() ? 255 : 15)) {
             throw new PayloadException(LAYER.NETWORK, this, "DA Header, Address is out of range");
         }
         this.address = address;
@@ -0,0 +1,651 @@
+package NetworkLayer.DV;
+
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DV_Header;
+import NetworkLayer.LinkQuality;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import NetworkLayer.RoutingEngine;
+import NetworkLayer.RoutingMetrics;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * <h1>Distance Vector routing engine</h1>
+ * Holds the routing table of one node and implements the Distance Vector algorithm on top of it.
+ * The engine does not send anything itself, the owner decides when to broadcast
+ * {@link #makeAdvertisement() advertisements}. This keeps it usable outside the
+ * {@link NetworkLayer.NetworkLayer NetworkLayer} singleton, for example in benchmarks.
+ * <p>
+ * Loop prevention consists of:
+ * <ul>
+ *     <li><b>Split horizon with poisoned reverse</b>: every advertised route carries the next hop the
+ *     sender uses. A receiver treats a route that goes through itself as unreachable.</li>
+ *     <li><b>Hold-down</b>: a destination that became unreachable is advertised with cost {@link #INFINITY}
+ *     for {@link #HOLD_DOWN_TIME} seconds, and advertisements about it are ignored meanwhile, unless the
+ *     destination itself announces it is a direct neighbour. The best route offered during hold-down is
+ *     installed when the hold-down ends.</li>
+ * </ul>
+ * <p>
+ * Every advertisement is remembered as an offer per destination and neighbour, so the engine knows the
+ * best {@link #MAX_NEXT_HOPS} next hops for every destination and not only the one in use. When the
+ * primary next hop expires, poisons the route or is removed, the route fails over to the best alternate
+ * right away instead of waiting for new advertisements. Only alternates that do not route through this
+ * node are used, so a failover can not create a loop. With
+ * {@link #setLoadBalancing(boolean) load balancing} on, packets are spread over all next hops that
+ * offer the same cost.
+ * <p>
+ * Every update also tells that its sender is alive. A neighbour that sends nothing for
+ * {@link #NEIGHBOUR_TIMEOUT} seconds is lost: its offers are dropped and the routes through it fail over.
+ * Routes do not age on their own, they live as long as their next hop is heard and keeps offering them.
+ * <p>
+ * A route costs the cost of its next hop plus one {@link #setLinkCost(IntUnaryOperator) link cost}. By
+ * default every link costs 1, so the cost is the hop count. With a link quality estimate, like the ETX of
+ * {@link LinkQuality}, a lossy link costs more and a longer route over clean links can win.
+ */
+public class DistanceVector implements RoutingEngine {
+
+    /**
+     * Interval in seconds between periodic Distance Vector updates.
+     */
+    public static final int DV_UPDATE_INTERVAL = 60;
+
+    /**
+     * Seconds without any update after which a neighbour is lost, 3 times the DV update interval.
+     */
+    public static final int NEIGHBOUR_TIMEOUT = DV_UPDATE_INTERVAL * 3;
+
+    /**
+     * Cost threshold beyond which a node is considered unreachable.
+     * Routes with costs greater than or equal to this value will be removed.
+     */
+    public static final int INFINITY = 8;
+
+    /**
+     * Seconds a lost destination stays poisoned before new routes to it are accepted again.
+     */
+    public static final int HOLD_DOWN_TIME = 15;
+
+    /**
+     * Number of next hops kept per destination, the primary one included.
+     */
+    public static final int MAX_NEXT_HOPS = 3;
+
+    private static final int NODES = AddressHeader.EXTENDED_ADDRESSES;
+
+    private final IntSupplier localAddress;
+    private final boolean loopPrevention;
+    private final RoutingMetrics metrics = new RoutingMetrics();
+    private volatile boolean loadBalancing;
+    private volatile IntUnaryOperator linkCost = _ -> 1;
+
+    /**
+     * Routing table that maps destination addresses to RouteEntry objects.
+     */
+    private final Map<Integer, RouteEntry> table = new HashMap<>();
+
+    /**
+     * Destinations in hold-down, mapped to the seconds they still stay there.
+     */
+    private final Map<Integer, Integer> holdDown = new HashMap<>();
+
+    /**
+     * Cost offered per neighbour and destination, {@link #INFINITY} when there is no offer. The row of a
+     * neighbour is created the first time it offers something, so only actual neighbours take memory.
+     */
+    private final int[][] offerCost = new int[NODES][];
+
+    /**
+     * Tick at which each neighbour is lost unless it sends an update before.
+     */
+    private final int[] heardUntil = new int[NODES];
+
+    /**
+     * Number of ticks so far, the clock of the neighbours.
+     */
+    private int ticks;
+
+    /**
+     * Next hop that is used last per destination when spreading load.
+     */
+    private final int[] lastSpread = new int[NODES];
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Constructs a new engine with loop prevention enabled.
+     *
+     * @param localAddress Supplies the current address of the node that owns this table
+     */
+    public DistanceVector(IntSupplier localAddress) {
+        this(localAddress, true);
+    }
+
+    /**
+     * Constructs a new engine.
+     *
+     * @param localAddress   Supplies the current address of the node that owns this table
+     * @param loopPrevention Whether poisoned reverse and hold-down are applied. Without it the engine
+     *                       behaves like plain Distance Vector, which is only useful for comparisons.
+     */
+    public DistanceVector(IntSupplier localAddress, boolean loopPrevention) {
+        this.localAddress = localAddress;
+        this.loopPrevention = loopPrevention;
+        int addr = localAddress.getAsInt();
+        table.put(addr, new RouteEntry(addr, 0));
+    }
+
+    /**
+     * Handles a DV header (next protocol 2 or 3) received from a neighbour. Only the destinations in the
+     * range of the header are updated.
+     *
+     * @param header The address header that carries the DV header
+     * @return true if the routing table changed and a triggered update should be sent,
+     * false if it did not or if the header is not a DV header
+     */
+    @Override
+    public boolean handleAdvertisement(AddressHeader header) {
+        if (!(header.getUpperHeader() instanceof DV_Header dv)) {
+            return false;
+        }
+        return handleUpdate(header.getSource(), dv.getDistanceVector(), dv.getNextHops(),
+                dv.getFirst(), dv.getLast());
+    }
+
+    /**
+     * DV updates only go to direct neighbours.
+     *
+     * @return false
+     */
+    @Override
+    public boolean floodsAdvertisements() {
+        return false;
+    }
+
+    /**
+     * Handles a Distance Vector update received from a neighbour.
+     *
+     * @param neighbourId The address of the neighbour that sent the update
+     * @param receivedDV  The distance vector received from the neighbour
+     * @param nextHops    The next hop the neighbour uses per destination, empty if it did not send them
+     * @return true if the routing table changed and a triggered update should be sent
+     */
+    public boolean handleUpdate(int neighbourId, Map<Integer, Integer> receivedDV, Map<Integer, Integer> nextHops) {
+        return handleUpdate(neighbourId, receivedDV, nextHops, 0, NODES - 1);
+    }
+
+    /**
+     * Handles a Distance Vector update received from a neighbour that covers a range of destinations.
+     * Destinations in the range that the update does not list are no longer offered by the neighbour.
+     *
+     * @param neighbourId The address of the neighbour that sent the update
+     * @param receivedDV  The distance vector received from the neighbour
+     * @param nextHops    The next hop the neighbour uses per destination, empty if it did not send them
+     * @param first       The lowest destination the update covers
+     * @param last        The highest destination the update covers
+     * @return true if the routing table changed and a triggered update should be sent
+     */
+    public boolean handleUpdate(int neighbourId, Map<Integer, Integer> receivedDV, Map<Integer, Integer> nextHops,
+                                int first, int last) {
+        int local = localAddress.getAsInt();
+        boolean changed = false;
+        lock.lock();
+        try {
+            if (inRange(neighbourId)) {
+                heardUntil[neighbourId] = ticks + NEIGHBOUR_TIMEOUT;
+                for (int destination = Math.max(0, first); destination <= Math.min(NODES - 1, last); destination++) {
+                    if (destination == local || receivedDV.containsKey(destination)) {
+                        continue;
+                    }
+                    offer(destination, neighbourId, INFINITY); // The neighbour no longer offers it
+                    RouteEntry current = table.get(destination);
+                    if (current != null && current.nextHop == neighbourId) {
+                        failover(destination, current.cost);
+                        changed = true;
+                    }
+                }
+            }
+            for (Map.Entry<Integer, Integer> entry : receivedDV.entrySet()) {
+                int destination = entry.getKey();
+                int advertisedCost = entry.getValue();
+                if (destination == local) {
+                    continue; //Ignore all updates about ourself.
+                }
+
+                int cost = Math.min(INFINITY, linkCost.applyAsInt(neighbourId) + advertisedCost);
+                if (loopPrevention) {
+                    if (Objects.equals(nextHops.get(destination), local)) {
+                        cost = INFINITY; // Poisoned reverse, the neighbour reaches it through us
+                    }
+                }
+                offer(destination, neighbourId, cost);
+                if (loopPrevention && holdDown.containsKey(destination)) {
+                    if (destination != neighbourId || advertisedCost != 0) {
+                        continue; // Kept as offer, installed when the hold-down ends
+                    }
+                    holdDown.remove(destination); // The destination itself is our neighbour again
+                }
+
+                RouteEntry current = table.get(destination);
+                if (current == null) {
+                    if (cost < INFINITY) {
+                        table.put(destination, new RouteEntry(neighbourId, cost));
+                        changed = true;
+                    }
+                } else if (current.nextHop == neighbourId) {
+                    if (cost >= INFINITY) {
+                        failover(destination, current.cost);
+                        changed = true;
+                    } else if (cost != current.cost) {
+                        // Got worse or better, any neighbour may now offer the cheapest route
+                        int best = cost > current.cost ? bestOffer(destination, -1, cost) : -1;
+                        int nextHop = best == -1 ? neighbourId : best;
+                        table.put(destination, new RouteEntry(nextHop, best == -1 ? cost : offered(destination, best)));
+                        changed = true;
+                    }
+                } else if (cost < current.cost) {
+                    table.put(destination, new RouteEntry(neighbourId, cost));
+                    changed = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return changed;
+    }
+
+    /**
+     * Remembers the cost a neighbour offers for a destination. Caller must hold the lock.
+     */
+    private void offer(int destination, int neighbourId, int cost) {
+        if (!inRange(destination) || !inRange(neighbourId)) {
+            return;
+        }
+        if (offerCost[neighbourId] == null) {
+            if (cost >= INFINITY) {
+                return;
+            }
+            offerCost[neighbourId] = new int[NODES];
+        }
+        offerCost[neighbourId][destination] = cost;
+    }
+
+    /**
+     * Gets the cost a neighbour offers for a destination. Caller must hold the lock.
+     *
+     * @return the cost, or {@link #INFINITY} if there is no offer or the neighbour is lost
+     */
+    private int offered(int destination, int neighbourId) {
+        int[] costs = offerCost[neighbourId];
+        if (costs == null || heardUntil[neighbourId] <= ticks) {
+            return INFINITY;
+        }
+        return costs[destination];
+    }
+
+    /**
+     * Finds the neighbour with the cheapest offer for a destination. Caller must hold the lock.
+     *
+     * @param exclude  A neighbour that may not be chosen, or -1
+     * @param maxCost  Only offers cheaper than this are considered
+     * @return the neighbour, or -1 if no offer qualifies
+     */
+    private int bestOffer(int destination, int exclude, int maxCost) {
+        int best = -1;
+        if (!inRange(destination)) {
+            return best;
+        }
+        int bestCost = INFINITY;
+        for (int neighbour = 0; neighbour < NODES; neighbour++) {
+            if (offerCost[neighbour] == null) continue;
+            int cost = offered(destination, neighbour);
+            if (neighbour != exclude && cost < maxCost && (best == -1 || cost < bestCost)) {
+                best = neighbour;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private static boolean inRange(int address) {
+        return address >= 0 && address < NODES;
+    }
+
+    /**
+     * Ages the table by one second. Routes through a neighbour that is lost fail over or are lost too, and
+     * hold-down timers count down. When a hold-down ends, the best route offered during it is installed.
+     *
+     * @return true if the table changed and a triggered update should be sent
+     */
+    @Override
+    public boolean tick() {
+        boolean changed = false;
+        lock.lock();
+        try {
+            List<Integer> released = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> entry : holdDown.entrySet()) {
+                entry.setValue(entry.getValue() - 1);
+                if (entry.getValue() <= 0) released.add(entry.getKey());
+            }
+            for (Integer destination : released) {
+                holdDown.remove(destination);
+                int neighbour = bestOffer(destination, -1, INFINITY);
+                if (neighbour != -1) {
+                    table.put(destination, new RouteEntry(neighbour, offered(destination, neighbour)));
+                    changed = true;
+                }
+            }
+
+            ticks++; // Ages all neighbours
+
+            Set<Integer> lost = new HashSet<>();
+            for (int neighbour = 0; neighbour < NODES; neighbour++) {
+                if (offerCost[neighbour] != null && heardUntil[neighbour] == ticks) {
+                    Arrays.fill(offerCost[neighbour], INFINITY);
+                    lost.add(neighbour);
+                }
+            }
+            if (!lost.isEmpty()) {
+                List<Integer> via = new ArrayList<>();
+                for (Map.Entry<Integer, RouteEntry> entry : table.entrySet())
+                    if (lost.contains(entry.getValue().nextHop) && entry.getValue().cost > 0) via.add(entry.getKey());
+                for (Integer destination : via) {
+                    failover(destination, table.get(destination).cost);
+                    changed = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the route to a destination, putting it in hold-down. Every route that uses the
+     * destination as next hop fails over to an alternate or is removed as well, since that neighbour
+     * is gone. The route to the local node is never removed.
+     *
+     * @param destination The destination address to remove
+     */
+    @Override
+    public void removeRoute(int destination) {
+        if (destination == localAddress.getAsInt()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (inRange(destination) && offerCost[destination] != null) {
+                Arrays.fill(offerCost[destination], INFINITY); // Its offers are gone too
+            }
+            if (table.containsKey(destination)) {
+                lose(destination);
+            }
+            List<Integer> via = new ArrayList<>();
+            for (Map.Entry<Integer, RouteEntry> entry : table.entrySet())
+                if (entry.getValue().nextHop == destination) via.add(entry.getKey());
+            for (Integer lost : via)
+                failover(lost, table.get(lost).cost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces a route whose next hop failed by the best alternate. Only a loop-free alternate is used:
+     * its own distance must be below its distance through this node, one hop plus the failed cost.
+     * Links cost at least 1, so the check also holds with link costs. Without such an alternate the route
+     * is lost. Caller must hold the lock.
+     *
+     * @param destination The destination of the failed route
+     * @param failedCost  The cost of the failed route
+     */
+    private void failover(int destination, int failedCost) {
+        RouteEntry failed = table.get(destination);
+        int neighbour = -1;
+        if (loopPrevention && failed != null) {
+            neighbour = bestOffer(destination, failed.nextHop, Math.min(INFINITY, failedCost + 2));
+        }
+        if (neighbour == -1) {
+            lose(destination);
+            return;
+        }
+        RouteEntry alternate = new RouteEntry(neighbour, offered(destination, neighbour));
+        alternate.setFailover(true);
+        table.put(destination, alternate);
+        metrics.recordFailover();
+    }
+
+    /**
+     * Drops a route and starts its hold-down. Caller must hold the lock.
+     */
+    private void lose(int destination) {
+        table.remove(destination);
+        if (loopPrevention) {
+            holdDown.put(destination, HOLD_DOWN_TIME);
+        }
+    }
+
+    /**
+     * Updates or creates a route entry in the routing table.
+     *
+     * @param destination The destination address
+     * @param routeEntry  The RouteEntry containing next hop and cost information
+     */
+    @Override
+    public void updateRoute(int destination, RouteEntry routeEntry) {
+        lock.lock();
+        try {
+            table.put(destination, routeEntry);
+            holdDown.remove(destination);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the route entry for a specified destination.
+     *
+     * @param destination The destination address to look up
+     * @return The RouteEntry for the specified destination, or null if there is none
+     */
+    @Override
+    public RouteEntry getRoute(int destination) {
+        lock.lock();
+        try {
+            return table.get(destination);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the next hop for a packet. With load balancing on, consecutive packets take turns over all
+     * neighbours that offer the same cost as the primary route.
+     *
+     * @param destination The destination address of the packet
+     * @return the next hop, or -1 if there is no route
+     */
+    @Override
+    public int selectNextHop(int destination) {
+        lock.lock();
+        try {
+            RouteEntry route = table.get(destination);
+            if (route == null) {
+                return -1;
+            }
+            if (route.isFailover()) {
+                metrics.recordPacketSaved();
+            }
+            if (!loadBalancing || !inRange(destination) || !inRange(route.nextHop)) {
+                return route.nextHop;
+            }
+            int cost = offered(destination, route.nextHop);
+            if (cost >= INFINITY) {
+                return route.nextHop;
+            }
+            for (int step = 1; step <= NODES; step++) {
+                int neighbour = (lastSpread[destination] + step) % NODES;
+                if (offered(destination, neighbour) == cost) {
+                    lastSpread[destination] = neighbour;
+                    return neighbour;
+                }
+            }
+            return route.nextHop;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the best next hops for a destination, cheapest first.
+     *
+     * @param destination The destination address to look up
+     * @return at most {@link #MAX_NEXT_HOPS} neighbours that offer a route, the one in use first
+     */
+    public List<Integer> getNextHops(int destination) {
+        lock.lock();
+        try {
+            List<Integer> nextHops = new ArrayList<>();
+            RouteEntry route = table.get(destination);
+            if (route == null) {
+                return nextHops;
+            }
+            nextHops.add(route.nextHop);
+            if (!inRange(destination)) {
+                return nextHops;
+            }
+            List<Integer> alternates = new ArrayList<>();
+            for (int neighbour = 0; neighbour < NODES; neighbour++)
+                if (neighbour != route.nextHop && offered(destination, neighbour) < INFINITY) alternates.add(neighbour);
+            alternates.sort(Comparator.comparingInt(neighbour -> offered(destination, neighbour)));
+            for (int i = 0; i < alternates.size() && nextHops.size() < MAX_NEXT_HOPS; i++)
+                nextHops.add(alternates.get(i));
+            return nextHops;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Turns spreading packets over equal-cost next hops on or off.
+     *
+     * @param loadBalancing Whether equal-cost next hops take turns
+     */
+    public void setLoadBalancing(boolean loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    /**
+     * Sets the cost of the link to each neighbour. It is added to the cost a neighbour advertises when its
+     * update arrives, so a new link cost takes effect with the next update of that neighbour.
+     *
+     * @param linkCost Gives the cost of the link to a neighbour, at least 1
+     */
+    public void setLinkCost(IntUnaryOperator linkCost) {
+        this.linkCost = linkCost;
+    }
+
+    /**
+     * @return the failover counters of this engine
+     */
+    @Override
+    public RoutingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return true if the engine applies poisoned reverse and hold-down, its advertisements carry next hops then
+     */
+    public boolean usesLoopPrevention() {
+        return loopPrevention;
+    }
+
+    /**
+     * Checks if a destination is in hold-down.
+     *
+     * @param destination The destination address to check
+     * @return true if routes to the destination are currently ignored
+     */
+    public boolean isHeldDown(int destination) {
+        lock.lock();
+        try {
+            return holdDown.containsKey(destination);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every route but the one to the local node, all offers and all hold-downs, as if the engine was
+     * just created.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            table.clear();
+            holdDown.clear();
+            Arrays.fill(offerCost, null);
+            Arrays.fill(heardUntil, 0);
+            int addr = localAddress.getAsInt();
+            table.put(addr, new RouteEntry(addr, 0));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Integer> getDestinations() {
+        lock.lock();
+        try {
+            return new HashSet<>(table.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, RouteEntry> getRoutes() {
+        lock.lock();
+        try {
+            return new HashMap<>(table);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates the distance vector this node advertises. Every entry carries the next hop, and
+     * destinations in hold-down are advertised with cost {@link #INFINITY}.
+     *
+     * @return A DV_Header with the current routing information
+     */
+    @Override
+    public DV_Header makeAdvertisement() {
+        lock.lock();
+        try {
+            int size = table.size() + holdDown.size();
+            int[] destinations = new int[size];
+            int[] costs = new int[size];
+            int[] nextHops = new int[size];
+            int i = 0;
+            for (Map.Entry<Integer, RouteEntry> entry : table.entrySet()) {
+                destinations[i] = entry.getKey();
+                costs[i] = Math.min(INFINITY, entry.getValue().cost);
+                nextHops[i] = entry.getValue().nextHop;
+                i++;
+            }
+            for (Integer destination : holdDown.keySet()) {
+                destinations[i] = destination;
+                costs[i] = INFINITY;
+                nextHops[i] = localAddress.getAsInt();
+                i++;
+            }
+            return loopPrevention ? new DV_Header(destinations, costs, nextHops) : new DV_Header(destinations, costs);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -3,18 +3,33 @@ package NetworkLayer;
 
 import Model.Packet;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Represents a Distance Vector (DV) header used in the network protocol.
  * This header contains routing information used by the Distance Vector routing algorithm,
  * storing mappings between destination addresses and their associated costs.
  * DV headers are typically broadcast to neighboring nodes to share routing information.
+ * <p>
+ * A header covers a range of destinations. Destinations in the range that it does not list are not
+ * reachable through the sender. A table that does not fit one frame is sent as headers with
+ * consecutive ranges, which only happens with the compact encoding of extended frames.
+ * <p>
+ * A header can carry the {@link #getKeepalive() DA keepalive} of its sender, it is then sent as a
+ * control frame (next protocol {@value AddressHeader#CONTROL_PROTOCOL}) and the keepalive takes the first 2 bytes.
  */
 public class DV_Header implements Packet {
 
+    /**
+     * A compact delta that does not fit 4 bits is replaced by this escape and the full 8-bit destination.
+     */
+    public static final int COMPACT_ESCAPE = 15;
+
     private final Map<Integer, Integer> DV = new HashMap<>();
+    private final Map<Integer, Integer> nextHops = new HashMap<>();
+    private final int first;
+    private final int last;
+    private DA_Header keepalive;
 
     /**
      * Constructs a new DV_Header with multiple destination-cost pairs.
@@ -26,8 +41,43 @@ public class DV_Header implements Packet {
      * @throws IndexOutOfBoundsException If the lengths of destinations and costs arrays don't match
      */
     public DV_Header(int[] destinations, int[] costs) {
+        this.first = 0;
+        this.last = AddressHeader.EXTENDED_ADDRESSES - 1;
+        for (int i = 0; i < destinations.length; i++) {
+            DV.put(destinations[i], costs[i]);
+        }
+    }
+
+    /**
+     * Constructs a new DV_Header that also carries the next hop the sender uses for every destination.
+     * Receivers use the next hops to apply poisoned reverse: a route that goes through the receiver
+     * itself is treated as unreachable.
+     *
+     * @param destinations Array of destination addresses
+     * @param costs Array of costs corresponding to each destination
+     * @param nextHops Array of next hops corresponding to each destination
+     * @throws IndexOutOfBoundsException If the lengths of the arrays don't match
+     */
+    public DV_Header(int[] destinations, int[] costs, int[] nextHops) {
+        this(destinations, costs, nextHops, 0, AddressHeader.EXTENDED_ADDRESSES - 1);
+    }
+
+    /**
+     * Constructs a new DV_Header with next hops that covers only a range of destinations.
+     *
+     * @param destinations Array of destination addresses, all within the range
+     * @param costs Array of costs corresponding to each destination
+     * @param nextHops Array of next hops corresponding to each destination
+     * @param first The lowest destination this header covers
+     * @param last The highest destination this header covers
+     * @throws IndexOutOfBoundsException If the lengths of the arrays don't match
+     */
+    public DV_Header(int[] destinations, int[] costs, int[] nextHops, int first, int last) {
+        this.first = first;
+        this.last = last;
         for (int i = 0; i < destinations.length; i++) {
             DV.put(destinations[i], costs[i]);
+            this.nextHops.put(destinations[i], nextHops[i]);
         }
     }
 
@@ -39,6 +89,8 @@ public class DV_Header implements Packet {
      * @param cost The cost to reach the specified destination
      */
     public DV_Header(int addr, int cost) {
+        this.first = 0;
+        this.last = AddressHeader.EXTENDED_ADDRESSES - 1;
         DV.put(addr, cost);
     }
 
@@ -72,5 +124,105 @@ public class DV_Header implements Packet {
     public Map<Integer, Integer> getDistanceVector() {
         return DV;
     }
-}
 
+    /**
+     * Gets the next hop mapping table. Empty when the sender did not include next hops.
+     *
+     * @return A Map with destination addresses as keys and the sender's next hop as values
+     */
+    public Map<Integer, Integer> getNextHops() {
+        return nextHops;
+    }
+
+    /**
+     * Checks if this header carries next hops, meaning it is sent with next protocol 3 instead of 2.
+     *
+     * @return true if every entry has a next hop, false otherwise
+     */
+    public boolean hasNextHops() {
+        return !nextHops.isEmpty();
+    }
+
+    /**
+     * Gets the length of this header on the wire in bytes.
+     * Plain entries are 8 bits, entries with a next hop are 12 bits padded to a whole byte.
+     *
+     * @return The encoded length in bytes
+     */
+    public int getPayloadLength() {
+        if (hasNextHops()) {
+            return keepaliveLength() + (DV.size() * 12 + 7) / 8;
+        }
+        return DV.size();
+    }
+
+    /**
+     * @return the DA keepalive of the sender, or null if this header does not carry one
+     */
+    public DA_Header getKeepalive() {
+        return keepalive;
+    }
+
+    /**
+     * Lets this header carry the DA keepalive of its sender. Only headers with next hops can carry one.
+     *
+     * @param keepalive the HELLO of the sender, or null for none
+     */
+    public void setKeepalive(DA_Header keepalive) {
+        this.keepalive = keepalive;
+    }
+
+    private int keepaliveLength() {
+        return keepalive == null ? 0 : 2;
+    }
+
+    /**
+     * @return the lowest destination this header covers
+     */
+    public int getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the highest destination this header covers
+     */
+    public int getLast() {
+        return last;
+    }
+
+    /**
+     * Gets the destinations grouped by the next hop the sender uses for them, in ascending order.
+     * This is the order of the compact encoding.
+     *
+     * @return A map from next hop to the sorted destinations that use it
+     */
+    public SortedMap<Integer, List<Integer>> getGroups() {
+        SortedMap<Integer, List<Integer>> groups = new TreeMap<>();
+        for (Integer destination : new TreeSet<>(DV.keySet())) {
+            groups.computeIfAbsent(nextHops.getOrDefault(destination, destination), _ -> new ArrayList<>())
+                    .add(destination);
+        }
+        return groups;
+    }
+
+    /**
+     * Gets the length of this header in the compact encoding of extended frames. The range takes 2 bytes,
+     * every next hop a byte for the address and one for the number of entries, and every entry one byte with
+     * its distance to the previous destination and its cost. Distances that do not fit 4 bits take a byte more.
+     * A keepalive takes 2 bytes in front.
+     *
+     * @return The encoded length in bytes
+     */
+    public int getCompactPayloadLength() {
+        int length = keepaliveLength() + 2;
+        for (List<Integer> group : getGroups().values()) {
+            length += 2;
+            int previous = first;
+            for (int destination : group) {
+                length += destination - previous < COMPACT_ESCAPE ? 1 : 2;
+                previous = destination;
+            }
+        }
+        return length;
+    }
+}
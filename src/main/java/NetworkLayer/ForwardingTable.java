@@ -0,0 +1,138 @@
+package NetworkLayer;
+
+import NetworkLayer.NetworkLayer.RouteEntry;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <h1>Forwarding table</h1>
+ * The next hop for every destination, copied from the {@link RoutingEngine} into an array, so sending and
+ * forwarding a packet is one array read: no lock, no allocation and no exception when there is no route.
+ * A destination without a route has {@link #NO_ROUTE}.
+ * <p>
+ * The owner calls {@link #invalidate()} whenever the routing table may have changed. The array is then
+ * built again by the next lookup, so a burst of changes costs one copy. Packets the owner drops are
+ * counted here by {@link Drop reason}.
+ * <p>
+ * An engine that spreads packets over several next hops picks one per packet, and an on-demand engine keeps
+ * the routes that are used. With {@code perPacket} set every lookup asks the engine instead.
+ */
+public class ForwardingTable {
+
+    /**
+     * Next hop of a destination without a route.
+     */
+    public static final int NO_ROUTE = -1;
+
+    /**
+     * Why a packet was dropped instead of forwarded.
+     */
+    public enum Drop {
+        /**
+         * There is no route to the destination.
+         */
+        NO_ROUTE,
+        /**
+         * The packet has no hops left.
+         */
+        TTL_EXPIRED
+    }
+
+    /**
+     * Next hops and failover flags built from one version of the routing table.
+     */
+    private record Snapshot(int version, int[] nextHops, boolean[] failover) {
+    }
+
+    private final RoutingEngine routing;
+    private final boolean perPacket;
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile Snapshot snapshot;
+    private final AtomicLongArray drops = new AtomicLongArray(Drop.values().length);
+
+    /**
+     * @param routing   The engine that owns the routing table
+     * @param perPacket Whether the engine sees every packet, see the class description
+     */
+    public ForwardingTable(RoutingEngine routing, boolean perPacket) {
+        this.routing = routing;
+        this.perPacket = perPacket;
+    }
+
+    /**
+     * Gets the next hop for a packet to a destination.
+     *
+     * @param destination The destination address of the packet
+     * @return the next hop, or {@link #NO_ROUTE} if there is none
+     */
+    public int nextHop(int destination) {
+        if (perPacket) {
+            return routing.selectNextHop(destination);
+        }
+        Snapshot current = snapshot;
+        if (current == null || current.version != version.get()) {
+            current = rebuild();
+        }
+        if (destination < 0 || destination >= current.nextHops.length) {
+            return NO_ROUTE;
+        }
+        if (current.failover[destination]) {
+            routing.getMetrics().recordPacketSaved();
+        }
+        return current.nextHops[destination];
+    }
+
+    /**
+     * Marks the table as outdated, the next lookup copies the routing table again.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Copies the routing table. A change during the copy invalidates it again, so it is never kept stale.
+     */
+    private synchronized Snapshot rebuild() {
+        Snapshot current = snapshot;
+        int building = version.get();
+        if (current != null && current.version == building) {
+            return current; // Another thread built it meanwhile
+        }
+        int[] nextHops = new int[AddressHeader.EXTENDED_ADDRESSES];
+        boolean[] failover = new boolean[AddressHeader.EXTENDED_ADDRESSES];
+        Arrays.fill(nextHops, NO_ROUTE);
+        for (int destination : routing.getDestinations()) {
+            RouteEntry route = routing.getRoute(destination);
+            if (route == null || destination < 0 || destination >= nextHops.length) continue;
+            nextHops[destination] = route.nextHop;
+            failover[destination] = route.isFailover();
+        }
+        current = new Snapshot(building, nextHops, failover);
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     * Counts a dropped packet.
+     *
+     * @param reason Why the packet was dropped
+     */
+    public void recordDrop(Drop reason) {
+        drops.incrementAndGet(reason.ordinal());
+    }
+
+    /**
+     * @param reason The reason to count
+     * @return the number of packets dropped for that reason
+     */
+    public long getDrops(Drop reason) {
+        return drops.get(reason.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        return "dropped, no route: " + getDrops(Drop.NO_ROUTE) + ", TTL expired: " + getDrops(Drop.TTL_EXPIRED);
+    }
+}
@@ -0,0 +1,326 @@
+package NetworkLayer.LS;
+
+import Model.Packet;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LSA_Header;
+import NetworkLayer.NetworkLayer.RouteEntry;
+import NetworkLayer.RoutingEngine;
+import NetworkLayer.RoutingMetrics;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * <h1>Link State routing engine</h1>
+ * Every node floods a small {@link LSA_Header link state advertisement} with its direct neighbours.
+ * The advertisements are kept in a link state database, and the routing table is the shortest path tree
+ * computed with Dijkstra over that database. A link is only used when both ends advertise it.
+ * <p>
+ * Advertisements are relayed with a decreasing TTL, an advertisement that still has {@link #FLOOD_TTL}
+ * was heard directly from its originator, which is how neighbours are discovered. Copies of one flood are
+ * suppressed with the broadcast ID of the address header. Which advertisement of an originator is the newest
+ * is told by the sequence number in the LSA, which only the advertisements of the originator advance. An
+ * advertisement that was not refreshed for {@link #RESTART_TIMEOUT} is replaced by the next one whatever its
+ * sequence number, so a node that restarted its count is not ignored until its old advertisement ages out.
+ */
+public class LinkState implements RoutingEngine {
+
+    /**
+     * TTL an advertisement is originated with.
+     */
+    public static final int FLOOD_TTL = 15;
+
+    /**
+     * Seconds a neighbour is kept without hearing its advertisement, three missed periodic updates.
+     */
+    public static final int NEIGHBOUR_TIMEOUT = DistanceVector.DV_UPDATE_INTERVAL * 3;
+
+    /**
+     * Seconds an advertisement stays in the database without being refreshed.
+     */
+    public static final int MAX_AGE = DistanceVector.DV_UPDATE_INTERVAL * 4;
+
+    /**
+     * Seconds without a refresh after which an advertisement that looks older is accepted anyway. The
+     * originator missed its periodic update, so it probably restarted its count. Copies of a flood that
+     * arrive out of order are never this late.
+     */
+    public static final int RESTART_TIMEOUT = DistanceVector.DV_UPDATE_INTERVAL * 3 / 2;
+
+    private static final int NODES = AddressHeader.EXTENDED_ADDRESSES;
+
+    private final IntSupplier localAddress;
+
+    /**
+     * Direct neighbours mapped to the seconds they are still considered alive.
+     */
+    private final Map<Integer, Integer> neighbours = new HashMap<>();
+
+    /**
+     * Link state database, indexed by originator: neighbours, last sequence number and age left.
+     * An age of 0 means there is no advertisement from that node.
+     */
+    private final BitSet[] lsaNeighbours = new BitSet[NODES];
+    private final int[] lsaSequence = new int[NODES];
+    private final int[] lsaAge = new int[NODES];
+
+    private final Map<Integer, RouteEntry> table = new HashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final RoutingMetrics metrics = new RoutingMetrics();
+
+    /**
+     * Set when the neighbours changed and this node should advertise again.
+     */
+    private boolean originate = true;
+
+    /**
+     * Sequence number of the next advertisement of this node.
+     */
+    private int sequence;
+
+    /**
+     * Constructs a new engine.
+     *
+     * @param localAddress Supplies the current address of the node that owns this table
+     */
+    public LinkState(IntSupplier localAddress) {
+        this.localAddress = localAddress;
+        computeRoutes();
+    }
+
+    /**
+     * Handles an LSA (next protocol 4). Refreshes the originator as neighbour if it was heard directly,
+     * and stores the advertisement if it is newer than the one in the database.
+     *
+     * @param header The address header that carries the LSA
+     * @return true if the advertisement was newer than the one in the database
+     */
+    @Override
+    public boolean handleAdvertisement(AddressHeader header) {
+        int origin = header.getSource();
+        if (origin == localAddress.getAsInt() || origin < 0 || origin >= NODES) {
+            return false;
+        }
+        if (!(header.getUpperHeader() instanceof LSA_Header lsa)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (header.getTTL() == FLOOD_TTL) {
+                if (neighbours.put(origin, NEIGHBOUR_TIMEOUT) == null) {
+                    originate = true;
+                }
+            }
+            if (lsaAge[origin] > MAX_AGE - RESTART_TIMEOUT && !isNewer(lsa.getSequence(), lsaSequence[origin])) {
+                return false;
+            }
+            BitSet advertised = new BitSet(NODES);
+            lsa.getNeighbours().forEach(advertised::set);
+            boolean changed = lsaAge[origin] == 0 || !advertised.equals(lsaNeighbours[origin]);
+            lsaNeighbours[origin] = advertised;
+            lsaSequence[origin] = lsa.getSequence();
+            lsaAge[origin] = MAX_AGE;
+            if (changed) computeRoutes();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compares two 8-bit sequence numbers with serial number arithmetic.
+     *
+     * @return true if {@code a} is newer than {@code b}
+     */
+    static boolean isNewer(int a, int b) {
+        int distance = (a - b) & 0xFF;
+        return distance != 0 && distance < 128;
+    }
+
+    /**
+     * Creates the advertisement of this node, listing its current neighbours, and advances the sequence number.
+     *
+     * @return An LSA_Header with the sequence number and the neighbours
+     */
+    @Override
+    public Packet makeAdvertisement() {
+        lock.lock();
+        try {
+            LSA_Header lsa = new LSA_Header(sequence, neighbours.keySet());
+            sequence = (sequence + 1) & 0xFF;
+            return lsa;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advertisements are flooded.
+     *
+     * @return true
+     */
+    @Override
+    public boolean floodsAdvertisements() {
+        return true;
+    }
+
+    /**
+     * Ages neighbours and the database by one second.
+     *
+     * @return true if the neighbours changed since the last advertisement of this node
+     */
+    @Override
+    public boolean tick() {
+        lock.lock();
+        try {
+            boolean changed = false;
+            Iterator<Map.Entry<Integer, Integer>> it = neighbours.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Integer> entry = it.next();
+                entry.setValue(entry.getValue() - 1);
+                if (entry.getValue() <= 0) {
+                    it.remove();
+                    changed = true;
+                }
+            }
+            for (int node = 0; node < NODES; node++) {
+                if (lsaAge[node] > 0 && --lsaAge[node] == 0) changed = true;
+            }
+            if (changed) {
+                originate = true;
+                computeRoutes();
+            }
+            boolean advertise = originate;
+            originate = false;
+            return advertise;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a node: it is no longer a neighbour and its advertisement is dropped.
+     *
+     * @param destination The address of the node that is gone
+     */
+    @Override
+    public void removeRoute(int destination) {
+        if (destination == localAddress.getAsInt() || destination < 0 || destination >= NODES) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (neighbours.remove(destination) != null) originate = true;
+            lsaAge[destination] = 0;
+            computeRoutes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Routes are computed from the database, so a manual route only lasts until the next computation.
+     *
+     * @param destination The destination address
+     * @param routeEntry  The RouteEntry containing next hop and cost information
+     */
+    @Override
+    public void updateRoute(int destination, RouteEntry routeEntry) {
+        lock.lock();
+        try {
+            table.put(destination, routeEntry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public RouteEntry getRoute(int destination) {
+        lock.lock();
+        try {
+            return table.get(destination);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Integer> getDestinations() {
+        lock.lock();
+        try {
+            return new HashSet<>(table.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, RouteEntry> getRoutes() {
+        lock.lock();
+        try {
+            return new HashMap<>(table);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Link state recomputes all routes on every change, so it does not fail over and the counters stay zero.
+     *
+     * @return the counters of this engine
+     */
+    @Override
+    public RoutingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs Dijkstra from the local node and rebuilds the routing table. Caller must hold the lock.
+     * All links cost 1, a link is used only if both ends list each other.
+     */
+    private void computeRoutes() {
+        int local = localAddress.getAsInt();
+        BitSet[] adjacency = new BitSet[NODES];
+        for (int node = 0; node < NODES; node++) {
+            adjacency[node] = lsaAge[node] > 0 ? lsaNeighbours[node] : new BitSet();
+        }
+        adjacency[local] = new BitSet(NODES);
+        neighbours.keySet().forEach(adjacency[local]::set);
+
+        int[] cost = new int[NODES];
+        int[] firstHop = new int[NODES];
+        boolean[] done = new boolean[NODES];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        cost[local] = 0;
+        firstHop[local] = local;
+        for (int round = 0; round < NODES; round++) {
+            int current = -1;
+            for (int node = 0; node < NODES; node++) {
+                if (!done[node] && cost[node] != Integer.MAX_VALUE && (current == -1 || cost[node] < cost[current])) {
+                    current = node;
+                }
+            }
+            if (current == -1) break;
+            done[current] = true;
+            for (int next = adjacency[current].nextSetBit(0); next >= 0 && next < NODES;
+                 next = adjacency[current].nextSetBit(next + 1)) {
+                boolean linked = adjacency[next].get(current);
+                if (linked && !done[next] && cost[current] + 1 < cost[next]) {
+                    cost[next] = cost[current] + 1;
+                    firstHop[next] = current == local ? next : firstHop[current];
+                }
+            }
+        }
+
+        table.clear();
+        table.put(local, new RouteEntry(local, 0));
+        for (int node = 0; node < NODES; node++) {
+            if (node != local && cost[node] != Integer.MAX_VALUE) {
+                table.put(node, new RouteEntry(firstHop[node], cost[node]));
+            }
+        }
+    }
+}
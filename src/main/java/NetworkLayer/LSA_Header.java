@@ -0,0 +1,133 @@
+package NetworkLayer;
+
+import Model.Packet;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Represents a Link State Advertisement (LSA) header used by link state routing.
+ * The header carries the 8-bit sequence number of its originator and lists the direct neighbours of the
+ * originator. It is flooded through the whole network, the originator is the source of the address header.
+ * <p>
+ * In a base frame the neighbours are a 16-bit mask, bit {@code n} is set when node {@code n} is a neighbour.
+ * In an extended frame every neighbour is one byte, so at most {@link #MAX_EXTENDED_NEIGHBOURS} fit.
+ */
+public class LSA_Header implements Packet {
+
+    /**
+     * Most neighbours an LSA in an extended frame can list.
+     */
+    public static final int MAX_EXTENDED_NEIGHBOURS =
+            AddressHeader.FRAME_LENGTH - AddressHeader.EXTENDED_HEADER_LENGTH - 1;
+
+    private final int sequence;
+    private final Set<Integer> neighbours;
+
+    /**
+     * Constructs a new LSA_Header from a neighbour mask.
+     *
+     * @param sequence   The sequence number of the originator
+     * @param neighbours The 16-bit neighbour mask
+     */
+    public LSA_Header(int sequence, int neighbours) {
+        this.sequence = sequence & 0xFF;
+        this.neighbours = new TreeSet<>();
+        for (int i = 0; i < AddressHeader.BASE_ADDRESSES; i++) {
+            if ((neighbours & (1 << i)) != 0) this.neighbours.add(i);
+        }
+    }
+
+    /**
+     * Constructs a new LSA_Header from a set of neighbours.
+     *
+     * @param sequence   The sequence number of the originator
+     * @param neighbours The addresses of the neighbours (range 0-255)
+     */
+    public LSA_Header(int sequence, Set<Integer> neighbours) {
+        this.sequence = sequence & 0xFF;
+        this.neighbours = new TreeSet<>(neighbours);
+    }
+
+    /**
+     * Gets the sequence number of the originator. It only advances with the advertisements of the
+     * originator, unlike the broadcast ID that every flood of the node advances.
+     *
+     * @return The 8-bit sequence number
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the neighbour mask of a base frame.
+     *
+     * @return The 16-bit neighbour mask, without the neighbours that do not fit it
+     */
+    public int getNeighbourMask() {
+        int mask = 0;
+        for (int neighbour : neighbours) {
+            if (AddressHeader.isBaseAddress(neighbour)) mask |= 1 << neighbour;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the neighbours listed in this advertisement.
+     *
+     * @return A set with the addresses of the neighbours, in ascending order
+     */
+    public Set<Integer> getNeighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Checks if this advertisement fits a base frame.
+     *
+     * @param origin The address of the originator
+     * @return true if the originator and all neighbours are base addresses
+     */
+    public boolean fitsBase(int origin) {
+        return AddressHeader.isBaseAddress(origin) && neighbours.stream().allMatch(AddressHeader::isBaseAddress);
+    }
+
+    /**
+     * Gets the length of this header in a base frame in bytes.
+     *
+     * @return 3, the sequence number and the neighbour mask
+     */
+    public int getPayloadLength() {
+        return 3;
+    }
+
+    /**
+     * Gets the length of this header in an extended frame in bytes.
+     *
+     * @return the sequence number and one byte per neighbour
+     */
+    public int getExtendedPayloadLength() {
+        return 1 + neighbours.size();
+    }
+
+    /**
+     * Gets the upper layer header associated with this header.
+     * For LSA_Header, there is no upper header.
+     *
+     * @return null as LSA_Header doesn't have an upper header
+     */
+    @Override
+    public Packet getUpperHeader() {
+        return null;
+    }
+
+    /**
+     * Gets the destination address for this packet.
+     * For LSA_Header, this is always the broadcast address (7).
+     *
+     * @return The broadcast address (7)
+     */
+    @Override
+    public int getDestination() {
+        return 7;
+    }
+}
@@ -0,0 +1,203 @@
+package NetworkLayer;
+
+import NetworkLayer.DV.DistanceVector;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Estimates how well frames of each neighbour get through, from the periodic frames that arrive. Every
+ * {@link Source} of such frames has its own interval: over the last {@link #WINDOW} intervals of a source,
+ * this node expects {@link #WINDOW} frames of it from a neighbour, fewer while the neighbour is heard for
+ * less. The delivery ratio is the share of the expected frames of all sources that arrived. Frames of one
+ * source that arrive within {@link #MIN_GAP} seconds of the previous one count once, so the segments of one
+ * extended update, or the copies of one HELLO, do not count as several.
+ * <p>
+ * The intervals are the ones the neighbours send with. The owner takes them from its own agents, all nodes
+ * run with the same settings. A neighbour that was silent for a whole window starts over like a new one
+ * when it is heard again.
+ * <p>
+ * The cost of a link is its ETX, the expected number of transmissions for one frame to get across and be
+ * acknowledged: {@code 1 / (d_f * d_r)}. Frames the other way are not counted, links are assumed to be
+ * symmetric, so both ratios are the measured one. The ETX is rounded to a whole number of at least 1 so it
+ * fits the 4-bit cost field, a clean link costs 1 like a hop. Links that cost {@link DistanceVector#INFINITY}
+ * or more are unusable. Used by {@link NetworkingDAO}, and on its own in simulations.
+ */
+public class LinkQuality {
+
+    /**
+     * Periodic frames of a neighbour that are counted.
+     */
+    public enum Source {
+        /**
+         * Routing updates, which only go to direct neighbours. Counted every
+         * {@link DistanceVector#DV_UPDATE_INTERVAL} seconds unless {@link #setInterval set} otherwise.
+         */
+        UPDATE,
+        /**
+         * DA HELLOs. They are flooded and do not tell which link they came over, so they only count for
+         * neighbours that are heard by their updates, and a copy relayed by another neighbour can stand in
+         * for a lost one. Not counted until their interval is {@link #setInterval set}.
+         */
+        HELLO
+    }
+
+    /**
+     * Number of intervals of a source the delivery ratio is measured over.
+     */
+    public static final int WINDOW = 10;
+
+    /**
+     * Seconds within which frames of one source and neighbour count as one.
+     */
+    public static final int MIN_GAP = 5;
+
+    private final LongSupplier clock;
+
+    // Interval in milliseconds of every source that is counted
+    private final Map<Source, Long> intervals = new EnumMap<>(Source.class);
+
+    // Per neighbour the arrivals of every source it was heard by
+    private final Map<Integer, Map<Source, Arrivals>> links = new HashMap<>();
+
+    /**
+     * Arrival times of one source of one neighbour within the window, oldest first.
+     */
+    private static class Arrivals {
+        final long firstHeard;
+        final Deque<Long> times = new ArrayDeque<>();
+
+        Arrivals(long firstHeard) {
+            this.firstHeard = firstHeard;
+        }
+    }
+
+    /**
+     * @param clock supplies the current time in milliseconds
+     */
+    public LinkQuality(LongSupplier clock) {
+        this.clock = clock;
+        intervals.put(Source.UPDATE, TimeUnit.SECONDS.toMillis(DistanceVector.DV_UPDATE_INTERVAL));
+    }
+
+    /**
+     * Sets the interval at which the neighbours send the frames of a source. For frames sent with a Trickle
+     * timer this is the longest interval of the timer, or the longest silence when it suppresses, so a
+     * clean link does not read as lossy.
+     *
+     * @param source  the kind of frames
+     * @param seconds the interval in seconds, 0 to not count the source
+     */
+    public synchronized void setInterval(Source source, int seconds) {
+        if (seconds > 0) {
+            intervals.put(source, TimeUnit.SECONDS.toMillis(seconds));
+        } else {
+            intervals.remove(source);
+        }
+    }
+
+    /**
+     * Records a routing update from a neighbour.
+     *
+     * @param neighbour the address of the neighbour
+     */
+    public void heard(int neighbour) {
+        heard(neighbour, Source.UPDATE);
+    }
+
+    /**
+     * Records a periodic frame from a neighbour.
+     *
+     * @param neighbour the address of the neighbour
+     * @param source    the kind of the frame
+     */
+    public synchronized void heard(int neighbour, Source source) {
+        if (!intervals.containsKey(source)) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Map<Source, Arrivals> sources = links.get(neighbour);
+        if (sources != null && expire(sources, now) == 0) {
+            sources = null; // Silent for a whole window
+        }
+        if (sources == null) {
+            if (source == Source.HELLO) {
+                return;
+            }
+            sources = new EnumMap<>(Source.class);
+            links.put(neighbour, sources);
+        }
+        Deque<Long> times = sources.computeIfAbsent(source, _ -> new Arrivals(now)).times;
+        if (!times.isEmpty() && now - times.peekLast() < TimeUnit.SECONDS.toMillis(MIN_GAP)) {
+            return;
+        }
+        times.addLast(now);
+    }
+
+    /**
+     * Gets the share of the expected frames of a neighbour that arrived. A neighbour that was never heard
+     * counts as perfect.
+     *
+     * @param neighbour the address of the neighbour
+     * @return the delivery ratio, between 0 and 1
+     */
+    public synchronized double getDeliveryRatio(int neighbour) {
+        Map<Source, Arrivals> sources = links.get(neighbour);
+        if (sources == null) {
+            return 1;
+        }
+        long now = clock.getAsLong();
+        int arrived = expire(sources, now);
+        double expected = 0;
+        for (Map.Entry<Source, Arrivals> entry : sources.entrySet()) {
+            Long interval = intervals.get(entry.getKey());
+            if (interval == null) continue;
+            expected += Math.min(now - entry.getValue().firstHeard, WINDOW * interval) / (double) interval;
+        }
+        return Math.min(1, arrived / Math.max(1, expected));
+    }
+
+    /**
+     * Gets the cost of the link to a neighbour, see the class description.
+     *
+     * @param neighbour the address of the neighbour
+     * @return the quantized ETX, from 1 up to {@link DistanceVector#INFINITY}
+     */
+    public int getCost(int neighbour) {
+        double ratio = getDeliveryRatio(neighbour);
+        if (ratio <= 0) {
+            return DistanceVector.INFINITY;
+        }
+        double etx = 1 / (ratio * ratio);
+        return (int) Math.max(1, Math.min(DistanceVector.INFINITY, Math.round(etx)));
+    }
+
+    /**
+     * Forgets a neighbour, for example because it is gone. When it is heard again it starts as a new one.
+     *
+     * @param neighbour the address of the neighbour
+     */
+    public synchronized void remove(int neighbour) {
+        links.remove(neighbour);
+    }
+
+    /**
+     * Drops the arrivals that fell out of the window of their source.
+     *
+     * @return the arrivals left of the sources that are counted
+     */
+    private int expire(Map<Source, Arrivals> sources, long now) {
+        int left = 0;
+        for (Map.Entry<Source, Arrivals> entry : sources.entrySet()) {
+            Long interval = intervals.get(entry.getKey());
+            if (interval == null) continue;
+            Deque<Long> times = entry.getValue().times;
+            while (!times.isEmpty() && now - times.peekFirst() >= WINDOW * interval) {
+                times.removeFirst();
+            }
+            left += times.size();
+        }
+        return left;
+    }
+}
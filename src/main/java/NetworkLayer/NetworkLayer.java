@@ -1,12 +1,13 @@
 package NetworkLayer;
 
 import Model.Exceptions.NetworkException;
-import Model.Exceptions.RoutingException;
-import Model.LAYER;
 import Model.Packet;
 import Model.LayerModel;
+import NetworkLayer.AODV.OnDemand;
 //import NetworkLayer.DA.DynamicAddressing;
 import NetworkLayer.DA.DynamicAddressing;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LS.LinkState;
 import TransportLayer.TCPHeader;
 import TransportLayer.TransportLayer;
 import LinkLayer.LinkLayer;
@@ -15,14 +16,16 @@ import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
 
 /**
  * Singleton implementation of the Network Layer in the network protocol stack.
  * Handles routing, forwarding, and dynamic address management for network packets.
- * Implements distance vector routing algorithm with periodic updates and route maintenance.
+ * Implements routing with periodic updates and route maintenance. The routing table itself is kept by a
+ * {@link RoutingEngine}, distance vector by default, link state or on-demand routing, chosen at startup with
+ * the {@value #ROUTING_PROPERTY} system property ({@code -Drouting=ls} or {@code -Drouting=aodv}).
+ * With {@code -D}{@value #EXTENDED_PROPERTY}{@code =true} the node also speaks the extended format with
+ * 8-bit addresses, see {@link AddressHeader}.
  */
 public enum NetworkLayer implements LayerModel {
     INSTANCE;
@@ -30,17 +33,15 @@ public enum NetworkLayer implements LayerModel {
 
     /**
      * Represents an entry in the routing table.
-     * Contains information about next hop, cost, time-to-live, and whether this is a self-route.
-     * Self-routes represent routes to the local node and are handled differently than other routes.
+     * Contains information about next hop and cost.
      */
     public static class RouteEntry{
         public final int nextHop;
         public int cost;
-        private long TTL;
-        private boolean selfRoute;
+        private boolean failover;
 
         /**
-         * Constructs a new routing table entry with default settings (not a self route).
+         * Constructs a new routing table entry.
          *
          * @param nextHop The next hop address to reach the destination
          * @param cost The cost (metric) to reach the destination
@@ -48,58 +49,26 @@ public enum NetworkLayer implements LayerModel {
         public RouteEntry(int nextHop, int cost) {
             this.nextHop = nextHop;
             this.cost = cost;
-            this.TTL = ROUTE_TTL;
-            selfRoute = false;
         }
 
         /**
-         * Constructs a new routing table entry with specified self-route status.
+         * Marks this entry as an alternate route that was installed because the primary next hop failed.
          *
-         * @param nextHop The next hop address to reach the destination
-         * @param cost The cost (metric) to reach the destination
-         * @param selfRoute Whether this entry represents a route to the local node
-         */
-        public RouteEntry(int nextHop, int cost, boolean selfRoute) {
-            this.nextHop = nextHop;
-            this.cost = cost;
-            this.TTL = ROUTE_TTL;
-            this.selfRoute = selfRoute;
-        }
-
-        /**
-         * Decrements the TTL of this route entry and increases the cost as the route ages.
-         * Self-routes are not affected by TTL decrements.
-         *
-         * @return true if the TTL has reached zero (route has expired), false otherwise
+         * @param failover Whether the entry replaced a failed route
          */
-        public synchronized boolean decrementTTL(){
-            if(!selfRoute) {
-                if (TTL == ((int) ROUTE_TTL / 2)) cost++;
-                if (TTL == ((int) ROUTE_TTL / 3)) cost++;
-                if (TTL == ((int) ROUTE_TTL / 4)) cost++;
-                if (TTL == ((int) ROUTE_TTL / 5)) cost++;
-                if (TTL == ((int) ROUTE_TTL / 6)) cost++;
-
-                return --TTL == 0;
-            }else return false;
+        public void setFailover(boolean failover) {
+            this.failover = failover;
         }
 
         /**
-         * Refreshes the TTL of this route entry back to the maximum value.
-         * Self-routes are not affected by TTL refreshes.
+         * @return true if this entry was installed by a failover to an alternate next hop
          */
-        public synchronized void refreshTTL(){
-            if(!selfRoute) TTL = ROUTE_TTL;
+        public boolean isFailover() {
+            return failover;
         }
 
     }
 
-    /**
-     * Time-to-live for route entries, calculated as 4 times the DV update interval.
-     * After this period, a route will be removed if not refreshed.
-     */
-    private static final int ROUTE_TTL = INSTANCE.DV_UPDATE_INTERVAL*4;
-
     /**
      * Gets the singleton instance of the NetworkLayer.
      *
@@ -110,65 +79,92 @@ public enum NetworkLayer implements LayerModel {
     }
 
     /**
-     * The last used ID for broadcast packets.
-     * Incremented for each new broadcast packet to ensure uniqueness.
+     * Time to live for broadcast TCP packets: one hop, the neighbours hear them and do not relay them. The
+     * broadcast sender of the transport layer sends the packets to nodes further away one by one, and
+     * repairs what the nodes miss with packets of their own.
+     */
+    public static final int BROADCAST_TTL = 1;
+
+    /**
+     * System property that selects the routing engine, {@code dv} (default), {@code ls} or {@code aodv}.
      */
-    private int lastUsedId = 1;
+    public static final String ROUTING_PROPERTY = "routing";
 
     /**
-     * Interval in seconds between Distance Vector routing updates.
+     * System property that spreads packets over equal-cost next hops when set to {@code true}.
      */
+    public static final String LOAD_BALANCING_PROPERTY = "ecmp";
 
-    private final Integer DV_UPDATE_INTERVAL = 60;
+    /**
+     * System property that makes distance vector use the ETX of every link as its cost instead of one hop,
+     * when set to {@code true}. See {@link LinkQuality}.
+     */
+    public static final String ETX_PROPERTY = "etx";
 
+    /**
+     * System property that sends the periodic DV updates and DA HELLOs with a Trickle timer instead of at a
+     * fixed rate, when set to {@code true}. See {@link TrickleTimer}.
+     */
+    public static final String TRICKLE_PROPERTY = "trickle";
+
+    /**
+     * System property that enables the extended format with 8-bit addresses when set to {@code true}.
+     */
+    public static final String EXTENDED_PROPERTY = "extended";
 
     /**
-     * Cost threshold beyond which a node is considered unreachable.
-     * Routes with costs greater than or equal to this value will be removed.
+     * Routing engine that owns the routing table.
      */
-    private static final int INFINITY = 8;
+    private final RoutingEngine routing = createRoutingEngine();
 
     /**
-     * Routing table that maps destination addresses to RouteEntry objects.
-     * Contains all known routes to other nodes in the network.
+     * Next hops the send and forward paths read, copied from the routing table after every change.
      */
-    public final Map<Integer, RouteEntry> neighbourTable = new HashMap<>();
+    private final ForwardingTable forwarding = new ForwardingTable(routing,
+            Boolean.getBoolean(LOAD_BALANCING_PROPERTY) && routing instanceof DistanceVector
+                    || routing.isReactive());
 
     /**
-     * Lock for thread-safe access to the routing table.
+     * Sends and handles the advertisements of the routing engine, and keeps the broadcast IDs.
+     * Distance vector updates carry the DA keepalive of this node.
      */
-    private final Lock neighbourLock = new ReentrantLock();
+    private final RoutingAgent agent = new RoutingAgent(routing,
+            () -> NetworkingDAO.getInstance().getLocalAddress(),
+            header -> {
+                // A node that is still joining has no address of its own to advertise yet
+                if (DynamicAddressing.getSingleton().isJoined()) LinkLayer.getSingleton().ReceiveHeader(header);
+            },
+            Boolean.getBoolean(EXTENDED_PROPERTY),
+            () -> DynamicAddressing.getSingleton().makeKeepalivePacket());
 
     /**
      * Constructor for the NetworkLayer singleton.
-     * Initializes the routing table with a self-route and sets up scheduled tasks
+     * The routing table starts with a self-route, this sets up scheduled tasks
      * for DV updates and route maintenance.
      */
     NetworkLayer() {
         // private constructor to enforce singleton pattern
 
-        // Initialize empty routing table
-        int addr = NetworkingDAO.getInstance().getLocalAddress();
-        neighbourLock.lock();
-        neighbourTable.put(addr, new RouteEntry(addr, 0,true));
-        neighbourLock.unlock();
-
-        // Send DV updates
+        // Send DV updates, with Trickle they are sent by the ticks of the agent.
+        // ETX counts the updates of every neighbour, so they are not suppressed then.
+        agent.setTrickle(Boolean.getBoolean(TRICKLE_PROPERTY), !Boolean.getBoolean(ETX_PROPERTY));
+        NetworkingDAO.getInstance().setLinkInterval(LinkQuality.Source.UPDATE, agent.getUpdateInterval());
         ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
-        executor.scheduleAtFixedRate(
-                this::sendUpdate,
-                1,
-                DV_UPDATE_INTERVAL,
-                TimeUnit.SECONDS
-        );
+        if (!agent.usesTrickle()) {
+            executor.scheduleAtFixedRate(
+                    this::sendUpdate,
+                    1,
+                    DistanceVector.DV_UPDATE_INTERVAL,
+                    TimeUnit.SECONDS
+            );
+        }
         executor.scheduleAtFixedRate( () -> {
-                Set<Integer> removed = new HashSet<>();
-                neighbourLock.lock();
-                for (Map.Entry<Integer, RouteEntry> entry : neighbourTable.entrySet())
-                    if (entry.getValue().decrementTTL()) removed.add(entry.getKey());
-                for (Integer id : removed)
-                    removeRoute(id);
-                neighbourLock.unlock();
+                try {
+                    agent.tick();
+                    routesChanged();
+                } catch (NetworkException e) {
+                    throw new RuntimeException(e);
+                }
                 },
                 100, //TODO increase number after testing
                 1,
@@ -180,12 +176,57 @@ public enum NetworkLayer implements LayerModel {
 
 
 
+    /**
+     * Creates the routing engine selected with the {@value #ROUTING_PROPERTY} system property.
+     *
+     * @return A link state engine for {@code ls}, an on-demand engine for {@code aodv}, a distance vector
+     * engine otherwise
+     */
+    private static RoutingEngine createRoutingEngine() {
+        IntSupplier localAddress = () -> NetworkingDAO.getInstance().getLocalAddress();
+        return switch (System.getProperty(ROUTING_PROPERTY, "dv").toLowerCase()) {
+            case "ls" -> new LinkState(localAddress);
+            case "aodv" -> new OnDemand(localAddress);
+            default -> {
+                DistanceVector distanceVector = new DistanceVector(localAddress);
+                distanceVector.setLoadBalancing(Boolean.getBoolean(LOAD_BALANCING_PROPERTY));
+                if (Boolean.getBoolean(ETX_PROPERTY)) {
+                    distanceVector.setLinkCost(neighbour -> NetworkingDAO.getInstance().getLinkCost(neighbour));
+                }
+                yield distanceVector;
+            }
+        };
+    }
+
+    /**
+     * @return true if the routing updates of this node carry its DA keepalive, see {@link RoutingAgent}
+     */
+    public boolean carriesKeepalive() {
+        return agent.carriesKeepalive();
+    }
+
+    /**
+     * @return true if a neighbour is a deployed node that only knows the base formats, see {@link RoutingAgent}
+     */
+    public boolean hearsDeployedNode() {
+        return agent.hearsDeployedNode();
+    }
+
+    /**
+     * @return the routing engine this node uses
+     */
+    public RoutingEngine getRoutingEngine() {
+        return routing;
+    }
+
     /**
      * This function receives the packet object and based on what kind of packet is applies logic
      * to that packet to send or receive it correctly.
      * Currently, accepts TCP, DV and ADDRESS packets.
-     * TCP packets will get an address header and be sent to the LINK layer
+     * TCP packets will get an address header and be sent to the LINK layer, TCP packets for the
+     * broadcast address (7) are sent once to all neighbours.
      * ADDRESS packets will be checked and given to the correct layer depending on what the next protocol is.
+     * Broadcast ADDRESS packets are dropped if they were seen before, and relayed while their TTL allows.
      *
      * @param packet The packet given to the network layer.
      * @throws NetworkException Given packet is from a class that this method doesn't understand.
@@ -202,26 +243,48 @@ public enum NetworkLayer implements LayerModel {
                 int payload_Length = 4 + tcpHeader.getPayloadLength();
                 int source = NetworkingDAO.getInstance().getLocalAddress();
                 int destination = packet.getDestination();
-                int next_hop;
-                try {
-                    next_hop = getRoute(destination).nextHop;
-                } catch (NullPointerException e) {
+                if (destination == 7) {
+                    // Broadcast: one frame for all neighbours instead of a copy per node
+                    int id = agent.nextBroadcastId();
+                    LinkLayer.getSingleton().ReceiveHeader(new AddressHeader(next_Protocol, BROADCAST_TTL,
+                            payload_Length, source, destination, 0, id, packet, !AddressHeader.isBaseAddress(source)));
                     return;
                 }
+                int next_hop = forwarding.nextHop(destination);
+                if (next_hop == ForwardingTable.NO_ROUTE) {
+                    if (agent.holdForRoute(packet)) {
+                        return; // Sent when on-demand routing found the route
+                    }
+                    forwarding.recordDrop(ForwardingTable.Drop.NO_ROUTE);
+                    return; // The transport layer sends it again, there may be a route by then
+                }
                 int id = 0; //Header is a whisper TCP. So no ID
                 Packet address_Packet = new AddressHeader(next_Protocol, TTL, payload_Length,
                         source, destination, next_hop, id,
-                        packet);
+                        packet, needsExtended(source, destination, next_hop));
                 LinkLayer.getSingleton().ReceiveHeader(address_Packet);
 
             }
             case AddressHeader addressHeader -> {
                 //Received header is an Address header. Packet came from outside.
+                if (addressHeader.isExtended() && !agent.isExtended()) {
+                    return; // Not a format this node speaks
+                }
+                boolean broadcast = addressHeader.getDestination() == 7;
+                if (broadcast && !agent.acceptBroadcast(addressHeader)) {
+                    return; // Our own flood coming back, or a copy we already handled
+                }
                 //Unpack and see what header is next
                 switch (addressHeader.getNext_Protocol()) {
                     case 0 -> {
                         //Next header is TCP. Check if we need to resend and bring down to TCP_layer
-                        if (addressHeader.getDestination() == NetworkingDAO.getInstance()
+                        if (broadcast) {
+                            //Broadcast for everyone. Bring it down to TCP and flood it further
+                            TransportLayer.getSingleton()
+                                    .receiveTcpHeader((TCPHeader) addressHeader.getUpperHeader(),
+                                            addressHeader.getSource());
+                            agent.relay(addressHeader);
+                        } else if (addressHeader.getDestination() == NetworkingDAO.getInstance()
                                 .getLocalAddress()) {
                             //This packet is for us. Bring it down to TCP
                             TransportLayer.getSingleton()
@@ -234,15 +297,18 @@ public enum NetworkLayer implements LayerModel {
                             int destination = addressHeader.getDestination();
 
 
-                            if (addressHeader.getTTL() > 0 &&
-                                    addressHeader.getNext_Hop() == NetworkingDAO.getInstance().getLocalAddress()) {
+                            if (addressHeader.getNext_Hop() != NetworkingDAO.getInstance().getLocalAddress()) {
+                                return; // Overheard, another node forwards it
+                            }
+                            if (addressHeader.getTTL() <= 0) {
+                                forwarding.recordDrop(ForwardingTable.Drop.TTL_EXPIRED);
+                            } else {
                                 int next_Protocol = 0;
                                 int TTL = addressHeader.getTTL() - 1;
                                 int payload_Length = addressHeader.getPayload_Length();
-                                int next_hop = 0;
-                                try {
-                                    next_hop = getRoute(destination).nextHop;
-                                } catch (RoutingException _) {
+                                int next_hop = forwarding.nextHop(destination);
+                                if (next_hop == ForwardingTable.NO_ROUTE) {
+                                    forwarding.recordDrop(ForwardingTable.Drop.NO_ROUTE);
                                     return;
                                 }
                                 int id = 0; //Packet is a whisper. So ID = 0.
@@ -250,49 +316,54 @@ public enum NetworkLayer implements LayerModel {
                                         payload_Length, source,
                                         destination, next_hop,
                                         id,
-                                        addressHeader.getUpperHeader());
+                                        addressHeader.getUpperHeader(),
+                                        needsExtended(source, destination, next_hop));
                                 LinkLayer.getSingleton().ReceiveHeader(address_Packet);
                             }
                         }
                     }
-                    case 2 -> {
-                        // Header is a DV header. Update the neighbour table. And resend if table updated.
-                        DV_Header dv = (DV_Header) addressHeader.getUpperHeader();
-                        int neighborId = addressHeader.getSource();
-
-                        // Make a *copy* of the current table to compare later
-                        Map<Integer, RouteEntry> oldTable = new HashMap<>(getAllRoutes());
-                        Map<Integer, Integer> receivedDV = dv.getDistanceVector();
-                        handleDVUpdate(neighborId, receivedDV);
-
-                        // Compare the old and new table (by content, not reference)
-                        if (!oldTable.equals(getAllRoutes())) {
-                            // Table was updated — construct a DV packet and broadcast
-
-                            LinkLayer.getSingleton().ReceiveHeader(makeUpdatePacket());
-
+                    case 2, 3, 4, 6, AddressHeader.ON_DEMAND_PROTOCOL -> {
+                        // Header is a routing header: DV (3 also carries next hops), LSA, a control frame,
+                        // a DV with the keepalive of its sender, or a route message of on-demand routing.
+                        // Update the routing table and resend if needed. LSAs are flooded, DV has TTL 1.
+                        if (addressHeader.getUpperHeader() instanceof DV_Header dv) {
+                            // DV only comes from direct neighbours, so it tells how well the link works
+                            NetworkingDAO.getInstance().linkHeard(addressHeader.getSource(),
+                                    LinkQuality.Source.UPDATE);
+                            if (dv.getKeepalive() != null) {
+                                DynamicAddressing.getSingleton().receiveKeepalive(dv.getKeepalive());
+                            }
+                        }
+                        agent.handleAdvertisement(addressHeader);
+                        routesChanged();
+                        for (Packet waiting : agent.takeRouted()) {
+                            ReceiveHeader(waiting);
                         }
                     }
-                    default -> throw new IllegalStateException(
-                            "Unexpected Header ID: " + addressHeader.getNext_Protocol());
+                    default -> {
+                        // Unknown next protocol, sent by a node with a newer version. Ignore it.
+                    }
                 }
             }
             case DA_Header daHeader -> {
                 if (daHeader.isConflict()) {
                     removeRoute(daHeader.getAddress());
+                } else if (!daHeader.isProbe()) {
+                    // A HELLO, it tells how well the link works if its sender is a neighbour
+                    NetworkingDAO.getInstance().linkHeard(daHeader.getAddress(), LinkQuality.Source.HELLO);
                 }
                 DynamicAddressing.getSingleton().ReceiveHeader(daHeader);
             }
             case DV_Header dv_header -> {
                 //The header is a Dynamic Vector header. Send it forward to the LinkLayer.
                 int source = NetworkingDAO.getInstance().getLocalAddress();
-                int nextProtocol = 2; // DV Header ID
-                int TTL = 1; // Only actual neighbours need to know
-                int payloadLength = dv_header.getDistanceVector().size();
+                int nextProtocol = dv_header.getKeepalive() != null ? AddressHeader.CONTROL_PROTOCOL
+                        : dv_header.hasNextHops() ? 3 : 2; // DV Header ID
+                int TTL = nextProtocol == 2 ? RoutingAgent.PLAIN_TTL : 1; // Only actual neighbours need to know
+                int payloadLength = dv_header.getPayloadLength();
                 int destination = 7; // broadcast
                 int nextHop = 0; // for broadcast, not used
-                lastUsedId++;
-                int id = lastUsedId; // new unique ID for broadcast
+                int id = agent.nextBroadcastId(); // new unique ID for broadcast
                 Packet broadcastPacket = new AddressHeader(nextProtocol, TTL, payloadLength,
                         source, destination, nextHop, id,
                         dv_header);
@@ -313,58 +384,10 @@ public enum NetworkLayer implements LayerModel {
      * @param receivedDV The distance vector received from the neighbor
      */
     public void handleDVUpdate(int neighborId, Map<Integer, Integer> receivedDV) {
-        // Refresh old entries
-        receivedDV.forEach((key, value) -> {
-            neighbourLock.lock();
-            neighbourTable.entrySet().stream().filter( // If it's the same entry refresh it
-                    e -> Objects.equals(e.getKey(), key) &&
-                            value + 1 == e.getValue().cost &&
-                            neighborId == e.getValue().nextHop
-            ).forEach(
-                    entry1 -> neighbourTable.get(entry1.getKey()).refreshTTL());
-            neighbourLock.unlock();
-        });
-
-        // Loop over all advertised destinations from the neighbor
-        for (Map.Entry<Integer, Integer> entry : receivedDV.entrySet()) {
-            int destination = entry.getKey();
-            int advertisedCost = entry.getValue();
-
-            int totalCostViaNeighbor = 1 + advertisedCost;
-
-            //Ignore all updates about ourself.
-            if (destination == NetworkingDAO.getInstance().getLocalAddress()) {
-                continue;
-            }
-
-
-
-            try {
-                // Get our current route (if any)
-                RouteEntry currentRoute = getRoute(destination);
-                boolean routeViaThisNeighbor = currentRoute.nextHop == neighborId;
-
-                if (routeViaThisNeighbor && currentRoute.cost != totalCostViaNeighbor) {
-                    // We're using this neighbor, but cost changed → update
-                    updateRoute(destination, neighborId, totalCostViaNeighbor);
-                } else if (!routeViaThisNeighbor && totalCostViaNeighbor < currentRoute.cost) {
-                    // Found a cheaper path through this neighbor → update
-                    updateRoute(destination, neighborId, totalCostViaNeighbor);
-                }
-                // Else: we ignore the update (we already have a better or same route)
-
-            } catch (RoutingException e) {
-                updateRoute(destination, neighborId, totalCostViaNeighbor);
-            }
-
-            try {
-                if (getRoute(destination).cost >= INFINITY) {
-                    removeRoute(destination);
-                }
-            } catch (RoutingException _) {}
+        if (routing instanceof DistanceVector distanceVector) {
+            distanceVector.handleUpdate(neighborId, receivedDV, Map.of());
+            routesChanged();
         }
-
-
     }
 
 
@@ -378,9 +401,8 @@ public enum NetworkLayer implements LayerModel {
      */
     public synchronized void updateRoute(int destination, int nextHop, int cost) {
         if (destination != NetworkingDAO.getInstance().getLocalAddress()) {
-            neighbourLock.lock();
-            neighbourTable.put(destination, new RouteEntry(nextHop, cost));
-            neighbourLock.unlock();
+            routing.updateRoute(destination, new RouteEntry(nextHop, cost));
+            routesChanged();
         }
     }
 
@@ -391,74 +413,93 @@ public enum NetworkLayer implements LayerModel {
      * @param routeEntry The RouteEntry containing next hop and cost information
      */
     public void updateRoute(int newAddress, RouteEntry routeEntry) {
-        neighbourLock.lock();
-        neighbourTable.put(newAddress, routeEntry);
-        neighbourLock.unlock();
+        routing.updateRoute(newAddress, routeEntry);
+        routesChanged();
     }
 
     /**
      * Gets the route entry for a specified destination.
      *
      * @param destination The destination address to look up
-     * @return The RouteEntry for the specified destination
-     * @throws RoutingException If no route to the destination exists
+     * @return The RouteEntry for the specified destination, or null if there is none
      */
-    public synchronized RouteEntry getRoute(int destination) throws RoutingException {
-        if (neighbourTable.get(destination) == null)
-            throw new RoutingException(LAYER.NETWORK,null,"Route to %d could not be found".formatted(destination));
-        return neighbourTable.get(destination);
+    public RouteEntry getRoute(int destination) {
+        return routing.getRoute(destination);
     }
 
     /**
-     * Sends a Distance Vector update to all neighbors.
-     * This method is called periodically to maintain routing information.
+     * Checks whether a node is a direct neighbour, so it hears the frames this node broadcasts.
+     *
+     * @param node The address of the node
+     * @return true if the route to the node goes straight to it
      */
-    private void sendUpdate() {
+    public boolean isNeighbour(int node) {
+        RouteEntry route = getRoute(node);
+        return route != null && route.nextHop == node && node != NetworkingDAO.getInstance().getLocalAddress();
+    }
 
-        Packet broadcastPacket = makeUpdatePacket();
-        try {
-            LinkLayer.getSingleton().ReceiveHeader(broadcastPacket);
-        } catch (NetworkException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Picks the next hop for a packet to a destination from the {@link ForwardingTable}. When the routing
+     * engine spreads packets over more than one next hop, consecutive calls may return different ones.
+     *
+     * @param destination The destination address of the packet
+     * @return The address of the next hop, or {@link ForwardingTable#NO_ROUTE} if there is no route
+     */
+    public int selectNextHop(int destination) {
+        return forwarding.nextHop(destination);
+    }
+
+    /**
+     * @return the forwarding table, with the counts of dropped packets
+     */
+    public ForwardingTable getForwardingTable() {
+        return forwarding;
     }
 
+    /**
+     * Lets everything that copies the routing table know it may have changed: the forwarding table and
+     * the node snapshots of {@link NetworkingDAO}.
+     */
+    private void routesChanged() {
+        forwarding.invalidate();
+        NetworkingDAO.getInstance().refreshNodes();
+    }
 
     /**
-     * Creates a packet containing this node's current distance vector information.
+     * Checks if a frame needs the extended header because one of its addresses does not fit the base header.
+     */
+    private static boolean needsExtended(int source, int destination, int nextHop) {
+        return !AddressHeader.isBaseAddress(source) || !AddressHeader.isBaseAddress(destination)
+                || !AddressHeader.isBaseAddress(nextHop);
+    }
+
+    /**
+     * Gets the number of bytes a frame of this node has for the layer above. A node that speaks the extended
+     * format may need the larger header for any frame, since the next hop is only known when it is sent.
      *
-     * @return An AddressHeader containing a DV_Header with current routing information
+     * @return The payload size of a frame in bytes
      */
-    private synchronized AddressHeader makeUpdatePacket() {
-        Map<Integer, RouteEntry> newTable = getAllRoutes();
-        int size = newTable.size();
-        int[] destinations = new int[size];
-        int[] costs = new int[size];
-        int i = 0;
-
-        for (Map.Entry<Integer, RouteEntry> entry : newTable.entrySet()) {
-            destinations[i] = entry.getKey();
-            costs[i] = entry.getValue().cost;
-            i++;
-        }
+    public int getMaxPayload() {
+        return AddressHeader.FRAME_LENGTH
+                - (agent.isExtended() ? AddressHeader.EXTENDED_HEADER_LENGTH : AddressHeader.BASE_HEADER_LENGTH);
+    }
 
-        DV_Header newDVHeader = new DV_Header(destinations, costs);
-
-        int source = NetworkingDAO.getInstance().getLocalAddress();
-        int nextProtocol = 2; // DV Header ID
-        int TTL = 1; // Only actual neighbours need to know
-        int destination = 7; // broadcast
-        int nextHop = 0; // for broadcast, not used
-        lastUsedId++;
-        int id = lastUsedId; // new unique ID for broadcast
-        return new AddressHeader(nextProtocol, TTL,
-                size, source,
-                destination, nextHop, id,
-                newDVHeader);
+    /**
+     * Sends a Distance Vector update to all neighbors.
+     * This method is called periodically to maintain routing information.
+     */
+    private void sendUpdate() {
+        try {
+            agent.sendUpdate();
+        } catch (NetworkException e) {
+            throw new RuntimeException(e);
+        }
     }
 
+
     /**
      * Removes a route from the routing table and broadcasts an update.
+     * The destination is put in hold-down, so the update poisons it for the neighbours.
      *
      * @param destination The destination address to remove
      */
@@ -467,19 +508,19 @@ public enum NetworkLayer implements LayerModel {
         if (destination == NetworkingDAO.getInstance().getLocalAddress()) {
             return; // Do nothing if the destination is the node's own address
         }
-        neighbourLock.lock();
-        neighbourTable.remove(destination);
-        neighbourLock.unlock();
+        routing.removeRoute(destination);
+        routesChanged();
         sendUpdate();
     }
 
     /**
-     * Gets a copy of the current routing table.
+     * Gets a copy of the current routing table, taken under the lock of the routing engine. Changes to the
+     * copy do not reach the table.
      *
      * @return A Map containing all current routes
      */
-    public synchronized Map<Integer, RouteEntry> getAllRoutes() {
-        return neighbourTable;
+    public Map<Integer, RouteEntry> getAllRoutes() {
+        return routing.getRoutes();
     }
 
 
@@ -4,7 +4,6 @@ import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import NetworkLayer.NetworkLayer.RouteEntry;
 
@@ -20,15 +19,32 @@ import NetworkLayer.NetworkLayer.RouteEntry;
  *     <li>A routing table that contains all reachable nodes and their costs and next hops</li>
  *     <li>Helper functions for manipulating and getting this data</li>
  * </ul>
+ * It also keeps the {@link LinkQuality} of the links to the neighbours, which the routing engine can use as
+ * link cost.
+ * <p>
+ * The known and reachable nodes are kept as immutable snapshots and a reachability mask with one bit per
+ * address. They are rebuilt when a node or a route changes, so readers like the TUI and the
+ * {@code TransportLayer} can iterate them without a lock and without copying.
  */
 public enum NetworkingDAO {
     INSTANCE(generateInitialAddress());
 
-    private final int DEFAULT_TTL = 60;
     private int localAddress;
 
-    // Map of node -> TTL of nodes that are known
-    private final Map<Integer, Integer> knownNodes;
+    // Nodes that are known, each with a TTL
+    private final NodeRegistry knownNodes = new NodeRegistry();
+
+    // Delivery ratio of the routing updates of every neighbour
+    private final LinkQuality linkQuality = new LinkQuality(System::currentTimeMillis);
+
+    // Words of the reachability mask, one bit per address
+    private static final int MASK_WORDS = AddressHeader.EXTENDED_ADDRESSES / Long.SIZE;
+
+    // Snapshots rebuilt by refreshNodes, read without a lock
+    private final Object snapshotLock = new Object();
+    private volatile long[] reachable = new long[MASK_WORDS];
+    private volatile Set<Integer> reachableNodes = Set.of();
+    private volatile Set<Integer> knownNodesSnapshot = Set.of();
 
 
     /**
@@ -39,7 +55,6 @@ public enum NetworkingDAO {
     NetworkingDAO(int initialAddress) {
         this.localAddress = initialAddress;
         ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-        this.knownNodes = new HashMap<>();
         executor.scheduleAtFixedRate(
                 () -> NetworkingDAO.getInstance().decrementNodes(),
                 10,
@@ -84,38 +99,109 @@ public enum NetworkingDAO {
      * @param newAddress the new address to assign to this node.
      */
     public void setLocalAddress(int newAddress) {
-        NetworkLayer.getSingleton().updateRoute(newAddress, new RouteEntry(newAddress, 0,true));
+        NetworkLayer.getSingleton().updateRoute(newAddress, new RouteEntry(newAddress, 0));
         int oldAddress = this.localAddress;
         this.localAddress = newAddress;
         NetworkLayer.getSingleton().removeRoute(oldAddress);
 
     }
 
-    public synchronized void updateNode(int node) {
-        knownNodes.put(node, DEFAULT_TTL);
+    /**
+     * Adds a node that was heard from or refreshes its TTL.
+     *
+     * @param node the address of the node
+     */
+    public void updateNode(int node) {
+        if (knownNodes.update(node)) refreshNodes();
     }
 
-    public synchronized void decrementNodes() {
-        List<Integer> toBeRemoved = new ArrayList<>();
-        knownNodes.forEach((node, ttl) -> {
-            knownNodes.put(node, ttl - 1);
-            if (knownNodes.get(node) <= 0) {
-                toBeRemoved.add(node);
-            }
-        });
-        for (Integer node : toBeRemoved) {
-            knownNodes.remove(node);
+    public void decrementNodes() {
+        List<Integer> expired = knownNodes.decrement();
+        for (Integer node : expired) {
             NetworkLayer.getSingleton().removeRoute(node);
+            linkQuality.remove(node);
+        }
+        if (!expired.isEmpty()) refreshNodes();
+    }
+
+    /**
+     * Records a periodic frame that arrived from a neighbour, for the {@link LinkQuality} of the link.
+     *
+     * @param neighbour the address of the neighbour
+     * @param source    the kind of the frame
+     */
+    public void linkHeard(int neighbour, LinkQuality.Source source) {
+        linkQuality.heard(neighbour, source);
+    }
+
+    /**
+     * Sets the interval at which the neighbours send the frames of a source, see
+     * {@link LinkQuality#setInterval(LinkQuality.Source, int)}.
+     *
+     * @param source  the kind of frames
+     * @param seconds the interval in seconds
+     */
+    public void setLinkInterval(LinkQuality.Source source, int seconds) {
+        linkQuality.setInterval(source, seconds);
+    }
+
+    /**
+     * @param neighbour the address of the neighbour
+     * @return the ETX cost of the link to the neighbour, see {@link LinkQuality#getCost(int)}
+     */
+    public int getLinkCost(int neighbour) {
+        return linkQuality.getCost(neighbour);
+    }
+
+    /**
+     * Rebuilds the snapshots of the known and reachable nodes. Called by the {@link NetworkLayer} whenever
+     * the routing table may have changed, and here when a node is added or forgotten. The routing table is
+     * read before the lock of this object is taken, since the routing engine asks for the local address
+     * while it holds its own lock.
+     */
+    public void refreshNodes() {
+        int local = getLocalAddress();
+        synchronized (snapshotLock) {
+            Set<Integer> routed = NetworkLayer.getSingleton().getRoutingEngine().getDestinations();
+            routed.remove(local);
+            long[] mask = new long[MASK_WORDS];
+            for (int node : routed) {
+                if (node >= 0 && node < AddressHeader.EXTENDED_ADDRESSES) mask[node >>> 6] |= 1L << node;
+            }
+            Set<Integer> known = new HashSet<>(knownNodes.getNodes());
+            known.addAll(routed);
+            known.remove(local);
+            reachable = mask;
+            reachableNodes = Set.copyOf(routed);
+            knownNodesSnapshot = Set.copyOf(known);
         }
     }
 
-    public synchronized Set<Integer> getKnownNodes() {
-        return knownNodes.keySet();
+    /**
+     * Gets the nodes heard of by HELLO or known from the routing table. When routing updates carry the
+     * keepalives, HELLOs do not refresh known nodes and the routing table is the only source.
+     *
+     * @return an immutable snapshot of the addresses of the known nodes, without this node
+     */
+    public Set<Integer> getKnownNodes() {
+        return knownNodesSnapshot;
     }
 
-    public synchronized Set<Integer> getReachableNodes() {
-        Map<Integer, RouteEntry> routes = NetworkLayer.getSingleton().getAllRoutes();
-        return getKnownNodes().stream().filter(node -> routes.get(node) != null).collect(Collectors.toSet());
+    /**
+     * @return an immutable snapshot of the known nodes that have a route
+     */
+    public Set<Integer> getReachableNodes() {
+        return reachableNodes;
+    }
+
+    /**
+     * Checks a node against the reachability mask, without building a set.
+     *
+     * @param node the address of the node
+     * @return true if the node is known and has a route
+     */
+    public boolean isReachable(int node) {
+        return node >= 0 && node < AddressHeader.EXTENDED_ADDRESSES && (reachable[node >>> 6] & 1L << node) != 0;
     }
 
 
@@ -0,0 +1,89 @@
+package NetworkLayer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the nodes that were heard from recently, each with a TTL that counts down on every
+ * {@link #decrement()}. A node that is not heard from again before its TTL runs out is forgotten.
+ * Used by {@link NetworkingDAO}, and on its own in simulations.
+ * <p>
+ * The TTLs are kept in a concurrent map, so a node can be refreshed while another thread counts down.
+ * Readers get an immutable snapshot of the nodes that is only rebuilt when a node is added or forgotten,
+ * so {@link #getNodes()} costs nothing and can be iterated without a lock.
+ */
+public class NodeRegistry {
+
+    /**
+     * TTL a node gets every time it is heard from, in calls to {@link #decrement()}.
+     */
+    public static final int DEFAULT_TTL = 60;
+
+    // Map of node -> TTL of nodes that are known
+    private final Map<Integer, Integer> knownNodes = new ConcurrentHashMap<>();
+
+    // Immutable copy of the keys of knownNodes, replaced on every change of the membership
+    private volatile Set<Integer> snapshot = Set.of();
+
+    /**
+     * Adds a node or refreshes its TTL.
+     *
+     * @param node the address of the node that was heard from
+     * @return true if the node was not known before
+     */
+    public boolean update(int node) {
+        if (knownNodes.put(node, DEFAULT_TTL) != null) {
+            return false;
+        }
+        publish();
+        return true;
+    }
+
+    /**
+     * Counts the TTL of all nodes down by one and forgets the nodes whose TTL ran out.
+     *
+     * @return the nodes that were forgotten
+     */
+    public List<Integer> decrement() {
+        List<Integer> expired = new ArrayList<>();
+        for (Integer node : knownNodes.keySet()) {
+            // A node refreshed meanwhile gets its full TTL back, it is only removed when it ran out
+            if (knownNodes.computeIfPresent(node, (_, ttl) -> ttl <= 1 ? null : ttl - 1) == null) {
+                expired.add(node);
+            }
+        }
+        if (!expired.isEmpty()) publish();
+        return expired;
+    }
+
+    /**
+     * Forgets a node right away.
+     *
+     * @param node the address of the node to forget
+     */
+    public void remove(int node) {
+        if (knownNodes.remove(node) != null) publish();
+    }
+
+    /**
+     * @param node the address of a node
+     * @return true if the node is known
+     */
+    public boolean contains(int node) {
+        return knownNodes.containsKey(node);
+    }
+
+    /**
+     * @return an immutable snapshot of the addresses of all known nodes
+     */
+    public Set<Integer> getNodes() {
+        return snapshot;
+    }
+
+    /**
+     * Rebuilds the snapshot. Synchronized so a slow rebuild can not overwrite a newer one.
+     */
+    private synchronized void publish() {
+        snapshot = Set.copyOf(knownNodes.keySet());
+    }
+}
@@ -0,0 +1,710 @@
+package NetworkLayer;
+
+import Model.Exceptions.NetworkException;
+import Model.LayerModel;
+import Model.Packet;
+import NetworkLayer.AODV.OnDemand;
+import NetworkLayer.DV.DistanceVector;
+import NetworkLayer.LS.LinkState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * <h1>Routing agent</h1>
+ * Runs a {@link RoutingEngine} on one node: it sends the advertisements of the engine, hands received
+ * ones to it, relays flooded frames and keeps the broadcast IDs of the node.
+ * <p>
+ * The agent has no threads of its own. Its owner calls {@link #sendUpdate()} every
+ * {@link DistanceVector#DV_UPDATE_INTERVAL} seconds, unless the agent uses a Trickle timer, and
+ * {@link #tick()} every second. The
+ * {@link NetworkLayer} singleton does this with an executor, simulations with a virtual clock.
+ * <p>
+ * The format of distance vectors is negotiated per neighbour, by the frames it sends. Deployed nodes
+ * only know plain distance vectors (next protocol 2) and stop receiving at any other long frame but TCP.
+ * While such a neighbour is heard, or no neighbour is known yet, the agent sends its table as one plain
+ * frame without next hops or keepalive, and nothing else. Its own plain frames go out with TTL
+ * {@value #PLAIN_TTL} instead of 1, deployed nodes do not read the TTL of a distance vector, so neighbours
+ * can tell them apart. Only distance vector can talk to deployed nodes, link state and on-demand routing
+ * have frames of their own.
+ * <p>
+ * An agent in extended mode sends distance vectors in {@link AddressHeader#isExtended() extended} frames
+ * with the compact encoding, split over as many frames as the table needs. A neighbour that sends
+ * extended frames understands them, a neighbour that only sends base frames does not. As long as such a
+ * neighbour is around, the agent also sends the part of its table that fits a base frame. Base frames with
+ * next hops of neighbours that speak the extended format are ignored, their extended frames carry the
+ * whole table. Since a table takes several frames, triggered updates are held until the next
+ * {@link #tick()}, so all changes of one second go out as one update. A node with an address above 15
+ * can not send plain frames, it needs all its neighbours to speak the extended format. An agent in base
+ * mode ignores extended frames.
+ * <p>
+ * With distance vector and loop prevention, an update that is not plain also carries the DA keepalive of
+ * the node as a control frame (next protocol {@value AddressHeader#CONTROL_PROTOCOL}). One frame then tells
+ * the neighbours that the node is alive and what it can reach, there is no separate HELLO every
+ * {@code KEEP_ALIVE_INTERVAL}. In extended mode the first segment carries it. While the updates are plain,
+ * for a deployed neighbour, the node sends its HELLOs like before, see {@link #carriesKeepalive()}.
+ * <p>
+ * With a {@link #setTrickle(boolean) Trickle timer} the owner no longer calls {@link #sendUpdate()} at a
+ * fixed rate, {@link #tick()} sends the periodic updates. An update that changed the table, a new or lost
+ * route, resets the timer and the next updates follow within seconds. An update that changed nothing is
+ * consistent, when enough of them were heard the own one is skipped. The interval grows up to
+ * {@link #MAX_TRICKLE_INTERVAL}, and the node is never silent for more than {@link #MAX_SILENCE} seconds,
+ * so neighbours still hear it within their timeout. Only engines that do not flood use the timer.
+ * <p>
+ * A {@link RoutingEngine#isReactive() reactive} engine has no updates at all. The agent sends the route
+ * messages of the engine after every frame it handles and every tick, and holds the packets of its owner
+ * that {@link #holdForRoute(Packet) wait for a route} until {@link #takeRouted()} hands them back.
+ */
+public class RoutingAgent {
+
+    /**
+     * Seconds after which a neighbour that was not heard from is no longer counted for the format negotiation,
+     * 4 times the DV update interval.
+     */
+    public static final int FORMAT_TIMEOUT = DistanceVector.DV_UPDATE_INTERVAL * 4;
+
+    /**
+     * TTL of the plain distance vectors of this agent, deployed nodes send theirs with TTL 1.
+     */
+    public static final int PLAIN_TTL = 0;
+
+    /**
+     * Largest payload of an extended frame in bytes.
+     */
+    public static final int MAX_EXTENDED_PAYLOAD = AddressHeader.FRAME_LENGTH - AddressHeader.EXTENDED_HEADER_LENGTH;
+
+    /**
+     * Longest interval of the Trickle timer in seconds, twice the fixed rate. A stable network mostly sends
+     * the updates that {@link #MAX_SILENCE} asks for.
+     */
+    public static final int MAX_TRICKLE_INTERVAL = 2 * DistanceVector.DV_UPDATE_INTERVAL;
+
+    /**
+     * Seconds without an update after which the Trickle timer sends one anyway. Two gaps stay below
+     * {@link DistanceVector#NEIGHBOUR_TIMEOUT}, so one lost update does not cost a neighbour its routes.
+     */
+    public static final int MAX_SILENCE = 80;
+
+    /**
+     * Packets that may wait per destination for a reactive engine to find a route.
+     */
+    public static final int MAX_WAITING = 8;
+
+    private final RoutingEngine routing;
+    private final IntSupplier localAddress;
+    private final LayerModel lower;
+    private final Supplier<DA_Header> keepalive;
+
+    /**
+     * Broadcast IDs seen per source, used to handle and relay every flooded frame only once.
+     */
+    private final BroadcastWindow broadcastWindow = new BroadcastWindow();
+
+    /**
+     * The last used ID for broadcast packets.
+     */
+    private int lastUsedId = 0;
+
+    private final boolean extended;
+
+    /**
+     * Seconds left per neighbour until it no longer counts as speaking the extended or the base format, or
+     * as a deployed node that only sends plain frames.
+     */
+    private final int[] extendedHeard = new int[AddressHeader.EXTENDED_ADDRESSES];
+    private final int[] baseHeard = new int[AddressHeader.EXTENDED_ADDRESSES];
+    private final int[] deployedHeard = new int[AddressHeader.EXTENDED_ADDRESSES];
+
+    /**
+     * Whether a triggered update waits for the next tick, only used in extended mode.
+     */
+    private boolean updatePending;
+
+    /**
+     * Sends the periodic updates when set, see the class comment.
+     */
+    private volatile TrickleTimer trickle;
+    private volatile int updateInterval = DistanceVector.DV_UPDATE_INTERVAL;
+
+    /**
+     * Packets waiting for a route per destination, and the seconds they waited so far.
+     */
+    private final Map<Integer, List<Packet>> waiting = new HashMap<>();
+    private final int[] waited = new int[AddressHeader.EXTENDED_ADDRESSES];
+
+    /**
+     * Constructs a new agent in base mode.
+     *
+     * @param routing      The routing engine that owns the routing table
+     * @param localAddress Supplies the current address of the node
+     * @param lower        The layer frames are sent to
+     */
+    public RoutingAgent(RoutingEngine routing, IntSupplier localAddress, LayerModel lower) {
+        this(routing, localAddress, lower, false);
+    }
+
+    /**
+     * Constructs a new agent.
+     *
+     * @param routing      The routing engine that owns the routing table
+     * @param localAddress Supplies the current address of the node
+     * @param lower        The layer frames are sent to
+     * @param extended     Whether the agent speaks the extended format. Only distance vector uses it.
+     */
+    public RoutingAgent(RoutingEngine routing, IntSupplier localAddress, LayerModel lower, boolean extended) {
+        this(routing, localAddress, lower, extended, null);
+    }
+
+    /**
+     * Constructs a new agent whose updates carry the DA keepalive of the node.
+     *
+     * @param routing      The routing engine that owns the routing table
+     * @param localAddress Supplies the current address of the node
+     * @param lower        The layer frames are sent to
+     * @param extended     Whether the agent speaks the extended format. Only distance vector uses it.
+     * @param keepalive    Supplies a new keepalive for every update, or null while the node has no address.
+     *                     Null for no keepalives at all.
+     */
+    public RoutingAgent(RoutingEngine routing, IntSupplier localAddress, LayerModel lower, boolean extended,
+                        Supplier<DA_Header> keepalive) {
+        this.routing = routing;
+        this.localAddress = localAddress;
+        this.lower = lower;
+        this.extended = extended;
+        this.keepalive = keepalive;
+    }
+
+    /**
+     * Turns the Trickle timer for periodic updates on or off, see the class comment. With the timer on,
+     * the owner should no longer call {@link #sendUpdate()} at a fixed rate.
+     *
+     * @param on       Whether the timer is used
+     * @param suppress Whether consistent updates of neighbours may suppress the own one. Without, the
+     *                 interval grows up to {@link DistanceVector#DV_UPDATE_INTERVAL} only and every interval
+     *                 has its update, which link estimates count on.
+     */
+    public void setTrickle(boolean on, boolean suppress) {
+        if (!on || routing.floodsAdvertisements() || routing.isReactive()) {
+            trickle = null;
+            updateInterval = DistanceVector.DV_UPDATE_INTERVAL;
+        } else if (suppress) {
+            trickle = new TrickleTimer(MAX_TRICKLE_INTERVAL, TrickleTimer.REDUNDANCY, MAX_SILENCE, new Random());
+            updateInterval = MAX_SILENCE;
+        } else {
+            trickle = new TrickleTimer(DistanceVector.DV_UPDATE_INTERVAL, Integer.MAX_VALUE, MAX_SILENCE,
+                    new Random());
+            updateInterval = DistanceVector.DV_UPDATE_INTERVAL;
+        }
+    }
+
+    /**
+     * Turns the Trickle timer for periodic updates on or off, with suppression.
+     *
+     * @param on Whether the timer is used
+     */
+    public void setTrickle(boolean on) {
+        setTrickle(on, true);
+    }
+
+    /**
+     * Gets the interval in which a node with the same settings sends at least one periodic update. With a
+     * Trickle timer that suppresses, this is the longest silence, every interval may be suppressed.
+     *
+     * @return the interval in seconds
+     */
+    public int getUpdateInterval() {
+        return updateInterval;
+    }
+
+    /**
+     * @return true if periodic updates are sent by a Trickle timer instead of by the owner
+     */
+    public boolean usesTrickle() {
+        return trickle != null;
+    }
+
+    /**
+     * Tells whether the next update carries the DA keepalive. It changes with the neighbours heard, see
+     * the class comment.
+     *
+     * @return true if the updates of this agent carry the DA keepalive, so the node does not need to send
+     * a HELLO for its neighbours
+     */
+    public boolean carriesKeepalive() {
+        return keepalive != null && routing instanceof DistanceVector distanceVector
+                && distanceVector.usesLoopPrevention() && !sendsPlain();
+    }
+
+    /**
+     * @return true if this agent speaks the extended format
+     */
+    public boolean isExtended() {
+        return extended;
+    }
+
+    /**
+     * @return the routing engine of this agent
+     */
+    public RoutingEngine getRoutingEngine() {
+        return routing;
+    }
+
+    /**
+     * Gets the next ID for a broadcast packet. IDs wrap from 255 to 0, so they always fit the 8-bit field.
+     * The ID is marked as seen, so the own frame is not handled when it comes back.
+     *
+     * @return the new broadcast ID
+     */
+    public synchronized int nextBroadcastId() {
+        lastUsedId = (lastUsedId + 1) & 0xFF;
+        broadcastWindow.accept(localAddress.getAsInt(), lastUsedId);
+        return lastUsedId;
+    }
+
+    /**
+     * Checks a received broadcast frame and marks it as seen.
+     *
+     * @param addressHeader The received broadcast frame
+     * @return false if the frame is our own or was handled before
+     */
+    public boolean acceptBroadcast(AddressHeader addressHeader) {
+        return addressHeader.getSource() != localAddress.getAsInt()
+                && broadcastWindow.accept(addressHeader.getSource(), addressHeader.getID());
+    }
+
+    /**
+     * Handles a routing advertisement (next protocol 2, 3, 4 or 6) or route message (7). Sends a triggered
+     * update when the routing state changed and the engine does not flood, then relays the frame while its
+     * TTL allows. A reactive engine sends its own messages instead. A distance vector also tells which
+     * format its sender speaks, see the class comment.
+     *
+     * @param addressHeader The frame that carries the advertisement
+     * @throws NetworkException If a frame could not be sent
+     */
+    public void handleAdvertisement(AddressHeader addressHeader) throws NetworkException {
+        if (addressHeader.isExtended() && !extended) {
+            return; // Not a format this node speaks
+        }
+        boolean newNeighbour = false;
+        if (addressHeader.getUpperHeader() instanceof DV_Header) {
+            int neighbour = addressHeader.getSource();
+            boolean plain = !addressHeader.isExtended() && addressHeader.getNext_Protocol() == 2;
+            synchronized (this) {
+                newNeighbour = extendedHeard[neighbour] == 0 && baseHeard[neighbour] == 0
+                        && deployedHeard[neighbour] == 0;
+                if (addressHeader.isExtended()) {
+                    extendedHeard[neighbour] = FORMAT_TIMEOUT;
+                } else if (plain && addressHeader.getTTL() != PLAIN_TTL) {
+                    deployedHeard[neighbour] = FORMAT_TIMEOUT;
+                } else {
+                    if (!plain && extendedHeard[neighbour] > 0) {
+                        return; // Its extended frames carry the whole table
+                    }
+                    baseHeard[neighbour] = FORMAT_TIMEOUT;
+                }
+            }
+        }
+        boolean changed = routing.handleAdvertisement(addressHeader);
+        if (routing.isReactive()) {
+            sendMessages();
+            return;
+        }
+        if ((changed || newNeighbour) && !routing.floodsAdvertisements()) {
+            resetTrickle();
+            triggerUpdate();
+        } else if (trickle != null) {
+            trickle.heardConsistent();
+        }
+        relay(addressHeader);
+    }
+
+    /**
+     * Passes a flooded frame on to the neighbours with its TTL decreased.
+     * Source and broadcast ID stay the same, so other nodes recognise it as a duplicate.
+     *
+     * @param addressHeader The broadcast frame to relay
+     * @throws NetworkException If the frame could not be sent
+     */
+    public void relay(AddressHeader addressHeader) throws NetworkException {
+        if (addressHeader.getTTL() <= 1) {
+            return;
+        }
+        lower.ReceiveHeader(new AddressHeader(
+                addressHeader.getNext_Protocol(), addressHeader.getTTL() - 1,
+                addressHeader.getPayload_Length(), addressHeader.getSource(),
+                addressHeader.getDestination(), 0, addressHeader.getID(),
+                addressHeader.getUpperHeader(), addressHeader.isExtended()));
+    }
+
+    /**
+     * Ages the routing state by one second, sending an update when the engine asks for it.
+     *
+     * @throws NetworkException If the update could not be sent
+     */
+    public void tick() throws NetworkException {
+        broadcastWindow.tick();
+        boolean pending;
+        synchronized (this) {
+            for (int neighbour = 0; neighbour < AddressHeader.EXTENDED_ADDRESSES; neighbour++) {
+                if (extendedHeard[neighbour] > 0) extendedHeard[neighbour]--;
+                if (baseHeard[neighbour] > 0) baseHeard[neighbour]--;
+                if (deployedHeard[neighbour] > 0) deployedHeard[neighbour]--;
+            }
+            pending = updatePending;
+            updatePending = false;
+        }
+        boolean changed = routing.tick();
+        if (routing.isReactive()) {
+            expireWaiting();
+            sendMessages();
+            return;
+        }
+        if (changed) resetTrickle();
+        TrickleTimer timer = trickle;
+        boolean periodic = timer != null && timer.tick();
+        if (changed || pending || periodic) sendUpdate();
+    }
+
+    private void resetTrickle() {
+        TrickleTimer timer = trickle;
+        if (timer != null) timer.reset();
+    }
+
+    /**
+     * Sends a triggered update, in extended mode at the next tick.
+     */
+    private void triggerUpdate() throws NetworkException {
+        if (!extended) {
+            sendUpdate();
+            return;
+        }
+        synchronized (this) {
+            updatePending = true;
+        }
+    }
+
+    /**
+     * Removes the route to a destination and sends an update, so the neighbours hear about it right away.
+     *
+     * @param destination The destination address to remove
+     * @throws NetworkException If the update could not be sent
+     */
+    public void removeRoute(int destination) throws NetworkException {
+        if (destination == localAddress.getAsInt()) {
+            return;
+        }
+        routing.removeRoute(destination);
+        if (routing.isReactive()) {
+            return; // Nothing to advertise, the neighbours find out when they need the route
+        }
+        resetTrickle();
+        triggerUpdate();
+    }
+
+    /**
+     * Starts looking for a route to a destination, when the engine is reactive.
+     *
+     * @param destination The destination a packet is waiting for
+     * @throws NetworkException If a request could not be sent
+     */
+    public void requestRoute(int destination) throws NetworkException {
+        if (routing.requestRoute(destination)) sendMessages();
+    }
+
+    /**
+     * Keeps a packet without a route until the reactive engine found one, and starts looking for it.
+     * Packets that wait longer than {@link OnDemand#DISCOVERY_TIMEOUT} seconds are dropped.
+     *
+     * @param packet The packet from the layer above, its destination is the one it waits for
+     * @return false if the engine is not reactive or {@link #MAX_WAITING} packets wait already, the packet
+     * is not kept then
+     * @throws NetworkException If a request could not be sent
+     */
+    public boolean holdForRoute(Packet packet) throws NetworkException {
+        int destination = packet.getDestination();
+        if (!routing.isReactive() || destination < 0 || destination >= AddressHeader.EXTENDED_ADDRESSES) {
+            return false;
+        }
+        synchronized (waiting) {
+            List<Packet> packets = waiting.computeIfAbsent(destination, _ -> new ArrayList<>());
+            if (packets.size() >= MAX_WAITING) return false;
+            if (packets.isEmpty()) waited[destination] = 0;
+            packets.add(packet);
+        }
+        requestRoute(destination);
+        return true;
+    }
+
+    /**
+     * Takes the waiting packets whose route was found meanwhile.
+     *
+     * @return The packets to send again, in the order they came
+     */
+    public List<Packet> takeRouted() {
+        List<Packet> routed = new ArrayList<>();
+        synchronized (waiting) {
+            Iterator<Map.Entry<Integer, List<Packet>>> it = waiting.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, List<Packet>> entry = it.next();
+                if (routing.getRoute(entry.getKey()) != null) {
+                    routed.addAll(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        return routed;
+    }
+
+    /**
+     * Drops the packets whose search gave up.
+     */
+    private void expireWaiting() {
+        synchronized (waiting) {
+            waiting.keySet().removeIf(destination -> ++waited[destination] > OnDemand.DISCOVERY_TIMEOUT);
+        }
+    }
+
+    /**
+     * Sends the route messages of a reactive engine, each hop sends them with its own address as source.
+     */
+    private void sendMessages() throws NetworkException {
+        int source = localAddress.getAsInt();
+        for (Packet message : routing.takeMessages()) {
+            if (!(message instanceof AODV_Header routeMessage)) {
+                throw new IllegalStateException("Unexpected route message: " + message);
+            }
+            int destination = routeMessage.getDestination();
+            boolean flood = destination == 7;
+            lower.ReceiveHeader(new AddressHeader(AddressHeader.ON_DEMAND_PROTOCOL, 1,
+                    routeMessage.getPayloadLength(), source, destination, flood ? 0 : destination,
+                    flood ? nextBroadcastId() : 0, routeMessage,
+                    !AddressHeader.isBaseAddress(source) || !AddressHeader.isBaseAddress(destination)));
+        }
+    }
+
+    /**
+     * Sends the advertisement of this node.
+     *
+     * @throws NetworkException If the update could not be sent
+     */
+    public void sendUpdate() throws NetworkException {
+        if (routing.isReactive()) {
+            return; // Nothing to advertise
+        }
+        synchronized (this) {
+            updatePending = false; // This update carries the pending changes too
+        }
+        TrickleTimer timer = trickle;
+        if (timer != null) timer.transmitted();
+        for (AddressHeader frame : makeUpdatePackets()) {
+            lower.ReceiveHeader(frame);
+        }
+    }
+
+    /**
+     * Creates the frames with this node's current routing information. In base mode this is one frame,
+     * in extended mode the compact segments of the distance vector, after a base frame when a neighbour
+     * may need one. While a deployed node may hear it, the distance vector is one plain frame.
+     *
+     * @return The frames to send, in order
+     */
+    public List<AddressHeader> makeUpdatePackets() {
+        Packet advertisement = routing.makeAdvertisement();
+        if (!(advertisement instanceof DV_Header dv)) {
+            return List.of(makeUpdatePacket(advertisement));
+        }
+        if (sendsPlain()) {
+            return List.of(makeUpdatePacket(plainEntries(dv)));
+        }
+        DA_Header hello = carriesKeepalive() ? keepalive.get() : null;
+        if (!extended) {
+            dv.setKeepalive(hello);
+            return List.of(makeUpdatePacket(dv));
+        }
+        int source = localAddress.getAsInt();
+        List<AddressHeader> frames = new ArrayList<>();
+        if (AddressHeader.isBaseAddress(source) && needsBaseFrame()) {
+            DV_Header base = baseEntries(dv, source);
+            base.setKeepalive(hello);
+            frames.add(makeUpdatePacket(base));
+        }
+        for (DV_Header segment : compactSegments(dv, hello)) {
+            int nextProtocol = segment.getKeepalive() != null ? AddressHeader.CONTROL_PROTOCOL : 3;
+            frames.add(new AddressHeader(nextProtocol, 1, segment.getCompactPayloadLength(), source, 7, 0,
+                    nextBroadcastId(), segment, true));
+        }
+        return frames;
+    }
+
+    /**
+     * The update is one plain frame while a deployed node may hear it, unless the address does not fit one.
+     */
+    private boolean sendsPlain() {
+        return AddressHeader.isBaseAddress(localAddress.getAsInt()) && needsPlainFrame();
+    }
+
+    /**
+     * A plain frame is needed while a deployed node is a neighbour, or when no neighbour is known.
+     */
+    private synchronized boolean needsPlainFrame() {
+        if (hearsDeployedNode()) return true;
+        for (int neighbour = 0; neighbour < AddressHeader.EXTENDED_ADDRESSES; neighbour++) {
+            if (baseHeard[neighbour] > 0 || extendedHeard[neighbour] > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a neighbour was heard within {@link #FORMAT_TIMEOUT} that only sends plain frames
+     * with TTL 1, a deployed node, see the class comment
+     */
+    public synchronized boolean hearsDeployedNode() {
+        for (int neighbour = 0; neighbour < AddressHeader.EXTENDED_ADDRESSES; neighbour++) {
+            if (deployedHeard[neighbour] > 0 && baseHeard[neighbour] == 0 && extendedHeard[neighbour] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A base frame is needed while a neighbour only speaks the base format.
+     */
+    private synchronized boolean needsBaseFrame() {
+        for (int neighbour = 0; neighbour < AddressHeader.EXTENDED_ADDRESSES; neighbour++) {
+            if (baseHeard[neighbour] > 0 && extendedHeard[neighbour] == 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the entries of a distance vector that fit a plain frame, without next hops.
+     */
+    private static DV_Header plainEntries(DV_Header dv) {
+        List<Integer> destinations = new ArrayList<>();
+        for (int destination : dv.getDistanceVector().keySet()) {
+            if (AddressHeader.isBaseAddress(destination)) destinations.add(destination);
+        }
+        return new DV_Header(destinations.stream().mapToInt(Integer::intValue).toArray(),
+                destinations.stream().mapToInt(dv.getDistanceVector()::get).toArray());
+    }
+
+    /**
+     * Gets the entries of a distance vector that fit a base frame. Next hops that do not fit are replaced
+     * by the local address, for poisoned reverse it only matters that they are not the receiver.
+     */
+    private static DV_Header baseEntries(DV_Header dv, int source) {
+        List<Integer> destinations = new ArrayList<>();
+        for (int destination : dv.getDistanceVector().keySet()) {
+            if (AddressHeader.isBaseAddress(destination)) destinations.add(destination);
+        }
+        int[] costs = new int[destinations.size()];
+        int[] nextHops = new int[destinations.size()];
+        for (int i = 0; i < destinations.size(); i++) {
+            int destination = destinations.get(i);
+            int nextHop = dv.getNextHops().getOrDefault(destination, destination);
+            costs[i] = dv.getDistanceVector().get(destination);
+            nextHops[i] = AddressHeader.isBaseAddress(nextHop) ? nextHop : source;
+        }
+        return new DV_Header(destinations.stream().mapToInt(Integer::intValue).toArray(), costs, nextHops);
+    }
+
+    /**
+     * Splits a distance vector into headers with consecutive destination ranges that each fit the payload
+     * of an extended frame. Together the ranges cover all addresses.
+     *
+     * @param dv The distance vector to split, with next hops
+     * @return The headers in the order of their ranges
+     */
+    public static List<DV_Header> compactSegments(DV_Header dv) {
+        return compactSegments(dv, null);
+    }
+
+    /**
+     * Splits a distance vector like {@link #compactSegments(DV_Header)}, the first header also carries a keepalive.
+     *
+     * @param dv        The distance vector to split, with next hops
+     * @param keepalive The keepalive for the first header, or null for none
+     * @return The headers in the order of their ranges
+     */
+    public static List<DV_Header> compactSegments(DV_Header dv, DA_Header keepalive) {
+        List<DV_Header> segments = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int first = 0;
+        for (int destination : new TreeSet<>(dv.getDistanceVector().keySet())) {
+            current.add(destination);
+            DA_Header carried = segments.isEmpty() ? keepalive : null;
+            if (segment(dv, current, first, destination, carried).getCompactPayloadLength() > MAX_EXTENDED_PAYLOAD) {
+                current.removeLast();
+                segments.add(segment(dv, current, first, destination - 1, carried));
+                current = new ArrayList<>(List.of(destination));
+                first = destination;
+            }
+        }
+        segments.add(segment(dv, current, first, AddressHeader.EXTENDED_ADDRESSES - 1,
+                segments.isEmpty() ? keepalive : null));
+        return segments;
+    }
+
+    private static DV_Header segment(DV_Header dv, List<Integer> destinations, int first, int last,
+                                     DA_Header keepalive) {
+        int[] costs = new int[destinations.size()];
+        int[] nextHops = new int[destinations.size()];
+        for (int i = 0; i < destinations.size(); i++) {
+            int destination = destinations.get(i);
+            costs[i] = dv.getDistanceVector().get(destination);
+            nextHops[i] = dv.getNextHops().getOrDefault(destination, destination);
+        }
+        DV_Header segment = new DV_Header(destinations.stream().mapToInt(Integer::intValue).toArray(), costs,
+                nextHops, first, last);
+        segment.setKeepalive(keepalive);
+        return segment;
+    }
+
+    /**
+     * Creates a packet containing this node's current routing information.
+     *
+     * @return An AddressHeader containing a DV_Header or LSA_Header with current routing information
+     */
+    public AddressHeader makeUpdatePacket() {
+        return makeUpdatePacket(routing.makeAdvertisement());
+    }
+
+    private AddressHeader makeUpdatePacket(Packet advertisement) {
+        int source = localAddress.getAsInt();
+        int nextProtocol;
+        int TTL;
+        int size;
+        boolean extendedFrame = false;
+        switch (advertisement) {
+            case DV_Header dv -> {
+                nextProtocol = dv.getKeepalive() != null ? AddressHeader.CONTROL_PROTOCOL
+                        : dv.hasNextHops() ? 3 : 2; // DV Header ID
+                TTL = nextProtocol == 2 ? PLAIN_TTL : 1; // Only actual neighbours need to know
+                size = dv.getPayloadLength();
+            }
+            case LSA_Header lsa -> {
+                nextProtocol = 4; // LSA Header ID
+                TTL = LinkState.FLOOD_TTL; // Flooded through the whole network
+                extendedFrame = !lsa.fitsBase(source); // Only nodes that speak it know such addresses
+                size = extendedFrame ? lsa.getExtendedPayloadLength() : lsa.getPayloadLength();
+            }
+            default -> throw new IllegalStateException("Unexpected advertisement: " + advertisement);
+        }
+
+        int destination = 7; // broadcast
+        int nextHop = 0; // for broadcast, not used
+        int id = nextBroadcastId(); // new unique ID for broadcast
+        return new AddressHeader(nextProtocol, TTL,
+                size, source,
+                destination, nextHop, id,
+                advertisement, extendedFrame);
+    }
+}
@@ -0,0 +1,140 @@
+package NetworkLayer;
+
+import Model.Packet;
+import NetworkLayer.NetworkLayer.RouteEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <h1>Routing engine</h1>
+ * Computes the routing table of one node from the routing advertisements it receives.
+ * The {@link NetworkLayer} owns the engine and does all the sending, which one is used is decided at startup.
+ * <p>
+ * Implementations:
+ * <ul>
+ *     <li>{@link NetworkLayer.DV.DistanceVector} — advertisements only go to direct neighbours.</li>
+ *     <li>{@link NetworkLayer.LS.LinkState} — advertisements are flooded through the whole network.</li>
+ *     <li>{@link NetworkLayer.AODV.OnDemand} — no advertisements, routes are looked for when a packet
+ *     needs one.</li>
+ * </ul>
+ */
+public interface RoutingEngine {
+
+    /**
+     * Handles a routing advertisement received from the network.
+     *
+     * @param header The address header that carries the advertisement
+     * @return true if the advertisement changed the routing state. Engines that do not flood their
+     * advertisements then expect the network layer to send its own advertisement.
+     */
+    boolean handleAdvertisement(AddressHeader header);
+
+    /**
+     * Creates the advertisement this node sends about itself.
+     *
+     * @return The header to put under an {@link AddressHeader}
+     */
+    Packet makeAdvertisement();
+
+    /**
+     * Checks whether the advertisements of this engine are flooded, instead of only sent to direct neighbours.
+     * Flooding itself is done by the network layer, with duplicate suppression on the broadcast ID.
+     *
+     * @return true if received advertisements are relayed
+     */
+    boolean floodsAdvertisements();
+
+    /**
+     * Checks whether this engine finds routes on demand instead of advertising its table. A reactive engine
+     * has no advertisement of its own, {@link #requestRoute(int)} starts looking for a route and the
+     * messages it sends for that are taken with {@link #takeMessages()}.
+     *
+     * @return true if routes are only found on demand
+     */
+    default boolean isReactive() {
+        return false;
+    }
+
+    /**
+     * Starts looking for a route to a destination, when the engine {@link #isReactive() is reactive}.
+     *
+     * @param destination The destination a packet is waiting for
+     * @return true if a new search started, false if one is running already or the engine is not reactive
+     */
+    default boolean requestRoute(int destination) {
+        return false;
+    }
+
+    /**
+     * Takes the messages the engine wants sent, when it {@link #isReactive() is reactive}. The destination
+     * of every message is its receiver, the broadcast address for a flood.
+     *
+     * @return The messages in the order they should be sent, empty when there are none
+     */
+    default List<Packet> takeMessages() {
+        return List.of();
+    }
+
+    /**
+     * Ages the routing state by one second.
+     *
+     * @return true if this node should send its own advertisement
+     */
+    boolean tick();
+
+    /**
+     * Removes the route to a destination, for example because the node is gone.
+     *
+     * @param destination The destination address to remove
+     */
+    void removeRoute(int destination);
+
+    /**
+     * Updates or creates a route entry in the routing table.
+     *
+     * @param destination The destination address
+     * @param routeEntry  The RouteEntry containing next hop and cost information
+     */
+    void updateRoute(int destination, RouteEntry routeEntry);
+
+    /**
+     * Gets the route entry for a specified destination.
+     *
+     * @param destination The destination address to look up
+     * @return The RouteEntry for the specified destination, or null if there is none
+     */
+    RouteEntry getRoute(int destination);
+
+    /**
+     * Picks the next hop for a packet to a destination. Engines that know more than one next hop
+     * may spread packets over them.
+     *
+     * @param destination The destination address of the packet
+     * @return the next hop, or -1 if there is no route
+     */
+    default int selectNextHop(int destination) {
+        RouteEntry route = getRoute(destination);
+        return route == null ? -1 : route.nextHop;
+    }
+
+    /**
+     * @return the counters this engine keeps
+     */
+    RoutingMetrics getMetrics();
+
+    /**
+     * Gets the destinations that currently have a route, copied while the table is locked.
+     *
+     * @return A new set with the destination addresses
+     */
+    Set<Integer> getDestinations();
+
+    /**
+     * Gets the routes, copied while the table is locked.
+     *
+     * @return A new Map with the route to every destination
+     */
+    Map<Integer, RouteEntry> getRoutes();
+}
@@ -0,0 +1,46 @@
+package NetworkLayer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters kept by a {@link RoutingEngine}, so the behaviour of routing can be checked on a running node.
+ */
+public class RoutingMetrics {
+
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong packetsSaved = new AtomicLong();
+
+    /**
+     * Records that a route switched to an alternate next hop because its primary one failed.
+     */
+    public void recordFailover() {
+        failovers.incrementAndGet();
+    }
+
+    /**
+     * Records a packet sent over a route that only exists because of a failover.
+     * Without the failover the packet would have been dropped.
+     */
+    public void recordPacketSaved() {
+        packetsSaved.incrementAndGet();
+    }
+
+    /**
+     * @return the number of failovers to an alternate next hop
+     */
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    /**
+     * @return the number of packets sent over failover routes
+     */
+    public long getPacketsSaved() {
+        return packetsSaved.get();
+    }
+
+    @Override
+    public String toString() {
+        return "failovers: " + getFailovers() + ", packets saved by failover: " + getPacketsSaved();
+    }
+}
@@ -0,0 +1,112 @@
+package NetworkLayer;
+
+import java.util.Random;
+
+/**
+ * Trickle timer (RFC 6206) for periodic control traffic, counted in seconds. The owner calls {@link #tick()}
+ * every second and sends when it returns true.
+ * <p>
+ * Time is split in intervals. In each interval the timer fires once, at a random second in the second half.
+ * When the owner {@link #heardConsistent() heard} {@code redundancy} consistent transmissions of its
+ * neighbours before that second, the transmission is suppressed, the neighbours already agree. After every
+ * interval the next one is twice as long, up to the maximum, so a stable network sends less and less.
+ * An {@link #reset() inconsistency} starts over at the minimum interval, so news spreads within seconds.
+ * <p>
+ * Other nodes may rely on hearing the owner now and then, to keep it alive. So the timer also fires as soon
+ * as the owner has been silent for {@code maxSilence} seconds, whatever the interval.
+ */
+public class TrickleTimer {
+
+    /**
+     * Shortest interval in seconds, used after an inconsistency.
+     */
+    public static final int MIN_INTERVAL = 1;
+
+    /**
+     * Consistent transmissions heard in an interval after which the own one is suppressed.
+     */
+    public static final int REDUNDANCY = 2;
+
+    private final int maxInterval;
+    private final int redundancy;
+    private final int maxSilence;
+    private final Random random;
+
+    private int interval;
+    private int elapsed;
+    private int fireAt;
+    private int heard;
+    private int silence;
+
+    /**
+     * @param maxInterval the longest interval in seconds
+     * @param redundancy  consistent transmissions that suppress the own one, {@link Integer#MAX_VALUE}
+     *                    to never suppress
+     * @param maxSilence  seconds without a transmission after which the timer fires anyway
+     * @param random      source of the moment in each interval
+     */
+    public TrickleTimer(int maxInterval, int redundancy, int maxSilence, Random random) {
+        this.maxInterval = maxInterval;
+        this.redundancy = redundancy;
+        this.maxSilence = maxSilence;
+        this.random = random;
+        this.interval = MIN_INTERVAL;
+        startInterval();
+    }
+
+    /**
+     * Advances the timer by one second.
+     *
+     * @return true if the owner should transmit now
+     */
+    public synchronized boolean tick() {
+        elapsed++;
+        silence++;
+        boolean fire = silence >= maxSilence || elapsed == fireAt && heard < redundancy;
+        if (elapsed >= interval) {
+            interval = Math.min(interval * 2, maxInterval);
+            startInterval();
+        }
+        return fire;
+    }
+
+    /**
+     * Counts a transmission of a neighbour that agrees with this node.
+     */
+    public synchronized void heardConsistent() {
+        heard++;
+    }
+
+    /**
+     * Handles an inconsistency: starts a new interval at the minimum, unless it is already there.
+     */
+    public synchronized void reset() {
+        if (interval > MIN_INTERVAL) {
+            interval = MIN_INTERVAL;
+            startInterval();
+        }
+    }
+
+    /**
+     * Tells the timer the owner transmitted, also outside the timer, for example a triggered update.
+     */
+    public synchronized void transmitted() {
+        silence = 0;
+    }
+
+    /**
+     * @return the length of the current interval in seconds
+     */
+    public synchronized int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Picks the second to fire at in the second half of the new interval. Caller must hold the lock.
+     */
+    private void startInterval() {
+        elapsed = 0;
+        heard = 0;
+        fireAt = Math.max(1, interval / 2 + random.nextInt(interval - interval / 2 + 1));
+    }
+}
@@ -0,0 +1,384 @@
+package TransportLayer;
+
+import Model.Exceptions.NetworkException;
+import Model.LayerModel;
+import Model.Packet;
+import NetworkLayer.NetworkLayer;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Implements the sending end of a broadcast: one message to several nodes, with one transmission of every
+ * packet for all of them. The packets go to the broadcast address, so every neighbour hears the same frame.
+ * A broadcast only travels one hop, see {@link NetworkLayer#BROADCAST_TTL}, so a node that is no direct
+ * neighbour gets every packet of its own, along its route. Every node that receives them runs an ordinary
+ * {@link Receiver}, which acknowledges to this node, so the sender keeps per node which packets it still
+ * misses. The gaps before the packets an acknowledgment covers were lost on the way to that node, they are
+ * negative acknowledgments.
+ * <p>
+ * Only missing packets are sent again. A gap is repaired right away, with a packet to that node alone.
+ * When the repair timer expires, a packet that {@link #REBROADCAST_NODES} or more neighbours miss is
+ * broadcast again, the other nodes that miss it get it alone. The repair timer follows the slowest
+ * round-trip time of the nodes that miss packets, and doubles for every timer in a row that brought no
+ * acknowledgment.
+ * <p>
+ * New packets are sent as long as they lie within {@link Receiver#RECEIVE_WINDOW} of the first packet a
+ * node misses, the node furthest behind holds the others back. A node that acknowledged nothing for
+ * {@link #MAX_ROUNDS} repair rounds is given up. Once every node has the message, a FIN+ACK is broadcast
+ * for the neighbours and sent to every other node alone, so all of them end their connection right away.
+ */
+public class BroadcastSender implements Connection {
+
+    /**
+     * Repair rounds in a row without an acknowledgment from a node, after which the node is given up.
+     */
+    public static final int MAX_ROUNDS = 8;
+
+    /**
+     * Neighbours that miss a packet, from which on it is broadcast again instead of sent to each of them.
+     */
+    public static final int REBROADCAST_NODES = 2;
+
+    private static final int BROADCAST = 7;
+
+    private final Set<Integer> receivers;
+    private final IntPredicate neighbour;
+    private final int firstSeq;
+    private final int lastSeq;
+    private final NavigableMap<Integer, ByteBuffer> segments = new TreeMap<>();
+    private final Map<Integer, NavigableSet<Integer>> missing = new HashMap<>(); // Per node that waits
+    private final Map<Integer, Integer> silentRounds = new HashMap<>(); // Per node, rounds without progress
+    private final Map<Integer, Set<Integer>> repaired = new HashMap<>(); // Per node, gaps repaired this round
+    private final Map<Integer, Long> sentAt = new HashMap<>(); // Per packet, when it was broadcast first
+    private final Set<Integer> resent = new HashSet<>(); // Packets that were sent more than once
+    private final Set<Integer> givenUp = new HashSet<>();
+    private final LayerModel lower;
+    private final Scheduler scheduler;
+    private final RttEstimator rtt;
+
+    private int nextSeq; // First packet that was never sent
+    private int rounds; // Repair timers in a row that expired without an acknowledgment
+    private Cancellable timer;
+    private boolean done;
+
+    /**
+     * Constructs a new BroadcastSender for sending a message to several nodes. Transmission begins with
+     * {@link #start()}.
+     *
+     * @param receivers The addresses of the nodes to send the message to
+     * @param message   The complete message to be sent
+     */
+    public BroadcastSender(Set<Integer> receivers, String message) {
+        this(receivers, NetworkLayer.getSingleton()::isNeighbour, TransportLayer.segment(message,
+                        NetworkLayer.getSingleton().getMaxPayload() - TransportLayer.HEADER_LENGTH,
+                        TransportLayer.getSingleton().isCompressing()),
+                NetworkLayer.getSingleton(), TransportLayer.getSingleton().getScheduler(),
+                TransportLayer.getSingleton().getRttEstimator());
+    }
+
+    /**
+     * Constructs a new BroadcastSender for a message that is already split into segments. Nothing is sent
+     * before {@link #start()}, so the connection can be registered before its acknowledgments arrive.
+     *
+     * @param receivers The addresses of the nodes to send the message to
+     * @param neighbour Tells whether a node is a direct neighbour, which hears the broadcast packets
+     * @param segments  The UTF-8 segments of the message, one per packet, see {@link TransportLayer#segment}
+     * @param lower     The layer the packets are sent to
+     * @param scheduler Runs the repair timer
+     * @param rtt       Measures the round-trip times the repair timer follows
+     */
+    public BroadcastSender(Set<Integer> receivers, IntPredicate neighbour, List<ByteBuffer> segments,
+                           LayerModel lower, Scheduler scheduler, RttEstimator rtt) {
+        this.receivers = Set.copyOf(receivers);
+        this.neighbour = neighbour;
+        this.lower = lower;
+        this.scheduler = scheduler;
+        this.rtt = rtt;
+
+        this.firstSeq = TransportLayer.getSingleton().getSequences().allocate(this.receivers, segments.size());
+        this.lastSeq = firstSeq + segments.size() - 1;
+        for (int seq = firstSeq; seq <= lastSeq; seq++) {
+            this.segments.put(seq, segments.get(seq - firstSeq));
+        }
+        for (int node : this.receivers) {
+            missing.put(node, new TreeSet<>(this.segments.keySet()));
+        }
+
+        this.nextSeq = firstSeq;
+    }
+
+    /**
+     * Begins transmission: broadcasts the first window and sets the repair timer.
+     */
+    @Override
+    public synchronized void start() {
+        sendNewPackets();
+        startTimer();
+    }
+
+    /**
+     * Sends packets that were never sent, as long as the node furthest behind can keep them. They are
+     * broadcast once for the neighbours and sent to every other node alone.
+     */
+    private void sendNewPackets() {
+        int behind = missing.values().stream().mapToInt(NavigableSet::first).min().orElse(nextSeq);
+        if (nextSeq > lastSeq || nextSeq >= behind + Receiver.RECEIVE_WINDOW) {
+            return;
+        }
+        List<Integer> distant = new ArrayList<>();
+        boolean neighbours = false;
+        for (int node : missing.keySet()) {
+            if (neighbour.test(node)) {
+                neighbours = true;
+            } else {
+                distant.add(node);
+            }
+        }
+        while (nextSeq <= lastSeq && nextSeq < behind + Receiver.RECEIVE_WINDOW) {
+            sentAt.put(nextSeq, rtt.now());
+            if (neighbours) {
+                sendPacket(nextSeq, BROADCAST);
+            }
+            for (int node : distant) {
+                sendPacket(nextSeq, node);
+            }
+            nextSeq++;
+        }
+    }
+
+    /**
+     * Sends a packet to one node, or to all neighbours.
+     *
+     * @param seq         The sequence number of the packet to send
+     * @param destination The node to send it to, or the broadcast address
+     */
+    private void sendPacket(int seq, int destination) {
+        try {
+            lower.ReceiveHeader(new TCPHeader(seq, seq == firstSeq, seq == lastSeq, segments.get(seq), destination));
+        } catch (NetworkException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the repair timer, instead of the timer it had.
+     */
+    private void startTimer() {
+        if (timer != null) {
+            timer.cancel();
+        }
+        long timeout = missing.keySet().stream().mapToLong(node -> rtt.getTimeout(node, rounds)).max().orElse(0);
+        timer = scheduler.schedule(this::repair, timeout);
+    }
+
+    /**
+     * Sends the packets the nodes still miss again: the ones several neighbours miss to all neighbours, the
+     * others to every node that misses them. Gives up the nodes that stayed silent for too long.
+     */
+    private synchronized void repair() {
+        if (done) {
+            return;
+        }
+        rounds++;
+        repaired.clear();
+        NavigableMap<Integer, List<Integer>> nodesMissing = new TreeMap<>(); // Per packet that was sent
+        for (Iterator<Map.Entry<Integer, NavigableSet<Integer>>> it = missing.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, NavigableSet<Integer>> entry = it.next();
+            NavigableSet<Integer> sent = entry.getValue().headSet(nextSeq, false);
+            if (sent.isEmpty()) {
+                continue; // Only waits for packets held back by others
+            }
+            if (silentRounds.merge(entry.getKey(), 1, Integer::sum) > MAX_ROUNDS) {
+                givenUp.add(entry.getKey());
+                it.remove();
+                continue;
+            }
+            for (int seq : sent) {
+                nodesMissing.computeIfAbsent(seq, _ -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        nodesMissing.forEach((seq, nodes) -> {
+            resent.add(seq);
+            List<Integer> neighbours = nodes.stream().filter(neighbour::test).toList();
+            if (neighbours.size() >= REBROADCAST_NODES) {
+                sendPacket(seq, BROADCAST);
+                nodes.removeAll(neighbours);
+            }
+            for (int node : nodes) {
+                sendPacket(seq, node);
+            }
+        });
+        if (missing.isEmpty()) {
+            doneSending();
+        } else {
+            sendNewPackets();
+            startTimer();
+        }
+    }
+
+    /**
+     * Needs the node the acknowledgment comes from, see {@link #receivePacket(TCPHeader, int)}.
+     *
+     * @return false
+     */
+    @Override
+    public boolean receivePacket(TCPHeader packet) {
+        return false;
+    }
+
+    /**
+     * Processes an acknowledgment from one of the nodes. Removes the packets it covers from the ones the
+     * node misses, repairs the gaps before them and sends the packets the window allows now.
+     *
+     * @param packet The TCP header received from the network layer
+     * @param source The node that sent it
+     * @return true if the acknowledgment belongs to this broadcast
+     */
+    @Override
+    public synchronized boolean receivePacket(TCPHeader packet, int source) {
+        if (!packet.isAck() || !receivers.contains(source)) {
+            return false;
+        }
+        if (packet.getSequence() < firstSeq || packet.getSequence() > lastSeq) {
+            return false;
+        }
+        NavigableSet<Integer> pending = missing.get(source);
+        if (done || pending == null) {
+            return true; // The node has the message, or was given up
+        }
+        List<Integer> acked = packet.isFin()
+                ? new ArrayList<>(pending.headSet(nextSeq, false))
+                : Sender.covered(packet, pending, nextSeq);
+        if (acked.isEmpty()) {
+            return true;
+        }
+
+        long sample = -1;
+        for (int seq : acked) {
+            pending.remove(seq);
+            if (!resent.contains(seq)) {
+                sample = rtt.now() - sentAt.get(seq); // Copies of a packet sent again are ambiguous
+            }
+        }
+        if (sample >= 0) {
+            rtt.sample(source, sample);
+        }
+        silentRounds.remove(source);
+        rounds = 0;
+
+        Set<Integer> gaps = repaired.computeIfAbsent(source, _ -> new HashSet<>());
+        for (int seq : pending.headSet(acked.getLast(), false)) {
+            if (gaps.add(seq)) { // Lost on the way to this node, once per round
+                resent.add(seq);
+                sendPacket(seq, source);
+            }
+        }
+        if (pending.isEmpty() || packet.isFin()) {
+            missing.remove(source);
+        }
+        if (missing.isEmpty()) {
+            doneSending();
+        } else {
+            sendNewPackets();
+            startTimer();
+        }
+        return true;
+    }
+
+    /**
+     * Finalizes the broadcast by sending a FIN packet to every node and cleaning up resources. It is
+     * broadcast once for the neighbours and sent to every other node alone.
+     */
+    private void doneSending() {
+        done = true;
+        if (timer != null) {
+            timer.cancel();
+        }
+        boolean neighbours = false;
+        for (int node : receivers) {
+            if (neighbour.test(node)) {
+                neighbours = true;
+            } else {
+                sendFin(node);
+            }
+        }
+        if (neighbours) {
+            sendFin(BROADCAST);
+        }
+
+        for (int node : receivers) {
+            TransportLayer.getSingleton().getSequences().release(node, firstSeq, lastSeq - firstSeq + 1);
+        }
+        TransportLayer.getSingleton().removeConnection(this);
+    }
+
+    /**
+     * Sends the FIN+ACK that ends the connection to one node, or to all neighbours.
+     *
+     * @param destination The node to send it to, or the broadcast address
+     */
+    private void sendFin(int destination) {
+        Packet tcpHeader = new TCPHeader(lastSeq, firstSeq == lastSeq, true, true, "", 0, destination);
+        try {
+            lower.ReceiveHeader(tcpHeader);
+        } catch (NetworkException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels the repair timer.
+     */
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    /**
+     * @return the sequence number of the first packet of the message
+     */
+    public int getFirstSeq() {
+        return firstSeq;
+    }
+
+    /**
+     * @return the sequence number of the last packet of the message
+     */
+    public int getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * @return true once every node has the message or was given up
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the nodes that stopped acknowledging and do not get the rest of the message
+     */
+    public synchronized Set<Integer> getGivenUp() {
+        return Set.copyOf(givenUp);
+    }
+
+    /**
+     * @return the broadcast address, the nodes are {@link #getPeers()}
+     */
+    @Override
+    public Integer getPeer() {
+        return BROADCAST;
+    }
+
+    /**
+     * @return the nodes the message goes to
+     */
+    @Override
+    public Set<Integer> getPeers() {
+        return receivers;
+    }
+}
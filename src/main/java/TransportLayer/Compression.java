@@ -0,0 +1,127 @@
+package TransportLayer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses chat messages before they are segmented. Chat messages are short, too short for a compressor to
+ * learn anything from them, so every message is compressed against the same static {@link #DICTIONARY} of
+ * words and phrases common in chat, with raw deflate: no header and no checksum, the transport layer checks
+ * the packets already.
+ * <p>
+ * A compressed message starts with {@link #FLAG}, so the flag is on its first segment. The byte never occurs
+ * in UTF-8, a message that is not compressed is its UTF-8 encoding as before. Both ends need the same
+ * dictionary, changing it changes the protocol.
+ * <p>
+ * The compressors are kept per thread and reused, creating one takes longer than compressing a message.
+ */
+public final class Compression {
+
+    /**
+     * First byte of a compressed message. Never the first byte of a UTF-8 encoding.
+     */
+    public static final byte FLAG = (byte) 0xFF;
+
+    /**
+     * Bytes of the UTF-8 encoding of a message that is compressed, at most. A longer message is sent raw, and
+     * a compressed message that inflates to more is rejected, a few frames of crafted data cannot fill the heap.
+     */
+    public static final int MAX_LENGTH = 1 << 16;
+
+    /**
+     * Words and phrases common in chat. Deflate refers back to text nearby with fewer bits, so the most common
+     * ones are at the end.
+     */
+    private static final byte[] DICTIONARY = String.join(" ",
+            "network message received connection sending routing please thanks thank tomorrow tonight today",
+            "morning evening weekend minutes already actually probably something anything everything nothing",
+            "because should would could about again after before there their where which while really",
+            "https:// www. .com @ :) :( :D ;) haha lol omg btw idk",
+            "let me know can you see you later talk to you later on my way be right back",
+            "what time are we meeting? where are you? how are you doing? i'm fine, and you?",
+            "did you get my message? i don't know, i didn't i can't i'll i've it's that's don't",
+            "yes no ok okay sure good great nice cool fine hey hi hello bye",
+            "the and you to is it in of for that this with on have are was not but what",
+            " the ", " you ", " to ", " and ", "ing ", "ed ", ". ", ", ", "? ", "! ")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private Compression() {
+    }
+
+    /**
+     * Compresses the UTF-8 encoding of a message.
+     *
+     * @param message the UTF-8 encoding of the message
+     * @return the compressed message, starting with {@link #FLAG}
+     */
+    public static byte[] compress(byte[] message) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(message);
+        deflater.finish();
+        byte[] compressed = new byte[message.length + 8];
+        compressed[0] = FLAG;
+        int length = 1;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return Arrays.copyOf(compressed, length);
+    }
+
+    /**
+     * @param message the bytes of a message as they arrived
+     * @return true if the message starts with {@link #FLAG}
+     */
+    public static boolean isCompressed(byte[] message) {
+        return message.length > 0 && message[0] == FLAG;
+    }
+
+    /**
+     * Turns the bytes of a message as they arrived back into the text, decompressing it if it is compressed.
+     *
+     * @param message the bytes of the message, all segments joined
+     * @return the text of the message
+     * @throws IllegalArgumentException if the message is compressed and cut off, corrupt or longer than
+     *                                  {@link #MAX_LENGTH}
+     */
+    public static String decode(byte[] message) {
+        if (!isCompressed(message)) {
+            return new String(message, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(message, 1, message.length - 1);
+        byte[] text = new byte[Math.min(message.length * 4, MAX_LENGTH)];
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                if (length == MAX_LENGTH) {
+                    throw new IllegalArgumentException("Compressed message is longer than " + MAX_LENGTH + " bytes");
+                }
+                if (length == text.length) {
+                    text = Arrays.copyOf(text, Math.min(text.length * 2, MAX_LENGTH));
+                }
+                int inflated = inflater.inflate(text, length, text.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("Compressed message is cut off");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed message is corrupt: " + e.getMessage());
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+}
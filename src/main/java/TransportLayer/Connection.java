@@ -1,5 +1,7 @@
 package TransportLayer;
 
+import java.util.Set;
+
 /**
  * <h1> Connection interface</h1>
  * <p>
@@ -7,12 +9,65 @@ package TransportLayer;
  */
 public interface Connection {
 
+    /**
+     * Runs the timers of a connection, on a real or a virtual clock.
+     */
+    @FunctionalInterface
+    interface Scheduler {
+        /**
+         * @param task        the task to run
+         * @param delayMillis milliseconds from now until it runs
+         * @return a handle that cancels the task
+         */
+        Cancellable schedule(Runnable task, long delayMillis);
+    }
 
+    /**
+     * A task that was scheduled and can still be cancelled.
+     */
+    @FunctionalInterface
+    interface Cancellable {
+        /**
+         * Makes sure the task does not run, if it did not run yet.
+         */
+        void cancel();
+    }
+
+    /**
+     * Begins the connection: sends its first packets, or handles the packet that opened it. Called once the
+     * connection is registered, so the answers to what it sends find it.
+     */
+    default void start() {
+    }
 
     boolean receivePacket(TCPHeader packet);
 
+    /**
+     * Handles a packet from a given node, for connections with more than one peer.
+     *
+     * @param packet the packet
+     * @param source the node that sent it
+     * @return true if the packet belongs to this connection
+     */
+    default boolean receivePacket(TCPHeader packet, int source) {
+        return receivePacket(packet);
+    }
+
+    /**
+     * Cancels the timers of this connection, it ended. Called by {@link TransportLayer#removeConnection}.
+     */
+    default void close() {
+    }
+
     /**
      * @return the other side of this connection.
      */
     Integer getPeer();
+
+    /**
+     * @return the nodes packets of this connection come from
+     */
+    default Set<Integer> getPeers() {
+        return Set.of(getPeer());
+    }
 }
@@ -0,0 +1,139 @@
+package TransportLayer;
+
+import java.util.*;
+
+/**
+ * Finds the connection a packet belongs to from the node it came from, its direction and its sequence number,
+ * without asking every connection with that node. Every open connection claims the sequence numbers of its
+ * packets per peer and direction, in one hash table:
+ * <ul>
+ *     <li>A {@link Sender} or {@link BroadcastSender} claims its whole range when it opens, the acknowledgments
+ *     for it are {@link Direction#OUTBOUND}.</li>
+ *     <li>A {@link Receiver} claims every packet it accepted, the packets for it are {@link Direction#INBOUND}.
+ *     A packet it has not seen yet has no owner, it goes to the receivers that own a packet less than
+ *     {@link Receiver#RECEIVE_WINDOW} before or after it, the nearest first.</li>
+ * </ul>
+ * Looking up a packet takes constant time, however many connections are open. Thread-safe, the connections
+ * themselves are called by the caller, outside the lock.
+ */
+public class Demultiplexer {
+
+    /**
+     * Which end of a connection a packet is for.
+     */
+    public enum Direction {
+        /**
+         * Acknowledgments of the messages this node sends.
+         */
+        OUTBOUND,
+        /**
+         * Packets of the messages this node receives, and the FIN+ACK that ends them.
+         */
+        INBOUND;
+
+        /**
+         * @param packet a packet that arrived
+         * @return the direction of the packet
+         */
+        public static Direction of(TCPHeader packet) {
+            return packet.isAcknowledgment() ? OUTBOUND : INBOUND;
+        }
+    }
+
+    private final Map<Long, Connection> owners = new HashMap<>();
+    private final Map<Connection, Set<Long>> claims = new HashMap<>(); // Open connections and their keys
+
+    private static long key(int peer, Direction direction, int seq) {
+        return (long) peer << 32 | (long) direction.ordinal() << 31 | seq & 0x7FFFFFFFL;
+    }
+
+    /**
+     * Opens a connection that claims a range of sequence numbers for each of its peers.
+     *
+     * @param connection the connection
+     * @param direction  the direction of the packets for it
+     * @param first      the first sequence number of the range
+     * @param last       the last sequence number of the range
+     */
+    public synchronized void open(Connection connection, Direction direction, int first, int last) {
+        claims.computeIfAbsent(connection, _ -> new HashSet<>());
+        for (int peer : connection.getPeers()) {
+            for (int seq = first; seq <= last; seq++) {
+                claim(connection, peer, direction, seq);
+            }
+        }
+    }
+
+    /**
+     * Claims the sequence number of a packet for an open connection, taking it from the connection that had
+     * it. Does nothing for a connection that was closed.
+     *
+     * @param connection the connection
+     * @param peer       the node the packet came from
+     * @param direction  the direction of the packet
+     * @param seq        the sequence number of the packet
+     */
+    public synchronized void claim(Connection connection, int peer, Direction direction, int seq) {
+        Set<Long> keys = claims.get(connection);
+        if (keys == null) {
+            return;
+        }
+        long key = key(peer, direction, seq);
+        Connection previous = owners.put(key, connection);
+        if (previous != null && previous != connection) {
+            claims.get(previous).remove(key);
+        }
+        keys.add(key);
+    }
+
+    /**
+     * Finds the connections a packet may belong to.
+     *
+     * @param peer   the node the packet came from
+     * @param packet the packet
+     * @return the owner of its sequence number, or for an inbound packet without one the receivers around it,
+     * the nearest first; empty if no connection can take it
+     */
+    public synchronized List<Connection> find(int peer, TCPHeader packet) {
+        Direction direction = Direction.of(packet);
+        int seq = packet.getSequence();
+        Connection owner = owners.get(key(peer, direction, seq));
+        if (owner != null || direction == Direction.OUTBOUND) {
+            return owner == null ? List.of() : List.of(owner);
+        }
+        Set<Connection> around = new LinkedHashSet<>();
+        for (int distance = 1; distance < Receiver.RECEIVE_WINDOW; distance++) {
+            Connection before = owners.get(key(peer, direction, seq - distance));
+            Connection after = owners.get(key(peer, direction, seq + distance));
+            if (before != null) {
+                around.add(before);
+            }
+            if (after != null) {
+                around.add(after);
+            }
+        }
+        return List.copyOf(around);
+    }
+
+    /**
+     * Closes a connection, it claims nothing anymore.
+     *
+     * @param connection the connection
+     * @return false if it was not open
+     */
+    public synchronized boolean close(Connection connection) {
+        Set<Long> keys = claims.remove(connection);
+        if (keys == null) {
+            return false;
+        }
+        keys.forEach(owners::remove);
+        return true;
+    }
+
+    /**
+     * @return the number of open connections
+     */
+    public synchronized int size() {
+        return claims.size();
+    }
+}
@@ -0,0 +1,306 @@
+package TransportLayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Journals the messages this node sends in an append-only file that is mapped into memory, so a {@link Sender}
+ * that was interrupted by a restart resumes with the segments that were not acknowledged. A message is
+ * appended once, with its segments as they go on the wire and one bit per segment that is set in place when
+ * the segment is acknowledged. Setting the bit is the checkpoint: one write to memory, no system call. The
+ * pages reach the file when the operating system writes them back, which it does after the process ended too,
+ * so the journal survives a restart of the process but not a crash of the machine.
+ * <p>
+ * The file starts with {@link #MAGIC} and the end of the records. A record is:
+ * <pre>
+ *     int length | byte state | int source | int destination | int first sequence number | int segments |
+ *     acknowledged bits | byte length per segment | segments
+ * </pre>
+ * The record is written with state 0 and only counts once its state is {@link #OPEN} and the end is moved
+ * past it, so a record cut off by a restart is never resumed. A record is {@link #DONE} when its message
+ * was sent completely. When no record is open anymore, the next one starts at the front of the file again.
+ * <p>
+ * The file is locked while it is open, so two nodes started in the same directory cannot share it.
+ * <p>
+ * The source is the address this node had when it sent the message. The receiver keeps the segments it
+ * acknowledged by that address and sequence number, so only a node that got the same address back resumes
+ * a message, within the connection timeout of the receiver. A node with another address sends the segments
+ * again as a new message.
+ */
+public class Outbox implements AutoCloseable {
+
+    /**
+     * First int of an outbox file.
+     */
+    public static final int MAGIC = 0x4F42_5832;
+
+    /**
+     * Bytes of the file, a message that does not fit in what is left is sent without journal.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * State of a record whose message is still being sent.
+     */
+    public static final byte OPEN = 1;
+
+    /**
+     * State of a record whose message was sent completely.
+     */
+    public static final byte DONE = 2;
+
+    private static final int FILE_HEADER = 8; // Magic, end of the records
+    private static final int END = 4;
+    private static final int RECORD_HEADER = 21;
+    private static final int STATE = 4;
+    private static final int SOURCE = 5;
+    private static final int DESTINATION = 9;
+    private static final int FIRST_SEQ = 13;
+    private static final int COUNT = 17;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final IntSupplier localAddress;
+    private final List<Entry> pending = new ArrayList<>();
+    private int end;
+    private int open; // Records that are open
+
+    /**
+     * One message in the outbox.
+     */
+    public class Entry {
+        private final int offset;
+        private final int source;
+        private final int destination;
+        private final int firstSeq;
+        private final int count;
+        private final List<ByteBuffer> segments;
+
+        private Entry(int offset, int source, int destination, int firstSeq, int count,
+                      List<ByteBuffer> segments) {
+            this.offset = offset;
+            this.source = source;
+            this.destination = destination;
+            this.firstSeq = firstSeq;
+            this.count = count;
+            this.segments = segments;
+        }
+
+        /**
+         * Marks a segment as acknowledged, in place.
+         *
+         * @param seq the sequence number of the segment
+         */
+        public void acknowledge(int seq) {
+            int index = seq - firstSeq;
+            int position = offset + RECORD_HEADER + index / 8;
+            buffer.put(position, (byte) (buffer.get(position) | 1 << index % 8));
+        }
+
+        /**
+         * @param seq the sequence number of a segment
+         * @return true if the segment was acknowledged
+         */
+        public boolean isAcknowledged(int seq) {
+            int index = seq - firstSeq;
+            return (buffer.get(offset + RECORD_HEADER + index / 8) >> index % 8 & 1) == 1;
+        }
+
+        /**
+         * Marks the message as sent completely, it is not resumed anymore.
+         */
+        public void complete() {
+            synchronized (Outbox.this) {
+                if (buffer.get(offset + STATE) == OPEN) {
+                    buffer.put(offset + STATE, DONE);
+                    open--;
+                }
+            }
+        }
+
+        /**
+         * @return the address this node had when it sent the message
+         */
+        public int getSource() {
+            return source;
+        }
+
+        /**
+         * @return the node the message goes to
+         */
+        public int getDestination() {
+            return destination;
+        }
+
+        /**
+         * @return the sequence number of the first segment
+         */
+        public int getFirstSeq() {
+            return firstSeq;
+        }
+
+        /**
+         * @return the segments of the message, as they go on the wire
+         */
+        public List<ByteBuffer> getSegments() {
+            return segments;
+        }
+
+        /**
+         * @return true once the message was sent completely
+         */
+        public boolean isComplete() {
+            return buffer.get(offset + STATE) == DONE;
+        }
+
+        /**
+         * @return the number of segments that were not acknowledged
+         */
+        public int getUnacknowledged() {
+            int unacknowledged = 0;
+            for (int seq = firstSeq; seq < firstSeq + count; seq++) {
+                if (!isAcknowledged(seq)) {
+                    unacknowledged++;
+                }
+            }
+            return unacknowledged;
+        }
+    }
+
+    /**
+     * Opens an outbox file, or creates it, locks it and finds the messages that were not sent completely.
+     *
+     * @param file         the file
+     * @param capacity     the bytes of the file, if it is created
+     * @param localAddress gives the current address of this node, journalled with every message
+     * @throws IOException if the file cannot be opened or mapped, or another outbox has it open
+     */
+    public Outbox(Path file, int capacity, IntSupplier localAddress) throws IOException {
+        this.localAddress = localAddress;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) { // Locked by this process already
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException(file + " is used by another node");
+        }
+        int size = (int) Math.max(channel.size(), capacity);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(END) < FILE_HEADER || buffer.getInt(END) > size) {
+            buffer.putInt(END, FILE_HEADER);
+            buffer.putInt(0, MAGIC);
+        }
+        end = buffer.getInt(END);
+        for (int offset = FILE_HEADER; offset < end; offset += buffer.getInt(offset)) {
+            if (buffer.getInt(offset) < RECORD_HEADER || offset + buffer.getInt(offset) > end) {
+                break; // Corrupt, nothing after it can be trusted
+            }
+            if (buffer.get(offset + STATE) == OPEN) {
+                pending.add(read(offset));
+                open++;
+            }
+        }
+    }
+
+    /**
+     * Reads the record at an offset. Its segments are slices of the mapped file.
+     */
+    private Entry read(int offset) {
+        int count = buffer.getInt(offset + COUNT);
+        int lengths = offset + RECORD_HEADER + (count + 7) / 8;
+        List<ByteBuffer> segments = new ArrayList<>(count);
+        int position = lengths + count;
+        for (int i = 0; i < count; i++) {
+            int length = buffer.get(lengths + i);
+            segments.add(buffer.slice(position, length).asReadOnlyBuffer());
+            position += length;
+        }
+        return new Entry(offset, buffer.getInt(offset + SOURCE), buffer.getInt(offset + DESTINATION),
+                buffer.getInt(offset + FIRST_SEQ), count, segments);
+    }
+
+    /**
+     * Journals a message that is about to be sent, from the current address of this node.
+     *
+     * @param destination the node the message goes to
+     * @param firstSeq    the sequence number of its first segment
+     * @param segments    its segments, as they go on the wire
+     * @return the record of the message, or null if it does not fit in the file
+     */
+    public synchronized Entry append(int destination, int firstSeq, List<ByteBuffer> segments) {
+        int count = segments.size();
+        int length = RECORD_HEADER + (count + 7) / 8 + count
+                + segments.stream().mapToInt(ByteBuffer::remaining).sum();
+        if (open == 0) {
+            end = FILE_HEADER; // Nothing to resume, start over
+        }
+        if (end + length > buffer.capacity()) {
+            return null;
+        }
+        int offset = end;
+        int source = localAddress.getAsInt();
+        buffer.putInt(offset, length);
+        buffer.put(offset + STATE, (byte) 0);
+        buffer.putInt(offset + SOURCE, source);
+        buffer.putInt(offset + DESTINATION, destination);
+        buffer.putInt(offset + FIRST_SEQ, firstSeq);
+        buffer.putInt(offset + COUNT, count);
+        int lengths = offset + RECORD_HEADER + (count + 7) / 8;
+        for (int i = offset + RECORD_HEADER; i < lengths; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        int position = lengths + count;
+        List<ByteBuffer> journalled = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer segment = segments.get(i);
+            buffer.put(lengths + i, (byte) segment.remaining());
+            buffer.put(position, segment, segment.position(), segment.remaining());
+            journalled.add(segment);
+            position += segment.remaining();
+        }
+        buffer.put(offset + STATE, OPEN);
+        end = offset + length;
+        buffer.putInt(END, end);
+        open++;
+        return new Entry(offset, source, destination, firstSeq, count, journalled);
+    }
+
+    /**
+     * @return the messages that were not sent completely when the file was opened
+     */
+    public List<Entry> getPending() {
+        return List.copyOf(pending);
+    }
+
+    /**
+     * @return the number of messages that are still being sent
+     */
+    public synchronized int getOpen() {
+        return open;
+    }
+
+    /**
+     * Writes the mapped pages to the file and closes it, which releases the lock.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -2,70 +2,163 @@ package TransportLayer;
 
 import AppLayer.TUI;
 import Model.Exceptions.NetworkException;
+import Model.LayerModel;
 import NetworkLayer.NetworkLayer;
 
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 /**
  * Implements the receiving end of a TCP connection.
  * Handles receiving and ordering packets, acknowledging them, and passing complete messages to the application layer.
+ * <p>
+ * Packets are received with selective repeat: packets that arrive out of order are kept until the ones
+ * before them arrive, and the acknowledgments say which ones arrived. The {@link Sender} never has more than
+ * {@link #RECEIVE_WINDOW} packets on their way, counted from the first one that is missing here. The
+ * message starts at the packet with the SYN flag and ends at the one with the FIN flag, packets that
+ * arrive before the SYN are kept until it comes.
+ * <p>
+ * Acknowledgments are delayed: the first packet after an acknowledgment starts a timer of the ACK delay,
+ * and when it expires one acknowledgment covers every packet that arrived. It is cumulative up to the
+ * first missing packet, and has a bitmap of the packets after it that arrived out of order. Once the whole
+ * message arrived it is acknowledged right away.
  */
 public class Receiver implements Connection {
 
-    private int firstSeq;
+    /**
+     * Packets kept out of order at most, counted from the first missing packet.
+     */
+    public static final int RECEIVE_WINDOW = 8;
+
+    private final static int CONNECTION_TIMEOUT = 100;
+
     private final int source;
+    private final TCPHeader firstHeader;
+    private int firstSeq = -1; // Sequence number of the SYN packet, -1 until it arrived
+    private int lastSeq = -1; // Sequence number of the FIN packet, -1 until it arrived
     private boolean fullyReceived;
-    private Set<Integer> waiting_packets = new HashSet<>();
-    private final Map<Integer, String> messages = new HashMap<>();
-    private final ScheduledExecutorService scheduler;
-    private final static int CONNECTION_TIMEOUT = 100;
-    private ScheduledFuture<?> promise;
-    private int maxSeq;
+    private final NavigableMap<Integer, ByteBuffer> messages = new TreeMap<>();
+    private final LayerModel lower;
+    private final Scheduler scheduler;
+    private final BiConsumer<String, Integer> deliver;
+    private final long ackDelay;
+    private Cancellable promise;
+    private Cancellable pendingAck; // The delayed acknowledgment, null when there is none
     private boolean finack = false;
 
     /**
      * Constructs a new Receiver for handling incoming TCP packets from a specific source.
-     * Initializes sequence numbers and sets up timers based on the first received header.
+     * The first received header is handled by {@link #start()}.
      *
      * @param source The address of the sender
      * @param firstHeader The first TCP header received from the sender
      */
     public Receiver(int source, TCPHeader firstHeader) {
-        if (firstHeader.isSYN())
-            this.firstSeq = firstHeader.getSequence();
-        else
-            this.firstSeq = Collections.max(TransportLayer.getSingleton().getUsedSeq(source));
+        this(source, firstHeader, NetworkLayer.getSingleton(), TransportLayer.getSingleton().getScheduler(),
+                TUI.getSingleton()::receiveMessage, TransportLayer.getSingleton().getAckDelay());
+    }
+
+    /**
+     * Constructs a new Receiver that sends its acknowledgments to a given layer and hands complete messages
+     * to a given consumer. The first header is handled by {@link #start()}.
+     *
+     * @param source      The address of the sender
+     * @param firstHeader The first TCP header received from the sender
+     * @param lower       The layer the acknowledgments are sent to
+     * @param scheduler   Runs the connection timeout
+     * @param deliver     Receives every complete message and its source
+     * @param ackDelay    Milliseconds an acknowledgment waits for more packets, 0 to acknowledge every packet
+     */
+    public Receiver(int source, TCPHeader firstHeader, LayerModel lower, Scheduler scheduler,
+                    BiConsumer<String, Integer> deliver, long ackDelay) {
         this.source = source;
-        this.maxSeq = firstHeader.getSequence() + 40;
+        this.lower = lower;
+        this.scheduler = scheduler;
+        this.deliver = deliver;
+        this.ackDelay = ackDelay;
+        this.firstHeader = firstHeader;
         fullyReceived = false;
-        scheduler = Executors.newScheduledThreadPool(1);
+    }
 
-        for (int i = firstSeq; i < this.maxSeq; i++) {
-            TransportLayer.getSingleton().addUsedSeq(source, i);
-            waiting_packets.add(i);
-        }
+    /**
+     * Handles the header that opened the connection.
+     */
+    @Override
+    public void start() {
         receivePacket(firstHeader);
     }
 
     /**
-     * Sends an acknowledgment packet for a received TCP header.
-     * Creates a new TCP header with the ACK flag set and sends it back to the source.
-     *
-     * @param tcpHeader The TCP header to acknowledge
+     * Sends the acknowledgment of every packet that arrived, right away or after the ACK delay.
+     */
+    private void scheduleAck() {
+        if (ackDelay == 0 || fullyReceived) {
+            sendAck();
+        } else if (pendingAck == null) {
+            pendingAck = scheduler.schedule(this::sendAck, ackDelay);
+        }
+    }
+
+    /**
+     * Sends one acknowledgment for every packet that arrived. It is cumulative from the SYN up to the first
+     * missing packet once the SYN arrived, before that it starts at the first packet that arrived.
      */
-    private void sendAck(TCPHeader tcpHeader) {
-        TCPHeader newTCPHeader = new TCPHeader(tcpHeader.getSequence(), false, true, fullyReceived, "", 0, source);
+    private synchronized void sendAck() {
+        if (pendingAck != null) {
+            pendingAck.cancel();
+            pendingAck = null;
+        }
+        if (finack || messages.isEmpty()) {
+            return;
+        }
+        boolean cumulative = firstSeq != -1;
+        int base = cumulative ? firstMissing() - 1 : messages.firstKey();
+        int selective = 0;
+        for (int seq : messages.subMap(base, false, base + TCPHeader.SELECTIVE_BITS, true).keySet()) {
+            selective |= 1 << (seq - base - 1);
+        }
         try {
-            NetworkLayer.getSingleton().ReceiveHeader(newTCPHeader);
+            lower.ReceiveHeader(new TCPHeader(base, cumulative, fullyReceived, selective, source));
         } catch (NetworkException _) {
         }
     }
 
+    /**
+     * Checks whether a packet belongs to this connection. Before the SYN arrived, the first packet lies at
+     * most a window before the last packet seen, and no later than the first one seen.
+     */
+    private boolean owns(TCPHeader packet) {
+        int seq = packet.getSequence();
+        if (messages.isEmpty()) {
+            return true; // The first header, it created this connection
+        }
+        if (firstSeq == -1) {
+            if (packet.isSYN()) {
+                return seq <= messages.firstKey() && seq > messages.lastKey() - RECEIVE_WINDOW;
+            }
+            return seq > messages.lastKey() - RECEIVE_WINDOW && seq < messages.firstKey() + RECEIVE_WINDOW;
+        }
+        if (packet.isSYN() && !packet.isAck() && seq != firstSeq) {
+            return false; // The start of another message
+        }
+        if (lastSeq != -1) {
+            return seq >= firstSeq && seq <= lastSeq;
+        }
+        return seq >= firstSeq && seq < firstMissing() + RECEIVE_WINDOW;
+    }
+
+    /**
+     * @return the first packet after the SYN that did not arrive yet
+     */
+    private int firstMissing() {
+        int seq = firstSeq;
+        while (messages.containsKey(seq)) {
+            seq++;
+        }
+        return seq;
+    }
 
     /**
      * Processes a received TCP packet.
@@ -77,38 +170,39 @@ public class Receiver implements Connection {
      */
     @Override
     public synchronized boolean receivePacket(TCPHeader packet) {
-        if (packet.getSequence() < this.firstSeq || packet.getSequence() > this.maxSeq) {
+        if (!owns(packet)) {
             return false;
         }
         if (finack) {
             return true; // Connection should be terminated, ignore everything else
         }
-        if (packet.isFin()) {
-            waiting_packets = waiting_packets.stream().filter(x -> x <= packet.getSequence()).collect(Collectors.toSet());
-            maxSeq = packet.getSequence();
-        }if (packet.isSYN()){
-            int oldSeq = firstSeq;
-            firstSeq = packet.getSequence();
-            for (int i = oldSeq; i < firstSeq; i++) TransportLayer.getSingleton().removeUsedSeq(source, i);
-            waiting_packets.removeIf(x -> x < packet.getSequence());
-        }
-
-        if (waiting_packets.contains(packet.getSequence())) {
-            messages.put(packet.getSequence(), packet.getMessage());
-            waiting_packets.remove(packet.getSequence());
-        }
-        if (waiting_packets.isEmpty()) {
-            if (!fullyReceived) {
-                fullyReceived = true;
-                passMessageToTUI();
-            }
-            if (packet.isFin() && packet.isAck()) {
-                finack = true;
+        if (packet.isFin() && packet.isAck()) {
+            finack = fullyReceived; // The sender is done, it only says so once everything is acknowledged
+            if (finack) {
+                endConnection();
             }
-            startWaitingForFinAck();
+            return true;
+        }
+        int seq = packet.getSequence();
+        if (packet.isSYN()) {
+            firstSeq = seq;
+            messages.headMap(seq, false).clear();
+        }
+        if (packet.isFin()) {
+            lastSeq = seq;
+            messages.tailMap(seq, false).clear();
         }
+        if (!messages.containsKey(seq)) {
+            messages.put(seq, packet.getPayload());
+            TransportLayer.getSingleton().getSequences().markUsed(source, seq);
+        }
+        if (!fullyReceived && firstSeq != -1 && lastSeq != -1 && messages.size() == lastSeq - firstSeq + 1) {
+            fullyReceived = true;
+            passMessageToTUI();
+        }
+        startWaitingForFinAck();
 
-        sendAck(packet);
+        scheduleAck();
 
         return true;
     }
@@ -123,14 +217,18 @@ public class Receiver implements Connection {
 
     /**
      * Assembles the complete message from all received packets and passes it to the TUI.
-     * Message fragments are ordered by sequence number before being combined.
+     * The segments are ordered by sequence number, joined, and decompressed or decoded as UTF-8 once.
      */
     private void passMessageToTUI() {
-        StringBuilder message = new StringBuilder();
-        for (int i = firstSeq; i < maxSeq + 1; i++) {
-            message.append(messages.get(i));
+        ByteBuffer message = ByteBuffer.allocate(messages.values().stream().mapToInt(ByteBuffer::remaining).sum());
+        for (ByteBuffer segment : messages.values()) {
+            message.put(segment.duplicate());
+        }
+        try {
+            deliver.accept(Compression.decode(message.array()), source);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
         }
-        TUI.getSingleton().receiveMessage(message.toString(), source);
     }
 
     /**
@@ -139,23 +237,38 @@ public class Receiver implements Connection {
      */
     private void startWaitingForFinAck() {
         if (promise != null) {
-            promise.cancel(true);
+            promise.cancel();
+        }
+        promise = scheduler.schedule(this::endConnection, TimeUnit.SECONDS.toMillis(CONNECTION_TIMEOUT));
+    }
+
+    /**
+     * Cancels the timeout of the connection.
+     */
+    @Override
+    public synchronized void close() {
+        if (promise != null) {
+            promise.cancel();
+        }
+        if (pendingAck != null) {
+            pendingAck.cancel();
         }
-        promise = scheduler.schedule(this::endConnection,
-                CONNECTION_TIMEOUT,
-                TimeUnit.SECONDS
-        );
     }
 
     /**
      * Terminates the connection and cleans up resources.
-     * Removes this connection from the transport layer and releases used sequence numbers.
+     * Removes this connection from the transport layer and releases the sequence numbers of the packets it
+     * kept, SYN to FIN once the whole message arrived. Packets dropped before the SYN or after the FIN belong
+     * to another message of the source, whose receiver may use their numbers too and releases them itself.
      */
-    private void endConnection() {
+    private synchronized void endConnection() {
         TransportLayer.getSingleton().removeConnection(this);
-        for (Integer i : messages.keySet()) {
-            TransportLayer.getSingleton().removeUsedSeq(source, i);
+        if (fullyReceived) {
+            TransportLayer.getSingleton().getSequences().release(source, firstSeq, lastSeq - firstSeq + 1);
+            return;
+        }
+        for (int seq : messages.keySet()) {
+            TransportLayer.getSingleton().getSequences().release(source, seq, 1);
         }
-
     }
 }
@@ -0,0 +1,139 @@
+package TransportLayer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Estimates the round-trip time to every peer from the acknowledgments that arrive, and the retransmission
+ * timeout that follows from it (Jacobson/Karels). Per peer it keeps the smoothed round-trip time and its
+ * variation. The first sample sets the smoothed time to the sample and the variation to half of it, every
+ * later sample moves the smoothed time {@link #GAIN} of the way and the variation {@link #VARIATION_GAIN}
+ * of the way towards it. The timeout is the smoothed time plus {@link #VARIATION_FACTOR} times the
+ * variation, between {@link #MIN_TIMEOUT} and {@link #MAX_TIMEOUT} seconds.
+ * <p>
+ * A packet that was sent again doubles its timeout for every time it was sent again. The {@link Sender}
+ * takes no samples of those packets, it cannot tell which of the copies was acknowledged (Karn's rule).
+ * Until a peer has a sample its timeout is {@link #INITIAL_TIMEOUT} seconds. Used by the
+ * {@link TransportLayer}, and on its own in simulations.
+ */
+public class RttEstimator {
+
+    /**
+     * Seconds before a packet is sent again to a peer without samples.
+     */
+    public static final long INITIAL_TIMEOUT = 25;
+
+    /**
+     * Lowest timeout in seconds, a few frames can always be in the queue of the medium.
+     */
+    public static final long MIN_TIMEOUT = 2;
+
+    /**
+     * Highest timeout in seconds. Losses on a lossy link are random, waiting longer does not help them.
+     */
+    public static final long MAX_TIMEOUT = 30;
+
+    /**
+     * Weight of a new sample in the smoothed round-trip time.
+     */
+    public static final double GAIN = 1.0 / 8;
+
+    /**
+     * Weight of a new deviation in the variation.
+     */
+    public static final double VARIATION_GAIN = 1.0 / 4;
+
+    /**
+     * Number of times the variation is added to the smoothed round-trip time for the timeout.
+     */
+    public static final int VARIATION_FACTOR = 4;
+
+    /**
+     * The estimate for one peer, in milliseconds.
+     *
+     * @param smoothed  the smoothed round-trip time
+     * @param variation the variation of the round-trip time
+     * @param timeout   the retransmission timeout of a packet that was sent once
+     */
+    public record Estimate(double smoothed, double variation, long timeout) {
+        @Override
+        public String toString() {
+            return String.format("srtt %.1f s, rttvar %.1f s, rto %.1f s", smoothed / 1000, variation / 1000,
+                    timeout / 1000.0);
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Map<Integer, Estimate> estimates = new TreeMap<>();
+
+    /**
+     * @param clock supplies the current time in milliseconds
+     */
+    public RttEstimator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the current time in milliseconds, to time packets with
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Records the round-trip time of a packet that was sent once.
+     *
+     * @param peer         the address of the peer that acknowledged the packet
+     * @param sampleMillis milliseconds from sending the packet until its acknowledgment arrived
+     */
+    public synchronized void sample(int peer, long sampleMillis) {
+        Estimate estimate = estimates.get(peer);
+        double smoothed;
+        double variation;
+        if (estimate == null) {
+            smoothed = sampleMillis;
+            variation = sampleMillis / 2.0;
+        } else {
+            variation = (1 - VARIATION_GAIN) * estimate.variation()
+                    + VARIATION_GAIN * Math.abs(estimate.smoothed() - sampleMillis);
+            smoothed = (1 - GAIN) * estimate.smoothed() + GAIN * sampleMillis;
+        }
+        long timeout = Math.max(TimeUnit.SECONDS.toMillis(MIN_TIMEOUT),
+                Math.min(TimeUnit.SECONDS.toMillis(MAX_TIMEOUT), Math.round(smoothed + VARIATION_FACTOR * variation)));
+        estimates.put(peer, new Estimate(smoothed, variation, timeout));
+    }
+
+    /**
+     * Gets the retransmission timeout of a packet, doubled for every time it was sent again.
+     *
+     * @param peer            the address the packet is sent to
+     * @param retransmissions the times the packet was sent again before
+     * @return the milliseconds to wait for the acknowledgment
+     */
+    public synchronized long getTimeout(int peer, int retransmissions) {
+        Estimate estimate = estimates.get(peer);
+        long timeout = estimate == null ? TimeUnit.SECONDS.toMillis(INITIAL_TIMEOUT) : estimate.timeout();
+        long max = TimeUnit.SECONDS.toMillis(MAX_TIMEOUT);
+        return Math.min(max, timeout << Math.min(retransmissions, 30)); // At the highest long before it overflows
+    }
+
+    /**
+     * @param peer the address of the peer
+     * @return the estimate for the peer, or null if no packet to it was acknowledged yet
+     */
+    public synchronized Estimate getEstimate(int peer) {
+        return estimates.get(peer);
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (estimates.isEmpty()) {
+            return "no round-trip times measured yet";
+        }
+        StringBuilder result = new StringBuilder("round-trip times:");
+        estimates.forEach((peer, estimate) -> result.append("\n  ").append(peer).append(": ").append(estimate));
+        return result.toString();
+    }
+}
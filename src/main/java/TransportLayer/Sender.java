@@ -1,90 +1,274 @@
 package TransportLayer;
 
 import Model.Exceptions.NetworkException;
+import Model.LayerModel;
 import Model.Packet;
 import NetworkLayer.NetworkLayer;
 
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Implements the sending end of a TCP connection.
  * Handles splitting messages into packets, sending them, and managing retransmissions
  * when acknowledgments are not received within the timeout period.
+ * <p>
+ * Packets are sent with selective repeat: only the packets in the window are on their way, every packet
+ * has its own retransmission timer and is sent again alone. The window is a congestion window in packets.
+ * It starts at {@link #INITIAL_WINDOW}, grows by one per acknowledgment up to a threshold and by one per
+ * window above it, and drops to one packet when a retransmission timer expires, with the threshold at half
+ * the window. It never exceeds {@link #MAX_WINDOW}, the packets the {@link Receiver} keeps out of order.
+ * <p>
+ * One acknowledgment can cover several packets: the ones up to the packet it names when it is cumulative,
+ * and the ones in its selective bitmap after it.
+ * <p>
+ * A packet is sent again right away when {@link #LATER_ACKS} packets sent after it were acknowledged, it
+ * was most likely lost then. The window is halved instead of dropped, packets still arrive.
+ * <p>
+ * The retransmission timers follow the round-trip time to the destination, measured by a shared
+ * {@link RttEstimator} from the packets that were acknowledged after being sent once. Every new
+ * acknowledgment restarts the timers of the packets on their way, they queue behind each other.
+ * <p>
+ * A message can be journalled in an {@link Outbox}, with every acknowledgment, so a Sender that was
+ * interrupted by a restart resumes from it and sends only the packets that were not acknowledged.
  */
 public class Sender implements Connection {
-    private static final long TCP_RETRANSMIT_TIME = 25;
+
+    /**
+     * Packets sent before the first acknowledgment.
+     */
+    public static final int INITIAL_WINDOW = 2;
+
+    /**
+     * Most packets that are on their way at once, counted from the first packet that is not acknowledged.
+     */
+    public static final int MAX_WINDOW = Receiver.RECEIVE_WINDOW;
+
+    /**
+     * Packets sent later that are acknowledged, after which a packet counts as lost.
+     */
+    public static final int LATER_ACKS = 3;
+
     private final int destination;
     private final int firstSeq;
     private final int lastSeq;
-    private final Map<Integer, String> messages;
-    private final Set<Integer> allUsedSeq; // All the ones ever used. For deconstruction
-    private final ScheduledExecutorService scheduler;
+    private final NavigableMap<Integer, ByteBuffer> messages; // Not acknowledged yet, sent or not
+    private final Map<Integer, Integer> laterAcks = new HashMap<>(); // Per packet on its way
+    private final Map<Integer, Cancellable> timers = new HashMap<>(); // Per packet on its way
+    private final Map<Integer, Long> sentAt = new HashMap<>(); // Per packet on its way, when it was last sent
+    private final Map<Integer, Integer> expired = new HashMap<>(); // Per packet, the timers that expired
+    private final Set<Integer> resent = new HashSet<>(); // Packets that were sent more than once
+    private final LayerModel lower;
+    private final Scheduler scheduler;
+    private final RttEstimator rtt;
+    private final Outbox.Entry journal; // Null if the message is not journalled
+
+    private int nextSeq; // First packet that was never sent
+    private int inFlight; // Packets sent and not acknowledged
+    private int window = INITIAL_WINDOW;
+    private int threshold = MAX_WINDOW;
+    private int ackedInWindow; // Acknowledgments towards the next window increase above the threshold
+    private int recoverSeq; // Expired timers of packets before this one were caused by the same loss
+    private boolean done;
 
     /** I think this better
      * Constructs a new Sender for sending a message to a specific destination.
-     * Splits the message into appropriate sized packets and begins transmission.
-     * Sets up retransmission timers for reliability.
+     * Splits the message into segments that fill the frames, compressed if that saves frames. Transmission
+     * begins with {@link #start()}.
      *
      * @param destination The address to send the message to
      * @param message The complete message to be sent
      */
     public Sender(int destination, String message) {
-        this.messages = new HashMap<>();
+        this(destination, TransportLayer.segment(message,
+                        NetworkLayer.getSingleton().getMaxPayload() - TransportLayer.HEADER_LENGTH,
+                        TransportLayer.getSingleton().isCompressing()),
+                NetworkLayer.getSingleton(), TransportLayer.getSingleton().getScheduler(),
+                TransportLayer.getSingleton().getRttEstimator(), TransportLayer.getSingleton().getOutbox());
+    }
+
+    /**
+     * Constructs a Sender that resumes a message from the outbox, {@link #start()} sends the packets of the
+     * first window that were not acknowledged.
+     *
+     * @param entry The message in the outbox
+     */
+    public Sender(Outbox.Entry entry) {
+        this(entry, NetworkLayer.getSingleton(), TransportLayer.getSingleton().getScheduler(),
+                TransportLayer.getSingleton().getRttEstimator());
+    }
+
+    /**
+     * Constructs a Sender that resumes a message from the outbox with its sequence numbers, which must be
+     * marked as used already.
+     *
+     * @param entry     The message in the outbox
+     * @param lower     The layer the packets are sent to
+     * @param scheduler Runs the retransmission timers
+     * @param rtt       Measures the round-trip times the retransmission timers follow
+     */
+    public Sender(Outbox.Entry entry, LayerModel lower, Scheduler scheduler, RttEstimator rtt) {
+        this(entry.getDestination(), entry.getFirstSeq(), entry.getSegments(), entry, lower, scheduler, rtt);
+    }
+
+    /**
+     * Constructs a new Sender for a message that is already split into segments. Nothing is sent before
+     * {@link #start()}, so the connection can be registered before its acknowledgments arrive.
+     *
+     * @param destination The address to send the message to
+     * @param segments    The UTF-8 segments of the message, one per packet, see {@link TransportLayer#segment}
+     * @param lower       The layer the packets are sent to
+     * @param scheduler   Runs the retransmission timers
+     * @param rtt         Measures the round-trip times the retransmission timers follow
+     */
+    public Sender(int destination, List<ByteBuffer> segments, LayerModel lower, Scheduler scheduler,
+                  RttEstimator rtt) {
+        this(destination, segments, lower, scheduler, rtt, null);
+    }
+
+    /**
+     * Constructs a new Sender for a message that is already split into segments and journals it in an outbox.
+     * Nothing is sent before {@link #start()}.
+     *
+     * @param destination The address to send the message to
+     * @param segments    The UTF-8 segments of the message, one per packet, see {@link TransportLayer#segment}
+     * @param lower       The layer the packets are sent to
+     * @param scheduler   Runs the retransmission timers
+     * @param rtt         Measures the round-trip times the retransmission timers follow
+     * @param outbox      The outbox the message is journalled in, null for none
+     */
+    public Sender(int destination, List<ByteBuffer> segments, LayerModel lower, Scheduler scheduler,
+                  RttEstimator rtt, Outbox outbox) {
+        this(destination, TransportLayer.getSingleton().getSequences().allocate(destination, segments.size()),
+                segments, outbox, lower, scheduler, rtt);
+    }
+
+    private Sender(int destination, int firstSeq, List<ByteBuffer> segments, Outbox outbox, LayerModel lower,
+                   Scheduler scheduler, RttEstimator rtt) {
+        this(destination, firstSeq, segments, outbox == null ? null : outbox.append(destination, firstSeq, segments),
+                lower, scheduler, rtt);
+    }
+
+    private Sender(int destination, int firstSeq, List<ByteBuffer> segments, Outbox.Entry journal,
+                   LayerModel lower, Scheduler scheduler, RttEstimator rtt) {
+        this.messages = new TreeMap<>();
         this.destination = destination;
-        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.lower = lower;
+        this.scheduler = scheduler;
+        this.rtt = rtt;
+        this.journal = journal;
 
-        List<String> subMessages = TransportLayer.splitMessage(message);
-        this.firstSeq = Collections.max(TransportLayer.getSingleton().getUsedSeq(destination)) + 1;
-        this.lastSeq = firstSeq + subMessages.size() - 1;
+        this.firstSeq = firstSeq;
+        this.lastSeq = firstSeq + segments.size() - 1;
         for (int i = firstSeq; i < this.lastSeq + 1; i++) {
-            TransportLayer.getSingleton().addUsedSeq(destination, i);
-            messages.put(i, subMessages.get(i - firstSeq));
-        }
-
-        for (Integer seq : messages.keySet()) {
-            try {
-                Packet tcpHeader = new TCPHeader(seq, seq == firstSeq, false,
-                        seq == lastSeq, messages.get(seq), messages.get(seq).length(), destination);
-                NetworkLayer.getSingleton().ReceiveHeader(tcpHeader); // Send it and set a timer for retransmission
-
-                scheduler.schedule(
-                        () -> resendPacket(seq),
-                        TCP_RETRANSMIT_TIME + seq * 2 - firstSeq,
-                        TimeUnit.SECONDS);
-            } catch (NetworkException e) {
-                System.out.println(e.getMessage());
+            if (journal == null || !journal.isAcknowledged(i)) {
+                messages.put(i, segments.get(i - firstSeq));
             }
         }
 
-        allUsedSeq = messages.keySet();
+        this.nextSeq = firstSeq;
+        this.recoverSeq = firstSeq;
+    }
+
+    /**
+     * Begins transmission: sends the first window, or ends the connection if the message was acknowledged
+     * completely before a restart.
+     */
+    @Override
+    public synchronized void start() {
+        if (messages.isEmpty()) {
+            doneSending();
+        } else {
+            sendNewPackets();
+        }
+    }
+
+    /**
+     * Sends packets that were never sent, as long as the window allows. Packets that were acknowledged
+     * before a restart are skipped.
+     */
+    private void sendNewPackets() {
+        while (nextSeq <= lastSeq && inFlight < window && nextSeq < messages.firstKey() + MAX_WINDOW) {
+            if (messages.containsKey(nextSeq)) {
+                inFlight++;
+                sendPacket(nextSeq);
+            }
+            nextSeq++;
+        }
+    }
+
+    /**
+     * Sends a packet and sets a timer for its retransmission.
+     *
+     * @param seq The sequence number of the packet to send
+     */
+    private void sendPacket(int seq) {
+        Packet tcpHeader = new TCPHeader(seq, seq == firstSeq, seq == lastSeq, messages.get(seq), destination);
+        try {
+            lower.ReceiveHeader(tcpHeader);
+        } catch (NetworkException e) {
+            System.out.println(e.getMessage());
+        }
+        sentAt.put(seq, rtt.now());
+        startTimer(seq);
+    }
+
+    /**
+     * Sets the retransmission timer of a packet, instead of the timer it had. The timeout doubles for every
+     * timer of the packet that expired before.
+     *
+     * @param seq The sequence number of the packet
+     */
+    private void startTimer(int seq) {
+        Cancellable previous = timers.put(seq,
+                scheduler.schedule(() -> resendPacket(seq), rtt.getTimeout(destination, expired.getOrDefault(seq, 0))));
+        if (previous != null) {
+            previous.cancel();
+        }
     }
 
     /**
-     * Resends a packet if it hasn't been acknowledged.
-     * Schedules another retransmission if needed or completes the connection if all packets are acknowledged.
+     * Resends a packet if it hasn't been acknowledged. The first expired timer after a loss shrinks the
+     * window, the timers of the packets that were on their way with it do not shrink it again.
      *
      * @param seq The sequence number of the packet to resend
      */
     private synchronized void resendPacket(int seq) {
-        if (messages.containsKey(seq)) {
-            Packet tcpHeader = new TCPHeader(seq, seq == firstSeq, false,
-                    seq == lastSeq, messages.get(seq), messages.get(seq).length(), destination);
-            try {
-                NetworkLayer.getSingleton().ReceiveHeader(tcpHeader); // Send it and set a timer for retransmission
-            } catch (NetworkException e) {
-                throw new RuntimeException(e);
-            }
+        if (!messages.containsKey(seq)) {
+            return;
+        }
+        if (seq >= recoverSeq) {
+            threshold = Math.max(window / 2, INITIAL_WINDOW);
+            window = 1;
+            ackedInWindow = 0;
+            recoverSeq = nextSeq;
+        }
+        expired.merge(seq, 1, Integer::sum);
+        resent.add(seq);
+        sendPacket(seq);
+    }
 
-            scheduler.schedule(
-                    () -> resendPacket(seq),
-                    TCP_RETRANSMIT_TIME,
-                    TimeUnit.SECONDS);
-        } else if (messages.isEmpty()) {
-            TransportLayer.getSingleton().removeConnection(this);
-            doneSending();
+    /**
+     * Counts the packets that were acknowledged for the packets on their way before them, and sends the ones
+     * again that count as lost now.
+     *
+     * @param acked The sequence numbers that were acknowledged, in order
+     */
+    private void countLaterAcks(List<Integer> acked) {
+        for (int seq : messages.headMap(acked.getLast(), false).keySet()) {
+            int later = (int) acked.stream().filter(other -> other > seq).count();
+            int count = laterAcks.merge(seq, later, Integer::sum);
+            if (count < LATER_ACKS || count - later >= LATER_ACKS) {
+                continue;
+            }
+            if (seq >= recoverSeq) {
+                threshold = Math.max(window / 2, INITIAL_WINDOW);
+                window = threshold;
+                ackedInWindow = 0;
+                recoverSeq = nextSeq;
+            }
+            resent.add(seq);
+            sendPacket(seq);
         }
     }
 
@@ -93,24 +277,91 @@ public class Sender implements Connection {
      * Sends a final packet with both ACK and FIN flags set and removes used sequence numbers.
      */
     private void doneSending() {
+        done = true;
+        if (journal != null) {
+            journal.complete();
+        }
         Packet tcpHeader = new TCPHeader(lastSeq, firstSeq == lastSeq, true,
-                true, messages.get(lastSeq), messages.get(lastSeq).length(), destination);
+                true, "", 0, destination);
         try {
-            NetworkLayer.getSingleton().ReceiveHeader(tcpHeader); // Send it and set a timer for retransmission
+            lower.ReceiveHeader(tcpHeader);
         } catch (NetworkException e) {
-            throw new RuntimeException(e);
+            System.out.println(e.getMessage());
         }
 
-        for (int seq : allUsedSeq) {
-            TransportLayer.getSingleton().removeUsedSeq(destination, seq);
-        }
+        TransportLayer.getSingleton().getSequences().release(destination, firstSeq, lastSeq - firstSeq + 1);
         TransportLayer.getSingleton().removeConnection(this);
 
     }
 
+    /**
+     * Removes every packet an acknowledgment covers from the retransmission queue in one pass: the one
+     * it names, the ones before it when it is cumulative and the ones in its selective bitmap. Grows the
+     * window by one step per packet and takes one round-trip sample, from the last packet that was sent once.
+     *
+     * @param ack The acknowledgment
+     */
+    private void acknowledge(TCPHeader ack) {
+        List<Integer> acked = covered(ack, messages.navigableKeySet(), nextSeq);
+
+        long sample = -1;
+        for (int seq : acked) {
+            messages.remove(seq);
+            if (journal != null) {
+                journal.acknowledge(seq);
+            }
+            inFlight--;
+            laterAcks.remove(seq);
+            timers.remove(seq).cancel();
+            long sent = sentAt.remove(seq);
+            if (!resent.contains(seq)) {
+                sample = rtt.now() - sent; // Copies of a packet sent again are ambiguous
+            }
+            if (window < threshold) {
+                window++;
+            } else if (++ackedInWindow >= window) {
+                window++;
+                ackedInWindow = 0;
+            }
+        }
+        window = Math.min(window, MAX_WINDOW);
+        if (acked.isEmpty()) {
+            return;
+        }
+        if (sample >= 0) {
+            rtt.sample(destination, sample);
+        }
+        countLaterAcks(acked);
+        timers.keySet().forEach(this::startTimer); // Packets still arrive, the ones on their way wait longer
+    }
+
+    /**
+     * Finds the packets an acknowledgment covers: the one it names, the ones before it when it is cumulative
+     * and the ones in its selective bitmap.
+     *
+     * @param ack     The acknowledgment
+     * @param pending The packets that are not acknowledged yet
+     * @param nextSeq The first packet that was never sent, the acknowledgment covers none from it on
+     * @return the pending packets it covers, in order
+     */
+    static List<Integer> covered(TCPHeader ack, NavigableSet<Integer> pending, int nextSeq) {
+        List<Integer> acked = new ArrayList<>(ack.isSYN()
+                ? pending.headSet(ack.getSequence(), true)
+                : pending.subSet(ack.getSequence(), true, ack.getSequence(), true));
+        for (int bit = 0; bit < TCPHeader.SELECTIVE_BITS; bit++) {
+            int seq = ack.getSequence() + 1 + bit;
+            if ((ack.getSelective() >> bit & 1) == 1 && pending.contains(seq)) {
+                acked.add(seq);
+            }
+        }
+        acked.removeIf(seq -> seq >= nextSeq); // Never sent, the acknowledgment is not for this message
+        return acked;
+    }
+
     /**
      * Processes an acknowledgment packet from the receiver.
-     * Removes acknowledged packets from the retransmission queue.
+     * Removes acknowledged packets from the retransmission queue, grows the window and sends the packets
+     * it allows now.
      *
      * @param packet The TCP header received from the network layer
      * @return true if the acknowledgment was processed successfully, false otherwise
@@ -122,14 +373,59 @@ public class Sender implements Connection {
         if (packet.getSequence() < firstSeq || packet.getSequence() > lastSeq) {
             return false;
         }
+        if (done) {
+            return true;
+        }
         if (packet.isFin()) {
-            messages.clear();
+            messages.clear(); // The receiver has the whole message
+        } else {
+            acknowledge(packet);
         }
-        messages.remove(packet.getSequence());
 
+        if (messages.isEmpty()) {
+            doneSending();
+        } else {
+            sendNewPackets();
+        }
         return true;
     }
 
+    /**
+     * Cancels the retransmission timers that are still set.
+     */
+    @Override
+    public synchronized void close() {
+        timers.values().forEach(Cancellable::cancel);
+        timers.clear();
+    }
+
+    /**
+     * @return the sequence number of the first packet of the message
+     */
+    public int getFirstSeq() {
+        return firstSeq;
+    }
+
+    /**
+     * @return the sequence number of the last packet of the message
+     */
+    public int getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * @return true once the whole message was acknowledged
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the packets that may be on their way at once now
+     */
+    public synchronized int getWindow() {
+        return window;
+    }
 
     /**
      * @return the other side of this connection.
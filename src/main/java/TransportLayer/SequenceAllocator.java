@@ -0,0 +1,212 @@
+package TransportLayer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Hands out the sequence numbers of messages, per peer. A message gets a contiguous range, the next free one
+ * after the numbers handed out or seen last for the peer. Numbers in use by either side of the connections
+ * with a peer are kept as disjoint, non-adjacent ranges in a tree, so handing out and releasing a range takes
+ * logarithmic time in the number of ranges.
+ * <p>
+ * The sequence field has {@link #SEQUENCE_BITS} bits. When the numbers run out at the top, the next range
+ * starts at 1 again. A range never straddles the top, so the numbers within one message always increase.
+ * Which of two numbers is later is decided by serial-number arithmetic: the later one is less than half of
+ * the space ahead, counting around the top.
+ * <p>
+ * A broadcast gets one range that is free for every peer it goes to, so its packets never take numbers of a
+ * message to one of them.
+ */
+public class SequenceAllocator {
+
+    /**
+     * Bits of the sequence number in the TCP header.
+     */
+    public static final int SEQUENCE_BITS = 23;
+
+    /**
+     * Number of sequence numbers.
+     */
+    public static final int SPACE = 1 << SEQUENCE_BITS;
+
+    /**
+     * The numbers of one peer.
+     */
+    private static class Peer {
+        private final NavigableMap<Integer, Integer> used = new TreeMap<>(); // First to last number of a range
+        private int next = 1; // Where the search for the next range starts
+    }
+
+    private final Map<Integer, Peer> peers = new HashMap<>();
+
+    /**
+     * Gets how far a sequence number is ahead of another, counting around the top of the space.
+     *
+     * @param from the number to count from
+     * @param to   the number to count to
+     * @return the distance, negative when to is behind from, between -SPACE / 2 and SPACE / 2
+     */
+    public static int distance(int from, int to) {
+        int distance = (to - from) & (SPACE - 1);
+        return distance > SPACE / 2 ? distance - SPACE : distance;
+    }
+
+    /**
+     * @param seq   a sequence number
+     * @param other another sequence number
+     * @return whether seq comes after other, counting around the top of the space
+     */
+    public static boolean isAfter(int seq, int other) {
+        return distance(other, seq) > 0;
+    }
+
+    /**
+     * Hands out a range of sequence numbers for a message to a peer.
+     *
+     * @param peer  the address of the peer
+     * @param count the number of packets of the message
+     * @return the first number of the range, the others follow it
+     * @throws IllegalStateException if no range of that size is free
+     */
+    public int allocate(int peer, int count) {
+        return allocate(List.of(peer), count);
+    }
+
+    /**
+     * Hands out one range of sequence numbers for a message to several peers, free for each of them. It
+     * starts after the numbers handed out or seen last for the peer that is furthest ahead.
+     *
+     * @param peers the addresses of the peers
+     * @param count the number of packets of the message
+     * @return the first number of the range, the others follow it
+     * @throws IllegalStateException if no range of that size is free for all peers
+     */
+    public synchronized int allocate(Collection<Integer> peers, int count) {
+        if (count < 1 || count >= SPACE || peers.isEmpty()) {
+            throw new IllegalArgumentException("Cannot allocate " + count + " sequence numbers for " + peers);
+        }
+        List<Peer> numbers = peers.stream().map(peer -> this.peers.computeIfAbsent(peer, _ -> new Peer())).toList();
+        int start = numbers.getFirst().next;
+        for (Peer other : numbers) {
+            if (isAfter(other.next, start)) {
+                start = other.next;
+            }
+        }
+        long searched = 0;
+        boolean free = false;
+        while (!free) { // Until a range is free for every peer in one pass
+            free = true;
+            for (Peer other : numbers) {
+                int next = firstFree(other, start, count);
+                if (next != start) {
+                    searched += (next - start) & (SPACE - 1);
+                    start = next;
+                    free = false;
+                }
+            }
+            if (searched > SPACE) {
+                throw new IllegalStateException("No " + count + " free sequence numbers for " + peers);
+            }
+        }
+        for (Peer other : numbers) {
+            add(other.used, start, start + count - 1);
+            other.next = start + count == SPACE ? 1 : start + count;
+        }
+        return start;
+    }
+
+    /**
+     * Takes one step towards a free range of a peer.
+     *
+     * @return start if the range from it is free, otherwise where the next range to try starts
+     */
+    private static int firstFree(Peer numbers, int start, int count) {
+        if (start + count > SPACE) {
+            return 1; // Does not fit below the top, start over at the bottom
+        }
+        Map.Entry<Integer, Integer> blocking = numbers.used.floorEntry(start + count - 1);
+        return blocking == null || blocking.getValue() < start ? start : blocking.getValue() + 1;
+    }
+
+    /**
+     * Marks a number the peer uses for a message to this node, so it is not handed out for messages to the
+     * peer. The next range starts after it when it is the latest number of the peer.
+     *
+     * @param peer the address of the peer
+     * @param seq  the sequence number
+     */
+    public synchronized void markUsed(int peer, int seq) {
+        Peer numbers = peers.computeIfAbsent(peer, _ -> new Peer());
+        add(numbers.used, seq, seq);
+        if (!isAfter(numbers.next, seq)) {
+            numbers.next = seq + 1 == SPACE ? 1 : seq + 1;
+        }
+    }
+
+    /**
+     * Releases numbers that are no longer used, they are handed out again once the numbers came around.
+     *
+     * @param peer  the address of the peer
+     * @param first the first number to release
+     * @param count the number of numbers to release
+     */
+    public synchronized void release(int peer, int first, int count) {
+        Peer numbers = peers.get(peer);
+        if (numbers == null) {
+            return;
+        }
+        int last = first + count - 1;
+        Map.Entry<Integer, Integer> range = numbers.used.floorEntry(last);
+        while (range != null && range.getValue() >= first) {
+            numbers.used.remove(range.getKey());
+            if (range.getKey() < first) {
+                numbers.used.put(range.getKey(), first - 1);
+            }
+            if (range.getValue() > last) {
+                numbers.used.put(last + 1, range.getValue());
+            }
+            range = numbers.used.lowerEntry(range.getKey());
+        }
+    }
+
+    /**
+     * @param peer the address of the peer
+     * @param seq  the sequence number
+     * @return whether the number is handed out or marked as used for the peer
+     */
+    public synchronized boolean isUsed(int peer, int seq) {
+        Peer numbers = peers.get(peer);
+        if (numbers == null) {
+            return false;
+        }
+        Map.Entry<Integer, Integer> range = numbers.used.floorEntry(seq);
+        return range != null && range.getValue() >= seq;
+    }
+
+    /**
+     * @param peer the address of the peer
+     * @return the number of disjoint ranges in use for the peer
+     */
+    public synchronized int getRanges(int peer) {
+        Peer numbers = peers.get(peer);
+        return numbers == null ? 0 : numbers.used.size();
+    }
+
+    /**
+     * Adds a range to the used ones, merged with the ranges it overlaps or touches.
+     */
+    private static void add(NavigableMap<Integer, Integer> used, int first, int last) {
+        Map.Entry<Integer, Integer> range = used.floorEntry(last + 1);
+        while (range != null && range.getValue() >= first - 1) {
+            first = Math.min(first, range.getKey());
+            last = Math.max(last, range.getValue());
+            used.remove(range.getKey());
+            range = used.floorEntry(last + 1);
+        }
+        used.put(first, last);
+    }
+}
@@ -4,6 +4,9 @@ import Model.Exceptions.PayloadException;
 import Model.Packet;
 import Model.LAYER;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Represents a simplified TCP (Transmission Control Protocol) header within the Transport Layer.
  * This class models essential TCP header fields like sequence number, acknowledgment number,
@@ -14,15 +17,25 @@ import Model.LAYER;
  * for simplicity, which differs from the standard 32-bit TCP fields.
  */
 public class TCPHeader implements Packet {
+    /**
+     * Number of packets after the sequence number an acknowledgment can acknowledge selectively.
+     */
+    public static final int SELECTIVE_BITS = 8;
+
     /**
      * Sequence number (0-4095). Identifies the sequence of data in the stream.
      */
     private int seq_no;
 
     /**
-     * The message for the packet.
+     * The message for the packet, null until it is decoded from the payload.
+     */
+    private String message;
+
+    /**
+     * The encoded message for the packet, null when the packet was made from a string.
      */
-    private final String message;
+    private final ByteBuffer payload;
 
     /**
      * The destination of the packet.
@@ -39,11 +52,16 @@ public class TCPHeader implements Packet {
     private boolean Fin;
 
     /**
-     * Length of the attached message in bytes (characters).
+     * Length of the attached message in bytes.
      */
     private final int payloadLength;
     private boolean syn;
 
+    /**
+     * Bitmap of an acknowledgment, bit i acknowledges the packet {@code seq_no + 1 + i}.
+     */
+    private final int selective;
+
     /**
      * Constructs a new TCP_Header.
      * @param seq_no      The initial sequence number (should be 0-4095).
@@ -55,8 +73,60 @@ public class TCPHeader implements Packet {
         this.Ack = is_Ack;
         this.Fin = is_Fin;
         this.message = message;
+        this.payload = null;
         this.payloadLength = payloadLength;
         this.destination = destination;
+        this.selective = 0;
+    }
+
+    /**
+     * Constructs a data packet that carries a segment of an encoded message. The segment is not copied, its
+     * position and limit are left alone.
+     * @param seq_no      The sequence number of the packet.
+     * @param is_SYN      Whether the packet is the first one of the message.
+     * @param is_Fin      Whether the packet is the last one of the message.
+     * @param payload     The UTF-8 bytes of the segment, from its position to its limit.
+     * @param destination The node the packet is for.
+     */
+    public TCPHeader(int seq_no, boolean is_SYN, boolean is_Fin, ByteBuffer payload, int destination) {
+        this.seq_no = seq_no;
+        this.syn = is_SYN;
+        this.Ack = false;
+        this.Fin = is_Fin;
+        this.payload = payload;
+        this.payloadLength = payload.remaining();
+        this.destination = destination;
+        this.selective = 0;
+    }
+
+    /**
+     * Constructs an acknowledgment. A cumulative one has the SYN flag and acknowledges every packet of the
+     * message up to and including seq_no, otherwise only seq_no itself is acknowledged. The selective
+     * bitmap is sent as the one byte of payload.
+     * @param seq_no      The packet that is acknowledged, or the last one of the packets that are.
+     * @param cumulative  Whether every packet of the message before seq_no is acknowledged too.
+     * @param is_Fin      Whether the whole message arrived.
+     * @param selective   Bit i acknowledges packet seq_no + 1 + i, up to {@link #SELECTIVE_BITS} bits.
+     * @param destination The node the acknowledgment is for.
+     */
+    public TCPHeader(int seq_no, boolean cumulative, boolean is_Fin, int selective, int destination) {
+        this.seq_no = seq_no;
+        this.syn = cumulative;
+        this.Ack = true;
+        this.Fin = is_Fin;
+        this.message = "";
+        this.payload = null;
+        this.payloadLength = 1;
+        this.destination = destination;
+        this.selective = selective;
+    }
+
+    /**
+     * Gets the selective bitmap of an acknowledgment.
+     * @return bit i set when packet getSequence() + 1 + i arrived, 0 for other packets
+     */
+    public int getSelective() {
+        return selective;
     }
 
     /**
@@ -64,9 +134,20 @@ public class TCPHeader implements Packet {
      * @return the message of the packet
      */
     public String getMessage() {
+        if (message == null) {
+            message = StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+        }
         return this.message;
     }
 
+    /**
+     * Get the encoded message of the packet.
+     * @return a buffer over the UTF-8 bytes of the message, sharing them when the packet carries a segment
+     */
+    public ByteBuffer getPayload() {
+        return payload != null ? payload.duplicate() : ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * Checks the length of the attached payload.
      * @return the length of the payload
@@ -149,6 +230,15 @@ public class TCPHeader implements Packet {
         return Ack;
     }
 
+    /**
+     * Checks whether the packet acknowledges packets this node sent. The FIN+ACK a sender ends its message
+     * with has no payload, it is for the node that received the message.
+     * @return true for an acknowledgment from a receiver, false for the packets of a sender
+     */
+    public boolean isAcknowledgment() {
+        return Ack && !(Fin && payloadLength == 0);
+    }
+
     /**
      * Sets the flag to the specified boolean.
      * @param ack the value Ack should be set to
@@ -2,9 +2,19 @@ package TransportLayer;
 
 import Model.Packet;
 import Model.LayerModel;
+import NetworkLayer.AddressHeader;
+import NetworkLayer.DA.DynamicAddressing;
+import NetworkLayer.NetworkLayer;
 import NetworkLayer.NetworkingDAO;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents the Transport Layer in a networking stack, implementing the {@link LayerModel} interface.
@@ -25,41 +35,273 @@ public enum TransportLayer implements LayerModel {
     TransportLayer() {
     }
 
-    private final Map<Integer, Set<Integer>> usedSeqNo = new HashMap<>();
-    private final Map<Integer, Set<Connection>> connections = new HashMap<>();
+    /**
+     * System property with the milliseconds a {@link Receiver} delays its acknowledgments, 0 to acknowledge
+     * every packet right away.
+     */
+    public static final String ACK_DELAY_PROPERTY = "ackDelay";
+
+    /**
+     * Milliseconds acknowledgments are delayed when the property is not set.
+     */
+    public static final long DEFAULT_ACK_DELAY = 1000;
+
+    /**
+     * System property that turns the {@link Compression} of messages on when set to {@code true}. Every node
+     * it sends to must have it on too, a node without it shows compressed messages as garbage.
+     */
+    public static final String COMPRESSION_PROPERTY = "compression";
+
+    /**
+     * System property with the file of the {@link Outbox}, messages are journalled only when it is set. Every
+     * node needs a file of its own.
+     */
+    public static final String OUTBOX_PROPERTY = "outbox";
+
+    /**
+     * Milliseconds between the checks whether this node has an address, before the outbox is resumed.
+     */
+    public static final long JOIN_CHECK_INTERVAL = 1000;
+
+    private final long ackDelay = Long.getLong(ACK_DELAY_PROPERTY, DEFAULT_ACK_DELAY);
+    private final boolean compressing = Boolean.getBoolean(COMPRESSION_PROPERTY);
+    private final SequenceAllocator sequences = new SequenceAllocator();
+    private final Demultiplexer connections = new Demultiplexer();
+    private final RttEstimator rttEstimator = new RttEstimator(System::currentTimeMillis);
+    private final ScheduledThreadPoolExecutor timers = newTimers();
+    private final Connection.Scheduler scheduler = (task, delayMillis) -> {
+        ScheduledFuture<?> future = timers.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        return () -> future.cancel(false);
+    };
+    private volatile Outbox outbox; // Null until it is opened, or if it cannot be
+
+
+    /**
+     * Used to keep track of the sequence numbers of all connections.
+     * The sequence numbers only need to differ for connections to the same other node.
+     * @return the allocator of the sequence numbers used in communication with every other node
+     */
+    public SequenceAllocator getSequences() {
+        return sequences;
+    }
+
+
+    /**
+     * @return the round-trip times and retransmission timeouts measured to every peer
+     */
+    public RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
+
+    /**
+     * Length of the TCP header in bytes.
+     */
+    public static final int HEADER_LENGTH = 4;
+
+    /**
+     * Bytes of a message in one frame with a base address header.
+     */
+    public static final int SEGMENT_CAPACITY =
+            AddressHeader.FRAME_LENGTH - AddressHeader.BASE_HEADER_LENGTH - HEADER_LENGTH;
+
+    /**
+     * Longest UTF-8 encoding of one code point in bytes, a segment must be able to hold it.
+     */
+    private static final int MAX_CODE_POINT_LENGTH = 4;
+
+    /**
+     * Splits the message to be sent into segments that fill a frame with a base address header.
+     *
+     * @param message the message to be sent
+     * @return the segments of the message
+     */
+    public static List<ByteBuffer> segment(String message) {
+        return segment(message, SEGMENT_CAPACITY);
+    }
 
+    /**
+     * Encodes the message to be sent as UTF-8 once and splits the bytes into segments of a given capacity.
+     * Every segment is as full as it can be without splitting a code point, so it ends before the first
+     * byte that continues one. The segments are slices of the encoded message, nothing is copied. An empty
+     * message is one empty segment.
+     *
+     * @param message  the message to be sent
+     * @param capacity the bytes of a segment at most
+     * @return the segments of the message, in order
+     */
+    public static List<ByteBuffer> segment(String message, int capacity) {
+        return segment(message, capacity, false);
+    }
 
     /**
-     * Method used to keep track of the sequence numbers of all connections.
-     * @param destination the sequence numbers only need to differ for connections to the same other node.
-     * @return set of all sequence numbers used in communication with the destination node
+     * Splits the message to be sent into segments of a given capacity, compressed first if that saves a
+     * segment. The message is encoded as UTF-8 once, and those bytes are split or compressed. A message that
+     * fits in one segment is never compressed, it cannot get shorter, and neither is one longer than
+     * {@link Compression#MAX_LENGTH}.
+     *
+     * @param message  the message to be sent
+     * @param capacity the bytes of a segment at most
+     * @param compress whether the message may be compressed
+     * @return the segments of the message, in order, the first starts with {@link Compression#FLAG} if the
+     * message is compressed
      */
-    public synchronized Set<Integer> getUsedSeq(int destination) {
-        if (!usedSeqNo.containsKey(destination)) {
-            usedSeqNo.put(destination, new HashSet<>());
-            usedSeqNo.get(destination).add(0);
-            return usedSeqNo.get(destination);
+    public static List<ByteBuffer> segment(String message, int capacity, boolean compress) {
+        if (capacity < MAX_CODE_POINT_LENGTH) {
+            throw new IllegalArgumentException("A segment of " + capacity + " bytes cannot hold every code point");
+        }
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        List<ByteBuffer> segments = split(bytes, capacity, true);
+        if (!compress || segments.size() == 1 || bytes.length > Compression.MAX_LENGTH) {
+            return segments; // Too short to gain, or too long for the receiver to inflate
         }
-        return usedSeqNo.get(destination);
+        byte[] compressed = Compression.compress(bytes);
+        if (compressed.length > (segments.size() - 1) * capacity) {
+            return segments; // Saves no segment
+        }
+        return split(compressed, capacity, false);
     }
 
+    /**
+     * Splits bytes into slices of a given capacity.
+     *
+     * @param bytes      the bytes to split
+     * @param capacity   the bytes of a slice at most
+     * @param codePoints whether the bytes are UTF-8 and a slice must end before a byte that continues a code point
+     * @return the slices, in order; one empty slice if there are no bytes
+     */
+    private static List<ByteBuffer> split(byte[] bytes, int capacity, boolean codePoints) {
+        List<ByteBuffer> segments = new ArrayList<>(bytes.length / capacity + 1);
+        int start = 0;
+        do {
+            int end = Math.min(start + capacity, bytes.length);
+            while (codePoints && end < bytes.length && (bytes[end] & 0xC0) == 0x80) {
+                end--; // A continuation byte, the code point starts before it
+            }
+            segments.add(ByteBuffer.wrap(bytes, start, end - start).slice());
+            start = end;
+        } while (start < bytes.length);
+        return segments;
+    }
 
-    public synchronized void addUsedSeq(int destination, int usedSeq) {
-        if (!usedSeqNo.containsKey(destination)) {
-            usedSeqNo.put(destination, new HashSet<>());
+    /**
+     * Creates the one thread that runs the timers of all connections. Cancelled timers are taken off its
+     * queue right away, so a connection that ended leaves nothing behind.
+     */
+    private static ScheduledThreadPoolExecutor newTimers() {
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "transport-timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timers.setRemoveOnCancelPolicy(true);
+        return timers;
+    }
+
+    /**
+     * @return the scheduler that runs the timers of all connections on one shared thread
+     */
+    public Connection.Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return the milliseconds a receiver waits for more packets before it acknowledges
+     */
+    public long getAckDelay() {
+        return ackDelay;
+    }
+
+    /**
+     * @return true if messages that get shorter by it are compressed before they are sent
+     */
+    public boolean isCompressing() {
+        return compressing;
+    }
+
+    /**
+     * @return the number of timers of all connections that did not run and were not cancelled yet
+     */
+    public int getPendingTimers() {
+        return timers.getQueue().size();
+    }
+
+    /**
+     * @return the outbox messages are journalled in, null if there is none
+     */
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * Opens the outbox if the {@value #OUTBOX_PROPERTY} property is set, new messages are journalled from
+     * now on. The messages that were not sent completely before the last restart are resumed once
+     * {@link DynamicAddressing} has given this node an address, see {@link #resumeOutbox(int)}. If the file
+     * cannot be opened or another node has it open, messages are sent without outbox. Does nothing the
+     * second time.
+     */
+    public synchronized void openOutbox() {
+        String file = System.getProperty(OUTBOX_PROPERTY, "");
+        if (outbox != null || file.isEmpty()) {
+            return;
         }
-        usedSeqNo.get(destination).add(usedSeq);
+        try {
+            outbox = new Outbox(Path.of(file), Outbox.DEFAULT_CAPACITY,
+                    () -> NetworkingDAO.getInstance().getLocalAddress());
+        } catch (IOException e) {
+            System.out.println("Sending without outbox: " + e.getMessage());
+            return;
+        }
+        resumeWhenJoined();
     }
 
+    /**
+     * Checks every {@link #JOIN_CHECK_INTERVAL} milliseconds whether this node has an address yet.
+     */
+    private void resumeWhenJoined() {
+        if (!DynamicAddressing.getSingleton().isJoined()) {
+            scheduler.schedule(this::resumeWhenJoined, JOIN_CHECK_INTERVAL);
+            return;
+        }
+        int resumed = resumeOutbox(NetworkingDAO.getInstance().getLocalAddress());
+        if (resumed > 0) {
+            System.out.println("\nResuming " + resumed + " message(s) that were not sent completely");
+        }
+    }
 
     /**
-     * Splits the message to be sent into 24-byte parts.
+     * Resumes the messages in the outbox that were not sent completely before the last restart. A message
+     * sent from the address this node has now keeps its sequence numbers, they are marked as used again and
+     * only the packets that were not acknowledged are sent. A message sent from another address is unknown
+     * to its receiver by this address, so all of it is sent again as a new message with new sequence
+     * numbers. Messages to the broadcast address are not journalled.
      *
-     * @param message the message to be sent
-     * @return the split message
+     * @param address the address this node has now
+     * @return the number of messages that are resumed or sent again
      */
-    public static List<String> splitMessage(String message) {
-        return Arrays.asList(message.split("(?<=\\G.{" + 24 + "})"));
+    public synchronized int resumeOutbox(int address) {
+        if (outbox == null) {
+            return 0;
+        }
+        int resumed = 0;
+        for (Outbox.Entry entry : outbox.getPending()) {
+            Sender sender;
+            if (entry.getSource() == address) {
+                for (int seq = entry.getFirstSeq(); seq < entry.getFirstSeq() + entry.getSegments().size(); seq++) {
+                    sequences.markUsed(entry.getDestination(), seq);
+                }
+                sender = new Sender(entry);
+            } else { // Journalled again before the old record is done, so its segments are not overwritten
+                sender = new Sender(entry.getDestination(), entry.getSegments(), NetworkLayer.getSingleton(),
+                        scheduler, rttEstimator, outbox);
+                entry.complete();
+            }
+            connections.open(sender, Demultiplexer.Direction.OUTBOUND, sender.getFirstSeq(), sender.getLastSeq());
+            sender.start();
+            if (!sender.isDone()) {
+                resumed++;
+            }
+        }
+        return resumed;
     }
 
     @Override
@@ -67,60 +309,69 @@ public enum TransportLayer implements LayerModel {
     }
 
     /**
-     * Processes an incoming app header by adding a tcp header to it.
+     * Processes an incoming app header by adding a tcp header to it. A message for the broadcast address
+     * (7) goes to every known node with one {@link BroadcastSender}.
      *
      * @param message     the message that needs to be sent
      * @param destination the node to send the message to
      */
     public void sendNewMessage(String message, int destination) {
-        // Split the message into 24-byte parts
-
-        if (destination == 7) { // Initialize message sending for evey node in range
-            for (int node : NetworkingDAO.getInstance().getKnownNodes()) {
-                if (!connections.containsKey(node)) {
-                    connections.put(node, new HashSet<>());
-                }
-                connections.get(node).add(new Sender(node, message));
+        // The sender splits the message with segment(), into parts that fill the payload of a frame
+        // without splitting a code point
+        if (destination == 7) { // One broadcast for the neighbours, repaired per node
+            Set<Integer> receivers = NetworkingDAO.getInstance().getKnownNodes();
+            if (receivers.isEmpty()) {
+                return;
             }
+            BroadcastSender sender = new BroadcastSender(receivers, message);
+            connections.open(sender, Demultiplexer.Direction.OUTBOUND, sender.getFirstSeq(), sender.getLastSeq());
+            sender.start();
         } else { // Initialize message sending for the whisper destination
-            if (!connections.containsKey(destination)) {
-                connections.put(destination, new HashSet<>());
-            }
-            connections.get(destination).add(new Sender(destination, message));
+            Sender sender = new Sender(destination, message);
+            connections.open(sender, Demultiplexer.Direction.OUTBOUND, sender.getFirstSeq(), sender.getLastSeq());
+            sender.start();
         }
     }
 
 
     /**
-     * Processes an incoming tcp header.
+     * Processes an incoming tcp header. The {@link Demultiplexer} finds the connection it belongs to, a
+     * packet of a message no receiver has yet starts a new {@link Receiver}.
      *
      * @param header the tcp header that came in
      * @param source the node that send this packet
      */
     public void receiveTcpHeader(TCPHeader header, int source) {
-        if (!connections.containsKey(source)) {
-            connections.put(source, new HashSet<>());
-        }
-
-        if (connections.get(source).stream().noneMatch(s -> s.receivePacket(header))) {
-            if (!header.isAck()) {
-                connections.get(source).add(new Receiver(source, header));
+        Demultiplexer.Direction direction = Demultiplexer.Direction.of(header);
+        for (Connection connection : connections.find(source, header)) {
+            if (connection.receivePacket(header, source)) {
+                if (direction == Demultiplexer.Direction.INBOUND) {
+                    connections.claim(connection, source, direction, header.getSequence());
+                }
+                return;
             }
         }
+        if (direction == Demultiplexer.Direction.INBOUND && !header.isAck()) {
+            Receiver receiver = new Receiver(source, header);
+            connections.open(receiver, direction, header.getSequence(), header.getSequence());
+            receiver.start();
+        }
     }
 
-
     /**
-     * Used when the connection to a node should be terminated.
-     * @param conn to be removed
+     * @return the connections that are open, by peer, direction and sequence number
      */
-    public synchronized void removeConnection(Connection conn) {
-        connections.get(conn.getPeer()).remove(conn);
-
+    public Demultiplexer getConnections() {
+        return connections;
     }
 
 
-    public synchronized void removeUsedSeq(int peer, int seq) {
-        usedSeqNo.get(peer).remove(seq);
+    /**
+     * Used when the connection to a node should be terminated. Cancels the timers of the connection.
+     * @param conn to be removed
+     */
+    public void removeConnection(Connection conn) {
+        connections.close(conn);
+        conn.close();
     }
 }
\ No newline at end of file